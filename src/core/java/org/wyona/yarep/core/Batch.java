@@ -0,0 +1,189 @@
+package org.wyona.yarep.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Unit of work, which buffers the creation of nodes, the modification of properties and the writing of content, such that all operations can be applied in one pass.
+ * Repositories implementing org.wyona.yarep.core.attributes.BatchableRepositoryV1 apply a batch with one meta file write per node and one index commit,
+ * whereas org.wyona.yarep.util.YarepUtil#apply(Repository, Batch) works for all repository implementations (by applying the operations one at a time).
+ */
+public class Batch {
+
+    public static final int ADD_NODE = 1;
+    public static final int SET_PROPERTY = 2;
+    public static final int REMOVE_PROPERTY = 3;
+    public static final int SET_CONTENT = 4;
+
+    private List<Operation> operations = new ArrayList<Operation>();
+
+    /**
+     * Add node (including parent nodes which do not exist yet), whereas an existing node is left as it is
+     * @param path Absolute repository path of node
+     * @param nodeType Type of node (see {@link NodeType})
+     */
+    public Batch addNode(String path, int nodeType) {
+        Operation op = new Operation(ADD_NODE, path);
+        op.nodeType = nodeType;
+        operations.add(op);
+        return this;
+    }
+
+    /**
+     * Set string property
+     * @param path Absolute repository path of node
+     */
+    public Batch setProperty(String path, String name, String value) {
+        return setProperty(path, name, PropertyType.STRING, value);
+    }
+
+    /**
+     * Set boolean property
+     * @param path Absolute repository path of node
+     */
+    public Batch setProperty(String path, String name, boolean value) {
+        return setProperty(path, name, PropertyType.BOOLEAN, Boolean.valueOf(value));
+    }
+
+    /**
+     * Set long property
+     * @param path Absolute repository path of node
+     */
+    public Batch setProperty(String path, String name, long value) {
+        return setProperty(path, name, PropertyType.LONG, Long.valueOf(value));
+    }
+
+    /**
+     * Set double property
+     * @param path Absolute repository path of node
+     */
+    public Batch setProperty(String path, String name, double value) {
+        return setProperty(path, name, PropertyType.DOUBLE, Double.valueOf(value));
+    }
+
+    /**
+     * Set date property
+     * @param path Absolute repository path of node
+     */
+    public Batch setProperty(String path, String name, Date value) {
+        return setProperty(path, name, PropertyType.DATE, value);
+    }
+
+    /**
+     * Remove property
+     * @param path Absolute repository path of node
+     */
+    public Batch removeProperty(String path, String name) {
+        Operation op = new Operation(REMOVE_PROPERTY, path);
+        op.propertyName = name;
+        operations.add(op);
+        return this;
+    }
+
+    /**
+     * Replace content of a resource
+     * @param path Absolute repository path of node
+     * @param content New content (the array is not copied, hence it must not be modified until the batch has been applied)
+     */
+    public Batch setContent(String path, byte[] content) {
+        Operation op = new Operation(SET_CONTENT, path);
+        op.content = content;
+        operations.add(op);
+        return this;
+    }
+
+    /**
+     * Get all operations in the order in which they have been added
+     */
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Get number of operations
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     *
+     */
+    private Batch setProperty(String path, String name, int type, Object value) {
+        Operation op = new Operation(SET_PROPERTY, path);
+        op.propertyName = name;
+        op.propertyType = type;
+        op.value = value;
+        operations.add(op);
+        return this;
+    }
+
+    /**
+     * Buffered operation
+     */
+    public static class Operation {
+        private int type;
+        private String path;
+        private int nodeType;
+        private String propertyName;
+        private int propertyType;
+        private Object value;
+        private byte[] content;
+
+        Operation(int type, String path) {
+            this.type = type;
+            this.path = path;
+        }
+
+        /**
+         * Get type of operation (ADD_NODE, SET_PROPERTY, REMOVE_PROPERTY or SET_CONTENT)
+         */
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * Get absolute repository path of node
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Get type of node which is added (see {@link NodeType})
+         */
+        public int getNodeType() {
+            return nodeType;
+        }
+
+        /**
+         * Get name of property which is set or removed
+         */
+        public String getPropertyName() {
+            return propertyName;
+        }
+
+        /**
+         * Get type of property which is set (see {@link PropertyType})
+         */
+        public int getPropertyType() {
+            return propertyType;
+        }
+
+        /**
+         * Get value of property which is set (String, Boolean, Long, Double or Date)
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Get content which is written
+         */
+        public byte[] getContent() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.wyona.yarep.core;
+
+/**
+ * Name and type of a child node, which can be listed without initializing the child node itself (see org.wyona.yarep.core.attributes.PageableChildrenV1)
+ */
+public class ChildEntry {
+
+    private String name;
+    private String path;
+    private int type;
+
+    /**
+     * @param name Name of child node
+     * @param path Absolute repository path of child node
+     * @param type Type of child node (see {@link NodeType})
+     */
+    public ChildEntry(String name, String path, int type) {
+        this.name = name;
+        this.path = path;
+        this.type = type;
+    }
+
+    /**
+     * Get name of child node
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get absolute repository path of child node, which can be used to get the node itself (see Repository#getNode(String))
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Get type of child node (see {@link NodeType})
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Check whether child node is a collection
+     */
+    public boolean isCollection() {
+        return type == NodeType.COLLECTION;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return path + " (" + NodeType.getTypeName(type) + ")";
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2009 Wyona
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.wyona.org/licenses/APACHE-LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wyona.yarep.core.attributes;
+
+import org.wyona.yarep.core.Batch;
+
+/**
+ * DEV (Not released yet, this interface is still subject to change!)
+ * This interface allows a repository implementation to apply a batch of operations in one pass, e.g. creating a page which consists of several nodes, properties and content,
+ * such that the meta data of every node is written only once and the search index is committed only once.
+ * Also see org.wyona.yarep.util.YarepUtil#apply(org.wyona.yarep.core.Repository, Batch), which works for all repository implementations.
+ */
+public interface BatchableRepositoryV1 {
+
+    /**
+     * Apply all operations of a batch, whereas operations of the same node are applied in the order in which they have been added to the batch
+     * @param batch Batch of operations
+     */
+    public void apply(Batch batch) throws Exception;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2009 Wyona
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.wyona.org/licenses/APACHE-LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wyona.yarep.core.attributes;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * DEV (Not released yet, this interface is still subject to change!)
+ * This interface allows a node implementation to provide its content as channel, such that large content can be transferred
+ * without copying it through byte arrays (e.g. by {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}, which uses sendfile on many platforms)
+ * Also see org.wyona.yarep.util.YarepUtil#transferTo(org.wyona.yarep.core.Node, WritableByteChannel), which works for all node implementations.
+ */
+public interface ChannelReadableV1 {
+
+    /**
+     * Get content as channel, whereas the caller has to close the channel
+     * @return channel, which is a {@link java.nio.channels.FileChannel} if the content is stored as file
+     */
+    public ReadableByteChannel getReadableChannel() throws Exception;
+
+    /**
+     * Get length of the content provided by the channel
+     * @return length in bytes or -1 if the length is not known in advance (e.g. directory listing of a collection)
+     */
+    public long getContentLength() throws Exception;
+
+    /**
+     * Transfer content to a channel (e.g. the socket channel of a HTTP response)
+     * @param target Channel to which the content is written (the target is not closed)
+     * @return number of bytes transferred
+     */
+    public long transferTo(WritableByteChannel target) throws Exception;
+}
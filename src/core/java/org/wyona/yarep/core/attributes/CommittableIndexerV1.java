@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Wyona
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.wyona.org/licenses/APACHE-LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wyona.yarep.core.attributes;
+
+import org.wyona.yarep.core.search.SearchException;
+
+/**
+ * DEV (Not released yet, this interface is still subject to change!)
+ * This interface allows an indexer implementation (see {@link org.wyona.yarep.core.search.Indexer}) to buffer changes and to commit them explicitly,
+ * whereas indexers which do not implement this interface are expected to commit every change right away.
+ */
+public interface CommittableIndexerV1 {
+
+    /**
+     * Make all changes which have been applied to the index so far durable and visible to searchers (implementations might buffer changes and commit them only periodically)
+     */
+    public void commit() throws SearchException;
+
+    /**
+     * Optimize index (e.g. merge segments). Please note that this can be an expensive operation, hence it should only be called as part of maintenance (e.g. after re-indexing a whole repository)
+     */
+    public void optimize() throws SearchException;
+}
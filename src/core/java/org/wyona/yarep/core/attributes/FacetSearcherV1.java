@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Wyona
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.wyona.org/licenses/APACHE-LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wyona.yarep.core.attributes;
+
+import org.wyona.yarep.core.search.PropertyQuery;
+import org.wyona.yarep.core.search.SearchException;
+
+import java.util.Map;
+
+/**
+ * DEV (Not released yet, this interface is still subject to change!)
+ * This interface allows a searcher implementation (see org.wyona.yarep.core.search.Searcher) to count the values of properties over the nodes matching a query (facets).
+ */
+public interface FacetSearcherV1 {
+
+    /**
+     * Count the values of one or more properties (every value is counted as a whole, e.g. "open source" is one value) over all nodes matching a property query within subtree, without initializing the nodes
+     *
+     * @param pName Property name of query or null in order to count over all nodes within subtree
+     * @param query Search query (see org.wyona.yarep.core.search.Searcher#searchProperty(String, String, String)) or null in order to count over all nodes within subtree
+     * @param path Scope of search (path of subtree, in order to search the whole tree one sets path = "/")
+     * @param facetNames Names of properties which values are counted
+     * @param limit Maximum number of values per property (the values with the highest counts are returned), whereas -1 means all values
+     * @return value/count maps (sorted by count, descending) by property name
+     */
+    public Map<String, Map<String, Integer>> getFacets(String pName, String query, String path, String[] facetNames, int limit) throws SearchException;
+
+    /**
+     * Count the values of one or more properties over all nodes matching a query on typed properties (see {@link #getFacets(String, String, String, String[], int)})
+     *
+     * @param query Query on typed properties (the sort order is ignored)
+     * @param facetNames Names of properties which values are counted
+     * @param limit Maximum number of values per property, whereas -1 means all values
+     * @return value/count maps (sorted by count, descending) by property name
+     */
+    public Map<String, Map<String, Integer>> getFacets(PropertyQuery query, String[] facetNames, int limit) throws SearchException;
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2009 Wyona
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.wyona.org/licenses/APACHE-LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wyona.yarep.core.attributes;
+
+import java.util.Iterator;
+
+import org.wyona.yarep.core.ChildEntry;
+import org.wyona.yarep.core.Node;
+
+/**
+ * DEV (Not released yet, this interface is still subject to change!)
+ * This interface allows a node implementation to list its children page by page, without initializing all child nodes at once (as Node#getNodes() does), which matters for collections with many children.
+ * Also see org.wyona.yarep.util.YarepUtil#getChildEntries(Node, int, int, int) and org.wyona.yarep.util.YarepUtil#getNodes(Node, int, int, int), which work for all node implementations.
+ */
+public interface PageableChildrenV1 {
+
+    /**
+     * Order of children as returned by the storage (e.g. the file system), which is the fastest order
+     */
+    public static final int UNSORTED = 0;
+
+    /**
+     * Children sorted by name (ascending)
+     */
+    public static final int NAME_ASCENDING = 1;
+
+    /**
+     * Children sorted by name (descending)
+     */
+    public static final int NAME_DESCENDING = 2;
+
+    /**
+     * Get number of children
+     */
+    public int getNumberOfChildren() throws Exception;
+
+    /**
+     * Get names and types of children, without initializing the child nodes (e.g. without reading meta files)
+     * @param order Sort order (UNSORTED, NAME_ASCENDING or NAME_DESCENDING)
+     * @param offset Number of children to skip
+     * @param limit Maximum number of children, whereas -1 means all children
+     */
+    public ChildEntry[] getChildEntries(int order, int offset, int limit) throws Exception;
+
+    /**
+     * Get child nodes, whereas every child node is initialized only when it is returned by the iterator
+     * @param order Sort order (UNSORTED, NAME_ASCENDING or NAME_DESCENDING)
+     * @param offset Number of children to skip
+     * @param limit Maximum number of children, whereas -1 means all children
+     */
+    public Iterator<Node> getNodes(int order, int offset, int limit) throws Exception;
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Wyona
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.wyona.org/licenses/APACHE-LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wyona.yarep.core.attributes;
+
+import org.wyona.yarep.core.search.PropertyQuery;
+import org.wyona.yarep.core.search.SearchException;
+import org.wyona.yarep.core.search.SearchResults;
+
+/**
+ * DEV (Not released yet, this interface is still subject to change!)
+ * This interface allows a searcher implementation (see org.wyona.yarep.core.search.Searcher) to return search hits page by page, whereas only the hits of the requested page are collected.
+ */
+public interface PageableSearcherV1 {
+
+    /**
+     * Search content page by page, whereas only the hits of the requested page are collected and the nodes of the hits are only initialized on demand (see org.wyona.yarep.core.search.SearchResult#getNode())
+     *
+     * @param query Search query
+     * @param offset Number of hits to skip
+     * @param limit Maximum number of hits, whereas -1 means all hits
+     */
+    public SearchResults search(String query, int offset, int limit) throws SearchException;
+
+    /**
+     * Search content within subtree page by page (see {@link #search(String, int, int)})
+     *
+     * @param query Search query
+     * @param path Scope of search (path of subtree, in order to search the whole tree one sets path = "/")
+     * @param offset Number of hits to skip
+     * @param limit Maximum number of hits, whereas -1 means all hits
+     */
+    public SearchResults search(String query, String path, int offset, int limit) throws SearchException;
+
+    /**
+     * Search for properties content within subtree page by page (see {@link #search(String, int, int)})
+     *
+     * @param pName Property name
+     * @param query Search query
+     * @param path Scope of search (path of subtree, in order to search the whole tree one sets path = "/")
+     * @param offset Number of hits to skip
+     * @param limit Maximum number of hits, whereas -1 means all hits
+     */
+    public SearchResults searchProperty(String pName, String query, String path, int offset, int limit) throws SearchException;
+
+    /**
+     * Search for typed properties (ranges, exact matches and sort order) within subtree page by page (see {@link #search(String, int, int)})
+     *
+     * @param query Query on typed properties
+     * @param offset Number of hits to skip
+     * @param limit Maximum number of hits, whereas -1 means all hits
+     */
+    public SearchResults searchProperties(PropertyQuery query, int offset, int limit) throws SearchException;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2009 Wyona
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.wyona.org/licenses/APACHE-LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wyona.yarep.core.attributes;
+
+import java.io.InputStream;
+
+/**
+ * DEV (Not released yet, this interface is still subject to change!)
+ * This interface allows a node implementation to read parts of its content (e.g. in order to answer HTTP range requests) without reading the content from the beginning.
+ * Also see org.wyona.yarep.util.YarepUtil#read(org.wyona.yarep.core.Node, long, byte[], int, int) and org.wyona.yarep.util.YarepUtil#getInputStream(org.wyona.yarep.core.Node, long, long), which work for all node implementations.
+ */
+public interface RangeReadableV1 {
+
+    /**
+     * Read bytes at a particular position of the content
+     * @param position Position within the content (0 is the first byte)
+     * @param buffer Buffer into which the bytes are read
+     * @param offset Offset within the buffer
+     * @param length Maximum number of bytes to read
+     * @return number of bytes read, which is less than length only at the end of the content, or -1 if the position is at or beyond the end of the content
+     */
+    public int read(long position, byte[] buffer, int offset, int length) throws Exception;
+
+    /**
+     * Get part of the content as stream
+     * @param offset Position of the first byte
+     * @param length Maximum number of bytes, whereas -1 means until the end of the content
+     */
+    public InputStream getInputStream(long offset, long length) throws Exception;
+}
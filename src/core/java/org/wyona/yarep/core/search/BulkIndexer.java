@@ -0,0 +1,26 @@
+package org.wyona.yarep.core.search;
+
+import org.wyona.yarep.core.Node;
+
+import java.util.List;
+
+/**
+ * Indexer which supports bulk (re-)indexing (see org.wyona.yarep.util.RepositoryIndexer): The content of nodes is extracted by several threads,
+ * whereas the extracted documents are written to the index by one thread in batches (and the index is optimized once at the end).
+ * @param <D> Type of the documents which are extracted from a node
+ */
+public interface BulkIndexer<D> {
+
+    /**
+     * Extract the document(s) of a node (e.g. parse the content), without modifying the index. This method is called by several threads concurrently.
+     * @param node Node to be indexed (including its properties)
+     * @return extracted document(s) or null if the node does not have to be indexed
+     */
+    public D extract(Node node) throws SearchException;
+
+    /**
+     * Add or update extracted documents within the index. This method is called by one thread only.
+     * @param documents Documents which have been extracted by {@link #extract(Node)}
+     */
+    public void write(List<D> documents) throws SearchException;
+}
@@ -0,0 +1,275 @@
+package org.wyona.yarep.core.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.wyona.yarep.core.PropertyType;
+
+/**
+ * Query on typed properties (LONG, DOUBLE, DATE and BOOLEAN), which contains ranges and exact matches (which all have to match) and optionally a sort order, for example
+ * <pre>
+ * new PropertyQuery("/products").addRange("price", 10.0, 20.0).setSort("price", PropertyType.DOUBLE, false)
+ * new PropertyQuery("/").addRange("yarep_lastModified", new Date(System.currentTimeMillis() - 24 * 60 * 60 * 1000), null)
+ * </pre>
+ * Also see org.wyona.yarep.core.attributes.PageableSearcherV1#searchProperties(PropertyQuery, int, int)
+ */
+public class PropertyQuery {
+
+    private String path;
+    private List<Condition> conditions = new ArrayList<Condition>();
+    private String sortPropertyName = null;
+    private int sortPropertyType;
+    private boolean sortDescending = false;
+
+    /**
+     * @param path Scope of search (path of subtree, in order to search the whole tree one sets path = "/")
+     */
+    public PropertyQuery(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Add range of long property, whereas both bounds are inclusive
+     * @param min Lower bound (inclusive) or null if unbounded
+     * @param max Upper bound (inclusive) or null if unbounded
+     * @throws IllegalArgumentException if both bounds are null
+     */
+    public PropertyQuery addRange(String name, Long min, Long max) {
+        return addRange(name, min, max, true, true);
+    }
+
+    /**
+     * Add range of long property
+     * @param min Lower bound or null if unbounded
+     * @param max Upper bound or null if unbounded
+     * @param includeMin Whether the lower bound matches itself
+     * @param includeMax Whether the upper bound matches itself
+     * @throws IllegalArgumentException if both bounds are null
+     */
+    public PropertyQuery addRange(String name, Long min, Long max, boolean includeMin, boolean includeMax) {
+        return addCondition(new Condition(name, PropertyType.LONG, min, max, includeMin, includeMax));
+    }
+
+    /**
+     * Add range of double property, whereas both bounds are inclusive
+     * @param min Lower bound (inclusive) or null if unbounded
+     * @param max Upper bound (inclusive) or null if unbounded
+     * @throws IllegalArgumentException if both bounds are null
+     */
+    public PropertyQuery addRange(String name, Double min, Double max) {
+        return addRange(name, min, max, true, true);
+    }
+
+    /**
+     * Add range of double property
+     * @param min Lower bound or null if unbounded
+     * @param max Upper bound or null if unbounded
+     * @param includeMin Whether the lower bound matches itself
+     * @param includeMax Whether the upper bound matches itself
+     * @throws IllegalArgumentException if both bounds are null
+     */
+    public PropertyQuery addRange(String name, Double min, Double max, boolean includeMin, boolean includeMax) {
+        return addCondition(new Condition(name, PropertyType.DOUBLE, min, max, includeMin, includeMax));
+    }
+
+    /**
+     * Add range of date property, whereas both bounds are inclusive (like the ranges of long and double properties)
+     * @param min Lower bound (inclusive) or null if unbounded
+     * @param max Upper bound (inclusive) or null if unbounded
+     * @throws IllegalArgumentException if both bounds are null
+     */
+    public PropertyQuery addRange(String name, Date min, Date max) {
+        return addRange(name, min, max, true, true);
+    }
+
+    /**
+     * Add range of date property, e.g. addRange("yarep_lastModified", startOfDay, startOfNextDay, true, false) in order to match one day
+     * @param min Lower bound or null if unbounded
+     * @param max Upper bound or null if unbounded
+     * @param includeMin Whether the lower bound matches itself
+     * @param includeMax Whether the upper bound matches itself
+     * @throws IllegalArgumentException if both bounds are null
+     */
+    public PropertyQuery addRange(String name, Date min, Date max, boolean includeMin, boolean includeMax) {
+        return addCondition(new Condition(name, PropertyType.DATE, min, max, includeMin, includeMax));
+    }
+
+    /**
+     * Add exact match of long property
+     */
+    public PropertyQuery addExactMatch(String name, long value) {
+        return addCondition(new Condition(name, PropertyType.LONG, Long.valueOf(value), Long.valueOf(value), true, true));
+    }
+
+    /**
+     * Add exact match of double property
+     */
+    public PropertyQuery addExactMatch(String name, double value) {
+        return addCondition(new Condition(name, PropertyType.DOUBLE, Double.valueOf(value), Double.valueOf(value), true, true));
+    }
+
+    /**
+     * Add exact match of date property
+     */
+    public PropertyQuery addExactMatch(String name, Date value) {
+        return addCondition(new Condition(name, PropertyType.DATE, value, value, true, true));
+    }
+
+    /**
+     * Add exact match of boolean property
+     */
+    public PropertyQuery addExactMatch(String name, boolean value) {
+        return addCondition(new Condition(name, PropertyType.BOOLEAN, Boolean.valueOf(value), Boolean.valueOf(value), true, true));
+    }
+
+    /**
+     * Sort hits by a typed property (instead of by score)
+     * @param type Type of property (LONG, DOUBLE, DATE or BOOLEAN)
+     * @param descending True if the hits shall be sorted descending
+     */
+    public PropertyQuery setSort(String name, int type, boolean descending) {
+        checkType(type);
+        this.sortPropertyName = name;
+        this.sortPropertyType = type;
+        this.sortDescending = descending;
+        return this;
+    }
+
+    /**
+     * Get scope of search
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Get ranges and exact matches
+     */
+    public List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * Get name of property by which the hits are sorted
+     * @return name or null if the hits are sorted by score
+     */
+    public String getSortPropertyName() {
+        return sortPropertyName;
+    }
+
+    /**
+     * Get type of property by which the hits are sorted
+     */
+    public int getSortPropertyType() {
+        return sortPropertyType;
+    }
+
+    /**
+     * Check whether the hits are sorted descending
+     */
+    public boolean isSortDescending() {
+        return sortDescending;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "Path: " + path + ", Conditions: " + conditions + (sortPropertyName != null ? ", Sort: " + sortPropertyName + (sortDescending ? " (descending)" : "") : "");
+    }
+
+    /**
+     *
+     */
+    private PropertyQuery addCondition(Condition condition) {
+        if (condition.getMin() == null && condition.getMax() == null) {
+            // INFO: A range which is open on both ends would match every node which has the property
+            throw new IllegalArgumentException("Range of property '" + condition.getName() + "' has neither a lower nor an upper bound!");
+        }
+        conditions.add(condition);
+        return this;
+    }
+
+    /**
+     * Check whether properties of this type are indexed typed
+     */
+    private static void checkType(int type) {
+        if (type != PropertyType.LONG && type != PropertyType.DOUBLE && type != PropertyType.DATE && type != PropertyType.BOOLEAN) {
+            throw new IllegalArgumentException("Property type '" + PropertyType.getTypeName(type) + "' is not indexed typed!");
+        }
+    }
+
+    /**
+     * Range or exact match (if the lower bound and upper bound are equal and inclusive)
+     */
+    public static class Condition {
+        private String name;
+        private int type;
+        private Object min;
+        private Object max;
+        private boolean minInclusive;
+        private boolean maxInclusive;
+
+        Condition(String name, int type, Object min, Object max, boolean minInclusive, boolean maxInclusive) {
+            this.name = name;
+            this.type = type;
+            this.min = min;
+            this.max = max;
+            this.minInclusive = minInclusive;
+            this.maxInclusive = maxInclusive;
+        }
+
+        /**
+         * Get name of property
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get type of property (LONG, DOUBLE, DATE or BOOLEAN)
+         */
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * Get lower bound (Long, Double, Date or Boolean)
+         * @return lower bound or null if unbounded
+         */
+        public Object getMin() {
+            return min;
+        }
+
+        /**
+         * Get upper bound (Long, Double, Date or Boolean)
+         * @return upper bound or null if unbounded
+         */
+        public Object getMax() {
+            return max;
+        }
+
+        /**
+         * Check whether the lower bound is inclusive
+         */
+        public boolean isMinInclusive() {
+            return minInclusive;
+        }
+
+        /**
+         * Check whether the upper bound is inclusive
+         */
+        public boolean isMaxInclusive() {
+            return maxInclusive;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        public String toString() {
+            return name + (minInclusive ? "[" : "{") + min + " TO " + max + (maxInclusive ? "]" : "}");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.wyona.yarep.core.search;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.wyona.yarep.core.NoSuchNodeException;
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Lightweight handle of a search hit, which contains the path, the score and the stored fields of the hit, whereas the node (or revision) is only initialized on demand (see {@link #getNode()})
+ */
+public class SearchResult {
+
+    /**
+     * Separator between node path and revision name within the index (see for example org.wyona.yarep.impl.search.lucene.LuceneIndexerV2)
+     */
+    public static final String REVISION_SEPARATOR = "#revision=";
+
+    private Repository repo;
+    private String indexPath;
+    private float score;
+    private Map<String, String> fields;
+
+    /**
+     * @param repo Repository containing the node of the hit
+     * @param indexPath Path of hit within index, whereas the path of revisions contains the revision name (e.g. '/hello.txt#revision=1361266662652')
+     * @param score Score of hit
+     * @param fields Stored fields of hit
+     */
+    public SearchResult(Repository repo, String indexPath, float score, Map<String, String> fields) {
+        this.repo = repo;
+        this.indexPath = indexPath;
+        this.score = score;
+        this.fields = fields;
+    }
+
+    /**
+     * Get path of node (without revision name)
+     */
+    public String getPath() {
+        int i = indexPath.lastIndexOf(REVISION_SEPARATOR);
+        return i >= 0 ? indexPath.substring(0, i) : indexPath;
+    }
+
+    /**
+     * Get revision name
+     * @return revision name or null if the hit is a node and not a revision
+     */
+    public String getRevisionName() {
+        int i = indexPath.lastIndexOf(REVISION_SEPARATOR);
+        return i >= 0 ? indexPath.substring(i + REVISION_SEPARATOR.length()) : null;
+    }
+
+    /**
+     * Get score of hit
+     */
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * Get value of a stored field (e.g. the value of a property)
+     * @return value or null if no such field is stored
+     */
+    public String getField(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Get all stored fields
+     */
+    public Map<String, String> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Check whether the node (or revision) of the hit still exists inside the repository, because the search index might be out of sync
+     */
+    public boolean exists() throws RepositoryException {
+        if (!repo.existsNode(getPath())) {
+            return false;
+        }
+        if (getRevisionName() != null) {
+            try {
+                repo.getNode(getPath()).getRevision(getRevisionName());
+            } catch(org.wyona.yarep.core.NoSuchRevisionException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get node (or revision) of hit
+     * @throws NoSuchNodeException if the node does not exist anymore (see {@link #exists()})
+     */
+    public Node getNode() throws RepositoryException {
+        if (getRevisionName() != null) {
+            return repo.getNode(getPath()).getRevision(getRevisionName());
+        }
+        return repo.getNode(getPath());
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return indexPath + " (Score: " + score + ")";
+    }
+}
@@ -0,0 +1,77 @@
+package org.wyona.yarep.core.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Page of search hits (see org.wyona.yarep.core.attributes.PageableSearcherV1#search(String, int, int))
+ */
+public class SearchResults {
+
+    private static Logger log = LogManager.getLogger(SearchResults.class);
+
+    private int totalHits;
+    private int offset;
+    private SearchResult[] results;
+
+    /**
+     * @param totalHits Total number of hits (of all pages)
+     * @param offset Number of hits which have been skipped
+     * @param results Hits of this page
+     */
+    public SearchResults(int totalHits, int offset, SearchResult[] results) {
+        this.totalHits = totalHits;
+        this.offset = offset;
+        this.results = results;
+    }
+
+    /**
+     * Get total number of hits (of all pages)
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Get number of hits which have been skipped
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get hits of this page (sorted by score)
+     */
+    public SearchResult[] getResults() {
+        return results;
+    }
+
+    /**
+     * Check whether there are more hits after this page
+     */
+    public boolean hasMore() {
+        return offset + results.length < totalHits;
+    }
+
+    /**
+     * Get nodes (or revisions) of the hits of this page
+     * @param checkExistence If true, then hits which do not exist anymore inside the repository (because the search index is out of sync) are skipped, otherwise such hits cause a NoSuchNodeException
+     */
+    public Node[] getNodes(boolean checkExistence) throws RepositoryException {
+        List<Node> nodes = new ArrayList<Node>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            if (checkExistence && !results[i].exists()) {
+                log.error("No such node '" + results[i] + "'. Search index seems to be out of sync!");
+                continue;
+            }
+            nodes.add(results[i].getNode());
+        }
+        return nodes.toArray(new Node[nodes.size()]);
+    }
+}
@@ -0,0 +1,61 @@
+package org.wyona.yarep.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Repository;
+
+/**
+ * Iterates over child nodes, whereas a child node is initialized (see Repository#getNode(String)) only when it is returned by {@link #next()}
+ */
+public class ChildNodeIterator implements Iterator<Node> {
+
+    private static Logger log = LogManager.getLogger(ChildNodeIterator.class);
+
+    private Repository repo;
+    private String[] paths;
+    private int position = 0;
+
+    /**
+     * @param repo Repository containing the child nodes
+     * @param paths Absolute repository paths of child nodes
+     */
+    public ChildNodeIterator(Repository repo, String[] paths) {
+        this.repo = repo;
+        this.paths = paths;
+    }
+
+    /**
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext() {
+        return position < paths.length;
+    }
+
+    /**
+     * @see java.util.Iterator#next()
+     */
+    public Node next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String path = paths[position++];
+        try {
+            return repo.getNode(path);
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new RuntimeException("Could not get child node '" + path + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @see java.util.Iterator#remove()
+     */
+    public void remove() {
+        throw new UnsupportedOperationException("Child nodes can not be removed by this iterator, please use Node#delete() instead!");
+    }
+}
@@ -0,0 +1,73 @@
+package org.wyona.yarep.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which returns at most a particular number of bytes of another input stream, e.g. in order to read a range of the content of a node
+ */
+public class RangeInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    /**
+     * @param in Input stream which is positioned at the beginning of the range (closing this stream closes the underlying stream)
+     * @param length Maximum number of bytes, whereas -1 means until the end of the underlying stream
+     */
+    public RangeInputStream(InputStream in, long length) {
+        super(in);
+        this.remaining = length < 0 ? Long.MAX_VALUE : length;
+    }
+
+    /**
+     * @see java.io.InputStream#read()
+     */
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int b = in.read();
+        if (b != -1) {
+            remaining--;
+        }
+        return b;
+    }
+
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = in.read(b, off, (int) Math.min(len, remaining));
+        if (n > 0) {
+            remaining = remaining - n;
+        }
+        return n;
+    }
+
+    /**
+     * @see java.io.InputStream#skip(long)
+     */
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(Math.min(n, remaining));
+        remaining = remaining - skipped;
+        return skipped;
+    }
+
+    /**
+     * @see java.io.InputStream#available()
+     */
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    /**
+     * Mark is not supported, because the remaining number of bytes would have to be reset as well
+     */
+    public boolean markSupported() {
+        return false;
+    }
+}
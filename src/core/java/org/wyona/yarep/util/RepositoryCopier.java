@@ -0,0 +1,368 @@
+package org.wyona.yarep.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.RepositoryException;
+import org.wyona.yarep.core.attributes.PageableChildrenV1;
+
+/**
+ * Copies the content of one repository into another repository by several threads, whereas every node is imported by Repository#importNode(String, String, Repository)
+ * (which copies content, properties and, depending on the destination implementation, revisions).
+ * The tree is walked in parallel: Every copied collection submits its children to a thread pool with a bounded queue, whereas a child is copied by the submitting thread itself if the queue is full,
+ * such that the number of pending nodes (and hence the memory) stays bounded independent of the size of the repository. The children of a collection are listed page by page if the node supports it (see YarepUtil#getNodes(Node, int, int, int)).
+ * The path of every copied node is appended to a checkpoint journal, which is forced to the storage device every PROGRESS_INTERVAL milliseconds and when the copy ends, such that an interrupted copy can be resumed without copying these nodes again.
+ * Only when a copy is resumed, the paths of the checkpoint journal are read into memory, whereas a partially written last path (e.g. because of a crash) is discarded.
+ */
+public class RepositoryCopier {
+
+    private static Logger log = LogManager.getLogger(RepositoryCopier.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final long PROGRESS_INTERVAL = 10000;
+
+    private Repository srcRepo;
+    private Repository destRepo;
+    private int threads = 1;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private File checkpointFile = null;
+    private boolean resume = false;
+
+    private Set<String> copiedPaths = null;
+    private FileOutputStream checkpointOut;
+    private Writer checkpoint;
+    private ThreadPoolExecutor executor;
+    private int pending = 0;
+
+    private long nodesCopied = 0;
+    private long nodesSkipped = 0;
+    private long nodesFailed = 0;
+    private long bytesCopied = 0;
+    private long startTime;
+    private long endTime;
+    private long lastProgressTime;
+
+    /**
+     * @param srcRepo Repository to be copied
+     * @param destRepo Repository into which the nodes are copied
+     */
+    public RepositoryCopier(Repository srcRepo, Repository destRepo) {
+        this.srcRepo = srcRepo;
+        this.destRepo = destRepo;
+    }
+
+    /**
+     * Set number of threads which copy nodes (default=1)
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Set maximum number of nodes which are waiting to be copied (default={@link #DEFAULT_QUEUE_CAPACITY})
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Set file to which the paths of copied nodes are written
+     * @param checkpointFile Checkpoint file or null if no checkpoint shall be written
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * If true, then the nodes contained by the checkpoint file are not copied again (default=false, which means that an existing checkpoint file is overwritten)
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Copy all nodes of the source repository, whereas nodes which could not be copied are logged and skipped (see {@link #getNodesFailed()})
+     */
+    public void copy() throws RepositoryException {
+        startTime = System.currentTimeMillis();
+        lastProgressTime = startTime;
+        try {
+            openCheckpoint();
+        } catch (IOException e) {
+            throw new RepositoryException("Could not open checkpoint file '" + checkpointFile + "': " + e.getMessage(), e);
+        }
+        log.info("Copy repository '" + srcRepo.getName() + "' to '" + destRepo.getName() + "' (Threads: " + threads + ", Checkpoint: " + checkpointFile + ", Already copied: " + (copiedPaths != null ? copiedPaths.size() : 0) + ")");
+
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            submitChildren(srcRepo.getRootNode());
+            synchronized(this) {
+                while (pending > 0) {
+                    wait(PROGRESS_INTERVAL);
+                    logProgress(false);
+                    syncCheckpoint();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Copy has been interrupted, but can be resumed (Checkpoint: " + checkpointFile + ")", e);
+        } finally {
+            executor.shutdownNow();
+            endTime = System.currentTimeMillis();
+            closeCheckpoint();
+        }
+        logProgress(true);
+    }
+
+    /**
+     * Get number of copied nodes
+     */
+    public synchronized long getNodesCopied() {
+        return nodesCopied;
+    }
+
+    /**
+     * Get number of nodes which have not been copied, because they have been copied already by a previous (interrupted) copy
+     */
+    public synchronized long getNodesSkipped() {
+        return nodesSkipped;
+    }
+
+    /**
+     * Get number of nodes which could not be copied
+     */
+    public synchronized long getNodesFailed() {
+        return nodesFailed;
+    }
+
+    /**
+     * Get number of content bytes of copied nodes (excluding revisions and properties)
+     */
+    public synchronized long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    /**
+     * Get duration of copy in milliseconds
+     */
+    public synchronized long getElapsedTime() {
+        return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * Get throughput in nodes per second
+     */
+    public synchronized double getNodesPerSecond() {
+        long elapsed = Math.max(1, getElapsedTime());
+        return nodesCopied * 1000.0 / elapsed;
+    }
+
+    /**
+     * Get throughput in megabytes (of content) per second
+     */
+    public synchronized double getMegabytesPerSecond() {
+        long elapsed = Math.max(1, getElapsedTime());
+        return bytesCopied * 1000.0 / elapsed / (1024 * 1024);
+    }
+
+    /**
+     * Copy node by a thread of the pool (or by the current thread if the queue is full)
+     */
+    private void submit(final Node node) {
+        synchronized(this) {
+            pending++;
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    copy(node);
+                } finally {
+                    synchronized(RepositoryCopier.this) {
+                        pending--;
+                        if (pending == 0) {
+                            RepositoryCopier.this.notifyAll();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Submit children of a collection, whereas every child is initialized only when it is submitted
+     */
+    private void submitChildren(Node node) throws RepositoryException {
+        Iterator<Node> children = YarepUtil.getNodes(node, PageableChildrenV1.UNSORTED, 0, -1);
+        while (children.hasNext()) {
+            submit(children.next());
+        }
+    }
+
+    /**
+     * Copy node and submit its children
+     */
+    private void copy(Node node) {
+        String path = null;
+        try {
+            path = node.getPath();
+            if (copiedPaths != null && copiedPaths.contains(path)) {
+                synchronized(this) {
+                    nodesSkipped++;
+                }
+            } else {
+                destRepo.importNode(path, path, srcRepo);
+                long size = node.isResource() ? node.getSize() : 0;
+                synchronized(this) {
+                    nodesCopied++;
+                    bytesCopied = bytesCopied + Math.max(0, size);
+                }
+                appendCheckpoint(path);
+            }
+            if (node.isCollection()) {
+                submitChildren(node);
+            }
+        } catch (Exception e) {
+            synchronized(this) {
+                nodesFailed++;
+            }
+            log.error("Could not copy node: " + path + ": " + e.getMessage(), e);
+        }
+        logProgress(false);
+    }
+
+    /**
+     * Log throughput every PROGRESS_INTERVAL milliseconds (or when done)
+     */
+    private void logProgress(boolean done) {
+        synchronized(this) {
+            long now = System.currentTimeMillis();
+            if (!done && now - lastProgressTime < PROGRESS_INTERVAL) {
+                return;
+            }
+            lastProgressTime = now;
+        }
+        log.info((done ? "Copy done: " : "Copy in progress: ") + getNodesCopied() + " nodes copied, " + getNodesSkipped() + " skipped, " + getNodesFailed() + " failed, "
+            + (getBytesCopied() / (1024 * 1024)) + " MB within " + (getElapsedTime() / 1000) + "s ("
+            + Math.round(getNodesPerSecond()) + " nodes/s, " + Math.round(getMegabytesPerSecond() * 100) / 100.0 + " MB/s)");
+    }
+
+    /**
+     * Read paths of nodes which have been copied already (only if the copy is resumed) and open checkpoint journal for appending
+     */
+    private void openCheckpoint() throws IOException {
+        if (checkpointFile == null) {
+            return;
+        }
+        if (checkpointFile.getAbsoluteFile().getParentFile() != null) {
+            checkpointFile.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        if (resume && checkpointFile.isFile()) {
+            copiedPaths = Collections.synchronizedSet(new HashSet<String>());
+            long length = readCheckpoint();
+            if (length < checkpointFile.length()) {
+                log.warn("Discard partially written last path of checkpoint file '" + checkpointFile + "'");
+                RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw");
+                try {
+                    file.setLength(length);
+                } finally {
+                    file.close();
+                }
+            }
+            log.info("Resume copy, whereas " + copiedPaths.size() + " nodes have been copied already (Checkpoint: " + checkpointFile + ")");
+        } else if (checkpointFile.isFile()) {
+            checkpointFile.delete(); // INFO: Otherwise a resume would skip the nodes of the previous copy
+        }
+        checkpointOut = new FileOutputStream(checkpointFile, true);
+        checkpoint = new OutputStreamWriter(checkpointOut, "UTF-8");
+    }
+
+    /**
+     * Read paths of checkpoint journal into the set of copied paths, whereas a last line without line break has been written partially and is ignored
+     * @return length (in bytes) of the complete lines
+     */
+    private long readCheckpoint() throws IOException {
+        long length = 0;
+        long position = 0;
+        InputStream in = new BufferedInputStream(new FileInputStream(checkpointFile));
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    if (line.size() > 0) {
+                        copiedPaths.add(line.toString("UTF-8"));
+                    }
+                    line.reset();
+                    length = position;
+                } else {
+                    line.write(b);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return length;
+    }
+
+    /**
+     * Append path of copied node to checkpoint journal
+     */
+    private synchronized void appendCheckpoint(String path) throws IOException {
+        if (checkpoint != null) {
+            checkpoint.write(path + "\n");
+        }
+    }
+
+    /**
+     * Force appended paths to the storage device
+     */
+    private synchronized void syncCheckpoint() {
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            checkpoint.flush();
+            checkpointOut.getFD().sync();
+        } catch (IOException e) {
+            log.error("Could not write checkpoint file '" + checkpointFile + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Force appended paths to the storage device and close checkpoint journal
+     */
+    private synchronized void closeCheckpoint() {
+        if (checkpoint == null) {
+            return;
+        }
+        syncCheckpoint();
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            log.error("Could not close checkpoint file '" + checkpointFile + "': " + e.getMessage(), e);
+        }
+        checkpoint = null;
+        checkpointOut = null;
+    }
+}
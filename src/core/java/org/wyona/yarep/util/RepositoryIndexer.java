@@ -0,0 +1,437 @@
+package org.wyona.yarep.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Property;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.RepositoryException;
+import org.wyona.yarep.core.attributes.CommittableIndexerV1;
+import org.wyona.yarep.core.attributes.PageableChildrenV1;
+import org.wyona.yarep.core.search.BulkIndexer;
+import org.wyona.yarep.core.search.Indexer;
+
+/**
+ * (Re-)Indexes a repository (or a sub-tree) as pipeline: One thread walks the tree and queues the nodes, several worker threads extract the documents of the nodes (e.g. parse the content by Tika)
+ * and one writer thread (the thread calling {@link #index()}) adds the extracted documents to the index in batches, whereas the index is committed and optimized only once at the end.
+ * Indexers which do not implement {@link BulkIndexer} (e.g. LuceneIndexer) are called by one worker thread directly (Indexer#index(Node) and Indexer#index(Node, Property) per property),
+ * because such indexers usually serialize the updates of the index anyway, hence more worker threads would not speed up indexing.
+ * The tree is walked by listing the children page by page if the nodes support it (see YarepUtil#getNodes(Node, int, int, int)) and the queues between the stages are bounded,
+ * such that the memory stays bounded independent of the size of the repository.
+ */
+public class RepositoryIndexer {
+
+    private static Logger log = LogManager.getLogger(RepositoryIndexer.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final String[] DEFAULT_IGNORED_NAMES = {".svn"};
+    private static final long PROGRESS_INTERVAL = 10000;
+
+    private static final Object END = new Object();
+
+    private Repository repo;
+    private String path;
+    private int threads = 1;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private Set<String> ignoredNames = new HashSet<String>(Arrays.asList(DEFAULT_IGNORED_NAMES));
+
+    private Indexer indexer;
+    private BulkIndexer<Object> bulkIndexer;
+    private BlockingQueue<Object> nodeQueue;
+    private BlockingQueue<Object> documentQueue;
+    private volatile boolean aborted = false;
+
+    private long nodesFound = 0;
+    private boolean walkDone = false;
+    private long nodesIndexed = 0;
+    private long nodesFailed = 0;
+    private long startTime;
+    private long endTime;
+    private long lastProgressTime;
+
+    /**
+     * @param repo Repository to be (re-)indexed
+     * @param path Path from where (re-)indexing shall be started, which means the node of this particular path and all its descendants will be (re-)indexed
+     */
+    public RepositoryIndexer(Repository repo, String path) {
+        this.repo = repo;
+        this.path = path;
+    }
+
+    /**
+     * Set number of worker threads which extract documents (default=1), whereas only one worker thread is used if the indexer does not implement {@link BulkIndexer}
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Set maximum number of documents which are added to the index at once (default={@link #DEFAULT_BATCH_SIZE})
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Set maximum number of nodes (and documents) which are waiting between the stages of the pipeline (default={@link #DEFAULT_QUEUE_CAPACITY})
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Set names of nodes which are not indexed, including their descendants (default={@link #DEFAULT_IGNORED_NAMES})
+     * @param ignoredNames Names of nodes, e.g. '.svn'
+     */
+    public void setIgnoredNames(String[] ignoredNames) {
+        this.ignoredNames = new HashSet<String>(Arrays.asList(ignoredNames));
+    }
+
+    /**
+     * (Re-)Index all nodes, whereas nodes which could not be indexed are logged and skipped (see {@link #getNodesFailed()})
+     */
+    public void index() throws RepositoryException {
+        startTime = System.currentTimeMillis();
+        lastProgressTime = startTime;
+
+        Node startNode;
+        if ("/".equals(path)) {
+            startNode = repo.getRootNode();
+        } else if (repo.existsNode(path)) {
+            startNode = repo.getNode(path);
+        } else {
+            throw new RepositoryException("No such node: " + path);
+        }
+        indexer = repo.getIndexer();
+        int numberOfWorkers = threads;
+        if (indexer instanceof BulkIndexer) {
+            bulkIndexer = toBulkIndexer(indexer);
+        } else {
+            if (numberOfWorkers > 1) {
+                log.warn("Indexer '" + indexer.getClass().getName() + "' does not support bulk indexing, hence nodes are indexed one by one by one worker thread (instead of " + numberOfWorkers + ").");
+            }
+            numberOfWorkers = 1;
+        }
+        log.info("Index repository '" + repo.getName() + "' starting at '" + path + "' (Worker threads: " + numberOfWorkers + ", Batch size: " + batchSize + ", Bulk indexer: " + (bulkIndexer != null) + ", Ignored names: " + ignoredNames + ")");
+
+        nodeQueue = new ArrayBlockingQueue<Object>(queueCapacity);
+        documentQueue = new ArrayBlockingQueue<Object>(queueCapacity);
+
+        Thread walker = new Thread(new Walker(startNode, numberOfWorkers), "yarep-reindex-walker");
+        walker.setDaemon(true);
+        walker.start();
+        Thread[] workers = new Thread[numberOfWorkers];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Worker(), "yarep-reindex-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        try {
+            write(workers.length);
+            if (indexer instanceof CommittableIndexerV1) {
+                ((CommittableIndexerV1) indexer).commit();
+                log.info("Optimize index ...");
+                ((CommittableIndexerV1) indexer).optimize();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Indexing has been interrupted", e);
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new RepositoryException(e.getMessage(), e);
+        } finally {
+            aborted = true;
+            walker.interrupt();
+            for (int i = 0; i < workers.length; i++) {
+                workers[i].interrupt();
+            }
+            synchronized(this) {
+                endTime = System.currentTimeMillis();
+            }
+        }
+        logProgress(true);
+    }
+
+    /**
+     * Get number of nodes which have been found so far by walking the tree
+     */
+    public synchronized long getNodesFound() {
+        return nodesFound;
+    }
+
+    /**
+     * Get number of indexed nodes
+     */
+    public synchronized long getNodesIndexed() {
+        return nodesIndexed;
+    }
+
+    /**
+     * Get number of nodes which could not be indexed
+     */
+    public synchronized long getNodesFailed() {
+        return nodesFailed;
+    }
+
+    /**
+     * Get duration in milliseconds
+     */
+    public synchronized long getElapsedTime() {
+        return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * Get throughput in nodes per second
+     */
+    public synchronized double getNodesPerSecond() {
+        return (nodesIndexed + nodesFailed) * 1000.0 / Math.max(1, getElapsedTime());
+    }
+
+    /**
+     * Get estimated remaining time in milliseconds
+     * @return estimated time or -1 if no node has been indexed yet, whereas the estimation is a lower bound as long as the tree has not been walked completely
+     */
+    public synchronized long getEstimatedRemainingTime() {
+        long done = nodesIndexed + nodesFailed;
+        if (done == 0) {
+            return -1;
+        }
+        return (long) ((nodesFound - done) * (double) getElapsedTime() / done);
+    }
+
+    /**
+     * Add extracted documents to the index in batches until all workers are done
+     * @param numberOfWorkers Number of worker threads
+     */
+    private void write(int numberOfWorkers) throws Exception {
+        List<Object> batch = new ArrayList<Object>(batchSize);
+        int workersDone = 0;
+        while (workersDone < numberOfWorkers) {
+            Object document = documentQueue.poll(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+            if (document == END) {
+                workersDone++;
+            } else if (document != null) {
+                batch.add(document);
+            }
+            if (batch.size() >= batchSize || (document == null && batch.size() > 0) || workersDone == numberOfWorkers) {
+                writeBatch(batch);
+            }
+            logProgress(false);
+        }
+        writeBatch(batch);
+    }
+
+    /**
+     * Add batch of extracted documents to the index
+     */
+    private void writeBatch(List<Object> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (bulkIndexer != null) {
+            try {
+                bulkIndexer.write(batch);
+                synchronized(this) {
+                    nodesIndexed = nodesIndexed + batch.size();
+                }
+            } catch (Exception e) {
+                log.error("Could not write " + batch.size() + " documents to index: " + e.getMessage(), e);
+                synchronized(this) {
+                    nodesFailed = nodesFailed + batch.size();
+                }
+            }
+        } else {
+            synchronized(this) {
+                nodesIndexed = nodesIndexed + batch.size();
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Log progress every PROGRESS_INTERVAL milliseconds (or when done)
+     */
+    private void logProgress(boolean done) {
+        synchronized(this) {
+            long now = System.currentTimeMillis();
+            if (!done && now - lastProgressTime < PROGRESS_INTERVAL) {
+                return;
+            }
+            lastProgressTime = now;
+            String eta;
+            long remaining = getEstimatedRemainingTime();
+            if (remaining < 0) {
+                eta = "unknown";
+            } else {
+                eta = (walkDone ? "" : "at least ") + (remaining / 1000) + "s";
+            }
+            log.info((done ? "Indexing done: " : "Indexing in progress: ") + nodesIndexed + " of " + nodesFound + (walkDone ? "" : " (so far)") + " nodes indexed, " + nodesFailed + " failed, "
+                + Math.round(getNodesPerSecond()) + " nodes/s, elapsed: " + (getElapsedTime() / 1000) + "s" + (done ? "" : ", ETA: " + eta));
+        }
+    }
+
+    /**
+     * Get indexer as bulk indexer of any type of documents, which is safe, because only documents returned by extract() of the same indexer are passed to write()
+     */
+    @SuppressWarnings("unchecked")
+    private static BulkIndexer<Object> toBulkIndexer(Indexer indexer) {
+        return (BulkIndexer<Object>) indexer;
+    }
+
+    /**
+     * Get path of node for logging
+     */
+    private static String getPath(Node node) {
+        try {
+            return node.getPath();
+        } catch (Exception e) {
+            return node.toString();
+        }
+    }
+
+    /**
+     * Walks the tree (depth-first) and queues all nodes for the workers, whereas only an iterator over the children is kept per level of the tree
+     */
+    private class Walker implements Runnable {
+        private Node startNode;
+        private int numberOfWorkers;
+
+        Walker(Node startNode, int numberOfWorkers) {
+            this.startNode = startNode;
+            this.numberOfWorkers = numberOfWorkers;
+        }
+
+        public void run() {
+            try {
+                ArrayList<Iterator<Node>> stack = new ArrayList<Iterator<Node>>();
+                visit(startNode, stack);
+                while (!stack.isEmpty() && !aborted) {
+                    Iterator<Node> children = stack.get(stack.size() - 1);
+                    Node node = null;
+                    try {
+                        if (children.hasNext()) {
+                            node = children.next();
+                        } else {
+                            stack.remove(stack.size() - 1);
+                        }
+                    } catch (Exception e) {
+                        log.error("Could not get next child: " + e.getMessage(), e);
+                        stack.remove(stack.size() - 1);
+                    }
+                    if (node != null) {
+                        visit(node, stack);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Walking the tree has been interrupted: " + e.getMessage());
+            } finally {
+                synchronized(RepositoryIndexer.this) {
+                    walkDone = true;
+                }
+                for (int i = 0; i < numberOfWorkers && !aborted; i++) {
+                    try {
+                        nodeQueue.put(END);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Queue node (unless it is ignored) and push the iterator over its children
+         */
+        private void visit(Node node, List<Iterator<Node>> stack) throws InterruptedException {
+            try {
+                if (ignoredNames.contains(node.getName())) {
+                    log.info("Ignore node: " + getPath(node));
+                    return;
+                }
+                nodeQueue.put(node);
+                synchronized(RepositoryIndexer.this) {
+                    nodesFound++;
+                }
+                if (node.isCollection()) {
+                    stack.add(YarepUtil.getNodes(node, PageableChildrenV1.UNSORTED, 0, -1));
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Could not get children of node: " + getPath(node) + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Extracts the documents of queued nodes
+     */
+    private class Worker implements Runnable {
+        public void run() {
+            try {
+                while (true) {
+                    Object next = nodeQueue.take();
+                    if (next == END) {
+                        break;
+                    }
+                    Node node = (Node) next;
+                    try {
+                        Object document;
+                        if (bulkIndexer != null) {
+                            document = bulkIndexer.extract(node);
+                        } else {
+                            indexer.index(node);
+                            Property[] properties = node.getProperties();
+                            if (properties != null) {
+                                for (int i = 0; i < properties.length; i++) {
+                                    indexer.index(node, properties[i]);
+                                }
+                            }
+                            document = node;
+                        }
+                        if (document != null) {
+                            documentQueue.put(document);
+                        } else {
+                            synchronized(RepositoryIndexer.this) {
+                                nodesIndexed++;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Throwable e) { // INFO: Also errors (e.g. a StackOverflowError of a parser), such that one node can not stop the worker
+                        synchronized(RepositoryIndexer.this) {
+                            nodesFailed++;
+                        }
+                        log.error("Could not index node: " + getPath(node) + ": " + e.getMessage(), e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // INFO: Indexing has been aborted
+            } catch (Throwable e) {
+                log.error(e, e);
+            } finally {
+                // INFO: The writer waits for the end marker of every worker, also if a worker stops unexpectedly
+                if (!aborted) {
+                    try {
+                        documentQueue.put(END);
+                    } catch (InterruptedException e) {
+                        // INFO: Indexing has been aborted
+                    }
+                }
+            }
+        }
+    }
+}
@@ -3,14 +3,30 @@ package org.wyona.yarep.util;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import org.wyona.yarep.core.Batch;
+import org.wyona.yarep.core.ChildEntry;
 import org.wyona.yarep.core.Node;
 import org.wyona.yarep.core.Path;
+import org.wyona.yarep.core.PropertyType;
 import org.wyona.yarep.core.Repository;
 import org.wyona.yarep.core.RepositoryException;
 import org.wyona.yarep.core.RepositoryFactory;
 import org.wyona.yarep.core.Revision;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 
 /**
  * Various yarep utility methods
@@ -121,8 +137,8 @@ public class YarepUtil {
     }
 
     /**
-     * Copies the content of one repository into another repository.
-     * Currently copies nodes and properties, but no revisions.
+     * Copies the content of one repository into another repository (single-threaded, also see {@link #copyRepository(Repository, Repository, int, File, boolean)}).
+     * Copies nodes and properties, whereas revisions are only copied if the destination repository supports it (see Repository#importNode(String, String, Repository)).
      * @param srcRepo repository to be copied
      * @param destRepo assumed to be empty
      * @throws RepositoryException
@@ -135,6 +151,25 @@ public class YarepUtil {
             importNodeRec(childNodes[i], srcRepo, destRepo);
         }
     }
+
+    /**
+     * Copies the content of one repository into another repository by several threads (see {@link RepositoryCopier}), whereas
+     * nodes are imported by Repository#importNode(String, String, Repository), which copies the revisions as well if the destination repository supports it (e.g. VirtualFileSystemRepository)
+     * @param srcRepo repository to be copied
+     * @param destRepo assumed to be empty (or containing the nodes of an interrupted copy)
+     * @param threads Number of threads which copy nodes
+     * @param checkpointFile File to which the paths of copied nodes are written (or null)
+     * @param resume If true, then the nodes contained by the checkpoint file are not copied again
+     * @return copier, which provides the number of copied nodes and the throughput
+     */
+    public static RepositoryCopier copyRepository(Repository srcRepo, Repository destRepo, int threads, File checkpointFile, boolean resume) throws RepositoryException {
+        RepositoryCopier copier = new RepositoryCopier(srcRepo, destRepo);
+        copier.setThreads(threads);
+        copier.setCheckpointFile(checkpointFile);
+        copier.setResume(resume);
+        copier.copy();
+        return copier;
+    }
     
     /**
      * Imports nodes recursively
@@ -234,6 +269,372 @@ public class YarepUtil {
         return null;
     }
 
+    /**
+     * Transfer content of a node to a channel, whereas nodes which implement ChannelReadableV1 transfer their content without copying it through byte arrays (if the content is stored as file)
+     * @param node Node which content is transferred
+     * @param target Channel to which the content is written (the target is not closed)
+     * @return number of bytes transferred
+     */
+    public static long transferTo(Node node, WritableByteChannel target) throws RepositoryException {
+        try {
+            if (hasInterfaceImplemented(node, "ChannelReadable", "1")) {
+                return ((org.wyona.yarep.core.attributes.ChannelReadableV1) node).transferTo(target);
+            }
+            ReadableByteChannel source = Channels.newChannel(node.getInputStream());
+            try {
+                return transfer(source, target);
+            } finally {
+                source.close();
+            }
+        } catch(RepositoryException e) {
+            throw e;
+        } catch(Exception e) {
+            log.error(e, e);
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Transfer all remaining bytes of a channel to another channel, whereas file channels are transferred by {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * @param source Channel from which the content is read (the source is not closed)
+     * @param target Channel to which the content is written (the target is not closed)
+     * @return number of bytes transferred
+     */
+    public static long transfer(ReadableByteChannel source, WritableByteChannel target) throws IOException {
+        long count = 0;
+        if (source instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel) source;
+            long position = fileChannel.position();
+            long size = fileChannel.size();
+            while (position < size) {
+                long n = fileChannel.transferTo(position, size - position, target);
+                if (n <= 0) {
+                    break; // INFO: For example a non-blocking target which is not ready, hence copy the rest through a buffer
+                }
+                position = position + n;
+                count = count + n;
+            }
+            fileChannel.position(position);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                count = count + target.write(buffer);
+            }
+            buffer.clear();
+        }
+        return count;
+    }
+
+    /**
+     * Read bytes at a particular position of the content of a node, whereas nodes which implement RangeReadableV1 read the bytes directly and
+     * the content of other nodes (e.g. SVN, JCR or XMLDB) is skipped up to the position
+     * @param node Node which content is read
+     * @param position Position within the content (0 is the first byte)
+     * @param buffer Buffer into which the bytes are read
+     * @param offset Offset within the buffer
+     * @param length Maximum number of bytes to read
+     * @return number of bytes read or -1 if the position is at or beyond the end of the content
+     */
+    public static int read(Node node, long position, byte[] buffer, int offset, int length) throws RepositoryException {
+        try {
+            if (hasInterfaceImplemented(node, "RangeReadable", "1")) {
+                return ((org.wyona.yarep.core.attributes.RangeReadableV1) node).read(position, buffer, offset, length);
+            }
+            InputStream in = node.getInputStream();
+            try {
+                return read(in, position, buffer, offset, length);
+            } finally {
+                in.close();
+            }
+        } catch(RepositoryException e) {
+            throw e;
+        } catch(Exception e) {
+            log.error(e, e);
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get part of the content of a node as stream, whereas nodes which implement RangeReadableV1 start reading at the offset directly and
+     * the content of other nodes (e.g. SVN, JCR or XMLDB) is skipped up to the offset
+     * @param node Node which content is read
+     * @param offset Position of the first byte
+     * @param length Maximum number of bytes, whereas -1 means until the end of the content
+     */
+    public static InputStream getInputStream(Node node, long offset, long length) throws RepositoryException {
+        try {
+            if (hasInterfaceImplemented(node, "RangeReadable", "1")) {
+                return ((org.wyona.yarep.core.attributes.RangeReadableV1) node).getInputStream(offset, length);
+            }
+            return getInputStream(node.getInputStream(), offset, length);
+        } catch(RepositoryException e) {
+            throw e;
+        } catch(Exception e) {
+            log.error(e, e);
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read bytes at a particular position of a file by a positional read, which does not depend on (or modify) the position of other readers
+     * @return number of bytes read or -1 if the position is at or beyond the end of the file
+     */
+    public static int read(File file, long position, byte[] buffer, int offset, int length) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer bb = ByteBuffer.wrap(buffer, offset, length);
+            int count = 0;
+            while (bb.hasRemaining()) {
+                int n = channel.read(bb, position + count);
+                if (n < 0) {
+                    break;
+                }
+                count = count + n;
+            }
+            if (count == 0 && length > 0) {
+                return -1;
+            }
+            return count;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get part of a file as stream, whereas the file is positioned at the offset without reading the preceding bytes
+     * @param offset Position of the first byte
+     * @param length Maximum number of bytes, whereas -1 means until the end of the file
+     */
+    public static InputStream getInputStream(File file, long offset, long length) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new RangeInputStream(in, length);
+    }
+
+    /**
+     * Read bytes at a particular position of a stream by skipping the preceding bytes
+     * @param in Stream positioned at the beginning of the content (the stream is not closed)
+     * @return number of bytes read or -1 if the position is at or beyond the end of the stream
+     */
+    public static int read(InputStream in, long position, byte[] buffer, int offset, int length) throws IOException {
+        if (!skipFully(in, position)) {
+            return -1;
+        }
+        int count = 0;
+        while (count < length) {
+            int n = in.read(buffer, offset + count, length - count);
+            if (n < 0) {
+                break;
+            }
+            count = count + n;
+        }
+        if (count == 0 && length > 0) {
+            return -1;
+        }
+        return count;
+    }
+
+    /**
+     * Get part of a stream by skipping the preceding bytes
+     * @param in Stream positioned at the beginning of the content (closing the returned stream closes this stream)
+     * @param offset Position of the first byte
+     * @param length Maximum number of bytes, whereas -1 means until the end of the stream
+     */
+    public static InputStream getInputStream(InputStream in, long offset, long length) throws IOException {
+        if (!skipFully(in, offset)) {
+            log.warn("Offset '" + offset + "' is beyond the end of the content.");
+        }
+        return new RangeInputStream(in, length);
+    }
+
+    /**
+     * Skip bytes of a stream, whereas InputStream#skip(long) might skip less bytes than requested
+     * @return true if all bytes have been skipped and false if the end of the stream has been reached before
+     */
+    private static boolean skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            n = n - skipped;
+        }
+        return true;
+    }
+
+    /**
+     * Apply a batch of operations, whereas repositories which implement BatchableRepositoryV1 apply the batch in one pass and
+     * the operations of other repositories (e.g. SVN, JCR or XMLDB) are applied one at a time (in the order in which they have been added to the batch)
+     * @param repo Repository to which the operations are applied
+     * @param batch Batch of operations
+     */
+    public static void apply(Repository repo, Batch batch) throws RepositoryException {
+        try {
+            if (hasInterfaceImplemented(repo, "BatchableRepository", "1")) {
+                ((org.wyona.yarep.core.attributes.BatchableRepositoryV1) repo).apply(batch);
+                return;
+            }
+            Iterator<Batch.Operation> it = batch.getOperations().iterator();
+            while (it.hasNext()) {
+                apply(repo, it.next());
+            }
+        } catch(RepositoryException e) {
+            throw e;
+        } catch(Exception e) {
+            log.error(e, e);
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Apply a single operation of a batch
+     */
+    private static void apply(Repository repo, Batch.Operation op) throws Exception {
+        if (op.getType() == Batch.ADD_NODE) {
+            addNodes(repo, op.getPath(), op.getNodeType());
+            return;
+        }
+        Node node = repo.getNode(op.getPath());
+        if (op.getType() == Batch.SET_PROPERTY) {
+            Object value = op.getValue();
+            switch (op.getPropertyType()) {
+                case PropertyType.BOOLEAN: node.setProperty(op.getPropertyName(), ((Boolean) value).booleanValue()); break;
+                case PropertyType.LONG: node.setProperty(op.getPropertyName(), ((Long) value).longValue()); break;
+                case PropertyType.DOUBLE: node.setProperty(op.getPropertyName(), ((Double) value).doubleValue()); break;
+                case PropertyType.DATE: node.setProperty(op.getPropertyName(), (Date) value); break;
+                default: node.setProperty(op.getPropertyName(), (String) value);
+            }
+        } else if (op.getType() == Batch.REMOVE_PROPERTY) {
+            node.removeProperty(op.getPropertyName());
+        } else if (op.getType() == Batch.SET_CONTENT) {
+            OutputStream out = node.getOutputStream();
+            try {
+                out.write(op.getContent());
+            } finally {
+                out.close();
+            }
+        } else {
+            throw new RepositoryException("No such batch operation type: " + op.getType());
+        }
+    }
+
+    /**
+     * Get names and types of children of a node page by page, whereas nodes which implement PageableChildrenV1 list the children without initializing them and
+     * the children of other nodes (e.g. SVN, JCR or XMLDB) are initialized by Node#getNodes()
+     * @param node Parent node
+     * @param order Sort order (see org.wyona.yarep.core.attributes.PageableChildrenV1)
+     * @param offset Number of children to skip
+     * @param limit Maximum number of children, whereas -1 means all children
+     */
+    public static ChildEntry[] getChildEntries(Node node, int order, int offset, int limit) throws RepositoryException {
+        try {
+            if (hasInterfaceImplemented(node, "PageableChildren", "1")) {
+                return ((org.wyona.yarep.core.attributes.PageableChildrenV1) node).getChildEntries(order, offset, limit);
+            }
+            Node[] children = getPage(node.getNodes(), order, offset, limit);
+            ChildEntry[] entries = new ChildEntry[children.length];
+            for (int i = 0; i < children.length; i++) {
+                entries[i] = new ChildEntry(children[i].getName(), children[i].getPath(), children[i].getType());
+            }
+            return entries;
+        } catch(RepositoryException e) {
+            throw e;
+        } catch(Exception e) {
+            log.error(e, e);
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get children of a node page by page, whereas nodes which implement PageableChildrenV1 initialize every child only when it is returned by the iterator and
+     * the children of other nodes (e.g. SVN, JCR or XMLDB) are initialized all at once by Node#getNodes()
+     * @param node Parent node
+     * @param order Sort order (see org.wyona.yarep.core.attributes.PageableChildrenV1)
+     * @param offset Number of children to skip
+     * @param limit Maximum number of children, whereas -1 means all children
+     */
+    public static Iterator<Node> getNodes(Node node, int order, int offset, int limit) throws RepositoryException {
+        try {
+            if (hasInterfaceImplemented(node, "PageableChildren", "1")) {
+                return ((org.wyona.yarep.core.attributes.PageableChildrenV1) node).getNodes(order, offset, limit);
+            }
+            return Arrays.asList(getPage(node.getNodes(), order, offset, limit)).iterator();
+        } catch(RepositoryException e) {
+            throw e;
+        } catch(Exception e) {
+            log.error(e, e);
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sort names of children and get a page of it
+     * @param names Names of children, whereas the array is sorted in place
+     * @param order Sort order (see org.wyona.yarep.core.attributes.PageableChildrenV1)
+     * @param offset Number of children to skip
+     * @param limit Maximum number of children, whereas -1 means all children
+     */
+    public static String[] getPage(String[] names, int order, int offset, int limit) {
+        if (order == org.wyona.yarep.core.attributes.PageableChildrenV1.NAME_ASCENDING) {
+            Arrays.sort(names);
+        } else if (order == org.wyona.yarep.core.attributes.PageableChildrenV1.NAME_DESCENDING) {
+            Arrays.sort(names, Collections.reverseOrder());
+        }
+        int from = Math.min(Math.max(0, offset), names.length);
+        int to = limit < 0 ? names.length : (int) Math.min((long) from + limit, names.length);
+        if (from == 0 && to == names.length) {
+            return names;
+        }
+        String[] page = new String[to - from];
+        System.arraycopy(names, from, page, 0, page.length);
+        return page;
+    }
+
+    /**
+     * Get absolute repository path of a child
+     * @param parentPath Path of parent node
+     * @param name Name of child
+     */
+    public static String getChildPath(String parentPath, String name) {
+        if (parentPath.endsWith("/")) {
+            return parentPath + name;
+        }
+        return parentPath + "/" + name;
+    }
+
+    /**
+     * Sort initialized children by name and get a page of it
+     * @param children Initialized children (e.g. see Node#getNodes())
+     * @param order Sort order (see org.wyona.yarep.core.attributes.PageableChildrenV1)
+     * @param offset Number of children to skip
+     * @param limit Maximum number of children, whereas -1 means all children
+     */
+    public static Node[] getPage(Node[] children, int order, int offset, int limit) throws RepositoryException {
+        String[] names = new String[children.length];
+        java.util.Map<String, Node> nodes = new java.util.HashMap<String, Node>();
+        for (int i = 0; i < children.length; i++) {
+            names[i] = children[i].getName();
+            nodes.put(names[i], children[i]);
+        }
+        names = getPage(names, order, offset, limit);
+        Node[] page = new Node[names.length];
+        for (int i = 0; i < names.length; i++) {
+            page[i] = nodes.get(names[i]);
+        }
+        return page;
+    }
+
     /**
      * Check if a class/object has an interface with a specific version implemented
      */
@@ -271,7 +672,7 @@ public class YarepUtil {
     }
 
     /**
-     * (Re-)Index a particular part/sub-tree of a repository.
+     * (Re-)Index a particular part/sub-tree of a repository (single-threaded, also see {@link #indexRepository(Repository, String, int, int)}).
      * @param repo Repository to be (re-)indexed
      * @param path Path from where (re-)indexing shall be started, which means the node of this particular path and all its children will be (re-)indexed
      * @throws RepositoryException
@@ -287,10 +688,48 @@ public class YarepUtil {
         } else {
             throw new RepositoryException("No such node: " + path);
         }
-        indexNodeRecursively(startNode, repo.getIndexer());
+        org.wyona.yarep.core.search.Indexer indexer = repo.getIndexer();
+        indexNodeRecursively(startNode, indexer);
+        try {
+            if (indexer instanceof org.wyona.yarep.core.attributes.CommittableIndexerV1) {
+                ((org.wyona.yarep.core.attributes.CommittableIndexerV1) indexer).commit();
+            }
+        } catch(org.wyona.yarep.core.search.SearchException e) {
+            throw new RepositoryException(e.getMessage(), e);
+        }
         log.warn("DEBUG: End indexing repository: " + repo.getName());
     }
     
+    /**
+     * (Re-)Index a particular part/sub-tree of a repository by several threads (see {@link RepositoryIndexer}), whereas the index is optimized once at the end.
+     * @param repo Repository to be (re-)indexed
+     * @param path Path from where (re-)indexing shall be started, which means the node of this particular path and all its descendants will be (re-)indexed
+     * @param threads Number of threads which extract the content of nodes
+     * @param batchSize Maximum number of documents which are added to the index at once
+     * @return indexer, which provides the number of indexed nodes and the throughput
+     */
+    public static RepositoryIndexer indexRepository(Repository repo, String path, int threads, int batchSize) throws RepositoryException {
+        return indexRepository(repo, path, threads, batchSize, RepositoryIndexer.DEFAULT_IGNORED_NAMES);
+    }
+
+    /**
+     * (Re-)Index a particular part/sub-tree of a repository by several threads (see {@link #indexRepository(Repository, String, int, int)}), whereas nodes with particular names are ignored
+     * @param repo Repository to be (re-)indexed
+     * @param path Path from where (re-)indexing shall be started
+     * @param threads Number of threads which extract the content of nodes
+     * @param batchSize Maximum number of documents which are added to the index at once
+     * @param ignoredNames Names of nodes which are not indexed, including their descendants (e.g. '.svn')
+     * @return indexer, which provides the number of indexed nodes and the throughput
+     */
+    public static RepositoryIndexer indexRepository(Repository repo, String path, int threads, int batchSize, String[] ignoredNames) throws RepositoryException {
+        RepositoryIndexer repoIndexer = new RepositoryIndexer(repo, path);
+        repoIndexer.setThreads(threads);
+        repoIndexer.setBatchSize(batchSize);
+        repoIndexer.setIgnoredNames(ignoredNames);
+        repoIndexer.index();
+        return repoIndexer;
+    }
+    
     /**
      * Index nodes recursively
      * @param node Node to be indexed
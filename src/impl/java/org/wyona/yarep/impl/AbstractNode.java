@@ -33,8 +33,8 @@ public abstract class AbstractNode implements Node {
     protected String path;
     protected String name;
     protected String uuid;
-    protected HashMap properties;
-    protected LinkedHashMap revisions;
+    protected volatile HashMap properties;
+    protected volatile LinkedHashMap revisions;
     
     // system properties:
     public static final String PROPERTY_TYPE = "yarep_type";
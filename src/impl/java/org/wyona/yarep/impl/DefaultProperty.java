@@ -24,8 +24,9 @@ public class DefaultProperty implements Property {
     protected Node node;
     protected int type;
 
-    protected DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ"); // INFO: We need to keep this because of backwards compatibility
-    private DateFormat dateFormatInclMillis = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss:SSSZ");
+    // INFO: The date formats are created lazily, because creating them is expensive and most properties are not dates
+    protected DateFormat dateFormat; // INFO: We need to keep this because of backwards compatibility
+    private DateFormat dateFormatInclMillis;
     
     protected boolean booleanValue;
     protected double doubleValue;
@@ -98,7 +99,7 @@ public class DefaultProperty implements Property {
             case PropertyType.LONG: return "" + getLong(); 
             case PropertyType.DATE:
                 //log.debug("Format date incl milliseconds: " + dateFormatInclMillis.format(getDate()));
-                return dateFormatInclMillis.format(getDate()); 
+                return getDateFormatInclMillis().format(getDate()); 
             case PropertyType.STRING: return getString();
             default: return "";
         }
@@ -201,7 +202,7 @@ public class DefaultProperty implements Property {
      */
     private Date parseDate(String value) throws ParseException {
         try {
-            return dateFormatInclMillis.parse(value);
+            return getDateFormatInclMillis().parse(value);
         } catch (ParseException e) {
             try {
                 if(log.isDebugEnabled()) log.debug("Date of node '" + node.getPath() + "' does not seem to contain milliseconds: " + value + " (probably old data ...)");
@@ -210,7 +211,20 @@ public class DefaultProperty implements Property {
             }
 
             // INFO: Because of backwards compatibility we also need to be able to read dates without milliseconds!
+            if (dateFormat == null) {
+                dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+            }
             return dateFormat.parse(value);
         }
     }
+
+    /**
+     * Get date format including milliseconds
+     */
+    private DateFormat getDateFormatInclMillis() {
+        if (dateFormatInclMillis == null) {
+            dateFormatInclMillis = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss:SSSZ");
+        }
+        return dateFormatInclMillis;
+    }
 }
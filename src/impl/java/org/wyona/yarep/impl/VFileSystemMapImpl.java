@@ -127,10 +127,29 @@ public class VFileSystemMapImpl implements Map {
      * Get children
      */
     public Path[] getChildren(Path path) throws RepositoryException {
+        String[] filenames = getChildNames(path);
+        Path[] children = new Path[filenames.length];
+        for (int i = 0;i < children.length; i++) {
+            if (path.toString().endsWith(File.separator)) {
+                children[i] = new Path(path + filenames[i]);
+            } else {
+                // NOTE: Do not use File.separator here, because it's the repository path and not the Operating System File System path
+                children[i] = new Path(path + "/" + filenames[i]);
+            }
+            log.debug("Child: " + children[i]);
+        }
+        return children;
+    }
+
+    /**
+     * Get names of children (without ignored children), which is cheaper than getChildren(Path) for directories with many children
+     * @return names of children in the order of the file system (or an empty array if the path is not a directory)
+     */
+    public String[] getChildNames(Path path) throws RepositoryException {
         File file = new File(pathsDir + path.toString());
         if (!file.exists()) {
             log.warn("No such file or directory: " + file);
-            return new Path[0];
+            return new String[0];
         }
 
         String[] filenames = file.list(this.childrenFilter);
@@ -138,21 +157,11 @@ public class VFileSystemMapImpl implements Map {
 	// NOTE: This situation should only occur if one is trying to get children for a file than a directory! One might want to consider to test first with isResource() or isCollection().
         if (filenames == null) {
             log.warn("No children: " + path + " (" + file + ")");
-            return new Path[0];
+            return new String[0];
         }
 
         log.debug("Number of children: " + filenames.length + " (" + file + ")");
-        Path[] children = new Path[filenames.length];
-        for (int i = 0;i < children.length; i++) {
-            if (path.toString().endsWith(File.separator)) {
-                children[i] = new Path(path + filenames[i]);
-            } else {
-                // NOTE: Do not use File.separator here, because it's the repository path and not the Operating System File System path
-                children[i] = new Path(path + "/" + filenames[i]);
-            }
-            log.debug("Child: " + children[i]);
-        }
-        return children;
+        return filenames;
     }
 
     /**
@@ -216,7 +225,9 @@ public class VFileSystemMapImpl implements Map {
         
         public boolean accept(File dir, String name) {
             
-            if (VFileSystemMapImpl.this.ignorePath(name)) {
+            if (name.endsWith(org.wyona.yarep.impl.repo.vfs.AtomicFile.TEMP_FILE_SUFFIX)) {
+                return false; // INFO: Content which is currently being written (see VirtualFileSystemOutputStream)
+            } else if (VFileSystemMapImpl.this.ignorePath(name)) {
                 return false;
             } else {
                 return true;
@@ -11,6 +11,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -20,6 +22,8 @@ import java.util.Vector;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Category;
+import org.wyona.yarep.core.ChildEntry;
+import org.wyona.yarep.core.Map;
 import org.wyona.yarep.core.NoSuchRevisionException;
 import org.wyona.yarep.core.Node;
 import org.wyona.yarep.core.NodeStateException;
@@ -30,9 +34,15 @@ import org.wyona.yarep.core.PropertyType;
 import org.wyona.yarep.core.RepositoryException;
 import org.wyona.yarep.core.Revision;
 import org.wyona.yarep.core.UID;
+import org.wyona.yarep.core.attributes.ChannelReadableV1;
+import org.wyona.yarep.core.attributes.PageableChildrenV1;
+import org.wyona.yarep.core.attributes.RangeReadableV1;
 import org.wyona.yarep.impl.AbstractNode;
 import org.wyona.yarep.impl.DefaultProperty;
+import org.wyona.yarep.impl.VFileSystemMapImpl;
 import org.wyona.yarep.impl.repo.fs.FileSystemRepository;
+import org.wyona.yarep.util.ChildNodeIterator;
+import org.wyona.yarep.util.YarepUtil;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -44,7 +54,7 @@ import org.apache.lucene.index.IndexWriter;
  * This class represents a repository node.
  * A repository node may be either a collection ("directory") or a resource ("file").
  */
-public class FileSystemNode extends AbstractNode {
+public class FileSystemNode extends AbstractNode implements ChannelReadableV1, RangeReadableV1, PageableChildrenV1 {
     private static Category log = Category.getInstance(FileSystemNode.class);
 
     protected static final String META_FILE_NAME = "meta";
@@ -286,6 +296,70 @@ public class FileSystemNode extends AbstractNode {
         return children;
     }
     
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableChildrenV1#getNumberOfChildren()
+     */
+    public int getNumberOfChildren() throws Exception {
+        if (getRepository().isFallbackEnabled()) {
+            return getNodes().length;
+        }
+        return getChildNames().length;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableChildrenV1#getChildEntries(int, int, int)
+     */
+    public ChildEntry[] getChildEntries(int order, int offset, int limit) throws Exception {
+        if (getRepository().isFallbackEnabled()) {
+            // INFO: Fallback nodes are not listed within the map, hence all children have to be initialized
+            Node[] children = YarepUtil.getPage(getNodes(), order, offset, limit);
+            ChildEntry[] entries = new ChildEntry[children.length];
+            for (int i = 0; i < children.length; i++) {
+                entries[i] = new ChildEntry(children[i].getName(), children[i].getPath(), children[i].getType());
+            }
+            return entries;
+        }
+        String[] names = YarepUtil.getPage(getChildNames(), order, offset, limit);
+        ChildEntry[] entries = new ChildEntry[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String childPath = YarepUtil.getChildPath(this.path, names[i]);
+            int type = getRepository().getMap().isCollection(new Path(childPath)) ? NodeType.COLLECTION : NodeType.RESOURCE;
+            entries[i] = new ChildEntry(names[i], childPath, type);
+        }
+        return entries;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableChildrenV1#getNodes(int, int, int)
+     */
+    public Iterator<Node> getNodes(int order, int offset, int limit) throws Exception {
+        if (getRepository().isFallbackEnabled()) {
+            return Arrays.asList(YarepUtil.getPage(getNodes(), order, offset, limit)).iterator();
+        }
+        String[] names = YarepUtil.getPage(getChildNames(), order, offset, limit);
+        String[] childPaths = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            childPaths[i] = YarepUtil.getChildPath(this.path, names[i]);
+        }
+        return new ChildNodeIterator(this.repository, childPaths);
+    }
+
+    /**
+     * Get names of children as listed by the map
+     */
+    private String[] getChildNames() throws RepositoryException {
+        Map map = getRepository().getMap();
+        if (map instanceof VFileSystemMapImpl) {
+            return ((VFileSystemMapImpl) map).getChildNames(new Path(this.path));
+        }
+        Path[] childPaths = map.getChildren(new Path(this.path));
+        String[] names = new String[childPaths.length];
+        for (int i = 0; i < childPaths.length; i++) {
+            names[i] = childPaths[i].getName();
+        }
+        return names;
+    }
+    
     /**
      * @see org.wyona.yarep.core.Node#addNode(java.lang.String, int)
      */
@@ -346,6 +420,46 @@ public class FileSystemNode extends AbstractNode {
         }
         //return getProperty(PROPERTY_CONTENT).getInputStream();
     }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.ChannelReadableV1#getReadableChannel()
+     */
+    public ReadableByteChannel getReadableChannel() throws Exception {
+        return new FileInputStream(this.contentFile).getChannel();
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.ChannelReadableV1#getContentLength()
+     */
+    public long getContentLength() throws Exception {
+        return this.contentFile.length();
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.RangeReadableV1#read(long, byte[], int, int)
+     */
+    public int read(long position, byte[] buffer, int offset, int length) throws Exception {
+        return org.wyona.yarep.util.YarepUtil.read(this.contentFile, position, buffer, offset, length);
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.RangeReadableV1#getInputStream(long, long)
+     */
+    public InputStream getInputStream(long offset, long length) throws Exception {
+        return org.wyona.yarep.util.YarepUtil.getInputStream(this.contentFile, offset, length);
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.ChannelReadableV1#transferTo(WritableByteChannel)
+     */
+    public long transferTo(WritableByteChannel target) throws Exception {
+        ReadableByteChannel channel = getReadableChannel();
+        try {
+            return org.wyona.yarep.util.YarepUtil.transfer(channel, target);
+        } finally {
+            channel.close();
+        }
+    }
     
     /**
      * @see org.wyona.yarep.core.Node#getOutputStream()
@@ -0,0 +1,113 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Utility to replace files atomically: The new content is written to a temporary file within the same directory, which is renamed to the target file afterwards,
+ * such that readers either see the previous or the new content, but never a partially written file.
+ * Temporary files end with {@link #TEMP_FILE_SUFFIX}, such that they can be ignored when listing children (see {@link org.wyona.yarep.impl.VFileSystemMapImpl}).
+ */
+public class AtomicFile {
+
+    private static Logger log = LogManager.getLogger(AtomicFile.class);
+
+    public static final String TEMP_FILE_SUFFIX = ".yarep-tmp";
+
+    /**
+     * Create temporary file within the directory of the target file
+     * @param target File which will be replaced by the temporary file
+     */
+    public static File createTempFile(File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory()) {
+            dir.mkdirs();
+        }
+        return File.createTempFile("." + target.getName() + "-", TEMP_FILE_SUFFIX, dir);
+    }
+
+    /**
+     * Replace target file by temporary file
+     * @param tempFile Temporary file containing the new content (see {@link #createTempFile(File)})
+     * @param target File which will be replaced
+     */
+    public static void rename(File tempFile, File target) throws IOException {
+        if (tempFile.renameTo(target)) {
+            return;
+        }
+        // INFO: Some platforms (e.g. Windows) do not allow to rename a file if the target exists already, hence the target is deleted first, whereas this is not atomic anymore
+        if (target.exists()) {
+            log.debug("Could not rename '" + tempFile + "' to '" + target + "' atomically, hence delete target first.");
+            target.delete();
+            if (tempFile.renameTo(target)) {
+                return;
+            }
+        }
+        tempFile.delete();
+        throw new IOException("Could not rename temporary file '" + tempFile + "' to '" + target + "'");
+    }
+
+    /**
+     * Replace content of target file atomically
+     * @param target File which will be replaced
+     * @param data New content
+     * @param fsync If true, then the content is forced to the storage device before the file is renamed
+     */
+    public static void write(File target, byte[] data, boolean fsync) throws IOException {
+        File tempFile = createTempFile(target);
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(data);
+            if (fsync) {
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            out.close();
+            tempFile.delete();
+            throw e;
+        }
+        out.close();
+        rename(tempFile, target);
+    }
+
+    /**
+     * Replace content of target file atomically by the content of another file
+     * @param source File which is copied
+     * @param target File which will be replaced
+     * @param fsync If true, then the content is forced to the storage device before the file is renamed
+     */
+    public static void copy(File source, File target, boolean fsync) throws IOException {
+        File tempFile = createTempFile(target);
+        boolean renamed = false;
+        try {
+            InputStream in = new FileInputStream(source);
+            try {
+                FileOutputStream out = new FileOutputStream(tempFile);
+                try {
+                    IOUtils.copy(in, out);
+                    if (fsync) {
+                        out.getFD().sync();
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            rename(tempFile, target);
+            renamed = true;
+        } finally {
+            if (!renamed && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Batch;
+import org.wyona.yarep.core.PropertyType;
+import org.wyona.yarep.impl.DefaultProperty;
+
+/**
+ * Write-ahead journal of batches (see {@link VirtualFileSystemRepository#apply(Batch)}): Every batch is written (and forced to the storage device) as one journal file before it is applied
+ * and the journal file is deleted after the batch has been applied completely. Journal files which still exist when the repository is opened (e.g. because of a crash) are applied again,
+ * whereas this is possible because all operations of a batch are idempotent. Journal files of batches which failed are renamed (see {@link #FAILED_SUFFIX}), such that they are not applied again.
+ */
+public class BatchJournal {
+
+    private static Logger log = LogManager.getLogger(BatchJournal.class);
+
+    static final String JOURNAL_SUFFIX = ".batch";
+    static final String FAILED_SUFFIX = ".failed";
+
+    private static final int MAGIC = 0x59524231; // INFO: "YRB1"
+
+    private File dir;
+    private long counter = 0;
+
+    /**
+     * @param dir Directory containing the journal files
+     */
+    public BatchJournal(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Get directory containing the journal files
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * Write batch to a new journal file
+     * @return journal file, which has to be removed by {@link #commit(File)} or {@link #fail(File)} after the batch has been applied
+     */
+    File write(Batch batch) throws Exception {
+        File file;
+        synchronized(this) {
+            counter++;
+            file = new File(dir, System.currentTimeMillis() + "-" + counter + JOURNAL_SUFFIX);
+        }
+        AtomicFile.write(file, toByteArray(batch), true);
+        return file;
+    }
+
+    /**
+     * Remove journal file of a batch which has been applied completely
+     */
+    void commit(File file) {
+        if (!file.delete()) {
+            log.error("Could not delete batch journal '" + file + "', hence the batch will be applied again when the repository is opened the next time.");
+        }
+    }
+
+    /**
+     * Keep journal file of a batch which could not be applied (for inspection), such that it is not applied again
+     */
+    void fail(File file) {
+        File failedFile = new File(file.getPath() + FAILED_SUFFIX);
+        if (!file.renameTo(failedFile)) {
+            log.error("Could not rename batch journal '" + file + "' to '" + failedFile + "'.");
+        } else {
+            log.warn("Batch journal has been kept as '" + failedFile + "'.");
+        }
+    }
+
+    /**
+     * Get journal files of batches which have not been applied completely, ordered by the time when they have been written
+     */
+    File[] getPendingJournals() {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            public boolean accept(File d, String name) {
+                return name.endsWith(JOURNAL_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new java.util.Comparator<File>() {
+            public int compare(File a, File b) {
+                long[] ka = getSortKey(a);
+                long[] kb = getSortKey(b);
+                if (ka[0] != kb[0]) {
+                    return ka[0] < kb[0] ? -1 : 1;
+                }
+                return ka[1] < kb[1] ? -1 : (ka[1] == kb[1] ? 0 : 1);
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Read batch from journal file
+     */
+    Batch read(File file) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a batch journal: " + file);
+            }
+            Batch batch = new Batch();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                int type = in.readByte();
+                String path = readString(in);
+                if (type == Batch.ADD_NODE) {
+                    batch.addNode(path, in.readInt());
+                } else if (type == Batch.SET_PROPERTY) {
+                    String name = readString(in);
+                    DefaultProperty property = new DefaultProperty(name, in.readInt(), null);
+                    property.setValueFromString(readString(in));
+                    switch (property.getType()) {
+                        case PropertyType.BOOLEAN: batch.setProperty(path, name, property.getBoolean()); break;
+                        case PropertyType.LONG: batch.setProperty(path, name, property.getLong()); break;
+                        case PropertyType.DOUBLE: batch.setProperty(path, name, property.getDouble()); break;
+                        case PropertyType.DATE: batch.setProperty(path, name, property.getDate()); break;
+                        default: batch.setProperty(path, name, property.getString());
+                    }
+                } else if (type == Batch.REMOVE_PROPERTY) {
+                    batch.removeProperty(path, readString(in));
+                } else if (type == Batch.SET_CONTENT) {
+                    byte[] content = new byte[in.readInt()];
+                    in.readFully(content);
+                    batch.setContent(path, content);
+                } else {
+                    throw new IOException("No such batch operation type '" + type + "' within journal: " + file);
+                }
+            }
+            return batch;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Serialize batch
+     */
+    private byte[] toByteArray(Batch batch) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(MAGIC);
+        out.writeInt(batch.size());
+        Iterator<Batch.Operation> it = batch.getOperations().iterator();
+        while (it.hasNext()) {
+            Batch.Operation op = it.next();
+            out.writeByte(op.getType());
+            writeString(out, op.getPath());
+            if (op.getType() == Batch.ADD_NODE) {
+                out.writeInt(op.getNodeType());
+            } else if (op.getType() == Batch.SET_PROPERTY) {
+                writeString(out, op.getPropertyName());
+                out.writeInt(op.getPropertyType());
+                DefaultProperty property = new DefaultProperty(op.getPropertyName(), op.getPropertyType(), null);
+                switch (op.getPropertyType()) {
+                    case PropertyType.BOOLEAN: property.setValue(((Boolean) op.getValue()).booleanValue()); break;
+                    case PropertyType.LONG: property.setValue(((Long) op.getValue()).longValue()); break;
+                    case PropertyType.DOUBLE: property.setValue(((Double) op.getValue()).doubleValue()); break;
+                    case PropertyType.DATE: property.setValue((Date) op.getValue()); break;
+                    default: property.setValue((String) op.getValue());
+                }
+                writeString(out, property.getValueAsString());
+            } else if (op.getType() == Batch.REMOVE_PROPERTY) {
+                writeString(out, op.getPropertyName());
+            } else if (op.getType() == Batch.SET_CONTENT) {
+                out.writeInt(op.getContent().length);
+                out.write(op.getContent());
+            }
+        }
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Write string (DataOutputStream#writeUTF(String) is limited to 64KB)
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     *
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Get time and counter of a journal file name
+     */
+    private static long[] getSortKey(File file) {
+        String name = file.getName().substring(0, file.getName().length() - JOURNAL_SUFFIX.length());
+        try {
+            int i = name.indexOf('-');
+            return new long[] {Long.parseLong(name.substring(0, i)), Long.parseLong(name.substring(i + 1))};
+        } catch (Exception e) {
+            return new long[] {Long.MAX_VALUE, 0};
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary delta between two byte arrays, whereas the delta consists of instructions to copy ranges of the source and of literal bytes which do not occur within the source.
+ * Matches are found by hashing the blocks of the source (see {@link #BLOCK_SIZE}) and by comparing them with a rolling hash of the target, hence moved and repeated content is found as well.
+ */
+public class BinaryDelta {
+
+    static final int BLOCK_SIZE = 16;
+
+    private static final int HASH_BASE = 31;
+    private static final byte END = 0;
+    private static final byte COPY = 1;
+    private static final byte INSERT = 2;
+
+    /**
+     * Create delta
+     * @param source Source, e.g. content of a keyframe
+     * @param target Target, which will be reconstructed from the source and the delta
+     * @return delta
+     */
+    public static byte[] create(byte[] source, byte[] target) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(target.length / 8 + 64);
+        DataOutputStream out = new DataOutputStream(baos);
+
+        int literalStart = 0;
+        if (source.length >= BLOCK_SIZE && target.length >= BLOCK_SIZE) {
+            int blocks = source.length / BLOCK_SIZE;
+            int tableSize = Integer.highestOneBit(blocks * 2 - 1) << 1;
+            int mask = tableSize - 1;
+            int[] table = new int[tableSize]; // INFO: Offset of block plus one, whereas 0 means empty
+            for (int offset = (blocks - 1) * BLOCK_SIZE; offset >= 0; offset = offset - BLOCK_SIZE) {
+                table[mix(hash(source, offset)) & mask] = offset + 1; // INFO: Iterate backwards, such that the first of several identical blocks wins
+            }
+
+            int power = 1; // INFO: HASH_BASE^(BLOCK_SIZE-1), in order to remove the leading byte from the rolling hash
+            for (int i = 1; i < BLOCK_SIZE; i++) {
+                power = power * HASH_BASE;
+            }
+
+            int i = 0;
+            int h = hash(target, 0);
+            while (i + BLOCK_SIZE <= target.length) {
+                int candidate = table[mix(h) & mask] - 1;
+                if (candidate >= 0 && equals(source, candidate, target, i, BLOCK_SIZE)) {
+                    // INFO: Extend match backwards (into the pending literal bytes) and forwards
+                    int s = candidate;
+                    int t = i;
+                    while (s > 0 && t > literalStart && source[s - 1] == target[t - 1]) {
+                        s--;
+                        t--;
+                    }
+                    int se = candidate + BLOCK_SIZE;
+                    int te = i + BLOCK_SIZE;
+                    while (se < source.length && te < target.length && source[se] == target[te]) {
+                        se++;
+                        te++;
+                    }
+                    writeInsert(out, target, literalStart, t);
+                    out.writeByte(COPY);
+                    out.writeInt(s);
+                    out.writeInt(te - t);
+                    i = te;
+                    literalStart = te;
+                    if (i + BLOCK_SIZE <= target.length) {
+                        h = hash(target, i);
+                    }
+                    continue;
+                }
+                if (i + BLOCK_SIZE < target.length) {
+                    h = (h - (target[i] & 0xff) * power) * HASH_BASE + (target[i + BLOCK_SIZE] & 0xff);
+                }
+                i++;
+            }
+        }
+        writeInsert(out, target, literalStart, target.length);
+        out.writeByte(END);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Apply delta
+     * @param source Source from which the delta has been created
+     * @param delta Delta (see {@link #create(byte[], byte[])})
+     * @param targetLength Length of target
+     * @return target
+     */
+    public static byte[] apply(byte[] source, byte[] delta, int targetLength) throws IOException {
+        byte[] target = new byte[targetLength];
+        int pos = 0;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+        while (true) {
+            byte op = in.readByte();
+            if (op == END) {
+                break;
+            } else if (op == COPY) {
+                int offset = in.readInt();
+                int length = in.readInt();
+                if (offset < 0 || length < 0 || offset + length > source.length || pos + length > targetLength) {
+                    throw new IOException("Delta is corrupt (copy " + offset + "/" + length + ")");
+                }
+                System.arraycopy(source, offset, target, pos, length);
+                pos = pos + length;
+            } else if (op == INSERT) {
+                int length = in.readInt();
+                if (length < 0 || pos + length > targetLength) {
+                    throw new IOException("Delta is corrupt (insert " + length + ")");
+                }
+                in.readFully(target, pos, length);
+                pos = pos + length;
+            } else {
+                throw new IOException("Delta is corrupt (no such instruction: " + op + ")");
+            }
+        }
+        if (pos != targetLength) {
+            throw new IOException("Delta is corrupt (length " + pos + " instead " + targetLength + ")");
+        }
+        return target;
+    }
+
+    /**
+     * Write literal bytes
+     */
+    private static void writeInsert(DataOutputStream out, byte[] target, int start, int end) throws IOException {
+        if (end > start) {
+            out.writeByte(INSERT);
+            out.writeInt(end - start);
+            out.write(target, start, end - start);
+        }
+    }
+
+    /**
+     * Polynomial hash of a block, which can be rolled byte by byte
+     */
+    private static int hash(byte[] data, int offset) {
+        int h = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            h = h * HASH_BASE + (data[offset + i] & 0xff);
+        }
+        return h;
+    }
+
+    /**
+     * Spread the bits of a hash, such that the lower bits can be used as index of the hash table
+     */
+    private static int mix(int h) {
+        h = h ^ (h >>> 16);
+        h = h * 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    /**
+     * Compare two ranges
+     */
+    private static boolean equals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,228 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Binary meta file format (version 2.0) containing the properties of a node.
+ *
+ * The file starts with the magic bytes 'YMF2', followed by a log of records:
+ * <ul>
+ *   <li>Set property: 'P', name, type (byte), value</li>
+ *   <li>Remove property: 'R', name</li>
+ * </ul>
+ * whereas strings are written as length (int) followed by the UTF-8 bytes.
+ * Modifying a property appends one record, whereas the log is compacted (rewritten as one record per property) as soon as it contains considerably more records than properties.
+ * A truncated last record (e.g. because of a crash while appending) is ignored, whereas the meta file is marked as truncated (see {@link Content#truncated}), such that the next modification
+ * rewrites the whole meta file instead of appending a record after the garbage bytes. Compacted meta files are replaced atomically (see {@link AtomicFile}).
+ */
+class BinaryMetaFile {
+
+    private static Logger log = LogManager.getLogger(BinaryMetaFile.class);
+
+    static final String VERSION = "2.0";
+
+    private static final byte[] MAGIC = {'Y', 'M', 'F', '2'};
+    private static final byte OP_SET = 'P';
+    private static final byte OP_REMOVE = 'R';
+
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 32;
+
+    /**
+     * Check whether a stream starts with the magic bytes of the binary format, whereas the stream is reset to its beginning
+     * @param in Stream which supports mark/reset
+     */
+    static boolean isBinary(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (in.read() != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Read properties
+     * @param in Stream positioned at the beginning of the meta file
+     * @return Content of meta file
+     */
+    static Content read(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        byte[] magic = new byte[MAGIC.length];
+        dis.readFully(magic);
+        Content content = new Content();
+        while (true) {
+            int op = dis.read();
+            if (op == -1) {
+                break;
+            }
+            try {
+                String name = readString(dis);
+                if (op == OP_SET) {
+                    int type = dis.readByte();
+                    String value = readString(dis);
+                    content.properties.remove(name); // INFO: Keep the order of the most recent modifications
+                    content.properties.put(name, new Entry(type, value));
+                } else if (op == OP_REMOVE) {
+                    content.properties.remove(name);
+                } else {
+                    log.error("Unknown record type '" + op + "', hence ignore rest of meta file.");
+                    content.truncated = true;
+                    break;
+                }
+                content.records++;
+            } catch (EOFException e) {
+                log.warn("Truncated record at the end of meta file is ignored (probably the meta file is being written or writing has been interrupted).");
+                content.truncated = true;
+                break;
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Append a record for setting a property
+     * @param metaFile Binary meta file
+     * @param name Property name
+     * @param type Property type
+     * @param value Property value as string
+     * @param fsync If true, then the record is forced to the storage device
+     */
+    static void appendSet(File metaFile, String name, int type, String value, boolean fsync) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeSet(out, name, type, value);
+        append(metaFile, buffer.toByteArray(), fsync);
+    }
+
+    /**
+     * Append a record for removing a property
+     * @param metaFile Binary meta file
+     * @param name Property name
+     * @param fsync If true, then the record is forced to the storage device
+     */
+    static void appendRemove(File metaFile, String name, boolean fsync) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(OP_REMOVE);
+        writeString(out, name);
+        append(metaFile, buffer.toByteArray(), fsync);
+    }
+
+    /**
+     * Get all properties as binary meta file containing one record per property
+     * @param properties Properties (name, Entry)
+     */
+    static byte[] toByteArray(LinkedHashMap<String, Entry> properties) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.write(MAGIC);
+        Iterator<java.util.Map.Entry<String, Entry>> it = properties.entrySet().iterator();
+        while (it.hasNext()) {
+            java.util.Map.Entry<String, Entry> property = it.next();
+            writeSet(out, property.getKey(), property.getValue().type, property.getValue().value);
+        }
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Check whether a log should be compacted
+     * @param records Number of records of log
+     * @param properties Number of properties
+     */
+    static boolean needsCompaction(int records, int properties) {
+        return records > MIN_RECORDS_BEFORE_COMPACTION && records > 2 * properties;
+    }
+
+    /**
+     * Append record with one write, such that concurrent readers see either the whole record or a truncated record
+     */
+    private static void append(File metaFile, byte[] record, boolean fsync) throws IOException {
+        FileOutputStream out = new FileOutputStream(metaFile, true);
+        try {
+            out.write(record);
+            if (fsync) {
+                out.getFD().sync();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     *
+     */
+    private static void writeSet(DataOutputStream out, String name, int type, String value) throws IOException {
+        out.writeByte(OP_SET);
+        writeString(out, name);
+        out.writeByte(type);
+        writeString(out, value);
+    }
+
+    /**
+     * Write length prefixed UTF-8 string, whereas null is written as length -1
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read length prefixed UTF-8 string
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Type and value (as string) of a property
+     */
+    static class Entry {
+        int type;
+        String value;
+
+        Entry(int type, String value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Properties and number of records of a binary meta file
+     */
+    static class Content {
+        LinkedHashMap<String, Entry> properties = new LinkedHashMap<String, Entry>();
+        int records = 0;
+        // INFO: True if the meta file ends with an incomplete or unknown record, hence records must not be appended anymore
+        boolean truncated = false;
+    }
+}
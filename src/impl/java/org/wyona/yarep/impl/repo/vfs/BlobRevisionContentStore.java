@@ -0,0 +1,40 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Stores the content of revisions as blobs within the repository wide blob directory (see {@link RevisionBlobStore}),
+ * whereas the revision directory only contains the hash of the content. Hence identical content (e.g. a checkin without modifications) is stored only once.
+ */
+public class BlobRevisionContentStore extends RevisionContentStore {
+
+    private static Logger log = LogManager.getLogger(BlobRevisionContentStore.class);
+
+    /**
+     * @param repo Repository containing revisions
+     */
+    public BlobRevisionContentStore(VirtualFileSystemRepository repo) {
+        super(repo);
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.RevisionContentStore#addRevision(VirtualFileSystemNode, File)
+     */
+    @Override
+    public void addRevision(VirtualFileSystemNode node, File revisionDir) throws IOException, RepositoryException {
+        String hash = repo.getRevisionBlobStore().addReference(node.contentFile);
+        try {
+            AtomicFile.write(new File(revisionDir, CONTENT_REF_FILE_NAME), hash.getBytes("UTF-8"), repo.isFsyncEnabled());
+        } catch (IOException e) {
+            repo.getRevisionBlobStore().removeReference(hash);
+            throw e;
+        }
+        if (log.isDebugEnabled()) log.debug("Revision '" + revisionDir + "' of node '" + node.getPath() + "' references blob: " + hash);
+    }
+}
@@ -0,0 +1,130 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Size bounded (LRU) cache of memory mapped revisions catalogs (see {@link DateIndexerSearcherImplV3}), which is shared by all date indexer searchers of a repository,
+ * such that a catalog does not have to be mapped again for every lookup.
+ * An entry is only valid as long as the last modified date and the size of the catalog did not change, whereas modifications done by this repository invalidate entries explicitly.
+ */
+public class CatalogCache {
+
+    private static Logger log = LogManager.getLogger(CatalogCache.class);
+
+    private int maxEntries;
+    private LinkedHashMap<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxEntries Maximum number of mapped catalogs
+     */
+    public CatalogCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get memory mapped catalog, whereas the catalog is mapped if it is not cached yet or if it has been modified
+     * @param catalogFile Catalog file
+     * @return mapped catalog, which must not be modified (use {@link MappedByteBuffer#duplicate()} in order to get an independent position)
+     */
+    MappedByteBuffer get(File catalogFile) throws IOException {
+        String key = catalogFile.getAbsolutePath();
+        long lastModified = catalogFile.lastModified();
+        long length = catalogFile.length();
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                hits++;
+                return entry.catalog;
+            }
+            misses++;
+        }
+
+        MappedByteBuffer catalog;
+        RandomAccessFile raf = new RandomAccessFile(catalogFile, "r");
+        try {
+            length = raf.length();
+            catalog = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            raf.close(); // INFO: The mapping stays valid after the channel has been closed
+        }
+        log.debug("Catalog mapped: " + catalogFile);
+        synchronized(this) {
+            entries.put(key, new Entry(lastModified, length, catalog));
+        }
+        return catalog;
+    }
+
+    /**
+     * Remove mapped catalog
+     */
+    synchronized void invalidate(File catalogFile) {
+        entries.remove(catalogFile.getAbsolutePath());
+    }
+
+    /**
+     * Remove all entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get maximum number of mapped catalogs
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get number of mapped catalogs
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Get number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of cache misses (including entries which were not valid anymore)
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Mapped catalog
+     */
+    private static class Entry {
+        long lastModified;
+        long length;
+        MappedByteBuffer catalog;
+
+        Entry(long lastModified, long length, MappedByteBuffer catalog) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.catalog = catalog;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Size bounded (LRU) cache of the content of small files, which is kept outside of the heap (direct byte buffers) and keyed by the content file.
+ * Cached content is validated by the last modified date and the size of the file, whereas content written by this repository is invalidated explicitly.
+ * Every invalidation increments the generation of the file, such that content which has been read before a concurrent invalidation is not put into the cache anymore.
+ * Readers get a stream on a shared (read only) view of the cached buffer, such that reading does not require any system calls.
+ */
+public class ContentCache {
+
+    private static Logger log = LogManager.getLogger(ContentCache.class);
+
+    private long maxBytes;
+    private long maxFileSize;
+    private long bytes = 0;
+    private LinkedHashMap<String, Entry> entries;
+    private HashMap<String, Generation> generations = new HashMap<String, Generation>(); // INFO: Only files which are currently read into the cache
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxBytes Maximum number of bytes of all cached files
+     * @param maxFileSize Maximum size of a file which is cached
+     */
+    public ContentCache(long maxBytes, long maxFileSize) {
+        this.maxBytes = maxBytes;
+        this.maxFileSize = Math.min(maxFileSize, maxBytes);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Get content of a file
+     * @param file Content file
+     * @return stream on the cached content or null if the file is too large (or does not exist), such that the caller has to read the file itself
+     */
+    InputStream getInputStream(File file) throws IOException {
+        long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            return null; // INFO: File does not exist
+        }
+        long length = file.length();
+        if (length > maxFileSize) {
+            return null;
+        }
+        String key = file.getPath();
+
+        Generation generation;
+        long startGeneration;
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                hits++;
+                return new ByteBufferInputStream(entry.buffer.asReadOnlyBuffer());
+            }
+            misses++;
+            generation = generations.get(key);
+            if (generation == null) {
+                generation = new Generation();
+                generations.put(key, generation);
+            }
+            generation.readers++;
+            startGeneration = generation.value;
+        }
+
+        ByteBuffer buffer = null;
+        try {
+            buffer = read(file);
+        } finally {
+            synchronized(this) {
+                generation.readers--;
+                if (generation.readers == 0) {
+                    generations.remove(key);
+                }
+                if (buffer != null) {
+                    if (generation.value == startGeneration && buffer.limit() == length) {
+                        put(key, new Entry(buffer, lastModified));
+                    } else {
+                        log.debug("File '" + file + "' has been modified while it was read, hence it is not cached.");
+                    }
+                }
+            }
+        }
+        if (buffer == null) {
+            return null;
+        }
+        return new ByteBufferInputStream(buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * Remove cached content of a file, e.g. because the file has been replaced or deleted
+     * @param file Content file
+     */
+    synchronized void invalidate(File file) {
+        String key = file.getPath();
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            bytes = bytes - entry.length;
+        }
+        Generation generation = generations.get(key);
+        if (generation != null) {
+            generation.value++; // INFO: Content which is currently read must not be cached
+        }
+    }
+
+    /**
+     * Remove all cached content
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Get maximum number of bytes of all cached files
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Get maximum size of a file which is cached
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Get number of bytes of all cached files
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get number of cached files
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Get number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get ratio of hits to lookups
+     */
+    public synchronized double getHitRatio() {
+        if (hits + misses == 0) {
+            return 0;
+        }
+        return (double) hits / (hits + misses);
+    }
+
+    /**
+     * Add content to cache, whereas the least recently used content is removed if the cache exceeds its maximum size
+     */
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes = bytes - previous.length;
+        }
+        bytes = bytes + entry.length;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes = bytes - it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Read file into a direct buffer
+     * @return buffer or null if the file has been deleted in the meantime
+     */
+    private ByteBuffer read(File file) throws IOException {
+        FileInputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (java.io.FileNotFoundException e) {
+            return null;
+        }
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > maxFileSize) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Cached content
+     */
+    private static class Entry {
+        ByteBuffer buffer;
+        long lastModified;
+        long length;
+
+        Entry(ByteBuffer buffer, long lastModified) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+            this.length = buffer.limit();
+        }
+    }
+
+    /**
+     * Generation of a file which is currently read into the cache
+     */
+    private static class Generation {
+        long value = 0;
+        int readers = 0;
+    }
+
+    /**
+     * Input stream on a byte buffer (every stream has its own view of the buffer, such that the position is not shared)
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
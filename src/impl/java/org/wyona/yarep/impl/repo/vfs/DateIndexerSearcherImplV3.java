@@ -0,0 +1,384 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Revision;
+
+/**
+ * Utility class to index and search revisions of a node by date, whereby the date index is a catalog file inside the meta directory of the node,
+ * which contains fixed size records (creation date, revision name) sorted by creation date.
+ * Lookups are done by binary search on the memory mapped catalog (mapped catalogs are shared by all instances of a repository, see {@link CatalogCache}) and adding a revision which is younger than all other revisions appends one record,
+ * whereas adding an older revision or deleting a revision rewrites the catalog (atomically, see {@link AtomicFile}).
+ *
+ * Catalog format: Magic bytes 'YRC1', record size (int), followed by the records: creation date (long), length of revision name (short), revision name (UTF-8, padded with zeros)
+ */
+public class DateIndexerSearcherImplV3 implements DateIndexerSearcher {
+
+    private static Logger log = LogManager.getLogger(DateIndexerSearcherImplV3.class);
+
+    static final String CATALOG_FILE_NAME = "revisions_catalog";
+
+    private static final byte[] MAGIC = {'Y', 'R', 'C', '1'};
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 64;
+    private static final int MAX_NAME_LENGTH = RECORD_SIZE - 8 - 2;
+
+    private String nodePath;
+    private VirtualFileSystemRepository repo;
+    private File catalogFile;
+
+    /**
+     * @param path Absolute repository path of node for which revisions shall be indexed by date. e.g. '/foo/bar.txt'
+     * @param metaDir Meta directory of this node, which contains the catalog
+     * @param repo Repository containing node
+     */
+    public DateIndexerSearcherImplV3(String path, File metaDir, VirtualFileSystemRepository repo) {
+        this.nodePath = path;
+        this.repo = repo;
+        this.catalogFile = new File(metaDir, CATALOG_FILE_NAME);
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#indexExists()
+     */
+    public boolean indexExists() {
+        return catalogFile.isFile();
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getRevisionYoungerThan(Date)
+     */
+    public Revision getRevisionYoungerThan(Date date) throws Exception {
+        ByteBuffer buffer = getCatalog();
+        int index = upperBound(buffer, date.getTime()); // INFO: First record which is younger than date
+        if (index < getNumberOfRecords(buffer)) {
+            return getRevision(buffer, index);
+        }
+        return null;
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getRevisionOlderThan(Date)
+     */
+    public Revision getRevisionOlderThan(Date date) throws Exception {
+        ByteBuffer buffer = getCatalog();
+        int index = upperBound(buffer, date.getTime() - 1) - 1; // INFO: Last record which is older than date
+        if (index >= 0) {
+            return getRevision(buffer, index);
+        }
+        log.warn("There seems to be NO revision older than: " + DateIndexerSearcherImplV1.format(date));
+        return null;
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getMostRecentRevision()
+     */
+    public Revision getMostRecentRevision() {
+        try {
+            ByteBuffer buffer = getCatalog();
+            int n = getNumberOfRecords(buffer);
+            if (n > 0) {
+                return getRevision(buffer, n - 1);
+            }
+        } catch(Exception e) {
+            log.error(e, e);
+        }
+        return null;
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getOldestRevision()
+     */
+    public Revision getOldestRevision() {
+        try {
+            ByteBuffer buffer = getCatalog();
+            if (getNumberOfRecords(buffer) > 0) {
+                return getRevision(buffer, 0);
+            }
+        } catch(Exception e) {
+            log.error(e, e);
+        }
+        return null;
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getRevision(Date)
+     */
+    public Revision getRevision(Date date) throws Exception {
+        ByteBuffer buffer = getCatalog();
+        int index = upperBound(buffer, date.getTime()) - 1; // INFO: Last record which is equal or older than date
+        if (index >= 0) {
+            return getRevision(buffer, index);
+        }
+        return null;
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#deleteRevision(String)
+     */
+    public void deleteRevision(String revisionName) throws Exception {
+        if (!indexExists()) {
+            log.warn("No index yet, hence cannot delete revision '" + revisionName + "' from index.");
+            return;
+        }
+        LockManager lockManager = repo.getLockManager();
+        lockManager.lock(nodePath);
+        try {
+            List<Record> records = readRecords();
+            boolean deleted = false;
+            for (int i = records.size() - 1; i >= 0; i--) {
+                if (records.get(i).revisionName.equals(revisionName)) {
+                    records.remove(i);
+                    deleted = true;
+                }
+            }
+            if (deleted) {
+                writeRecords(records);
+            } else {
+                log.warn("No such revision '" + revisionName + "' within catalog: " + catalogFile);
+            }
+        } finally {
+            lockManager.unlock(nodePath);
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#addRevision(String)
+     */
+    public void addRevision(String revisionName) throws Exception {
+        if (!indexExists()) {
+            buildDateIndex(); // INFO: The revision exists already, hence it is added by building the index
+            return;
+        }
+        Record record = new Record(getCreationDate(new VirtualFileSystemRevision(repo, nodePath, revisionName)), revisionName);
+        log.debug("Add revision '" + revisionName + "' with creation date '" + record.creationDate + "' to catalog ...");
+
+        LockManager lockManager = repo.getLockManager();
+        lockManager.lock(nodePath);
+        try {
+            ByteBuffer buffer = getCatalog();
+            int n = getNumberOfRecords(buffer);
+
+            // INFO: Check whether revision exists already (it has the same creation date)
+            for (int i = upperBound(buffer, record.creationDate) - 1; i >= 0 && getCreationDate(buffer, i) == record.creationDate; i--) {
+                if (getRevisionName(buffer, i).equals(revisionName)) {
+                    log.debug("Revision '" + revisionName + "' already exists within catalog!");
+                    return;
+                }
+            }
+
+            if (n == 0 || getCreationDate(buffer, n - 1) <= record.creationDate) {
+                append(record);
+            } else {
+                log.debug("Revision '" + revisionName + "' is older than the most recent revision, hence the catalog is rewritten: " + catalogFile);
+                List<Record> records = readRecords();
+                records.add(record);
+                Collections.sort(records, new RecordComparator());
+                writeRecords(records);
+            }
+        } finally {
+            lockManager.unlock(nodePath);
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#buildDateIndex()
+     */
+    public void buildDateIndex() throws Exception {
+        log.warn("Build catalog '" + catalogFile + "', whereas this should happen only once when no catalog exists yet (or has been manually deleted again). Please note that the reading of the revisions must be based on the implementation VirtualFileSystemNode#readRevisions()!");
+        LockManager lockManager = repo.getLockManager();
+        lockManager.lock(nodePath);
+        try {
+            Node node = repo.getNode(nodePath);
+            Revision[] revisions = node.getRevisions();
+            List<Record> records = new ArrayList<Record>(revisions.length);
+            for (int i = 0; i < revisions.length; i++) {
+                records.add(new Record(getCreationDate(revisions[i]), revisions[i].getRevisionName()));
+            }
+            Collections.sort(records, new RecordComparator());
+            writeRecords(records);
+        } finally {
+            lockManager.unlock(nodePath);
+        }
+    }
+
+    /**
+     * Get memory mapped catalog, whereas the catalog is mapped again when it has been modified
+     */
+    private ByteBuffer getCatalog() throws IOException {
+        if (!catalogFile.isFile()) {
+            return ByteBuffer.allocate(HEADER_SIZE);
+        }
+        MappedByteBuffer catalog = repo.getCatalogCache().get(catalogFile);
+        if (catalog.capacity() < HEADER_SIZE || catalog.get(0) != MAGIC[0] || catalog.get(1) != MAGIC[1] || catalog.get(2) != MAGIC[2] || catalog.get(3) != MAGIC[3] || catalog.getInt(4) != RECORD_SIZE) {
+            repo.getCatalogCache().invalidate(catalogFile);
+            throw new IOException("Not a revisions catalog: " + catalogFile);
+        }
+        return catalog.duplicate(); // INFO: Independent position, such that the catalog can be read concurrently
+    }
+
+    /**
+     * Get number of records, whereas an incomplete record at the end (e.g. because appending has been interrupted) is ignored
+     */
+    private int getNumberOfRecords(ByteBuffer buffer) {
+        return (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Get creation date of a record
+     */
+    private long getCreationDate(ByteBuffer buffer, int index) {
+        return buffer.getLong(HEADER_SIZE + index * RECORD_SIZE);
+    }
+
+    /**
+     * Get revision name of a record
+     */
+    private String getRevisionName(ByteBuffer buffer, int index) throws IOException {
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        byte[] name = new byte[buffer.getShort(offset + 8)];
+        buffer.position(offset + 10);
+        buffer.get(name);
+        return new String(name, "UTF-8");
+    }
+
+    /**
+     * Get revision of a record
+     */
+    private Revision getRevision(ByteBuffer buffer, int index) throws Exception {
+        return new VirtualFileSystemRevision(repo, nodePath, getRevisionName(buffer, index));
+    }
+
+    /**
+     * Binary search
+     * @return index of the first record with a creation date greater than the specified time, or the number of records if no such record exists
+     */
+    private int upperBound(ByteBuffer buffer, long time) {
+        int low = 0;
+        int high = getNumberOfRecords(buffer);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getCreationDate(buffer, mid) <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read all records
+     */
+    private List<Record> readRecords() throws IOException {
+        ByteBuffer buffer = getCatalog();
+        int n = getNumberOfRecords(buffer);
+        List<Record> records = new ArrayList<Record>(n + 1);
+        for (int i = 0; i < n; i++) {
+            records.add(new Record(getCreationDate(buffer, i), getRevisionName(buffer, i)));
+        }
+        return records;
+    }
+
+    /**
+     * Write catalog containing sorted records
+     */
+    private void writeRecords(List<Record> records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + records.size() * RECORD_SIZE);
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.write(MAGIC);
+        dos.writeInt(RECORD_SIZE);
+        for (int i = 0; i < records.size(); i++) {
+            dos.write(toByteArray(records.get(i)));
+        }
+        dos.flush();
+        AtomicFile.write(catalogFile, out.toByteArray(), repo.isFsyncEnabled());
+        repo.getCatalogCache().invalidate(catalogFile);
+    }
+
+    /**
+     * Append record with one write
+     */
+    private void append(Record record) throws IOException {
+        byte[] bytes = toByteArray(record);
+        FileOutputStream out = new FileOutputStream(catalogFile, true);
+        try {
+            long length = out.getChannel().size();
+            if ((length - HEADER_SIZE) % RECORD_SIZE != 0) {
+                // INFO: Cut off incomplete record (e.g. because a previous append has been interrupted)
+                out.getChannel().truncate(length - (length - HEADER_SIZE) % RECORD_SIZE);
+            }
+            out.write(bytes);
+            if (repo.isFsyncEnabled()) {
+                out.getFD().sync();
+            }
+        } finally {
+            out.close();
+        }
+        repo.getCatalogCache().invalidate(catalogFile);
+    }
+
+    /**
+     * Get record as fixed size byte array
+     */
+    private byte[] toByteArray(Record record) throws IOException {
+        byte[] name = record.revisionName.getBytes("UTF-8");
+        if (name.length > MAX_NAME_LENGTH) {
+            throw new IOException("Revision name '" + record.revisionName + "' is too long for catalog (maximum " + MAX_NAME_LENGTH + " bytes)");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.putLong(record.creationDate);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        return buffer.array();
+    }
+
+    /**
+     * Get creation date of revision
+     */
+    private long getCreationDate(Revision revision) throws Exception {
+        Date creationDate = revision.getCreationDate(); // WARN: Older creation dates might not have milliseconds and hence are not corresponding exactly with the revision name
+        if (creationDate != null) {
+            return creationDate.getTime();
+        }
+        log.warn("Revision '" + revision.getRevisionName() + "' of node '" + nodePath + "' has no creation date, hence use revision name as creation date.");
+        return Long.parseLong(revision.getRevisionName());
+    }
+
+    /**
+     * Catalog record
+     */
+    private static class Record {
+        long creationDate;
+        String revisionName;
+
+        Record(long creationDate, String revisionName) {
+            this.creationDate = creationDate;
+            this.revisionName = revisionName;
+        }
+    }
+
+    /**
+     * Sort records by creation date
+     */
+    private static class RecordComparator implements Comparator<Record> {
+        public int compare(Record r1, Record r2) {
+            return r1.creationDate < r2.creationDate ? -1 : (r1.creationDate == r2.creationDate ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.util.Date;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Revision;
+
+/**
+ * Utility class to index and search revisions of a node by date based on the repository wide revision date index (see {@link RevisionDateIndex}),
+ * such that the meta directory of the node is not accessed in order to find a revision
+ */
+public class DateIndexerSearcherImplV4 implements DateIndexerSearcher {
+
+    private static Logger log = LogManager.getLogger(DateIndexerSearcherImplV4.class);
+
+    private String nodePath;
+    private VirtualFileSystemRepository repo;
+    private RevisionDateIndex index;
+
+    /**
+     * @param path Absolute repository path of node for which revisions shall be indexed by date. e.g. '/foo/bar.txt'
+     * @param repo Repository containing node
+     */
+    public DateIndexerSearcherImplV4(String path, VirtualFileSystemRepository repo) {
+        this.nodePath = path;
+        this.repo = repo;
+        this.index = repo.getRevisionDateIndex();
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#indexExists()
+     */
+    public boolean indexExists() {
+        try {
+            return index.isIndexed(nodePath);
+        } catch(Exception e) {
+            log.error(e, e);
+            return false;
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getRevisionYoungerThan(Date)
+     */
+    public Revision getRevisionYoungerThan(Date date) throws Exception {
+        return getRevision(index.getRevisionNameYoungerThan(nodePath, date));
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getRevisionOlderThan(Date)
+     */
+    public Revision getRevisionOlderThan(Date date) throws Exception {
+        return getRevision(index.getRevisionNameOlderThan(nodePath, date));
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getMostRecentRevision()
+     */
+    public Revision getMostRecentRevision() {
+        try {
+            return getRevision(index.getMostRecentRevisionName(nodePath));
+        } catch(Exception e) {
+            log.error(e, e);
+            return null;
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getOldestRevision()
+     */
+    public Revision getOldestRevision() {
+        try {
+            return getRevision(index.getOldestRevisionName(nodePath));
+        } catch(Exception e) {
+            log.error(e, e);
+            return null;
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#getRevision(Date)
+     */
+    public Revision getRevision(Date date) throws Exception {
+        return getRevision(index.getRevisionName(nodePath, date));
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#deleteRevision(String)
+     */
+    public void deleteRevision(String revisionName) throws Exception {
+        index.deleteRevision(nodePath, revisionName);
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#addRevision(String)
+     */
+    public void addRevision(String revisionName) throws Exception {
+        if (!indexExists()) {
+            buildDateIndex(); // INFO: The revision exists already, hence it is added by building the index
+            return;
+        }
+        index.addRevision(nodePath, revisionName, new VirtualFileSystemRevision(repo, nodePath, revisionName).getCreationDate());
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.DateIndexerSearcher#buildDateIndex()
+     */
+    public void buildDateIndex() throws Exception {
+        log.warn("Add revisions of node '" + nodePath + "' to revision date index '" + index.getIndexDir() + "', whereas this should happen only once per node.");
+        index.build(nodePath);
+    }
+
+    /**
+     * Get revision by name
+     * @return revision or null if revision name is null
+     */
+    private Revision getRevision(String revisionName) throws Exception {
+        if (revisionName == null) {
+            return null;
+        }
+        return new VirtualFileSystemRevision(repo, nodePath, revisionName);
+    }
+}
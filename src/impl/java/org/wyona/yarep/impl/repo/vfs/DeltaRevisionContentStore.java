@@ -0,0 +1,122 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Stores the content of text revisions (e.g. XML or XHTML) as binary deltas (see {@link BinaryDelta}) against a keyframe, whereas every n-th revision of a node
+ * is a new keyframe. Keyframes are blobs of the repository wide blob directory (see {@link RevisionBlobStore}), which are referenced by the keyframe revision and all its delta revisions,
+ * such that deleting single revisions never breaks other revisions. Hence reconstructing a revision requires the keyframe and one delta only.
+ * The content of other (non text) revisions is copied (see {@link RevisionContentStore}).
+ */
+public class DeltaRevisionContentStore extends RevisionContentStore {
+
+    private static Logger log = LogManager.getLogger(DeltaRevisionContentStore.class);
+
+    /**
+     * File within the meta directory of a node, which contains the hash of the current keyframe and the number of delta revisions since this keyframe
+     */
+    static final String KEYFRAME_FILE_NAME = "revisions_keyframe";
+
+    private static final int MAX_DELTA_CONTENT_SIZE = 32 * 1024 * 1024;
+
+    private int keyframeInterval;
+
+    /**
+     * @param repo Repository containing revisions
+     * @param keyframeInterval Every keyframeInterval-th revision of a node is a keyframe
+     */
+    public DeltaRevisionContentStore(VirtualFileSystemRepository repo, int keyframeInterval) {
+        super(repo);
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.RevisionContentStore#addRevision(VirtualFileSystemNode, File)
+     */
+    @Override
+    public void addRevision(VirtualFileSystemNode node, File revisionDir) throws IOException, RepositoryException {
+        if (!isText(node.getMimeType()) || node.contentFile.length() > MAX_DELTA_CONTENT_SIZE) {
+            super.addRevision(node, revisionDir);
+            return;
+        }
+
+        File keyframeFile = new File(node.metaDir, KEYFRAME_FILE_NAME);
+        String keyframeHash = null;
+        int deltas = 0;
+        if (keyframeFile.isFile()) {
+            String[] keyframe = FileUtils.readFileToString(keyframeFile, "UTF-8").trim().split(" ");
+            if (keyframe.length == 2) {
+                keyframeHash = keyframe[0];
+                try {
+                    deltas = Integer.parseInt(keyframe[1]);
+                } catch (NumberFormatException e) {
+                    throw new RepositoryException("Keyframe file '" + keyframeFile + "' of node '" + node.getPath() + "' contains no valid number of deltas: " + keyframe[1], e);
+                }
+            } else {
+                log.warn("Keyframe file '" + keyframeFile + "' is corrupt, hence a new keyframe will be created.");
+            }
+        }
+
+        if (keyframeHash != null && deltas + 1 < keyframeInterval) {
+            byte[] content = FileUtils.readFileToByteArray(node.contentFile);
+            if (repo.getRevisionBlobStore().addReference(keyframeHash)) { // INFO: The keyframe might have been deleted together with all revisions referencing it
+                File deltaFile = new File(revisionDir, CONTENT_DELTA_FILE_NAME);
+                try {
+                    byte[] delta = BinaryDelta.create(getKeyframe(keyframeHash), content);
+                    if (delta.length < content.length / 2) {
+                        ByteArrayOutputStream baos = new ByteArrayOutputStream(delta.length + 64);
+                        DataOutputStream out = new DataOutputStream(baos);
+                        out.write(DELTA_MAGIC.getBytes("US-ASCII"));
+                        out.writeUTF(keyframeHash);
+                        out.writeInt(content.length);
+                        out.write(delta);
+                        out.close();
+                        AtomicFile.write(deltaFile, baos.toByteArray(), repo.isFsyncEnabled());
+                        AtomicFile.write(keyframeFile, (keyframeHash + " " + (deltas + 1)).getBytes("UTF-8"), repo.isFsyncEnabled());
+                        if (log.isDebugEnabled()) log.debug("Delta revision '" + revisionDir + "' of node '" + node.getPath() + "' (" + delta.length + " instead " + content.length + " bytes)");
+                        return;
+                    }
+                    log.debug("Content of node '" + node.getPath() + "' differs too much from keyframe, hence create new keyframe.");
+                } catch (IOException e) {
+                    log.error(e, e);
+                    // INFO: The delta might have been written already (e.g. if writing the keyframe file failed), but must not remain next to the content reference of the new keyframe, because otherwise the reference of the previous keyframe would be released twice when the revision is deleted
+                    if (deltaFile.exists() && !deltaFile.delete()) {
+                        throw new IOException("Delta file '" + deltaFile + "' could not be deleted after failing to add delta revision of node '" + node.getPath() + "'");
+                    }
+                }
+                repo.getRevisionBlobStore().removeReference(keyframeHash);
+            }
+        }
+
+        // INFO: New keyframe
+        String hash = repo.getRevisionBlobStore().addReference(node.contentFile);
+        try {
+            AtomicFile.write(new File(revisionDir, CONTENT_REF_FILE_NAME), hash.getBytes("UTF-8"), repo.isFsyncEnabled());
+        } catch (IOException e) {
+            repo.getRevisionBlobStore().removeReference(hash);
+            throw e;
+        }
+        AtomicFile.write(keyframeFile, (hash + " 0").getBytes("UTF-8"), repo.isFsyncEnabled());
+        if (log.isDebugEnabled()) log.debug("Keyframe revision '" + revisionDir + "' of node '" + node.getPath() + "': " + hash);
+    }
+
+    /**
+     * Check whether a mime type is text based
+     * @param mimeType Mime type, e.g. 'application/xhtml+xml'
+     */
+    static boolean isText(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        return mimeType.startsWith("text/") || mimeType.endsWith("xml") || mimeType.endsWith("json") || mimeType.endsWith("javascript");
+    }
+}
@@ -0,0 +1,108 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Stores the content of revisions as hard links to the content of the node, such that creating and restoring a revision does not copy any bytes.
+ * This is safe, because the content of a node is never modified in place, but replaced by a new file (see {@link VirtualFileSystemOutputStream} and {@link AtomicFile}),
+ * whereby the hard link keeps the previous content.
+ * If the file system (or the Java runtime) does not support hard links, then the content is copied (see {@link RevisionContentStore}).
+ */
+public class HardLinkRevisionContentStore extends RevisionContentStore {
+
+    private static Logger log = LogManager.getLogger(HardLinkRevisionContentStore.class);
+
+    private static Method toPathMethod = null;
+    private static Method createLinkMethod = null;
+
+    static {
+        // INFO: Hard links are supported since Java 7 (java.nio.file.Files#createLink), whereas this code must still run with Java 6
+        try {
+            Class pathClass = Class.forName("java.nio.file.Path");
+            Class filesClass = Class.forName("java.nio.file.Files");
+            toPathMethod = File.class.getMethod("toPath");
+            createLinkMethod = filesClass.getMethod("createLink", pathClass, pathClass);
+        } catch (Exception e) {
+            log.warn("Hard links are not supported by this Java runtime, hence the content of revisions will be copied: " + e);
+        }
+    }
+
+    private volatile boolean linksSupported = createLinkMethod != null;
+
+    /**
+     * @param repo Repository containing revisions
+     */
+    public HardLinkRevisionContentStore(VirtualFileSystemRepository repo) {
+        super(repo);
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.RevisionContentStore#addRevision(VirtualFileSystemNode, File)
+     */
+    @Override
+    public void addRevision(VirtualFileSystemNode node, File revisionDir) throws IOException, RepositoryException {
+        File revisionContentFile = new File(revisionDir, CONTENT_FILE_NAME);
+        if (!revisionDir.isDirectory()) {
+            revisionDir.mkdirs();
+        }
+        if (!createLink(revisionContentFile, node.contentFile)) {
+            super.addRevision(node, revisionDir);
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.RevisionContentStore#restore(File, File)
+     */
+    @Override
+    public void restore(File revisionDir, File contentFile) throws IOException {
+        File revisionContentFile = new File(revisionDir, CONTENT_FILE_NAME);
+        if (revisionContentFile.isFile()) {
+            File tempFile = AtomicFile.createTempFile(contentFile);
+            tempFile.delete(); // INFO: The link can only be created if the file does not exist yet, whereas the unique name is kept
+            if (createLink(tempFile, revisionContentFile)) {
+                AtomicFile.rename(tempFile, contentFile);
+                return;
+            }
+        }
+        super.restore(revisionDir, contentFile);
+    }
+
+    /**
+     * Create hard link
+     * @param link Link which will be created
+     * @param existing Existing file
+     * @return true if the link has been created and false if hard links are not supported, such that the file has to be copied
+     */
+    private boolean createLink(File link, File existing) throws IOException {
+        if (!linksSupported) {
+            return false;
+        }
+        try {
+            createLinkMethod.invoke(null, toPathMethod.invoke(link), toPathMethod.invoke(existing));
+            return true;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UnsupportedOperationException) {
+                log.warn("Hard links are not supported by the file system, hence the content of revisions will be copied: " + cause.getMessage());
+                linksSupported = false;
+            } else {
+                // INFO: For example links across file systems or too many links to the same file
+                log.warn("Could not create hard link '" + link + "' to '" + existing + "', hence the content will be copied: " + cause);
+            }
+            link.delete();
+            return false;
+        } catch (IllegalAccessException e) {
+            log.error(e, e);
+            linksSupported = false;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Property;
+import org.wyona.yarep.core.search.Indexer;
+
+/**
+ * Bounded queue of index jobs, which is drained by a pool of worker threads, such that writing content or properties does not have to wait for the text extraction and the index update.
+ * Repeated jobs of the same type and path are coalesced, because a job always indexes the most recent state of a node.
+ * Jobs are journaled within a file (every record is forced to the storage device), such that jobs which have not been processed yet (e.g. because of a shutdown or a crash) are processed again after a restart.
+ * Jobs which failed are retried with an increasing delay and if they still fail, then they stay within the journal and are retried after the next restart.
+ * If the queue is full, then enqueueing blocks for a configurable time (backpressure), after which the caller has to index synchronously.
+ */
+public class IndexingQueue {
+
+    private static Logger log = LogManager.getLogger(IndexingQueue.class);
+
+    static final String FULLTEXT = "fulltext";
+    static final String PROPERTIES = "properties";
+
+    private static final long JOURNAL_COMPACTION_SIZE = 1024 * 1024;
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private VirtualFileSystemRepository repo;
+    private int capacity;
+    private long enqueueTimeout;
+    private File journalFile;
+    private FileOutputStream journalOut;
+    private Writer journal;
+    private long journalCompactionSize = JOURNAL_COMPACTION_SIZE;
+
+    private LinkedHashMap<String, Job> pending = new LinkedHashMap<String, Job>();
+    private HashMap<String, Job> inProgress = new HashMap<String, Job>();
+    private LinkedHashMap<String, Job> failed = new LinkedHashMap<String, Job>();
+    private Thread[] workers;
+    private boolean closed = false;
+
+    private long enqueuedCount = 0;
+    private long coalescedCount = 0;
+    private long processedCount = 0;
+    private long failedCount = 0;
+    private long retriedCount = 0;
+    private long rejectedCount = 0;
+    private long backpressureWaitTime = 0;
+
+    /**
+     * @param repo Repository containing the nodes which will be indexed
+     * @param numberOfWorkers Number of worker threads
+     * @param capacity Maximum number of pending jobs
+     * @param enqueueTimeout Maximum time (in milliseconds) to wait for free capacity when the queue is full
+     * @param journalFile File where jobs are journaled
+     */
+    public IndexingQueue(VirtualFileSystemRepository repo, int numberOfWorkers, int capacity, long enqueueTimeout, File journalFile) throws IOException {
+        this.repo = repo;
+        this.capacity = capacity;
+        this.enqueueTimeout = enqueueTimeout;
+        this.journalFile = journalFile;
+
+        replayJournal();
+
+        workers = new Thread[numberOfWorkers];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Worker(), "yarep-indexing-" + repo.getName() + "-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        log.info("Asynchronous indexing queue started (Workers: " + numberOfWorkers + ", Capacity: " + capacity + ", Journal: " + journalFile + ", Pending jobs: " + pending.size() + ")");
+    }
+
+    /**
+     * Enqueue index job
+     * @param type Type of job (FULLTEXT or PROPERTIES)
+     * @param path Path of node
+     * @param propertyName Name of property which has been modified (only relevant for jobs of type PROPERTIES)
+     * @return true if the job has been enqueued (or coalesced with a pending job) and false if the queue has been full (or closed), hence the caller has to index synchronously
+     */
+    public synchronized boolean enqueue(String type, String path, String propertyName) {
+        if (closed) {
+            return false;
+        }
+        String key = type + ":" + path;
+        Job job = pending.get(key);
+        if (job != null) {
+            job.propertyName = propertyName;
+            // INFO: The node has been modified again, hence a job waiting for a retry is processed as soon as possible
+            job.attempts = 0;
+            job.notBefore = 0;
+            coalescedCount++;
+            return true;
+        }
+
+        if (pending.size() >= capacity) {
+            long start = System.currentTimeMillis();
+            long remaining = enqueueTimeout;
+            while (pending.size() >= capacity && remaining > 0 && !closed) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = enqueueTimeout - (System.currentTimeMillis() - start);
+            }
+            backpressureWaitTime = backpressureWaitTime + (System.currentTimeMillis() - start);
+            if (pending.size() >= capacity || closed) {
+                rejectedCount++;
+                log.warn("Indexing queue is full (Capacity: " + capacity + "), hence node '" + path + "' has to be indexed synchronously.");
+                return false;
+            }
+        }
+
+        pending.put(key, new Job(type, path, propertyName));
+        failed.remove(key);
+        enqueuedCount++;
+        writeJournal("+", type, path);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Remove pending jobs of a particular node (e.g. because the node has been deleted)
+     * @param path Path of node
+     */
+    public synchronized void cancel(String path) {
+        cancel(FULLTEXT, path);
+        cancel(PROPERTIES, path);
+        notifyAll();
+    }
+
+    /**
+     * Remove pending or failed job
+     */
+    private void cancel(String type, String path) {
+        String key = type + ":" + path;
+        boolean removed = pending.remove(key) != null;
+        removed = failed.remove(key) != null || removed;
+        if (removed && !inProgress.containsKey(key)) {
+            writeJournal("-", type, path);
+        }
+    }
+
+    /**
+     * Stop worker threads, whereas jobs which have not been processed yet stay within the journal and will be processed after a restart
+     */
+    public void close() {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        for (int i = 0; i < workers.length; i++) {
+            try {
+                workers[i].join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized(this) {
+            try {
+                closeJournal();
+            } catch (IOException e) {
+                log.error(e, e);
+            }
+            log.info("Asynchronous indexing queue stopped (Pending jobs: " + pending.size() + ")");
+        }
+    }
+
+    /**
+     * Get number of pending jobs
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Get maximum number of pending jobs
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get number of jobs which are currently processed
+     */
+    public synchronized int getJobsInProgress() {
+        return inProgress.size();
+    }
+
+    /**
+     * Get number of enqueued jobs (without coalesced jobs)
+     */
+    public synchronized long getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    /**
+     * Get number of jobs which have been coalesced with a pending job
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Get number of processed jobs
+     */
+    public synchronized long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * Get number of jobs which failed
+     */
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Get number of failed jobs which have been enqueued again in order to be retried
+     */
+    public synchronized long getRetriedCount() {
+        return retriedCount;
+    }
+
+    /**
+     * Get number of jobs which failed repeatedly and will only be retried after a restart (see MAX_ATTEMPTS)
+     */
+    public synchronized int getFailedJobs() {
+        return failed.size();
+    }
+
+    /**
+     * Get number of jobs which have been rejected because the queue was full, hence were processed synchronously by the caller
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Get total time (in milliseconds) callers have been waiting because the queue was full
+     */
+    public synchronized long getBackpressureWaitTime() {
+        return backpressureWaitTime;
+    }
+
+    /**
+     * Take next job, whereas jobs for which a job with the same type and path is currently processed and jobs which are waiting for a retry are skipped
+     * @return next job or null if the queue has been closed
+     */
+    private synchronized Job take() throws InterruptedException {
+        while (!closed) {
+            long now = System.currentTimeMillis();
+            long nextRetry = Long.MAX_VALUE;
+            Iterator<Job> it = pending.values().iterator();
+            while (it.hasNext()) {
+                Job job = it.next();
+                if (job.notBefore > now) {
+                    nextRetry = Math.min(nextRetry, job.notBefore);
+                } else if (!inProgress.containsKey(job.getKey())) {
+                    it.remove();
+                    inProgress.put(job.getKey(), job);
+                    notifyAll(); // INFO: Capacity has been freed
+                    return job;
+                }
+            }
+            if (nextRetry == Long.MAX_VALUE) {
+                wait();
+            } else {
+                wait(nextRetry - now);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mark job as done
+     */
+    private synchronized void done(Job job, boolean success) {
+        inProgress.remove(job.getKey());
+        if (success) {
+            processedCount++;
+            if (!pending.containsKey(job.getKey())) {
+                writeJournal("-", job.type, job.path);
+            }
+        } else {
+            failedCount++;
+            // INFO: The journal record of a failed job is kept, such that the job is not lost
+            if (!pending.containsKey(job.getKey())) {
+                job.attempts++;
+                if (job.attempts < MAX_ATTEMPTS && !closed) {
+                    long delay = Math.min(RETRY_DELAY << (job.attempts - 1), MAX_RETRY_DELAY);
+                    log.warn("Indexing node '" + job.path + "' (" + job.type + ") failed " + job.attempts + " time(s), hence it will be retried in " + delay + " milliseconds.");
+                    job.notBefore = System.currentTimeMillis() + delay;
+                    pending.put(job.getKey(), job);
+                    retriedCount++;
+                } else {
+                    log.error("Indexing node '" + job.path + "' (" + job.type + ") failed " + job.attempts + " time(s), hence it will only be retried after a restart.");
+                    failed.put(job.getKey(), job);
+                }
+            }
+        }
+        if (journalFile.length() > journalCompactionSize) {
+            compactJournal();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Process job
+     */
+    private void process(Job job) throws Exception {
+        if (!repo.existsNode(job.path)) {
+            log.warn("Node '" + job.path + "' does not exist anymore, hence will not be indexed.");
+            return;
+        }
+        Node node = repo.getNode(job.path);
+        Indexer indexer = repo.getIndexer();
+        if (FULLTEXT.equals(job.type)) {
+            indexer.index(node);
+        } else {
+            Property[] properties = node.getProperties();
+            if (properties != null && properties.length > 0) {
+                // INFO: The indexer adds all other properties of the node as well
+                indexer.index(node, properties[0]);
+            } else {
+                indexer.removeFromIndex(node, new org.wyona.yarep.impl.DefaultProperty(job.propertyName != null ? job.propertyName : "", org.wyona.yarep.core.PropertyType.STRING, node));
+            }
+        }
+    }
+
+    /**
+     * Append record to journal and force it to the storage device
+     */
+    private void writeJournal(String op, String type, String path) {
+        try {
+            if (journal == null) {
+                journalFile.getParentFile().mkdirs();
+                journalOut = new FileOutputStream(journalFile, true);
+                journal = new OutputStreamWriter(journalOut, "UTF-8");
+            }
+            journal.write(op + "\t" + type + "\t" + path + "\n");
+            journal.flush();
+            journalOut.getFD().sync();
+        } catch (IOException e) {
+            log.error("Could not write to indexing journal '" + journalFile + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read journal and enqueue jobs which have not been processed yet
+     */
+    private void replayJournal() throws IOException {
+        if (journalFile.isFile()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] record = line.split("\t", 3);
+                    if (record.length != 3) {
+                        log.warn("Ignore corrupt record of indexing journal '" + journalFile + "': " + line);
+                        continue;
+                    }
+                    Job job = new Job(record[1], record[2], null);
+                    if ("+".equals(record[0])) {
+                        pending.put(job.getKey(), job);
+                    } else {
+                        pending.remove(job.getKey());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            if (pending.size() > 0) {
+                log.warn(pending.size() + " job(s) of indexing journal '" + journalFile + "' have not been processed yet and will be processed now.");
+            }
+        }
+        compactJournal();
+    }
+
+    /**
+     * Close journal
+     */
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+            journalOut = null;
+        }
+    }
+
+    /**
+     * Replace journal atomically by a journal which only contains the jobs which are pending, in progress or failed.
+     * The journal is also compacted while jobs are processed, whereas the size threshold grows with the size of the compacted journal, such that a large number of pending jobs does not lead to a compaction per job.
+     */
+    private void compactJournal() {
+        LinkedHashMap<String, Job> jobs = new LinkedHashMap<String, Job>(inProgress);
+        jobs.putAll(pending);
+        jobs.putAll(failed);
+        try {
+            closeJournal();
+            File tempFile = AtomicFile.createTempFile(journalFile);
+            try {
+                FileOutputStream out = new FileOutputStream(tempFile);
+                try {
+                    Writer writer = new OutputStreamWriter(out, "UTF-8");
+                    Iterator<Job> it = jobs.values().iterator();
+                    while (it.hasNext()) {
+                        Job job = it.next();
+                        writer.write("+\t" + job.type + "\t" + job.path + "\n");
+                    }
+                    writer.flush();
+                    out.getFD().sync();
+                } finally {
+                    out.close();
+                }
+                AtomicFile.rename(tempFile, journalFile);
+            } finally {
+                if (tempFile.exists()) {
+                    tempFile.delete();
+                }
+            }
+            journalCompactionSize = Math.max(JOURNAL_COMPACTION_SIZE, 2 * journalFile.length());
+        } catch (IOException e) {
+            log.error("Could not compact indexing journal '" + journalFile + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Index job
+     */
+    private static class Job {
+        String type;
+        String path;
+        String propertyName;
+        int attempts = 0;
+        long notBefore = 0;
+
+        Job(String type, String path, String propertyName) {
+            this.type = type;
+            this.path = path;
+            this.propertyName = propertyName;
+        }
+
+        String getKey() {
+            return type + ":" + path;
+        }
+    }
+
+    /**
+     * Worker processing jobs
+     */
+    private class Worker implements Runnable {
+        public void run() {
+            while (true) {
+                Job job;
+                try {
+                    job = take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (job == null) {
+                    return;
+                }
+                boolean success = false;
+                try {
+                    process(job);
+                    success = true;
+                } catch (Exception e) {
+                    log.error("Could not index node '" + job.path + "' (" + job.type + "): " + e.getMessage(), e);
+                } finally {
+                    done(job, success);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded (LRU) cache of keyframes keyed by the hash of their content, from which delta revisions are reconstructed (see {@link RevisionContentStore}).
+ * Because keyframes are immutable blobs, cached keyframes never have to be validated.
+ */
+public class KeyframeCache {
+
+    private long maxBytes;
+    private long bytes = 0;
+    private LinkedHashMap<String, byte[]> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxBytes Maximum number of bytes of all cached keyframes
+     */
+    public KeyframeCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    }
+
+    /**
+     * Get cached keyframe
+     * @param hash Hash of keyframe content
+     * @return content of keyframe or null if the keyframe is not cached
+     */
+    synchronized byte[] get(String hash) {
+        byte[] content = entries.get(hash);
+        if (content != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return content;
+    }
+
+    /**
+     * Add keyframe to cache, whereas the least recently used keyframes are removed if the cache exceeds its maximum size
+     * @param hash Hash of keyframe content
+     * @param content Content of keyframe (keyframes larger than the cache are not cached)
+     */
+    synchronized void put(String hash, byte[] content) {
+        if (content.length > maxBytes) {
+            return;
+        }
+        byte[] previous = entries.put(hash, content);
+        if (previous != null) {
+            bytes = bytes - previous.length;
+        }
+        bytes = bytes + content.length;
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes = bytes - it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Remove keyframe, e.g. because its blob has been deleted
+     * @param hash Hash of keyframe content
+     */
+    synchronized void invalidate(String hash) {
+        byte[] previous = entries.remove(hash);
+        if (previous != null) {
+            bytes = bytes - previous.length;
+        }
+    }
+
+    /**
+     * Get maximum number of bytes of all cached keyframes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Get number of bytes of all cached keyframes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get ratio of hits to lookups
+     */
+    public synchronized double getHitRatio() {
+        if (hits + misses == 0) {
+            return 0;
+        }
+        return (double) hits / (hits + misses);
+    }
+}
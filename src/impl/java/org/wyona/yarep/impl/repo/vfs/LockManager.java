@@ -0,0 +1,358 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Striped read/write locks keyed by node path, such that modifications of independent nodes can be done in parallel,
+ * whereas modifications of the same node (e.g. checkout or saving properties) are serialized.
+ * Several paths might share the same stripe, whereby the number of stripes limits the memory consumption independent of the number of nodes.
+ * Optionally exclusive locks are also acquired as file locks (see {@link FileChannel#lock()}), such that several processes sharing the same repository are serialized as well.
+ * Because a file lock is held on behalf of the whole JVM, the lock files of a lock directory are shared by all lock managers of the JVM using the same lock directory (e.g. a repository which has been opened twice).
+ *
+ * Please note that upgrading a shared lock to an exclusive lock is not supported.
+ */
+public class LockManager {
+
+    private static Logger log = LogManager.getLogger(LockManager.class);
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private ReentrantReadWriteLock[] locks;
+    private File lockDir;
+    private LockFiles lockFiles;
+    private boolean closed = false;
+
+    /**
+     * Process wide registry of lock files, whereas the key is the canonical path of the lock directory
+     */
+    private static Map<String, LockFiles> registry = new HashMap<String, LockFiles>();
+
+    private long acquisitions = 0;
+    private long contendedAcquisitions = 0;
+    private long totalWaitTime = 0;
+    private long maxWaitTime = 0;
+
+    /**
+     * @param stripes Number of stripes
+     * @param lockDir Directory containing one lock file per stripe, whereas null means that no file locks are used
+     */
+    public LockManager(int stripes, File lockDir) {
+        locks = new ReentrantReadWriteLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        this.lockDir = lockDir;
+        if (lockDir != null) {
+            lockDir.mkdirs();
+            lockFiles = acquireLockFiles(lockDir);
+        }
+    }
+
+    /**
+     * Acquire exclusive lock of a node
+     * @param path Path of node
+     */
+    public void lock(String path) throws RepositoryException {
+        int stripe = getStripe(path);
+        ReentrantReadWriteLock lock = locks[stripe];
+        if (lock.getReadHoldCount() > 0 && !lock.isWriteLockedByCurrentThread()) {
+            throw new RepositoryException("Current thread holds a shared lock of node '" + path + "', which can not be upgraded to an exclusive lock.");
+        }
+        if (!lock.writeLock().tryLock()) {
+            long start = System.currentTimeMillis();
+            lock.writeLock().lock();
+            contended(System.currentTimeMillis() - start);
+        } else {
+            acquired();
+        }
+        if (lockDir != null && lock.getWriteHoldCount() == 1) {
+            boolean fileLocked = false;
+            try {
+                lockFiles.lock(stripe);
+                fileLocked = true;
+            } catch (IOException e) {
+                throw new RepositoryException("Could not acquire file lock of node '" + path + "': " + e.getMessage(), e);
+            } catch (RuntimeException e) {
+                throw new RepositoryException("Could not acquire file lock of node '" + path + "': " + e.getMessage(), e);
+            } finally {
+                if (!fileLocked) {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Release exclusive lock of a node
+     * @param path Path of node
+     */
+    public void unlock(String path) {
+        int stripe = getStripe(path);
+        ReentrantReadWriteLock lock = locks[stripe];
+        try {
+            if (lockDir != null && lock.getWriteHoldCount() == 1) {
+                lockFiles.unlock(stripe);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Acquire shared lock of a node
+     * @param path Path of node
+     */
+    public void lockShared(String path) {
+        ReentrantReadWriteLock lock = locks[getStripe(path)];
+        if (!lock.readLock().tryLock()) {
+            long start = System.currentTimeMillis();
+            lock.readLock().lock();
+            contended(System.currentTimeMillis() - start);
+        } else {
+            acquired();
+        }
+    }
+
+    /**
+     * Release shared lock of a node
+     * @param path Path of node
+     */
+    public void unlockShared(String path) {
+        locks[getStripe(path)].readLock().unlock();
+    }
+
+    /**
+     * Close lock files, whereas the lock files are only closed when no other lock manager of the JVM is using the same lock directory anymore
+     */
+    public synchronized void close() {
+        if (lockFiles != null && !closed) {
+            releaseLockFiles(lockFiles);
+        }
+        closed = true;
+    }
+
+    /**
+     * Get number of stripes
+     */
+    public int getStripes() {
+        return locks.length;
+    }
+
+    /**
+     * Check whether exclusive locks are also acquired as file locks
+     */
+    public boolean isFileLockingEnabled() {
+        return lockDir != null;
+    }
+
+    /**
+     * Get number of acquired locks (shared and exclusive)
+     */
+    public synchronized long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Get number of acquired locks for which the thread had to wait, because the lock was held by another thread
+     */
+    public synchronized long getContendedAcquisitions() {
+        return contendedAcquisitions;
+    }
+
+    /**
+     * Get ratio of contended acquisitions to all acquisitions
+     */
+    public synchronized double getContentionRatio() {
+        if (acquisitions == 0) {
+            return 0;
+        }
+        return (double) contendedAcquisitions / acquisitions;
+    }
+
+    /**
+     * Get total time (in milliseconds) threads have been waiting for locks
+     */
+    public synchronized long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * Get maximum time (in milliseconds) a thread has been waiting for a lock
+     */
+    public synchronized long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * Get stripe of a path, whereas the path with and without trailing slash share the same stripe
+     */
+    private int getStripe(String path) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return (path.hashCode() & 0x7fffffff) % locks.length;
+    }
+
+    /**
+     * Count uncontended acquisition
+     */
+    private synchronized void acquired() {
+        acquisitions++;
+    }
+
+    /**
+     * Count contended acquisition
+     * @param waitTime Time (in milliseconds) the thread has been waiting for the lock
+     */
+    private synchronized void contended(long waitTime) {
+        acquisitions++;
+        contendedAcquisitions++;
+        totalWaitTime = totalWaitTime + waitTime;
+        if (waitTime > maxWaitTime) {
+            maxWaitTime = waitTime;
+        }
+    }
+
+    /**
+     * Get lock files of a lock directory from the process wide registry
+     * @param lockDir Lock directory
+     */
+    private static LockFiles acquireLockFiles(File lockDir) {
+        String key;
+        try {
+            key = lockDir.getCanonicalPath();
+        } catch (IOException e) {
+            log.warn("Could not resolve canonical path of lock directory '" + lockDir + "': " + e.getMessage());
+            key = lockDir.getAbsolutePath();
+        }
+        synchronized(registry) {
+            LockFiles lockFiles = registry.get(key);
+            if (lockFiles == null) {
+                lockFiles = new LockFiles(key, lockDir);
+                registry.put(key, lockFiles);
+            }
+            lockFiles.users++;
+            return lockFiles;
+        }
+    }
+
+    /**
+     * Release lock files of a lock directory and close them if they are not used by any other lock manager anymore
+     */
+    private static void releaseLockFiles(LockFiles lockFiles) {
+        synchronized(registry) {
+            lockFiles.users--;
+            if (lockFiles.users <= 0) {
+                registry.remove(lockFiles.key);
+                lockFiles.close();
+            }
+        }
+    }
+
+    /**
+     * Lock files of a lock directory, which are shared by all lock managers of the JVM using the same lock directory.
+     * Every stripe has its own in-process lock, which is held as long as the file lock of the stripe is held, because acquiring an overlapping file lock within the same JVM does not wait, but fails (see {@link OverlappingFileLockException}).
+     */
+    private static class LockFiles {
+
+        private String key;
+        private File dir;
+        private int users = 0;
+        private Map<Integer, StripeFile> stripeFiles = new HashMap<Integer, StripeFile>();
+
+        LockFiles(String key, File dir) {
+            this.key = key;
+            this.dir = dir;
+        }
+
+        /**
+         * Acquire file lock of a stripe, whereby the in-process lock of the stripe is held until {@link #unlock(int)} is called by the same thread
+         */
+        void lock(int stripe) throws IOException {
+            StripeFile stripeFile = getStripeFile(stripe);
+            stripeFile.lock.lock();
+            boolean locked = false;
+            try {
+                if (stripeFile.channel == null || !stripeFile.channel.isOpen()) {
+                    stripeFile.channel = new RandomAccessFile(new File(dir, "stripe-" + stripe + ".lock"), "rw").getChannel();
+                }
+                stripeFile.fileLock = stripeFile.channel.lock();
+                locked = true;
+            } finally {
+                if (!locked) {
+                    stripeFile.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Release file lock and in-process lock of a stripe
+         */
+        void unlock(int stripe) {
+            StripeFile stripeFile = getStripeFile(stripe);
+            try {
+                if (stripeFile.fileLock != null) {
+                    try {
+                        stripeFile.fileLock.release();
+                    } catch (IOException e) {
+                        log.error("Could not release file lock of stripe " + stripe + ": " + e.getMessage(), e);
+                    }
+                    stripeFile.fileLock = null;
+                }
+            } finally {
+                stripeFile.lock.unlock();
+            }
+        }
+
+        /**
+         * Get (and create if necessary) stripe file
+         */
+        private synchronized StripeFile getStripeFile(int stripe) {
+            StripeFile stripeFile = stripeFiles.get(stripe);
+            if (stripeFile == null) {
+                stripeFile = new StripeFile();
+                stripeFiles.put(stripe, stripeFile);
+            }
+            return stripeFile;
+        }
+
+        /**
+         * Close all lock files
+         */
+        synchronized void close() {
+            for (StripeFile stripeFile : stripeFiles.values()) {
+                if (stripeFile.channel != null) {
+                    try {
+                        stripeFile.channel.close();
+                    } catch (IOException e) {
+                        log.warn(e.getMessage());
+                    }
+                    stripeFile.channel = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lock file of a stripe, whereas channel and file lock are only accessed by the thread holding the in-process lock
+     */
+    private static class StripeFile {
+        private ReentrantLock lock = new ReentrantLock();
+        private FileChannel channel;
+        private FileLock fileLock;
+    }
+}
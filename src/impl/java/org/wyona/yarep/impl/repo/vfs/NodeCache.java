@@ -0,0 +1,131 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded (LRU) cache of node objects keyed by path, whereas the nodes are softly referenced, such that they can be garbage collected when memory is getting low.
+ * Please note that cached node objects are shared between threads.
+ */
+public class NodeCache {
+
+    private int maxEntries;
+    private LinkedHashMap<String, SoftReference<VirtualFileSystemNode>> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param maxEntries Maximum number of cached nodes
+     */
+    public NodeCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, SoftReference<VirtualFileSystemNode>>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, SoftReference<VirtualFileSystemNode>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get cached node
+     * @param path Path of node
+     * @return cached node or null if the node is not cached (or has been garbage collected)
+     */
+    synchronized VirtualFileSystemNode get(String path) {
+        SoftReference<VirtualFileSystemNode> ref = entries.get(path);
+        if (ref != null) {
+            VirtualFileSystemNode node = ref.get();
+            if (node != null) {
+                hits++;
+                return node;
+            }
+            entries.remove(path);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Add node to cache
+     * @param path Path of node
+     * @param node Node
+     */
+    synchronized void put(String path, VirtualFileSystemNode node) {
+        entries.put(path, new SoftReference<VirtualFileSystemNode>(node));
+    }
+
+    /**
+     * Remove a node and all its descendants from the cache
+     * @param path Path of node
+     */
+    synchronized void invalidate(String path) {
+        // INFO: Strip trailing slash, such that the path with and without trailing slash is removed
+        String prefix = path;
+        if (prefix.length() > 1 && prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Remove all nodes
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get maximum number of cached nodes
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get number of cached nodes
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Get number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get number of invalidated nodes
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Get ratio of hits to lookups
+     */
+    public synchronized double getHitRatio() {
+        if (hits + misses == 0) {
+            return 0;
+        }
+        return (double) hits / (hits + misses);
+    }
+}
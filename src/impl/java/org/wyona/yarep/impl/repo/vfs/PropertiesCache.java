@@ -0,0 +1,192 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Property;
+import org.wyona.yarep.core.PropertyType;
+import org.wyona.yarep.core.RepositoryException;
+import org.wyona.yarep.impl.DefaultProperty;
+
+/**
+ * Size bounded (LRU) cache of parsed meta files, such that the properties of a node do not have to be parsed again every time a node object is created.
+ * An entry is only valid as long as the last modified date and the size of the meta file did not change, whereas modifications done by this repository invalidate entries explicitly.
+ */
+public class PropertiesCache {
+
+    private static Logger log = LogManager.getLogger(PropertiesCache.class);
+
+    private int maxEntries;
+    private LinkedHashMap<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param maxEntries Maximum number of cached meta files
+     */
+    public PropertiesCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get cached properties of a meta file
+     * @param metaFile Meta file
+     * @param lastModified Current last modified date of meta file
+     * @param length Current size of meta file
+     * @return cached entry or null if no valid entry exists
+     */
+    synchronized Entry get(File metaFile, long lastModified, long length) {
+        String key = metaFile.getAbsolutePath();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.lastModified == lastModified && entry.length == length) {
+                hits++;
+                return entry;
+            }
+            entries.remove(key);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Add parsed properties of a meta file to cache
+     * @param metaFile Meta file
+     * @param lastModified Last modified date of meta file before it has been parsed
+     * @param length Size of meta file before it has been parsed
+     * @param properties Parsed properties
+     * @param vfsMetaFileVersion Version of meta file format
+     * @param records Number of records of a binary meta file (see {@link BinaryMetaFile})
+     */
+    synchronized void put(File metaFile, long lastModified, long length, Property[] properties, String vfsMetaFileVersion, int records) {
+        entries.put(metaFile.getAbsolutePath(), new Entry(lastModified, length, properties, vfsMetaFileVersion, records));
+    }
+
+    /**
+     * Remove cached properties of a meta file
+     */
+    synchronized void invalidate(File metaFile) {
+        if (entries.remove(metaFile.getAbsolutePath()) != null) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Remove cached properties of all meta files within a directory (e.g. the meta directory of a deleted node including its revisions)
+     */
+    synchronized void invalidateAll(File dir) {
+        String prefix = dir.getAbsolutePath() + File.separator;
+        Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Remove all entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get maximum number of cached meta files
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get number of cached meta files
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Get number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of cache misses (including entries which were not valid anymore)
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get number of explicitly invalidated entries
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Get ratio of hits to lookups
+     */
+    public synchronized double getHitRatio() {
+        if (hits + misses == 0) {
+            return 0;
+        }
+        return (double) hits / (hits + misses);
+    }
+
+    /**
+     * Copy property, such that it belongs to another node (without parsing the value again)
+     * @param property Cached property
+     * @param node Node to which the copy will belong to
+     */
+    static Property copy(Property property, Node node) throws RepositoryException {
+        Property copy = new DefaultProperty(property.getName(), property.getType(), node);
+        switch (property.getType()) {
+            case PropertyType.BOOLEAN: copy.setValue(property.getBoolean()); break;
+            case PropertyType.DOUBLE: copy.setValue(property.getDouble()); break;
+            case PropertyType.LONG: copy.setValue(property.getLong()); break;
+            case PropertyType.DATE:
+                Date date = property.getDate();
+                copy.setValue(date != null ? new Date(date.getTime()) : null); break;
+            case PropertyType.STRING: copy.setValue(property.getString()); break;
+            default: log.warn("Unsupported property type: " + property.getType());
+        }
+        return copy;
+    }
+
+    /**
+     * Cached properties of a meta file
+     */
+    static class Entry {
+        long lastModified;
+        long length;
+        Property[] properties;
+        String vfsMetaFileVersion;
+        int records;
+
+        Entry(long lastModified, long length, Property[] properties, String vfsMetaFileVersion, int records) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.properties = properties;
+            this.vfsMetaFileVersion = vfsMetaFileVersion;
+            this.records = records;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Repository wide directory of content blobs, which are keyed by the SHA-1 hash of their content, such that identical content of revisions is stored only once.
+ * Every blob has a reference count (file next to the blob with suffix {@link #REFS_FILE_SUFFIX}), whereby the blob is deleted as soon as no revision references it anymore.
+ */
+public class RevisionBlobStore {
+
+    private static Logger log = LogManager.getLogger(RevisionBlobStore.class);
+
+    public static final String REFS_FILE_SUFFIX = ".refs";
+
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final int SPLIT_LENGTH = 2;
+
+    private File blobDir;
+    private boolean fsync;
+    private LockManager lockManager;
+
+    /**
+     * @param blobDir Directory containing blobs
+     * @param fsync If true, then blobs are forced to the storage device before they are referenced
+     * @param lockDir Directory containing lock files, such that several processes sharing the same blob directory are serialized, whereas null means that no file locks are used
+     */
+    public RevisionBlobStore(File blobDir, boolean fsync, File lockDir) {
+        this.blobDir = blobDir;
+        this.fsync = fsync;
+        // INFO: The blob locks have their own stripes, because they are acquired while holding the lock of a node and sharing the stripes with the nodes could cause deadlocks
+        this.lockManager = new LockManager(LockManager.DEFAULT_STRIPES, lockDir);
+    }
+
+    /**
+     * Get blob directory
+     */
+    public File getBlobDir() {
+        return blobDir;
+    }
+
+    /**
+     * Add reference to the blob containing the content of a file, whereas the blob is created if no blob with the same content exists yet.
+     * The content is copied into a temporary file and hashed within the same pass, such that the blob always matches its hash, even if the file is modified concurrently.
+     * @param file File which content is added
+     * @return hash of content, which references the blob
+     */
+    public String addReference(File file) throws IOException, RepositoryException {
+        File tempFile = AtomicFile.createTempFile(new File(blobDir, "blob"));
+        try {
+            MessageDigest digest = createDigest();
+            InputStream in = new DigestInputStream(new FileInputStream(file), digest);
+            FileOutputStream out = new FileOutputStream(tempFile);
+            try {
+                IOUtils.copy(in, out);
+                if (fsync) {
+                    out.getFD().sync();
+                }
+            } finally {
+                in.close();
+                out.close();
+            }
+            String hash = toHex(digest.digest());
+
+            File blob = getBlobFile(hash);
+            lockManager.lock(hash);
+            try {
+                if (!blob.isFile()) {
+                    blob.getParentFile().mkdirs();
+                    AtomicFile.rename(tempFile, blob);
+                    log.debug("New blob: " + blob);
+                }
+                writeReferences(hash, readReferences(hash) + 1);
+            } finally {
+                lockManager.unlock(hash);
+            }
+            return hash;
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete(); // INFO: A blob with the same content exists already or the copy failed
+            }
+        }
+    }
+
+    /**
+     * Add reference to an existing blob
+     * @param hash Hash of content
+     * @return true if the reference has been added and false if no such blob exists (anymore)
+     */
+    public boolean addReference(String hash) throws IOException, RepositoryException {
+        lockManager.lock(hash);
+        try {
+            if (!getBlobFile(hash).isFile()) {
+                return false;
+            }
+            writeReferences(hash, readReferences(hash) + 1);
+            return true;
+        } finally {
+            lockManager.unlock(hash);
+        }
+    }
+
+    /**
+     * Remove reference to a blob, whereas the blob is deleted if it is not referenced anymore
+     * @param hash Hash of content
+     */
+    public void removeReference(String hash) throws IOException, RepositoryException {
+        lockManager.lock(hash);
+        try {
+            long refs = readReferences(hash) - 1;
+            if (refs <= 0) {
+                log.debug("Blob '" + hash + "' is not referenced anymore, hence delete it.");
+                getBlobFile(hash).delete();
+                getRefsFile(hash).delete();
+            } else {
+                writeReferences(hash, refs);
+            }
+        } finally {
+            lockManager.unlock(hash);
+        }
+    }
+
+    /**
+     * Get number of references to a blob
+     * @param hash Hash of content
+     */
+    public long getReferences(String hash) throws IOException {
+        return readReferences(hash);
+    }
+
+    /**
+     * Get blob file
+     * @param hash Hash of content, e.g. '2aae6c35c94fcfb415dbe95f408b9ce91ee846ed'
+     * @return blob file, e.g. 'revisions-blobs/2a/ae6c35c94fcfb415dbe95f408b9ce91ee846ed'
+     */
+    public File getBlobFile(String hash) {
+        if (hash.length() <= SPLIT_LENGTH || !hash.matches("[0-9a-f]+")) {
+            throw new IllegalArgumentException("Not a valid content hash: " + hash);
+        }
+        return new File(new File(blobDir, hash.substring(0, SPLIT_LENGTH)), hash.substring(SPLIT_LENGTH));
+    }
+
+    /**
+     * Release the resources of this blob store
+     */
+    public void close() {
+        lockManager.close();
+    }
+
+    /**
+     * Get hash of the content of a file
+     */
+    public static String getHash(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Create message digest in order to compute the hash of content
+     */
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Get hexadecimal representation of a hash
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder hash = new StringBuilder(bytes.length * 2);
+        for (int i = 0; i < bytes.length; i++) {
+            hash.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+            hash.append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Get file containing the reference count of a blob
+     */
+    private File getRefsFile(String hash) {
+        File blob = getBlobFile(hash);
+        return new File(blob.getParentFile(), blob.getName() + REFS_FILE_SUFFIX);
+    }
+
+    /**
+     * Read reference count (the caller holds the lock of the blob)
+     * @return reference count or 0 if no reference count exists
+     * @throws IOException if the reference count is corrupt, such that the blob is neither deleted nor referenced by mistake
+     */
+    private long readReferences(String hash) throws IOException {
+        File refsFile = getRefsFile(hash);
+        if (!refsFile.isFile()) {
+            return 0;
+        }
+        String refs = FileUtils.readFileToString(refsFile, "UTF-8").trim();
+        try {
+            return Long.parseLong(refs);
+        } catch (NumberFormatException e) {
+            log.error("Reference count of blob '" + hash + "' is corrupt: " + refs);
+            throw new IOException("Reference count of blob '" + hash + "' is corrupt: " + refsFile);
+        }
+    }
+
+    /**
+     * Write reference count (the caller holds the lock of the blob)
+     */
+    private void writeReferences(String hash, long refs) throws IOException {
+        AtomicFile.write(getRefsFile(hash), String.valueOf(refs).getBytes("UTF-8"), fsync);
+    }
+}
@@ -0,0 +1,291 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.wyona.yarep.core.RepositoryException;
+
+/**
+ * Stores the content of revisions inside the revision directories, whereas this implementation copies the content of the node (default).
+ * Subclasses store the content differently when a revision is created (see {@link #addRevision(VirtualFileSystemNode, File)}), but all implementations
+ * are able to read the content of revisions which have been created by any other implementation, such that the implementation can be changed for existing repositories.
+ */
+public class RevisionContentStore {
+
+    private static Logger log = LogManager.getLogger(RevisionContentStore.class);
+
+    /**
+     * Revision directory contains full copy of the content
+     */
+    public static final String CONTENT_FILE_NAME = VirtualFileSystemRevision.CONTENT_FILE_NAME;
+
+    /**
+     * Revision directory contains hash of the content, which references a blob of the repository wide blob directory (see {@link RevisionBlobStore})
+     */
+    public static final String CONTENT_REF_FILE_NAME = "content.ref";
+
+    /**
+     * Revision directory contains delta against a keyframe, which is a blob of the repository wide blob directory (see {@link DeltaRevisionContentStore})
+     */
+    public static final String CONTENT_DELTA_FILE_NAME = "content.delta";
+
+    static final String DELTA_MAGIC = "YRD1";
+
+    protected VirtualFileSystemRepository repo;
+    protected KeyframeCache keyframeCache;
+
+    /**
+     * @param repo Repository containing revisions
+     */
+    public RevisionContentStore(VirtualFileSystemRepository repo) {
+        this.repo = repo;
+        this.keyframeCache = new KeyframeCache(repo.getRevisionsDeltaCacheMaxBytes());
+    }
+
+    /**
+     * Store current content of a node as content of a new revision
+     * @param node Node for which a revision is being created (the caller holds the lock of the node)
+     * @param revisionDir Directory of the new revision
+     */
+    public void addRevision(VirtualFileSystemNode node, File revisionDir) throws IOException, RepositoryException {
+        FileUtils.copyFile(node.contentFile, new File(revisionDir, CONTENT_FILE_NAME));
+    }
+
+    /**
+     * Check whether a revision directory contains content
+     * @param revisionDir Directory of revision
+     */
+    public boolean hasContent(File revisionDir) {
+        return new File(revisionDir, CONTENT_FILE_NAME).isFile() || new File(revisionDir, CONTENT_REF_FILE_NAME).isFile() || new File(revisionDir, CONTENT_DELTA_FILE_NAME).isFile();
+    }
+
+    /**
+     * Get content of a revision
+     * @param revisionDir Directory of revision
+     */
+    public InputStream getInputStream(File revisionDir) throws IOException {
+        File contentFile = new File(revisionDir, CONTENT_FILE_NAME);
+        if (contentFile.isFile()) {
+            return new FileInputStream(contentFile);
+        }
+        File refFile = new File(revisionDir, CONTENT_REF_FILE_NAME);
+        if (refFile.isFile()) {
+            return new FileInputStream(getBlobFile(refFile));
+        }
+        File deltaFile = new File(revisionDir, CONTENT_DELTA_FILE_NAME);
+        if (deltaFile.isFile()) {
+            return new ByteArrayInputStream(reconstruct(deltaFile));
+        }
+        throw new java.io.FileNotFoundException("Revision directory '" + revisionDir + "' contains no content.");
+    }
+
+    /**
+     * Get file containing the content of a revision, e.g. in order to transfer the content by a file channel
+     * @param revisionDir Directory of revision
+     * @return file (either full copy or blob) or null if the content is not stored as file (e.g. delta revision)
+     */
+    public File getContentFile(File revisionDir) throws IOException {
+        File contentFile = new File(revisionDir, CONTENT_FILE_NAME);
+        if (contentFile.isFile()) {
+            return contentFile;
+        }
+        File refFile = new File(revisionDir, CONTENT_REF_FILE_NAME);
+        if (refFile.isFile()) {
+            return getBlobFile(refFile);
+        }
+        return null;
+    }
+
+    /**
+     * Get size of the content of a revision
+     * @param revisionDir Directory of revision
+     * @return size in bytes or 0 if the revision contains no content
+     */
+    public long getSize(File revisionDir) throws IOException {
+        File contentFile = new File(revisionDir, CONTENT_FILE_NAME);
+        if (contentFile.isFile()) {
+            return contentFile.length();
+        }
+        File refFile = new File(revisionDir, CONTENT_REF_FILE_NAME);
+        if (refFile.isFile()) {
+            return getBlobFile(refFile).length();
+        }
+        File deltaFile = new File(revisionDir, CONTENT_DELTA_FILE_NAME);
+        if (deltaFile.isFile()) {
+            DataInputStream in = new DataInputStream(new FileInputStream(deltaFile));
+            try {
+                readDeltaHeader(in, deltaFile);
+                in.readUTF();
+                return in.readInt();
+            } finally {
+                in.close();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Replace content of a node by the content of a revision
+     * @param revisionDir Directory of revision
+     * @param contentFile Content file of node (the caller holds the lock of the node)
+     */
+    public void restore(File revisionDir, File contentFile) throws IOException {
+        File revisionContentFile = new File(revisionDir, CONTENT_FILE_NAME);
+        File source = revisionContentFile;
+        if (!revisionContentFile.isFile()) {
+            File deltaFile = new File(revisionDir, CONTENT_DELTA_FILE_NAME);
+            if (deltaFile.isFile()) {
+                AtomicFile.write(contentFile, reconstruct(deltaFile), repo.isFsyncEnabled());
+                contentFile.setLastModified(deltaFile.lastModified());
+                return;
+            }
+            File refFile = new File(revisionDir, CONTENT_REF_FILE_NAME);
+            if (!refFile.isFile()) {
+                throw new java.io.FileNotFoundException("Revision directory '" + revisionDir + "' contains no content.");
+            }
+            source = getBlobFile(refFile);
+        }
+        File tempFile = AtomicFile.createTempFile(contentFile);
+        FileUtils.copyFile(source, tempFile);
+        if (source != revisionContentFile) {
+            tempFile.setLastModified(new File(revisionDir, CONTENT_REF_FILE_NAME).lastModified()); // INFO: The blob might be older than the revision, because it is shared
+        }
+        AtomicFile.rename(tempFile, contentFile);
+    }
+
+    /**
+     * Delete content of a revision, whereas references to blobs are released
+     * @param revisionDir Directory of revision
+     */
+    public void deleteContent(File revisionDir) throws IOException, RepositoryException {
+        File refFile = new File(revisionDir, CONTENT_REF_FILE_NAME);
+        if (refFile.isFile()) {
+            releaseKeyframe(readHash(refFile));
+            refFile.delete();
+        }
+        File deltaFile = new File(revisionDir, CONTENT_DELTA_FILE_NAME);
+        if (deltaFile.isFile()) {
+            DataInputStream in = new DataInputStream(new FileInputStream(deltaFile));
+            String hash;
+            try {
+                readDeltaHeader(in, deltaFile);
+                hash = in.readUTF();
+            } finally {
+                in.close();
+            }
+            releaseKeyframe(hash);
+            deltaFile.delete();
+        }
+        new File(revisionDir, CONTENT_FILE_NAME).delete();
+    }
+
+    /**
+     * Release the references to blobs of all revisions of a node, e.g. before the revisions are deleted together with the node
+     * @param revisionsBaseDir Directory containing the revisions of a node
+     */
+    public void deleteAllContents(File revisionsBaseDir) throws IOException, RepositoryException {
+        if (!repo.getRevisionBlobStore().getBlobDir().isDirectory()) {
+            return; // INFO: No revision has ever referenced a blob
+        }
+        File[] dirs = revisionsBaseDir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory();
+            }
+        });
+        if (dirs == null) {
+            return;
+        }
+        for (int i = 0; i < dirs.length; i++) {
+            if (new File(dirs[i], CONTENT_REF_FILE_NAME).isFile() || new File(dirs[i], CONTENT_DELTA_FILE_NAME).isFile()) {
+                deleteContent(dirs[i]);
+            }
+            deleteAllContents(dirs[i]);
+        }
+    }
+
+    /**
+     * Get cache of keyframes from which delta revisions are reconstructed
+     */
+    public KeyframeCache getKeyframeCache() {
+        return keyframeCache;
+    }
+
+    /**
+     * Get content of a keyframe (via cache)
+     * @param hash Hash of keyframe content
+     */
+    protected byte[] getKeyframe(String hash) throws IOException {
+        byte[] keyframe = keyframeCache.get(hash);
+        if (keyframe == null) {
+            keyframe = FileUtils.readFileToByteArray(repo.getRevisionBlobStore().getBlobFile(hash));
+            keyframeCache.put(hash, keyframe);
+        }
+        return keyframe;
+    }
+
+    /**
+     * Reconstruct content of a delta revision
+     * @param deltaFile Delta against a keyframe
+     */
+    private byte[] reconstruct(File deltaFile) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(deltaFile));
+        try {
+            readDeltaHeader(in, deltaFile);
+            String hash = in.readUTF();
+            int length = in.readInt();
+            return BinaryDelta.apply(getKeyframe(hash), IOUtils.toByteArray(in), length);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Check magic of delta file
+     */
+    private void readDeltaHeader(DataInputStream in, File deltaFile) throws IOException {
+        byte[] magic = new byte[DELTA_MAGIC.length()];
+        in.readFully(magic);
+        if (!DELTA_MAGIC.equals(new String(magic, "US-ASCII"))) {
+            throw new IOException("Not a delta file: " + deltaFile);
+        }
+    }
+
+    /**
+     * Release reference to a blob, which might be a keyframe
+     */
+    private void releaseKeyframe(String hash) throws IOException, RepositoryException {
+        repo.getRevisionBlobStore().removeReference(hash);
+        if (!repo.getRevisionBlobStore().getBlobFile(hash).isFile()) {
+            keyframeCache.invalidate(hash);
+        }
+    }
+
+    /**
+     * Read hash of a blob reference
+     */
+    protected String readHash(File refFile) throws IOException {
+        return FileUtils.readFileToString(refFile, "UTF-8").trim();
+    }
+
+    /**
+     * Get blob referenced by a revision
+     */
+    private File getBlobFile(File refFile) throws IOException {
+        String hash = readHash(refFile);
+        File blob = repo.getRevisionBlobStore().getBlobFile(hash);
+        if (!blob.isFile()) {
+            log.error("Blob '" + blob + "' referenced by '" + refFile + "' does not exist!");
+        }
+        return blob;
+    }
+}
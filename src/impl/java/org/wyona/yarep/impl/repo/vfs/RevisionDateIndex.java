@@ -0,0 +1,393 @@
+package org.wyona.yarep.impl.repo.vfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.impl.search.lucene.IndexWriterManager;
+import org.wyona.yarep.impl.search.lucene.SearcherManager;
+
+/**
+ * Repository wide index of revisions by creation date, which contains one document (path, creation date, revision name) per revision,
+ * such that revisions can be found by date without accessing the meta directories of the nodes, also for many nodes at once (see {@link #getRevisionNames(String[], Date)}).
+ * For every node whose revisions have been indexed a marker document is added, such that the index can be built incrementally from existing revisions directories.
+ * The index is updated through a shared index writer (see {@link IndexWriterManager}) and searched through shared searchers (see {@link SearcherManager}).
+ */
+public class RevisionDateIndex {
+
+    private static Logger log = LogManager.getLogger(RevisionDateIndex.class);
+
+    private static final String ID_FIELD_NAME = "id";
+    private static final String PATH_FIELD_NAME = "path";
+    private static final String CREATION_DATE_FIELD_NAME = "cdate";
+    private static final String REVISION_NAME_FIELD_NAME = "rname";
+    private static final String INDEXED_PATH_FIELD_NAME = "indexed-path";
+
+    private static final long WRITE_LOCK_TIMEOUT = 3000;
+
+    private VirtualFileSystemRepository repo;
+    private File indexDir;
+    private IndexWriterManager writerManager;
+    private SearcherManager searcherManager;
+
+    /**
+     * @param repo Repository containing the revisions
+     * @param indexDir Directory containing the index
+     */
+    public RevisionDateIndex(VirtualFileSystemRepository repo, File indexDir) {
+        this.repo = repo;
+        this.indexDir = indexDir;
+        // INFO: Changes are committed explicitly (see commit()), such that they are visible right away
+        this.writerManager = IndexWriterManager.getInstance(indexDir, new WhitespaceAnalyzer(), WRITE_LOCK_TIMEOUT, IndexWriterManager.DEFAULT_COMMIT_INTERVAL, IndexWriterManager.DEFAULT_MAX_PENDING_UPDATES, IndexWriterManager.DEFAULT_OPTIMIZE_INTERVAL);
+        this.searcherManager = SearcherManager.getInstance(indexDir, SearcherManager.DEFAULT_REFRESH_INTERVAL);
+    }
+
+    /**
+     * Get directory containing the index
+     */
+    public File getIndexDir() {
+        return indexDir;
+    }
+
+    /**
+     * Check whether the revisions of a node have been indexed
+     * @param path Absolute repository path of node
+     */
+    public boolean isIndexed(String path) throws Exception {
+        if (!indexExists()) {
+            return false;
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searcher.search(new TermQuery(new Term(INDEXED_PATH_FIELD_NAME, path)), 1).totalHits > 0;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Check for several nodes at once whether their revisions have been indexed
+     * @param paths Absolute repository paths of nodes
+     * @return flags (in the same order as the paths)
+     */
+    public boolean[] isIndexed(String[] paths) throws Exception {
+        boolean[] indexed = new boolean[paths.length];
+        if (paths.length == 0 || !indexExists()) {
+            return indexed;
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TermDocs termDocs = searcher.getIndexReader().termDocs();
+            try {
+                for (int i = 0; i < paths.length; i++) {
+                    termDocs.seek(new Term(INDEXED_PATH_FIELD_NAME, paths[i]));
+                    indexed[i] = termDocs.next(); // INFO: Deleted documents are skipped
+                }
+            } finally {
+                termDocs.close();
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return indexed;
+    }
+
+    /**
+     * Add revision to index
+     * @param path Absolute repository path of node
+     * @param revisionName Name of revision
+     * @param creationDate Creation date of revision
+     */
+    public void addRevision(String path, String revisionName, Date creationDate) throws Exception {
+        updateRevision(path, revisionName, creationDate);
+        writerManager.commit();
+    }
+
+    /**
+     * Delete revision from index
+     * @param path Absolute repository path of node
+     * @param revisionName Name of revision
+     */
+    public void deleteRevision(String path, String revisionName) throws Exception {
+        writerManager.deleteDocuments(new Term(ID_FIELD_NAME, getID(path, revisionName)));
+        writerManager.commit();
+    }
+
+    /**
+     * Delete all revisions of a node from index (e.g. because the node including its revisions has been deleted)
+     * @param path Absolute repository path of node
+     */
+    public void deleteRevisions(String path) throws Exception {
+        writerManager.deleteDocuments(new Term(PATH_FIELD_NAME, path));
+        writerManager.deleteDocuments(new Term(INDEXED_PATH_FIELD_NAME, path));
+        writerManager.commit();
+    }
+
+    /**
+     * Index revisions of a node based on its revisions directory
+     * @param path Absolute repository path of node
+     * @return number of indexed revisions
+     */
+    public int build(String path) throws Exception {
+        LockManager lockManager = repo.getLockManager();
+        lockManager.lock(path);
+        try {
+            writerManager.deleteDocuments(new Term(PATH_FIELD_NAME, path));
+            int count = 0;
+            if (repo.existsNode(path)) {
+                // INFO: The revisions must be read from the revisions directory (see VirtualFileSystemNode#readRevisions()) and not by the date index, because otherwise one creates a loop
+                Revision[] revisions = repo.getNode(path).getRevisions();
+                for (int i = 0; i < revisions.length; i++) {
+                    updateRevision(path, revisions[i].getRevisionName(), revisions[i].getCreationDate());
+                    count++;
+                }
+            } else {
+                log.warn("Node '" + path + "' does not exist, hence no revisions can be indexed.");
+            }
+            Document marker = new Document();
+            marker.add(new Field(ID_FIELD_NAME, path, Field.Store.NO, Field.Index.NOT_ANALYZED));
+            marker.add(new Field(INDEXED_PATH_FIELD_NAME, path, Field.Store.YES, Field.Index.NOT_ANALYZED));
+            writerManager.updateDocument(new Term(ID_FIELD_NAME, path), marker);
+            writerManager.commit();
+            return count;
+        } finally {
+            lockManager.unlock(path);
+        }
+    }
+
+    /**
+     * Index revisions of all nodes which have not been indexed yet, such that an interrupted build can be resumed
+     * @return number of nodes whose revisions have been indexed
+     */
+    public int buildAll() throws Exception {
+        long start = System.currentTimeMillis();
+        int count = buildAll(repo.getRootNode());
+        writerManager.optimize();
+        log.info("Revisions of " + count + " node(s) have been added to revision date index '" + indexDir + "' within " + (System.currentTimeMillis() - start) + "ms");
+        return count;
+    }
+
+    /**
+     * Index revisions of a node and its descendants which have not been indexed yet
+     */
+    private int buildAll(Node node) throws Exception {
+        int count = 0;
+        if (node.isCollection()) {
+            Node[] children = node.getNodes();
+            for (int i = 0; i < children.length; i++) {
+                count = count + buildAll(children[i]);
+            }
+        } else if (!isIndexed(node.getPath())) {
+            build(node.getPath());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get name of the revision of a node which has been created at a particular point in time or just before
+     * @param path Absolute repository path of node
+     * @param date Point in time
+     * @return revision name or null if no such revision exists
+     */
+    public String getRevisionName(String path, Date date) throws Exception {
+        return getRevisionName(path, Long.MIN_VALUE, date.getTime(), true);
+    }
+
+    /**
+     * Get name of the oldest revision of a node which has been created after a particular point in time
+     * @param path Absolute repository path of node
+     * @param date Point in time
+     */
+    public String getRevisionNameYoungerThan(String path, Date date) throws Exception {
+        return getRevisionName(path, date.getTime() + 1, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Get name of the most recent revision of a node which has been created before a particular point in time
+     * @param path Absolute repository path of node
+     * @param date Point in time
+     */
+    public String getRevisionNameOlderThan(String path, Date date) throws Exception {
+        return getRevisionName(path, Long.MIN_VALUE, date.getTime() - 1, true);
+    }
+
+    /**
+     * Get name of most recent revision of a node
+     * @param path Absolute repository path of node
+     */
+    public String getMostRecentRevisionName(String path) throws Exception {
+        return getRevisionName(path, Long.MIN_VALUE, Long.MAX_VALUE, true);
+    }
+
+    /**
+     * Get name of oldest revision of a node
+     * @param path Absolute repository path of node
+     */
+    public String getOldestRevisionName(String path) throws Exception {
+        return getRevisionName(path, Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Get names of the revisions of several nodes which have been created at a particular point in time or just before, whereas only one query is executed per chunk of nodes (the number of nodes per query is limited by {@link BooleanQuery#getMaxClauseCount()})
+     * @param paths Absolute repository paths of nodes
+     * @param date Point in time
+     * @return revision names (in the same order as the paths), whereas the revision name is null for nodes without a revision at this point in time
+     */
+    public String[] getRevisionNames(String[] paths, Date date) throws Exception {
+        String[] revisionNames = new String[paths.length];
+        if (paths.length == 0 || !indexExists()) {
+            return revisionNames;
+        }
+
+        int chunkSize = BooleanQuery.getMaxClauseCount();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            MostRecentPerPathCollector collector = new MostRecentPerPathCollector();
+            for (int start = 0; start < paths.length; start = start + chunkSize) {
+                BooleanQuery pathsQuery = new BooleanQuery();
+                for (int i = start; i < paths.length && i < start + chunkSize; i++) {
+                    pathsQuery.add(new TermQuery(new Term(PATH_FIELD_NAME, paths[i])), BooleanClause.Occur.SHOULD);
+                }
+                BooleanQuery query = new BooleanQuery();
+                query.add(pathsQuery, BooleanClause.Occur.MUST);
+                query.add(NumericRangeQuery.newLongRange(CREATION_DATE_FIELD_NAME, new Long(Long.MIN_VALUE), new Long(date.getTime()), true, true), BooleanClause.Occur.MUST);
+                searcher.search(query, collector);
+            }
+            for (int i = 0; i < paths.length; i++) {
+                Integer doc = collector.docs.get(paths[i]);
+                if (doc != null) {
+                    revisionNames[i] = searcher.doc(doc.intValue()).get(REVISION_NAME_FIELD_NAME);
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return revisionNames;
+    }
+
+    /**
+     * Commit pending updates
+     */
+    public void commit() throws IOException {
+        writerManager.commit();
+    }
+
+    /**
+     * Check whether an index exists already
+     */
+    private boolean indexExists() {
+        try {
+            return IndexReader.indexExists(indexDir);
+        } catch (Exception e) {
+            log.warn(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Add or replace document of a revision (without commit)
+     */
+    private void updateRevision(String path, String revisionName, Date creationDate) throws Exception {
+        if (creationDate == null) {
+            log.warn("Revision '" + revisionName + "' of node '" + path + "' has no creation date, hence use revision name as creation date.");
+            creationDate = new Date(Long.parseLong(revisionName));
+        }
+        Document doc = new Document();
+        doc.add(new Field(ID_FIELD_NAME, getID(path, revisionName), Field.Store.NO, Field.Index.NOT_ANALYZED));
+        doc.add(new Field(PATH_FIELD_NAME, path, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        doc.add(new NumericField(CREATION_DATE_FIELD_NAME, Field.Store.YES, true).setLongValue(creationDate.getTime()));
+        doc.add(new Field(REVISION_NAME_FIELD_NAME, revisionName, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        writerManager.updateDocument(new Term(ID_FIELD_NAME, getID(path, revisionName)), doc);
+    }
+
+    /**
+     * Get name of the oldest or most recent revision of a node within a date range
+     * @param mostRecent If true, then the most recent revision is returned, otherwise the oldest
+     */
+    private String getRevisionName(String path, long from, long to, boolean mostRecent) throws Exception {
+        if (!indexExists()) {
+            return null;
+        }
+        BooleanQuery query = new BooleanQuery();
+        query.add(new TermQuery(new Term(PATH_FIELD_NAME, path)), BooleanClause.Occur.MUST);
+        query.add(NumericRangeQuery.newLongRange(CREATION_DATE_FIELD_NAME, new Long(from), new Long(to), true, true), BooleanClause.Occur.MUST);
+        Sort sort = new Sort(new SortField(CREATION_DATE_FIELD_NAME, FieldCache.NUMERIC_UTILS_LONG_PARSER, mostRecent));
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(query, null, 1, sort);
+            if (topDocs.scoreDocs.length > 0) {
+                return searcher.doc(topDocs.scoreDocs[0].doc).get(REVISION_NAME_FIELD_NAME);
+            }
+            return null;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Get ID of revision document
+     */
+    private String getID(String path, String revisionName) {
+        return path + "#revision=" + revisionName;
+    }
+
+    /**
+     * Collector remembering the most recent matching revision per path
+     */
+    private static class MostRecentPerPathCollector extends Collector {
+        HashMap<String, Integer> docs = new HashMap<String, Integer>();
+        private HashMap<String, Long> dates = new HashMap<String, Long>();
+        private String[] paths;
+        private long[] creationDates;
+        private int docBase;
+
+        public void setScorer(Scorer scorer) {
+        }
+
+        public void setNextReader(IndexReader reader, int docBase) throws IOException {
+            this.docBase = docBase;
+            this.paths = FieldCache.DEFAULT.getStrings(reader, PATH_FIELD_NAME);
+            this.creationDates = FieldCache.DEFAULT.getLongs(reader, CREATION_DATE_FIELD_NAME, FieldCache.NUMERIC_UTILS_LONG_PARSER);
+        }
+
+        public void collect(int doc) {
+            String path = paths[doc];
+            Long date = dates.get(path);
+            if (date == null || creationDates[doc] >= date.longValue()) {
+                dates.put(path, new Long(creationDates[doc]));
+                docs.put(path, new Integer(docBase + doc));
+            }
+        }
+
+        public boolean acceptsDocsOutOfOrder() {
+            return true;
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package org.wyona.yarep.impl.repo.vfs;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.FileUtils;
@@ -29,6 +35,8 @@ import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.index.IndexWriter;
 
+import org.wyona.yarep.core.Batch;
+import org.wyona.yarep.core.ChildEntry;
 import org.wyona.yarep.core.NoSuchRevisionException;
 import org.wyona.yarep.core.Node;
 import org.wyona.yarep.core.NodeStateException;
@@ -40,6 +48,9 @@ import org.wyona.yarep.core.Repository;
 import org.wyona.yarep.core.RepositoryException;
 import org.wyona.yarep.core.Revision;
 import org.wyona.yarep.core.UID;
+import org.wyona.yarep.core.attributes.ChannelReadableV1;
+import org.wyona.yarep.core.attributes.PageableChildrenV1;
+import org.wyona.yarep.core.attributes.RangeReadableV1;
 import org.wyona.yarep.core.attributes.VersionableV1;
 import org.wyona.yarep.impl.AbstractNode;
 import org.wyona.yarep.impl.DefaultProperty;
@@ -48,7 +59,7 @@ import org.wyona.yarep.impl.DefaultProperty;
  * This class represents a repository node.
  * A repository node may be either a collection ("directory") or a resource ("file").
  */
-public class VirtualFileSystemNode extends AbstractNode implements VersionableV1 {
+public class VirtualFileSystemNode extends AbstractNode implements VersionableV1, ChannelReadableV1, RangeReadableV1, PageableChildrenV1 {
     private static Logger log = LogManager.getLogger(VirtualFileSystemNode.class);
 
     protected static final String META_FILE_NAME = "meta";
@@ -69,13 +80,21 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
     protected File backupMetaDir;
     protected File backupMetaFile;
     
-    // NOTE: Flag to indicate if revisions already have been read/initialized from file system
-    protected boolean areRevisionsRead = false;
+    // NOTE: Flag to indicate if revisions already have been read/initialized from file system (reset by checkin and restore, see invalidateRevisions())
+    protected volatile boolean areRevisionsRead = false;
     
     protected RevisionDirectoryFilter revisionDirectoryFilter = new RevisionDirectoryFilter();
 
     String vfsMetaFileVersion = null;
 
+    // INFO: Last modified date and size of the meta file when the properties have been read or saved the last time (see isStale())
+    private long metaFileLastModified = 0;
+    private long metaFileLength = -1;
+    // INFO: Number of records of a binary meta file (see BinaryMetaFile)
+    private int metaFileRecords = 0;
+    // INFO: True if the binary meta file ends with an incomplete record, such that the next modification rewrites the meta file instead of appending a record (see BinaryMetaFile)
+    private boolean metaFileTruncated = false;
+
     static final int REVISION_SPLIT_LENGTH = 2;
 
     /**
@@ -185,55 +204,138 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
      * Read properties from (persistent) meta file
      */
     protected void readProperties() throws RepositoryException {
-        // TODO: Make sure properties are only read if saveProperties finished, because otherwise one might get just part of the data and/or strange exceptions...
+        // INFO: Meta files are replaced atomically (see saveProperties(String)), whereas a truncated record at the end of a binary meta file is ignored (see BinaryMetaFile)
         try {
-            log.debug("Reading meta file: " + this.metaFile);
-            this.properties = new HashMap();
-            this.vfsMetaFileVersion = null;
-            BufferedReader reader = new BufferedReader(new FileReader(this.metaFile));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                String name;
-                String typeName;
-                String value;
-
-                if (vfsMetaFileVersion != null && vfsMetaFileVersion.equals("1.0")) {
-                    try {
-                        name = unescapeSeparator(line.substring(0, line.indexOf("<")).trim());
-                        typeName = line.substring(line.indexOf("<")+1, line.indexOf(">")).trim();
-
-                        value = unescapeLinebreak(unescapeSeparator(line.substring(getValueStartIndex(line)).trim()));
-                    } catch (StringIndexOutOfBoundsException e) {
-                        throw new RepositoryException("Error while parsing meta file: " + this.metaFile + " at line " + line);
-                    }
-                } else { // INFO: Backwards compatibility (also see method checkForSeparator(String))
-                    try {
-                        name = unescapeSeparator(line.substring(0, line.indexOf("<")).trim());
-                        typeName = line.substring(line.indexOf("<")+1, line.indexOf(">")).trim();
-                        value = unescapeLinebreak(line.substring(line.indexOf(PROPERTY_SEPARATOR) + 1).trim());
-                        // INFO: Because revisions of a node also contain separators, the checkForSeparator() method generates a huge amount of log entries!
-                        //value = unescapeLinebreak(checkForSeparator(line.substring(line.indexOf(PROPERTY_SEPARATOR) + 1).trim()));
-                    } catch (StringIndexOutOfBoundsException e) {
-                        throw new RepositoryException("Error while parsing meta file: " + this.metaFile + " at line " + line);
+            PropertiesCache cache = getRepository().getPropertiesCache();
+            long lastModified = 0;
+            long length = 0;
+            if (cache != null) {
+                lastModified = this.metaFile.lastModified();
+                length = this.metaFile.length();
+                PropertiesCache.Entry entry = cache.get(this.metaFile, lastModified, length);
+                if (entry != null) {
+                    HashMap cachedProperties = new HashMap();
+                    for (int i = 0; i < entry.properties.length; i++) {
+                        cachedProperties.put(entry.properties[i].getName(), PropertiesCache.copy(entry.properties[i], this));
                     }
+                    this.properties = cachedProperties;
+                    this.vfsMetaFileVersion = entry.vfsMetaFileVersion;
+                    this.metaFileRecords = entry.records;
+                    this.metaFileTruncated = false;
+                    this.metaFileLastModified = lastModified;
+                    this.metaFileLength = length;
+                    return;
                 }
+            }
 
-                if (name.equals("yarep_vfs-meta-file-version")) {
-                    vfsMetaFileVersion = value;
+            log.debug("Reading meta file: " + this.metaFile);
+            if (cache == null) {
+                lastModified = this.metaFile.lastModified();
+                length = this.metaFile.length();
+            }
+            this.metaFileLastModified = lastModified;
+            this.metaFileLength = length;
+            HashMap properties = new HashMap(); // INFO: Fill a new map and replace the current map afterwards, because the node might be shared between threads (see NodeCache)
+            this.vfsMetaFileVersion = null;
+            this.metaFileRecords = 0;
+            this.metaFileTruncated = false;
+            BufferedInputStream in = new BufferedInputStream(new FileInputStream(this.metaFile));
+            try {
+                if (BinaryMetaFile.isBinary(in)) {
+                    readBinaryProperties(in, properties);
+                } else {
+                    readTextProperties(new BufferedReader(new InputStreamReader(in)), properties);
                 }
-
-                Property property = new DefaultProperty(name, PropertyType.getType(typeName), this);
-                property.setValueFromString(value);
-                this.properties.put(name, property);
+            } finally {
+                in.close();
+            }
+            this.properties = properties;
+
+            if (cache != null && lastModified > 0 && !this.metaFileTruncated) {
+                // INFO: Cache copies, such that modifications of the property objects of this node do not modify the cache
+                Property[] cachedProperties = new Property[this.properties.size()];
+                Iterator iterator = this.properties.values().iterator();
+                for (int i = 0; i < cachedProperties.length; i++) {
+                    cachedProperties[i] = PropertiesCache.copy((Property) iterator.next(), null);
+                }
+                cache.put(this.metaFile, lastModified, length, cachedProperties, this.vfsMetaFileVersion, this.metaFileRecords);
             }
-            reader.close();
         } catch (IOException e) {
             throw new RepositoryException("Error while reading meta file: " + metaFile + ": " 
                     + e.getMessage());
         }
     }
 
+    /**
+     * Read properties from meta file in text format (version 1.0 or older)
+     * @param reader Reader of meta file
+     * @param properties Map to which the properties are added
+     */
+    private void readTextProperties(BufferedReader reader, HashMap properties) throws IOException, RepositoryException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            String name;
+            String typeName;
+            String value;
+
+            if (vfsMetaFileVersion != null && vfsMetaFileVersion.equals("1.0")) {
+                try {
+                    name = unescapeSeparator(line.substring(0, line.indexOf("<")).trim());
+                    typeName = line.substring(line.indexOf("<")+1, line.indexOf(">")).trim();
+
+                    value = unescapeLinebreak(unescapeSeparator(line.substring(getValueStartIndex(line)).trim()));
+                } catch (StringIndexOutOfBoundsException e) {
+                    throw new RepositoryException("Error while parsing meta file: " + this.metaFile + " at line " + line);
+                }
+            } else { // INFO: Backwards compatibility (also see method checkForSeparator(String))
+                try {
+                    name = unescapeSeparator(line.substring(0, line.indexOf("<")).trim());
+                    typeName = line.substring(line.indexOf("<")+1, line.indexOf(">")).trim();
+                    value = unescapeLinebreak(line.substring(line.indexOf(PROPERTY_SEPARATOR) + 1).trim());
+                    // INFO: Because revisions of a node also contain separators, the checkForSeparator() method generates a huge amount of log entries!
+                    //value = unescapeLinebreak(checkForSeparator(line.substring(line.indexOf(PROPERTY_SEPARATOR) + 1).trim()));
+                } catch (StringIndexOutOfBoundsException e) {
+                    throw new RepositoryException("Error while parsing meta file: " + this.metaFile + " at line " + line);
+                }
+            }
+
+            if (name.equals("yarep_vfs-meta-file-version")) {
+                vfsMetaFileVersion = value;
+            }
+
+            Property property = new DefaultProperty(name, PropertyType.getType(typeName), this);
+            property.setValueFromString(value);
+            properties.put(name, property);
+        }
+    }
+
+    /**
+     * Read properties from meta file in binary format (version 2.0, see {@link BinaryMetaFile})
+     * @param in Stream of meta file
+     * @param properties Map to which the properties are added
+     */
+    private void readBinaryProperties(InputStream in, HashMap properties) throws IOException, RepositoryException {
+        BinaryMetaFile.Content content = BinaryMetaFile.read(in);
+        Iterator iterator = content.properties.entrySet().iterator();
+        while (iterator.hasNext()) {
+            java.util.Map.Entry record = (java.util.Map.Entry) iterator.next();
+            String name = (String) record.getKey();
+            BinaryMetaFile.Entry entry = (BinaryMetaFile.Entry) record.getValue();
+            Property property = new DefaultProperty(name, entry.type, this);
+            property.setValueFromString(entry.value);
+            properties.put(name, property);
+        }
+        vfsMetaFileVersion = BinaryMetaFile.VERSION;
+        metaFileRecords = content.records;
+        metaFileTruncated = content.truncated;
+
+        // INFO: The version is not saved as property within binary meta files, but is provided as property for backwards compatibility
+        Property versionProperty = new DefaultProperty("yarep_vfs-meta-file-version", PropertyType.STRING, this);
+        versionProperty.setValue(BinaryMetaFile.VERSION);
+        properties.put(versionProperty.getName(), versionProperty);
+    }
+
     /**
      * @deprecated Use {@link saveProperties(String)} instead
      * Save all properties within a meta file
@@ -276,26 +378,51 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
     }
 */
 
+    /**
+     * Check whether the meta file has been modified since the properties have been read or saved by this node object
+     */
+    boolean isStale() {
+        return this.metaFile.lastModified() != this.metaFileLastModified || this.metaFile.length() != this.metaFileLength;
+    }
+
+    /**
+     * Remove properties of this node from the cache of the repository
+     */
+    protected void invalidateCachedProperties() {
+        if (getRepository().getPropertiesCache() != null) {
+            getRepository().getPropertiesCache().invalidate(this.metaFile);
+        }
+    }
+
     /**
      * Save all properties within a meta file
      * TODO/TBD: Changing a property should update the last modified date. This implementation does not change the last modified date if a property changes.
-     * @param pname Property name which has been set or removed (see setProperty(Property) and removeProperty(String))
+     * @param pname Property name which has been set or removed (see setProperty(Property) and removeProperty(String)) or null if several properties have been modified (see applyBatch(List))
      * @throws RepositoryException
      */
     private void saveProperties(String pname) throws RepositoryException {
-        synchronized("save-properties") {
+        // INFO: Readers do not need a lock, because the meta file is replaced atomically (see AtomicFile), whereas writers hold the lock of this node (see setProperty(Property) and removeProperty(String))
         try {
             log.debug("Writing meta file: " + this.metaFile);
             if (!this.metaFile.getParentFile().isDirectory()) {
                 log.warn("Trying to save modified property '" + pname + "', but directory '" + this.metaFile.getParentFile().getAbsolutePath() + "' does not exist yet, hence we will create it ...");
                 this.metaFile.getParentFile().mkdirs();
             }
-            PrintWriter writer = new PrintWriter(new FileOutputStream(this.metaFile));
+            if (getRepository().getMetaFileVersion().equals(BinaryMetaFile.VERSION)) {
+                saveBinaryProperties(pname);
+                this.metaFileLastModified = this.metaFile.lastModified();
+                this.metaFileLength = this.metaFile.length();
+                invalidateCachedProperties();
+                return;
+            }
 
-            writer.println("yarep_vfs-meta-file-version" + "<" + "string" + ">" + PROPERTY_SEPARATOR + "1.0");
-            if (vfsMetaFileVersion != null && !vfsMetaFileVersion.equals("1.0")) {
+            if (vfsMetaFileVersion != null && !vfsMetaFileVersion.equals("1.0") && !vfsMetaFileVersion.equals(BinaryMetaFile.VERSION)) {
                 throw new RepositoryException("No such vfs meta file version supported: " + vfsMetaFileVersion);
             }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintWriter writer = new PrintWriter(buffer);
+
+            writer.println("yarep_vfs-meta-file-version" + "<" + "string" + ">" + PROPERTY_SEPARATOR + "1.0");
 
             Property modifiedProperty = null;
             Iterator iterator = this.properties.values().iterator();
@@ -314,6 +441,11 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
             }
             writer.flush();
             writer.close();
+            AtomicFile.write(this.metaFile, buffer.toByteArray(), getRepository().isFsyncEnabled());
+            this.vfsMetaFileVersion = "1.0";
+            this.metaFileLastModified = this.metaFile.lastModified();
+            this.metaFileLength = this.metaFile.length();
+            invalidateCachedProperties();
 
 /* NOTE: Already done by setProperty(Property) and removeProperty(String)
             if (modifiedProperty != null) {
@@ -329,9 +461,57 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
             log.error(e, e);
             throw new RepositoryException("Error while writing meta file: " + metaFile + ": " + e.getMessage(), e);
         }
-        }
     }
     
+    /**
+     * Save modified property within binary meta file (see {@link BinaryMetaFile}), whereas a record is appended if the meta file is already a binary meta file
+     * and otherwise (or if the log of records has grown too large) all properties are written as a new meta file
+     * @param pname Property name which has been set or removed or null, such that all properties are written as a new meta file
+     */
+    private void saveBinaryProperties(String pname) throws Exception {
+        boolean append = pname != null && BinaryMetaFile.VERSION.equals(vfsMetaFileVersion) && !metaFileTruncated && this.metaFile.isFile() && !BinaryMetaFile.needsCompaction(metaFileRecords + 1, this.properties.size());
+        if (append) {
+            Property property = (Property) this.properties.get(pname);
+            try {
+                if (property != null) {
+                    BinaryMetaFile.appendSet(this.metaFile, pname, property.getType(), property.getValueAsString(), getRepository().isFsyncEnabled());
+                } else {
+                    BinaryMetaFile.appendRemove(this.metaFile, pname, getRepository().isFsyncEnabled());
+                }
+            } catch (IOException e) {
+                metaFileTruncated = true; // INFO: The record might have been written partially
+                throw e;
+            }
+            metaFileRecords++;
+            return;
+        }
+
+        LinkedHashMap<String, BinaryMetaFile.Entry> entries = new LinkedHashMap<String, BinaryMetaFile.Entry>();
+        Iterator iterator = this.properties.values().iterator();
+        while (iterator.hasNext()) {
+            Property property = (Property)iterator.next();
+            if (!property.getName().equals("yarep_vfs-meta-file-version")) {
+                if (property.getValueAsString() == null) {
+                    log.warn("Value as string of property '" + property.getName() + "' is null!");
+                }
+                entries.put(property.getName(), new BinaryMetaFile.Entry(property.getType(), property.getValueAsString()));
+            }
+        }
+        AtomicFile.write(this.metaFile, BinaryMetaFile.toByteArray(entries), getRepository().isFsyncEnabled());
+        metaFileRecords = entries.size();
+        metaFileTruncated = false;
+
+        if (!BinaryMetaFile.VERSION.equals(vfsMetaFileVersion)) {
+            log.debug("Meta file '" + this.metaFile + "' has been migrated to version " + BinaryMetaFile.VERSION);
+            vfsMetaFileVersion = BinaryMetaFile.VERSION;
+            Property versionProperty = new DefaultProperty("yarep_vfs-meta-file-version", PropertyType.STRING, this);
+            versionProperty.setValue(BinaryMetaFile.VERSION);
+            HashMap modifiedProperties = new HashMap(this.properties);
+            modifiedProperties.put(versionProperty.getName(), versionProperty);
+            this.properties = modifiedProperties;
+        }
+    }
+
     /**
      * @see org.wyona.yarep.core.Node#getNodes()
      */
@@ -353,6 +533,52 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
         return childNodes;
     }
     
+    /**
+     * INFO: The content directory is listed completely (File#list() does not allow to count the entries without listing their names), hence the cost is linear in the number of children
+     * @see org.wyona.yarep.core.attributes.PageableChildrenV1#getNumberOfChildren()
+     */
+    public int getNumberOfChildren() throws Exception {
+        return getChildNames().length;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableChildrenV1#getChildEntries(int, int, int)
+     */
+    public ChildEntry[] getChildEntries(int order, int offset, int limit) throws Exception {
+        String[] names = org.wyona.yarep.util.YarepUtil.getPage(getChildNames(), order, offset, limit);
+        ChildEntry[] entries = new ChildEntry[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String childPath = org.wyona.yarep.util.YarepUtil.getChildPath(this.path, names[i]);
+            // INFO: The type is determined by the content file/directory, hence no meta file has to be read
+            int type = getRepository().getMap().isCollection(new Path(childPath)) ? NodeType.COLLECTION : NodeType.RESOURCE;
+            entries[i] = new ChildEntry(names[i], childPath, type);
+        }
+        return entries;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableChildrenV1#getNodes(int, int, int)
+     */
+    public Iterator<Node> getNodes(int order, int offset, int limit) throws Exception {
+        String[] names = org.wyona.yarep.util.YarepUtil.getPage(getChildNames(), order, offset, limit);
+        String[] childPaths = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            childPaths[i] = org.wyona.yarep.util.YarepUtil.getChildPath(this.path, names[i]);
+        }
+        return new org.wyona.yarep.util.ChildNodeIterator(this.repository, childPaths);
+    }
+
+    /**
+     * Get names of children by listing the content directory
+     * @throws RepositoryException if the paths of the children are split (see 'splitpath' configuration), because then the content directory contains segments of split paths instead of the names of the children
+     */
+    private String[] getChildNames() throws RepositoryException {
+        if (getRepository().isSplitPath(org.wyona.yarep.util.YarepUtil.getChildPath(this.path, ""))) {
+            throw new RepositoryException("Children of node '" + this.path + "' can not be listed page by page, because split paths are configured (see 'splitpath' of repository '" + getRepository().getName() + "')");
+        }
+        return ((org.wyona.yarep.impl.VFileSystemMapImpl) getRepository().getMap()).getChildNames(new Path(this.path));
+    }
+
     /**
      * @see org.wyona.yarep.core.Node#addNode(java.lang.String, int)
      */
@@ -373,6 +599,7 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
         String splittedPath = getRepository().splitPath(newPath);
         log.debug("Splitted path (if applicable): " + splittedPath);
         UID uid = getRepository().getMap().create(new Path(splittedPath), type);
+        getRepository().invalidateCachedNodes(newPath);
 
         // INFO: The VFileSystemMapImpl already adds the files and directories (see obsolete code below)
 
@@ -407,14 +634,25 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
      * @see org.wyona.yarep.core.Node#removeProperty(java.lang.String)
      */
     public void removeProperty(String name) throws RepositoryException {
-        this.properties.remove(name);
-        //saveProperties();
-        saveProperties(name);
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lock(getPath());
+        try {
+            synchronized(this) {
+                // INFO: Copy on write, because the node might be shared between threads (see NodeCache)
+                HashMap modifiedProperties = new HashMap(this.properties);
+                modifiedProperties.remove(name);
+                this.properties = modifiedProperties;
+                //saveProperties();
+                saveProperties(name);
+            }
+        } finally {
+            lockManager.unlock(getPath());
+        }
 
         try {
             if (getRepository().isAutoPropertyIndexingEnabled()) {
                 log.debug("Remove property '" + name + "' of node: " + this.getPath() + " from index.");
-                getRepository().getIndexer().removeFromIndex(this, getProperty(name));
+                getRepository().autoRemoveProperty(this, name, getProperty(name));
             }
         } catch(Exception e) {
             log.error(e, e);
@@ -426,20 +664,90 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
      */
     public void setProperty(Property property) throws RepositoryException {
         //log.debug("Set property: " + property.getName());
-        this.properties.put(property.getName(), property);
-        //saveProperties();
-        saveProperties(property.getName());
+        // INFO: The lock of the node is acquired before the monitor of this object, because checkout(String) holds the lock while setting properties
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lock(getPath());
+        try {
+            synchronized(this) {
+                // INFO: Copy on write, because the node might be shared between threads (see NodeCache)
+                HashMap modifiedProperties = new HashMap(this.properties);
+                modifiedProperties.put(property.getName(), property);
+                this.properties = modifiedProperties;
+                //saveProperties();
+                saveProperties(property.getName());
+            }
+        } finally {
+            lockManager.unlock(getPath());
+        }
 
         try {
             if (getRepository().isAutoPropertyIndexingEnabled()) {
                 log.debug("Index property '" + property.getName() + "' of node: " + this.getPath());
-                getRepository().getIndexer().index(this, property);
+                getRepository().autoIndexProperty(this, property);
             }
         } catch(Exception e) {
             log.error(e, e);
         }
     }
 
+    /**
+     * Apply the property and content operations of a batch (see {@link VirtualFileSystemRepository#apply(Batch)}), whereas the meta file is written only once.
+     * Indexing is left to the caller, such that the index is updated once per node and committed once per batch.
+     * @param operations Operations of this node in the order in which they have been added to the batch
+     * @return true if the content has been replaced
+     */
+    boolean applyBatch(List<Batch.Operation> operations) throws RepositoryException {
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lock(getPath());
+        try {
+            synchronized(this) {
+                // INFO: Copy on write, because the node might be shared between threads (see NodeCache)
+                HashMap modifiedProperties = new HashMap(this.properties);
+                byte[] content = null;
+                Iterator<Batch.Operation> it = operations.iterator();
+                while (it.hasNext()) {
+                    Batch.Operation op = it.next();
+                    if (op.getType() == Batch.SET_PROPERTY) {
+                        Property property = new DefaultProperty(op.getPropertyName(), op.getPropertyType(), this);
+                        switch (op.getPropertyType()) {
+                            case PropertyType.BOOLEAN: property.setValue(((Boolean) op.getValue()).booleanValue()); break;
+                            case PropertyType.LONG: property.setValue(((Long) op.getValue()).longValue()); break;
+                            case PropertyType.DOUBLE: property.setValue(((Double) op.getValue()).doubleValue()); break;
+                            case PropertyType.DATE: property.setValue((Date) op.getValue()); break;
+                            default: property.setValue((String) op.getValue());
+                        }
+                        modifiedProperties.put(property.getName(), property);
+                    } else if (op.getType() == Batch.REMOVE_PROPERTY) {
+                        modifiedProperties.remove(op.getPropertyName());
+                    } else if (op.getType() == Batch.SET_CONTENT) {
+                        content = op.getContent();
+                    }
+                }
+
+                if (content != null) {
+                    if (isCollection()) {
+                        throw new RepositoryException("Is a directory: " + this.contentFile);
+                    }
+                    try {
+                        AtomicFile.write(this.contentFile, content, getRepository().isFsyncEnabled());
+                    } catch (IOException e) {
+                        throw new RepositoryException("Could not write content of node '" + getPath() + "': " + e.getMessage(), e);
+                    }
+                    getRepository().invalidateCachedContent(this.contentFile);
+                    Property lastModified = new DefaultProperty(PROPERTY_LAST_MODIFIED, PropertyType.LONG, this);
+                    lastModified.setValue(this.contentFile.lastModified());
+                    modifiedProperties.put(lastModified.getName(), lastModified);
+                }
+
+                this.properties = modifiedProperties;
+                saveProperties(null);
+                return content != null;
+            }
+        } finally {
+            lockManager.unlock(getPath());
+        }
+    }
+
     /**
      * @see org.wyona.yarep.core.Node#getInputStream()
      */
@@ -491,13 +799,98 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
                 }
 */
 
+                if (getRepository().getContentCache() != null) {
+                    InputStream in = getRepository().getContentCache().getInputStream(contentFile);
+                    if (in != null) {
+                        return in;
+                    }
+                }
                 return new FileInputStream(contentFile);
             }
         } catch (FileNotFoundException e) {
             throw new RepositoryException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RepositoryException(e.getMessage(), e);
         }
         //return getProperty(PROPERTY_CONTENT).getInputStream();
     }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.ChannelReadableV1#getReadableChannel()
+     */
+    public ReadableByteChannel getReadableChannel() throws Exception {
+        File file = getReadableContentFile();
+        if (file != null) {
+            return new FileInputStream(file).getChannel();
+        }
+        return Channels.newChannel(getInputStream()); // INFO: Directory listing or not-splitted-yet file
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.ChannelReadableV1#getContentLength()
+     */
+    public long getContentLength() throws Exception {
+        File file = getReadableContentFile();
+        if (file != null) {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                return in.getChannel().size(); // INFO: Size of the opened file, which in contrast to File#length() fails if the file does not exist (anymore) instead of returning 0
+            } finally {
+                in.close();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.RangeReadableV1#read(long, byte[], int, int)
+     */
+    public int read(long position, byte[] buffer, int offset, int length) throws Exception {
+        File file = getReadableContentFile();
+        if (file != null) {
+            return org.wyona.yarep.util.YarepUtil.read(file, position, buffer, offset, length);
+        }
+        InputStream in = getInputStream();
+        try {
+            return org.wyona.yarep.util.YarepUtil.read(in, position, buffer, offset, length);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.RangeReadableV1#getInputStream(long, long)
+     */
+    public InputStream getInputStream(long offset, long length) throws Exception {
+        File file = getReadableContentFile();
+        if (file != null) {
+            return org.wyona.yarep.util.YarepUtil.getInputStream(file, offset, length);
+        }
+        return org.wyona.yarep.util.YarepUtil.getInputStream(getInputStream(), offset, length);
+    }
+
+    /**
+     * Get file containing the content, which can be read directly (e.g. by a file channel)
+     * @return file or null if the content is not stored as file (e.g. directory listing of a collection)
+     */
+    protected File getReadableContentFile() throws Exception {
+        if (!isCollection() && contentFile.isFile()) {
+            return contentFile;
+        }
+        return null;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.ChannelReadableV1#transferTo(WritableByteChannel)
+     */
+    public long transferTo(WritableByteChannel target) throws Exception {
+        ReadableByteChannel channel = getReadableChannel();
+        try {
+            return org.wyona.yarep.util.YarepUtil.transfer(channel, target);
+        } finally {
+            channel.close();
+        }
+    }
     
     /**
      * @see org.wyona.yarep.core.Node#getOutputStream()
@@ -558,29 +951,41 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
      * @return revision which has been created
      */
     private Revision doCheckin(String comment, long time) throws NodeStateException, RepositoryException {
-        if (!isCheckedOut()) {
-            throw new NodeStateException("Node " + path + " is not checked out.");
-        }
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lock(getPath());
+        try {
+            if (!isCheckedOut()) {
+                throw new NodeStateException("Node " + path + " is not checked out.");
+            }
 
-        Revision revision = createRevision(comment, time);
-        
-        setProperty(PROPERTY_IS_CHECKED_OUT, false);
-        setProperty(PROPERTY_CHECKIN_DATE, new Date(time));
-        setProperty(PROPERTY_LAST_MODIFIED, time); // INFO: Overwrite createMetaFile()
-        
-        return revision;
+            Revision revision = createRevision(comment, time);
+
+            setProperty(PROPERTY_IS_CHECKED_OUT, false);
+            setProperty(PROPERTY_CHECKIN_DATE, new Date(time));
+            setProperty(PROPERTY_LAST_MODIFIED, time); // INFO: Overwrite createMetaFile()
+
+            return revision;
+        } finally {
+            lockManager.unlock(getPath());
+        }
     }
     
     /**
      * @see org.wyona.yarep.core.Node#cancelCheckout()
      */
     public void cancelCheckout() throws NodeStateException, RepositoryException {
-        if (!isCheckedOut()) {
-            throw new NodeStateException("Node " + path + " is not checked out.");
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lock(getPath());
+        try {
+            if (!isCheckedOut()) {
+                throw new NodeStateException("Node " + path + " is not checked out.");
+            }
+
+            setProperty(PROPERTY_IS_CHECKED_OUT, false);
+            setProperty(PROPERTY_CHECKIN_DATE, new Date());
+        } finally {
+            lockManager.unlock(getPath());
         }
-        
-        setProperty(PROPERTY_IS_CHECKED_OUT, false);
-        setProperty(PROPERTY_CHECKIN_DATE, new Date());
     }
 
     /**
@@ -597,7 +1002,9 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
      */
     public void checkout(String userID) throws NodeStateException, RepositoryException {
         log.info("Try to checkout node '" + getPath() + "' by user '" + userID + "'.");
-        synchronized("virtual-file-system-node") {
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lock(getPath());
+        try {
             if (isCheckedOut()) {
                 throw new NodeStateException("Node " + path + " is already checked out by: " + getCheckoutUserID());
             }
@@ -615,7 +1022,7 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
                 Thread.currentThread().interrupt();
             }
 */
-        
+    
             setProperty(PROPERTY_IS_CHECKED_OUT, true);
             setProperty(PROPERTY_CHECKOUT_USER_ID, userID);
             setProperty(PROPERTY_CHECKOUT_DATE, new Date()); // TODO: One should be able to overwrite the checkout date similar to as the checkout method is able to do so.
@@ -626,6 +1033,8 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
                 createRevision("initial revision");
             }
             */
+        } finally {
+            lockManager.unlock(getPath());
         }
     }
 
@@ -646,9 +1055,9 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
         try {
             String revisionName = String.valueOf(revisionTime);
 
-            File destContentFile = getRevisionContentFile(revisionName);
-            //log.debug("Create content of revision '" + destContentFile + "' for a particular time: " + new Date(revisionTime));
-            FileUtils.copyFile(this.contentFile, destContentFile);
+            File revisionDir = getRevisionDir(getRepository(), this.metaDir, revisionName);
+            //log.debug("Create content of revision '" + revisionDir + "' for a particular time: " + new Date(revisionTime));
+            getRepository().getRevisionContentStore().addRevision(this, revisionDir);
         
             File destMetaFile = getRevisionMetaFile(revisionName);
             //log.debug("Create meta of revision '" + destMetaFile + "' for a particular time: " + new Date(revisionTime));
@@ -660,9 +1069,7 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
             ((VirtualFileSystemRevision)revision).setCreator(getCheckoutUserID());
             ((VirtualFileSystemRevision)revision).setComment(comment);
 
-            if (areRevisionsRead) {
-                this.revisions.put(revisionName, revision);
-            }
+            invalidateRevisions();
 
             DateIndexerSearcher dis = getDateIndexerSearcher();
             try {
@@ -689,7 +1096,30 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
     protected void readRevisions() throws RepositoryException {
         log.warn("Do not use this method, because of scalability and performance issues!"); // IMPORTANT: Please note that this implementation is used by DateIndexerSearcher#buildDateIndex() and hence one should NOT replace this implementation by the iterator implementation, because otherwise one creates a "loop"! A workaround would be though to "copy" this implementation to DateIndexerSearcher such that DateIndexerSearcher is independent of this implementation here.
         
-        this.revisions = new LinkedHashMap<String, Revision>();
+        // INFO: Shared lock, such that revisions which are being created by checkin are not read partially
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lockShared(getPath());
+        try {
+            readRevisionsUnlocked();
+            areRevisionsRead = true; // INFO: Set while holding the lock, such that an invalidation by a concurrent checkin is not overwritten
+        } finally {
+            lockManager.unlockShared(getPath());
+        }
+    }
+
+    /**
+     * Mark revisions which have been read into memory as outdated (e.g. because a revision has been created), such that they are read again when they are accessed the next time
+     */
+    void invalidateRevisions() {
+        areRevisionsRead = false;
+    }
+
+    /**
+     * Read revisions into memory, whereas the caller holds the lock of this node
+     */
+    private void readRevisionsUnlocked() throws RepositoryException {
+        // INFO: Fill a new map and publish it afterwards, because the node might be shared between threads (see NodeCache), whereas the published map is never modified again
+        LinkedHashMap<String, Revision> revisions = new LinkedHashMap<String, Revision>();
         
         File revisionsBaseDir = getRevisionsBaseDir(this.metaDir);
         if (log.isDebugEnabled()) log.debug("Read revisions: " + revisionsBaseDir);
@@ -700,30 +1130,36 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
             for (int i = 0; i < revisionDirsUnsplitted.length; i++) {
                 String revisionName = revisionDirsUnsplitted[i].getName();
                 Revision revision = new VirtualFileSystemRevision(this, revisionName);
-                this.revisions.put(revisionName, revision);
+                revisions.put(revisionName, revision);
             }
         }
 
-        readRevisionsFromSplittedDirectories();
-
-        areRevisionsRead = true;
+        readRevisionsFromSplittedDirectories(revisions);
+        this.revisions = revisions;
     }
     
     /**
      * @see org.wyona.yarep.core.Node#restore(java.lang.String)
      */
     public void restore(String revisionName) throws NoSuchRevisionException, RepositoryException {
+        LockManager lockManager = getRepository().getLockManager();
+        lockManager.lock(getPath());
         try {
-            File srcContentFile = getRevisionContentFile(revisionName);
-            FileUtils.copyFile(srcContentFile, this.contentFile);
+            getRepository().getRevisionContentStore().restore(getRevisionDir(getRepository(), this.metaDir, revisionName), this.contentFile);
+            getRepository().invalidateCachedContent(this.contentFile);
         
             File srcMetaFile = getRevisionMetaFile(revisionName);
-            FileUtils.copyFile(srcMetaFile, this.metaFile);
+            AtomicFile.copy(srcMetaFile, this.metaFile, getRepository().isFsyncEnabled());
+            invalidateCachedProperties(); // INFO: The modification might happen within the same second as the previous write, hence the cache might not notice the change
+            invalidateRevisions();
+            readProperties(); // INFO: The meta file of the revision might have another format (text or binary) than the previous meta file of the node, hence re-read it before it is modified
             
             setProperty(AbstractNode.PROPERTY_LAST_MODIFIED, this.contentFile.lastModified());
         } catch (IOException e) {
             log.error(e.getMessage(), e);
             throw new RepositoryException(e.getMessage(), e);
+        } finally {
+            lockManager.unlock(getPath());
         }
     }
     
@@ -798,7 +1234,10 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
             log.debug("Node '" + getPath() + "' does not seem to have any children.");
         } 
 
+        getRepository().invalidateCachedNodes(getPath());
         try {
+            getRepository().cancelIndexing(getPath());
+
             log.warn("DEBUG: Delete node '" + getPath() + "' from fulltext search index...");
             getRepository().getIndexer().removeFromIndex(this);
 
@@ -822,8 +1261,20 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
                 FileUtils.deleteDirectory(this.contentFile);
             } else {
                 this.contentFile.delete();
+                getRepository().invalidateCachedContent(this.contentFile);
             }
+            getRepository().getRevisionContentStore().deleteAllContents(getRevisionsBaseDir(this.metaDir)); // INFO: Release the blobs referenced by revisions
             FileUtils.deleteDirectory(this.metaDir);
+            if (getRepository().getPropertiesCache() != null) {
+                getRepository().getPropertiesCache().invalidateAll(this.metaDir);
+            }
+            if (getRepository().getRevisionDateIndex() != null) {
+                try {
+                    getRepository().getRevisionDateIndex().deleteRevisions(getPath()); // INFO: The revisions have been deleted together with the meta directory
+                } catch (Exception e) {
+                    log.error(e, e);
+                }
+            }
             // TODO: Delete empty directories!
         } catch (IOException e) {
             throw new RepositoryException("Could not delete node: " + getPath() + ": " + e.toString(), e);
@@ -1008,7 +1459,7 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
      * @param numberOfRevisions TODO
      */
     private int getNumberOfRevisionsFromSplittedDirectories(File dir, int numberOfRevisions) {
-        if (new File(dir, VirtualFileSystemRevision.CONTENT_FILE_NAME).isFile() && new File(dir, META_FILE_NAME).isFile()) {
+        if (getRepository().getRevisionContentStore().hasContent(dir) && new File(dir, META_FILE_NAME).isFile()) {
             return numberOfRevisions + 1;
         } else {
             File[] filesAndDirs = dir.listFiles();
@@ -1024,29 +1475,31 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
 
     /**
      * Read revisions which are inside splitted directories
+     * @param revisions Map to which the revisions are added
      */
-    private void readRevisionsFromSplittedDirectories() throws RepositoryException {
+    private void readRevisionsFromSplittedDirectories(LinkedHashMap<String, Revision> revisions) throws RepositoryException {
         File[] topLevelSplittedDirectories = getRevisionsBaseDir(this.metaDir).listFiles(new SplittedDirectoryFilter());
         if (topLevelSplittedDirectories != null) {
             Arrays.sort(topLevelSplittedDirectories);
             for (int i = 0; i < topLevelSplittedDirectories.length; i++) {
                 //log.debug("Splitted directories: " + topLevelSplittedDirectories[i].getAbsolutePath());
-                readRevisionsFromSplittedDirectories(topLevelSplittedDirectories[i], topLevelSplittedDirectories[i].getName());
+                readRevisionsFromSplittedDirectories(revisions, topLevelSplittedDirectories[i], topLevelSplittedDirectories[i].getName());
             }
         }
     }
 
     /**
      * Read revisions which are inside splitted directories
+     * @param revisions Map to which the revisions are added
      * @param dir Splitted revision directory
      * @param unsplittedName Unsplitted revision name
      */
-    private void readRevisionsFromSplittedDirectories(File dir, String unsplittedName) throws RepositoryException {
-        if (new File(dir, VirtualFileSystemRevision.CONTENT_FILE_NAME).isFile() && new File(dir, META_FILE_NAME).isFile()) {
+    private void readRevisionsFromSplittedDirectories(LinkedHashMap<String, Revision> revisions, File dir, String unsplittedName) throws RepositoryException {
+        if (getRepository().getRevisionContentStore().hasContent(dir) && new File(dir, META_FILE_NAME).isFile()) {
             String revisionName = unsplittedName;
             //log.debug("Add revision: " + dir.getAbsolutePath() + ", " + revisionName);
             Revision revision = new VirtualFileSystemRevision(this, revisionName);
-            this.revisions.put(revisionName, revision);
+            revisions.put(revisionName, revision);
             return;
         } else {
             File[] filesAndDirs = dir.listFiles();
@@ -1055,7 +1508,7 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
                 for (int i = 0; i < filesAndDirs.length; i++) {
                     if (filesAndDirs[i].isDirectory()) {
                         //log.debug("Check directory: " + filesAndDirs[i].getAbsolutePath());
-                        readRevisionsFromSplittedDirectories(filesAndDirs[i], unsplittedName + filesAndDirs[i].getName());
+                        readRevisionsFromSplittedDirectories(revisions, filesAndDirs[i], unsplittedName + filesAndDirs[i].getName());
                     }
                 }
             }
@@ -1081,7 +1534,7 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
      */
     public Revision getRevision(String revisionName) throws NoSuchRevisionException, RepositoryException {
         VirtualFileSystemRevision revision = new VirtualFileSystemRevision(this, revisionName);
-        if (!revision.contentFile.exists()) {
+        if (!getRepository().getRevisionContentStore().hasContent(revision.metaDir)) {
             String logMessage = "Node '" + getPath() + "' has no such revision: " + revisionName;
             //log.error(logMessage);
             throw new NoSuchRevisionException(logMessage);
@@ -1266,6 +1719,10 @@ public class VirtualFileSystemNode extends AbstractNode implements VersionableV1
             return new DateIndexerSearcherImplV1(getPath(), this.metaDir, getRepository());
         } else if (getRepository().getRevisionsDateIndexImpl().equals(VirtualFileSystemRepository.REVISIONS_DATE_INDEX_LUCENE_IMPL)) {
             return new DateIndexerSearcherImplV2(this, this.metaDir);
+        } else if (getRepository().getRevisionsDateIndexImpl().equals(VirtualFileSystemRepository.REVISIONS_DATE_INDEX_CATALOG_IMPL)) {
+            return new DateIndexerSearcherImplV3(getPath(), this.metaDir, getRepository());
+        } else if (getRepository().getRevisionsDateIndexImpl().equals(VirtualFileSystemRepository.REVISIONS_DATE_INDEX_REPOSITORY_IMPL)) {
+            return new DateIndexerSearcherImplV4(getPath(), getRepository());
         } else {
             log.error("No such revisions date index implementation '" + getRepository().getRevisionsDateIndexImpl() + "'!");
             return null;
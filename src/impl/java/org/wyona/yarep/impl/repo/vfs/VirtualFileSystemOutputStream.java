@@ -16,6 +16,8 @@ import org.wyona.yarep.impl.AbstractNode;
 /**
  * OutputStream which sets some properties (lastModified, size) to the node 
  * when the stream is closed.
+ * The content is written to a temporary file, which replaces the content file atomically when the stream is closed (see {@link AtomicFile}),
+ * such that readers never see partially written content.
  * 
  * NOTE: Currently not used, because the Node implemenation uses the lastModified and size
  * of the content file.
@@ -27,15 +29,23 @@ public class VirtualFileSystemOutputStream extends OutputStream {
     protected OutputStream out;
     protected Node node;
     protected File file;
+    protected File tempFile;
+    private boolean closed = false;
 
     /**
      * 
      */
     public VirtualFileSystemOutputStream(Node node, File file) throws FileNotFoundException {
         this.node  = node;
-        this.out = new FileOutputStream(file);
+        try {
+            this.tempFile = AtomicFile.createTempFile(file);
+        } catch (IOException e) {
+            log.error(e, e);
+            throw new FileNotFoundException("Could not create temporary file for '" + file + "': " + e.getMessage());
+        }
+        this.out = new FileOutputStream(tempFile);
         this.file = file;
-        log.debug("Write to file: " + file);
+        log.debug("Write to file: " + file + " (Temporary file: " + tempFile + ")");
     }
     
     /**
@@ -61,7 +71,28 @@ public class VirtualFileSystemOutputStream extends OutputStream {
      * 
      */
     public void close() throws IOException {
-        out.close();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean renamed = false;
+        try {
+            try {
+                if (((VirtualFileSystemNode) node).getRepository().isFsyncEnabled()) {
+                    ((FileOutputStream) out).getFD().sync();
+                }
+            } finally {
+                out.close();
+            }
+            AtomicFile.rename(tempFile, file);
+            renamed = true;
+        } finally {
+            if (!renamed && tempFile.exists()) {
+                log.warn("Content has not been written, hence delete temporary file: " + tempFile);
+                tempFile.delete();
+            }
+        }
+        ((VirtualFileSystemNode) node).getRepository().invalidateCachedContent(file);
         try {
             //node.setProperty(AbstractNode.PROPERTY_SIZE, file.length());
             node.setProperty(AbstractNode.PROPERTY_LAST_MODIFIED, file.lastModified());
@@ -70,7 +101,7 @@ public class VirtualFileSystemOutputStream extends OutputStream {
             
             if(vfsRepo.isAutoFulltextIndexingEnabled()) {
                 log.debug("Auto fulltext indexing enabled ...");
-                vfsRepo.getIndexer().index(node);
+                vfsRepo.autoIndexFulltext(node);
             }
         } catch (Exception e) {
             log.error(e, e);
@@ -9,7 +9,12 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.avalon.framework.configuration.DefaultConfigurationBuilder;
@@ -21,19 +26,26 @@ import org.apache.lucene.index.IndexWriter;
 
 import org.wyona.commons.io.FileUtil;
 
+import org.wyona.yarep.core.Batch;
 import org.wyona.yarep.core.Map;
 import org.wyona.yarep.core.NoSuchNodeException;
 import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
 import org.wyona.yarep.core.Path;
+import org.wyona.yarep.core.Property;
+import org.wyona.yarep.core.PropertyType;
 import org.wyona.yarep.core.Repository;
 import org.wyona.yarep.core.RepositoryException;
 import org.wyona.yarep.core.Revision;
 import org.wyona.yarep.core.Storage;
 import org.wyona.yarep.core.UID;
+import org.wyona.yarep.core.attributes.BatchableRepositoryV1;
 import org.wyona.yarep.core.attributes.VersionableRepositoryV1;
 import org.wyona.yarep.core.search.Indexer;
 import org.wyona.yarep.core.search.SearchException;
 import org.wyona.yarep.core.search.Searcher;
+import org.wyona.yarep.impl.DefaultProperty;
+import org.wyona.yarep.util.YarepUtil;
 
 /**
  * Node based file system repository.
@@ -52,11 +64,20 @@ import org.wyona.yarep.core.search.Searcher;
  * &lt;repository class="org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository"&gt;
  *   &lt;name&gt;Test Repository&lt;/name&gt;
  *   &lt;content src="data"/&gt;
- *   &lt;meta src="yarep-data" revisions-path-type="splitted" revisions-date-index-impl="directory"/&gt;
+ *   &lt;meta src="yarep-data" revisions-path-type="splitted" revisions-date-index-impl="directory" revisions-content-store="copy" meta-file-version="1.0" fsync="false"/&gt;
+ *   &lt;cache&gt;
+ *     &lt;properties max-entries="10000"/&gt;
+ *     &lt;nodes max-entries="1000" validate="true"/&gt;
+ *     &lt;content max-bytes="67108864" max-file-size="65536"/&gt;
+ *   &lt;/cache&gt;
+ *   &lt;locks stripes="64" file-locks="false" dir="yarep-locks"/&gt;
+ *   &lt;batch journal="false" journal-dir="yarep-batches"/&gt;
  *     &lt;s:search-index xmlns:s="http://www.wyona.org/yarep/search/2.0" indexer-class="org.wyona.yarep.impl.search.lucene.LuceneIndexer" searcher-class="org.wyona.yarep.impl.search.lucene.LuceneSearcher">
  *       &lt;index-location file="index"/>
  *       &lt;repo-auto-index-fulltext boolean="true"/>
  *       &lt;repo-auto-index-properties boolean="true"/>
+ *       &lt;!-- Optional asynchronous indexing: Index jobs are journaled and processed by a pool of worker threads, whereas repeated jobs of the same node are coalesced -->
+ *       &lt;repo-async-indexing boolean="true" workers="2" capacity="10000" enqueue-timeout-ms="1000" journal="indexing-queue.journal"/>
  *       &lt;lucene>
  *         &lt;!-- The element 'local-tika-config' attribute 'file' is used to patch the default tika config -->
  *         &lt;local-tika-config file="tika-config.xml"/>
@@ -68,6 +89,11 @@ import org.wyona.yarep.core.search.Searcher;
  *         &lt;property-analyzer class="org.apache.lucene.analysis.WhitespaceAnalyzer"/>
 
  *         &lt;write-lock-timeout ms="3000"/>
+
+ *         &lt;!-- Interval at which shared searchers check whether the index has been modified by another process -->
+ *         &lt;searcher refresh-interval-ms="1000"/>
+ *         &lt;!-- One long-lived writer per index, which commits every commit-interval-ms or after max-pending-updates, and optimizes every optimize-interval-ms (set shared to false within a clustered environment) -->
+ *         &lt;index-writer shared="true" commit-interval-ms="1000" max-pending-updates="100" optimize-interval-ms="86400000"/>
  *       &lt;/lucene>
  * &lt;/s:search-index>
  * &lt;/repository&gt;
@@ -78,6 +104,16 @@ import org.wyona.yarep.core.search.Searcher;
  *   <li>content: path to the content directory, absolute or relative to the repo config file</li>
  *   <li>meta (optional): path to the meta directory. If this element is omitted, the meta data
  *                        will be written into the content directory.</li>
+ *   <li>meta/revisions-date-index-impl (optional): index to find revisions by date, either 'directory' (default, one directory per date), 'lucene' (one lucene index per node), 'catalog' (one file per node containing (creation date, revision name) records sorted by creation date, which is searched by binary search) or 'repository' (one lucene index for all nodes, which is located at 'revisions-date-index-location' (absolute or relative to the repo config file, default=revisions-date-index) and which allows to find the revisions of many nodes at once, see getRevisions(String[], Date))</li>
+ *   <li>meta/revisions-content-store (optional): how the content of a node is stored when a revision is created, either 'copy' (default, full copy of the content within the revision directory), 'hardlink' (hard link to the content of the node, such that no bytes are copied, whereas the content is copied if the file system does not support hard links) or 'blob' (the content is stored once per distinct content within the repository wide blob directory 'revisions-blobs-location' (absolute or relative to the repo config file, default=revisions-blobs) and the revision only references the blob by its SHA-1 hash, whereas blobs are reference counted and deleted together with the last revision referencing them) or 'delta' (revisions of text nodes (e.g. XML or XHTML) are stored as binary deltas against a keyframe, whereas every 'revisions-delta-interval'-th revision (default=20) is a new keyframe, which is stored as blob. Up to 'revisions-delta-cache-max-bytes' (default=16777216) of keyframes are cached in order to reconstruct revisions). Revisions of all kinds can be read independent of this setting</li>
+ *   <li>meta/meta-file-version (optional): format of meta files, either '1.0' (default, text file which is rewritten completely whenever a property is modified) or '2.0' (binary file to which a record is appended whenever a property is modified, whereas the file is compacted from time to time). Meta files of both formats can be read independent of this setting and existing meta files are migrated when they are written the next time</li>
+ *   <li>meta/fsync (optional): if true, then meta files and content are forced to the storage device before they replace the previous version (default=false). Independent of this setting meta files and content are written to a temporary file first, which is renamed atomically</li>
+ *   <li>cache/properties/max-entries (optional): maximum number of parsed meta files which are cached (default=10000, 0 disables the cache). Cached properties are validated by the last modified date and the size of the meta file</li>
+ *   <li>cache/nodes/max-entries (optional): maximum number of node objects which are cached and shared by getNode(String) (default=0, which means disabled). If the attribute 'validate' is true (default), then it is checked for every lookup whether the node still exists and whether its meta file has been modified, otherwise cached nodes are returned without accessing the file system</li>
+ *   <li>cache/catalogs/max-entries (optional): maximum number of revisions catalogs (only if revisions-date-index-impl is 'catalog') which are memory mapped and shared by all nodes of the repository (default=1000)</li>
+ *   <li>cache/content/max-bytes (optional): maximum number of bytes of the content of small files (up to 'max-file-size' bytes, default=65536) which is cached outside of the heap (default=0, which means disabled). Cached content is validated by the last modified date and the size of the content file, whereas content written by this repository is invalidated immediately</li>
+ *   <li>locks (optional): number of striped locks which serialize modifications of the same node (default=64). If the attribute 'file-locks' is true (default=false), then exclusive locks are also acquired as file locks within the directory 'dir' (absolute or relative to the repo config file, default=yarep-locks), such that several processes sharing the same repository are serialized as well</li>
+ *   <li>batch (optional): if the attribute 'journal' is true (default=false), then every batch (see apply(Batch)) is written to a write-ahead journal within the directory 'journal-dir' (absolute or relative to the repo config file, default=yarep-batches) before it is applied, such that a batch which has been interrupted (e.g. by a crash) is applied again when the repository is opened the next time. Independent of this setting a batch writes the meta file of every node only once and commits the search index only once</li>
  *   <li>(deprecated) search-index (optional): enable indexing/searching of repository content<br/>
  *     Attributes:
  *     <ul>
@@ -96,18 +132,21 @@ import org.wyona.yarep.core.search.Searcher;
  *       <li>index-location/file: file location of index</li>
  *       <li>index-fulltext/boolean (true/false): indexing of fulltext</li>
  *       <li>index-properties/boolean (true/false): indexing of properties</li>
+ *       <li>repo-async-indexing/boolean (true/false): index asynchronously (default=false), whereas the attributes 'workers', 'capacity', 'enqueue-timeout-ms' (time to wait when the queue is full, before indexing synchronously) and 'journal' are optional</li>
  *     </ul>
  *   </li>
  * </ul>
  * 
  */
-public class VirtualFileSystemRepository implements Repository, VersionableRepositoryV1 {
+public class VirtualFileSystemRepository implements Repository, VersionableRepositoryV1, BatchableRepositoryV1 {
 
     private static Logger log = LogManager.getLogger(VirtualFileSystemRepository.class);
 
     private static final String DEFAULT_INDEXER_CLASS = "org.wyona.yarep.impl.search.lucene.LuceneIndexerV2";
     //private static final String DEFAULT_INDEXER_CLASS = "org.wyona.yarep.impl.search.lucene.LuceneIndexer";
 
+    private static final int DEFAULT_PROPERTIES_CACHE_MAX_ENTRIES = 10000;
+
     private static final String DEFAULT_SEARCHER_CLASS = "org.wyona.yarep.impl.search.lucene.LuceneSearcher";
 
     protected String id;
@@ -123,6 +162,21 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
     private boolean isPropertyIndexingEnabled = false;
     private Indexer indexer = null;
     private Searcher searcher = null;
+    private IndexingQueue indexingQueue = null;
+    private PropertiesCache propertiesCache = null;
+    private NodeCache nodeCache = null;
+    private ContentCache contentCache = null;
+    private CatalogCache catalogCache = null;
+    private static final int DEFAULT_CATALOG_CACHE_MAX_ENTRIES = 1000;
+    private static final long DEFAULT_CONTENT_CACHE_MAX_FILE_SIZE = 65536;
+    private boolean validateCachedNodes = true;
+    private LockManager lockManager = null;
+    private BatchJournal batchJournal = null;
+
+    private File asyncIndexingJournalFile = null;
+    private int asyncIndexingWorkers;
+    private int asyncIndexingCapacity;
+    private long asyncIndexingEnqueueTimeout;
 
     private String revisionsPathType;
     static final String REVISIONS_PATH_TYPE_SPLITTED = "splitted";
@@ -131,6 +185,27 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
     private String revisionsDateIndexImpl;
     static final String REVISIONS_DATE_INDEX_DIRECTORY_IMPL = "directory";
     static final String REVISIONS_DATE_INDEX_LUCENE_IMPL = "lucene";
+    static final String REVISIONS_DATE_INDEX_CATALOG_IMPL = "catalog";
+    static final String REVISIONS_DATE_INDEX_REPOSITORY_IMPL = "repository";
+    private RevisionDateIndex revisionDateIndex = null;
+
+    private String revisionsContentStoreImpl = REVISIONS_CONTENT_STORE_COPY_IMPL;
+    static final String REVISIONS_CONTENT_STORE_COPY_IMPL = "copy";
+    static final String REVISIONS_CONTENT_STORE_HARDLINK_IMPL = "hardlink";
+    static final String REVISIONS_CONTENT_STORE_BLOB_IMPL = "blob";
+    static final String REVISIONS_CONTENT_STORE_DELTA_IMPL = "delta";
+    private int revisionsDeltaInterval = DEFAULT_REVISIONS_DELTA_INTERVAL;
+    private static final int DEFAULT_REVISIONS_DELTA_INTERVAL = 20;
+    private long revisionsDeltaCacheMaxBytes = DEFAULT_REVISIONS_DELTA_CACHE_MAX_BYTES;
+    private static final long DEFAULT_REVISIONS_DELTA_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+    private File revisionBlobDir = null;
+    private RevisionContentStore revisionContentStore = null;
+    private RevisionBlobStore revisionBlobStore = null;
+
+    private String metaFileVersion = META_FILE_VERSION_TEXT;
+    static final String META_FILE_VERSION_TEXT = "1.0";
+    static final String META_FILE_VERSION_BINARY = BinaryMetaFile.VERSION;
+    private boolean fsyncEnabled = false;
 
     // Configuration parameters of the <splitpath ...> element
     private boolean splitPathEnabled = false;
@@ -184,7 +259,24 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
             if (metaDirConfig != null) {
                 this.revisionsPathType = metaDirConfig.getAttribute("revisions-path-type", REVISIONS_PATH_TYPE_SPLITTED);
                 this.revisionsDateIndexImpl = metaDirConfig.getAttribute("revisions-date-index-impl", REVISIONS_DATE_INDEX_DIRECTORY_IMPL);
+                this.metaFileVersion = metaDirConfig.getAttribute("meta-file-version", META_FILE_VERSION_TEXT);
+                if (!metaFileVersion.equals(META_FILE_VERSION_TEXT) && !metaFileVersion.equals(META_FILE_VERSION_BINARY)) {
+                    throw new RepositoryException("No such vfs meta file version supported: " + metaFileVersion);
+                }
+                this.fsyncEnabled = metaDirConfig.getAttributeAsBoolean("fsync", false);
+                this.revisionsContentStoreImpl = metaDirConfig.getAttribute("revisions-content-store", REVISIONS_CONTENT_STORE_COPY_IMPL);
+                this.revisionBlobDir = new File(metaDirConfig.getAttribute("revisions-blobs-location", "revisions-blobs"));
+                this.revisionsDeltaInterval = metaDirConfig.getAttributeAsInteger("revisions-delta-interval", DEFAULT_REVISIONS_DELTA_INTERVAL);
+                this.revisionsDeltaCacheMaxBytes = metaDirConfig.getAttributeAsLong("revisions-delta-cache-max-bytes", DEFAULT_REVISIONS_DELTA_CACHE_MAX_BYTES);
                 this.metaDir = new File(metaDirConfig.getAttribute("src"));
+                if (revisionsDateIndexImpl.equals(REVISIONS_DATE_INDEX_REPOSITORY_IMPL)) {
+                    File revisionDateIndexDir = new File(metaDirConfig.getAttribute("revisions-date-index-location", "revisions-date-index"));
+                    if (!revisionDateIndexDir.isAbsolute()) {
+                        revisionDateIndexDir = FileUtil.file(configFile.getParent(), revisionDateIndexDir.toString());
+                    }
+                    revisionDateIndex = new RevisionDateIndex(this, revisionDateIndexDir);
+                    log.info("Revision date index: " + revisionDateIndexDir);
+                }
             
                 if (!this.metaDir.isAbsolute()) {
                     this.metaDir = FileUtil.file(configFile.getParent(), this.metaDir.toString());
@@ -193,6 +285,75 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
                 log.info("Meta dir: " + this.metaDir);
             }
 
+            Configuration cacheConfig = config.getChild("cache");
+            int maxPropertiesCacheEntries = cacheConfig.getChild("properties").getAttributeAsInteger("max-entries", DEFAULT_PROPERTIES_CACHE_MAX_ENTRIES);
+            if (maxPropertiesCacheEntries > 0) {
+                propertiesCache = new PropertiesCache(maxPropertiesCacheEntries);
+                log.info("Properties cache enabled (Maximum number of entries: " + maxPropertiesCacheEntries + ")");
+            } else {
+                propertiesCache = null;
+                log.info("Properties cache disabled.");
+            }
+            int maxNodeCacheEntries = cacheConfig.getChild("nodes").getAttributeAsInteger("max-entries", 0);
+            if (maxNodeCacheEntries > 0) {
+                nodeCache = new NodeCache(maxNodeCacheEntries);
+                validateCachedNodes = cacheConfig.getChild("nodes").getAttributeAsBoolean("validate", true);
+                log.info("Node cache enabled (Maximum number of entries: " + maxNodeCacheEntries + ", Validate: " + validateCachedNodes + ")");
+            } else {
+                nodeCache = null;
+            }
+            catalogCache = new CatalogCache(Math.max(1, cacheConfig.getChild("catalogs").getAttributeAsInteger("max-entries", DEFAULT_CATALOG_CACHE_MAX_ENTRIES)));
+            long maxContentCacheBytes = cacheConfig.getChild("content").getAttributeAsLong("max-bytes", 0);
+            if (maxContentCacheBytes > 0) {
+                contentCache = new ContentCache(maxContentCacheBytes, cacheConfig.getChild("content").getAttributeAsLong("max-file-size", DEFAULT_CONTENT_CACHE_MAX_FILE_SIZE));
+                log.info("Content cache enabled (Maximum number of bytes: " + maxContentCacheBytes + ", Maximum file size: " + contentCache.getMaxFileSize() + ")");
+            } else {
+                contentCache = null;
+            }
+
+            Configuration locksConfig = config.getChild("locks");
+            File lockDir = null;
+            if (locksConfig.getAttributeAsBoolean("file-locks", false)) {
+                lockDir = new File(locksConfig.getAttribute("dir", "yarep-locks"));
+                if (!lockDir.isAbsolute()) {
+                    lockDir = FileUtil.file(configFile.getParent(), lockDir.toString());
+                }
+            }
+            lockManager = new LockManager(locksConfig.getAttributeAsInteger("stripes", LockManager.DEFAULT_STRIPES), lockDir);
+            log.info("Lock manager (Stripes: " + lockManager.getStripes() + ", Lock directory: " + lockDir + ")");
+
+            Configuration batchConfig = config.getChild("batch");
+            if (batchConfig.getAttributeAsBoolean("journal", false)) {
+                File batchJournalDir = new File(batchConfig.getAttribute("journal-dir", "yarep-batches"));
+                if (!batchJournalDir.isAbsolute()) {
+                    batchJournalDir = FileUtil.file(configFile.getParent(), batchJournalDir.toString());
+                }
+                batchJournal = new BatchJournal(batchJournalDir);
+                log.info("Batch journal: " + batchJournalDir);
+            } else {
+                batchJournal = null;
+            }
+
+            if (revisionBlobDir == null) {
+                revisionBlobDir = new File("revisions-blobs");
+            }
+            if (!revisionBlobDir.isAbsolute()) {
+                revisionBlobDir = FileUtil.file(configFile.getParent(), revisionBlobDir.toString());
+            }
+            revisionBlobStore = new RevisionBlobStore(revisionBlobDir, fsyncEnabled, lockDir != null ? new File(lockDir, "blobs") : null);
+            if (revisionsContentStoreImpl.equals(REVISIONS_CONTENT_STORE_COPY_IMPL)) {
+                revisionContentStore = new RevisionContentStore(this);
+            } else if (revisionsContentStoreImpl.equals(REVISIONS_CONTENT_STORE_HARDLINK_IMPL)) {
+                revisionContentStore = new HardLinkRevisionContentStore(this);
+            } else if (revisionsContentStoreImpl.equals(REVISIONS_CONTENT_STORE_BLOB_IMPL)) {
+                revisionContentStore = new BlobRevisionContentStore(this);
+            } else if (revisionsContentStoreImpl.equals(REVISIONS_CONTENT_STORE_DELTA_IMPL)) {
+                revisionContentStore = new DeltaRevisionContentStore(this, revisionsDeltaInterval);
+            } else {
+                throw new RepositoryException("No such revisions content store implementation: " + revisionsContentStoreImpl);
+            }
+            log.info("Revisions content store: " + revisionsContentStoreImpl + " (Blob directory: " + revisionBlobDir + ")");
+
             Configuration directoryConfig = config.getChild("directory", false);
             if (directoryConfig != null) {
                 alternative = directoryConfig.getAttribute("alternative", alternative);
@@ -206,6 +367,18 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
                 log.info("Use index/search configuration version 2.0!");
                 isFulltextIndexingEnabled = searchConfig.getChild("repo-auto-index-fulltext").getAttributeAsBoolean("boolean", true);
                 isPropertyIndexingEnabled = searchConfig.getChild("repo-auto-index-properties").getAttributeAsBoolean("boolean", true);
+
+                Configuration asyncIndexingConfig = searchConfig.getChild("repo-async-indexing", false);
+                if (asyncIndexingConfig != null && asyncIndexingConfig.getAttributeAsBoolean("boolean", false)) {
+                    File journalFile = new File(asyncIndexingConfig.getAttribute("journal", "indexing-queue.journal"));
+                    if (!journalFile.isAbsolute()) {
+                        journalFile = FileUtil.file(configFile.getParent(), journalFile.toString());
+                    }
+                    asyncIndexingWorkers = asyncIndexingConfig.getAttributeAsInteger("workers", 2);
+                    asyncIndexingCapacity = asyncIndexingConfig.getAttributeAsInteger("capacity", 10000);
+                    asyncIndexingEnqueueTimeout = asyncIndexingConfig.getAttributeAsLong("enqueue-timeout-ms", 1000);
+                    asyncIndexingJournalFile = journalFile;
+                }
             } else {
                 log.warn("Use deprecated configuration version 1.0!");
                 searchConfig = config.getChild("search-index", false);
@@ -255,6 +428,15 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
                     }
                 }
             } 
+
+            if (batchJournal != null) {
+                replayBatchJournal();
+            }
+
+            // INFO: The queue starts replaying its journal right away, hence it has to be created after all options which map paths to files (e.g. splitpath) have been read
+            if (asyncIndexingJournalFile != null) {
+                indexingQueue = new IndexingQueue(this, asyncIndexingWorkers, asyncIndexingCapacity, asyncIndexingEnqueueTimeout, asyncIndexingJournalFile);
+            }
         } catch (Exception e) {
             log.error(e.toString());
             throw new RepositoryException("Could not read repository configuration: " 
@@ -412,6 +594,7 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
      * @see org.wyona.yarep.core.Repository#copy(java.lang.String, java.lang.String)
      */
     public void copy(String srcPath, String destPath) throws RepositoryException {
+        invalidateCachedNodes(destPath);
         // TODO: not implemented yet
         log.warn("Not implemented yet.");
     }
@@ -442,9 +625,32 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
     public Node getNode(String path) throws NoSuchNodeException, RepositoryException {
         log.debug("Get node: " + path);
 
+        if (nodeCache != null) {
+            VirtualFileSystemNode node = nodeCache.get(path);
+            if (node != null) {
+                if (!validateCachedNodes) {
+                    return node;
+                }
+                // INFO: The node might have been deleted or its properties might have been modified by another process
+                if (existsNode(path)) {
+                    if (node.isStale()) {
+                        node.readProperties();
+                        node.invalidateRevisions(); // INFO: Checkin and restore modify the meta file, hence revisions might have been created by another node object (or process)
+                    }
+                    return node;
+                }
+                nodeCache.invalidate(path);
+                throw new NoSuchNodeException(path, this);
+            }
+        }
+
         if (existsNode(path)) {
             String uuid = new UID(path).toString();
-            return new VirtualFileSystemNode(this, path, uuid);
+            VirtualFileSystemNode node = new VirtualFileSystemNode(this, path, uuid);
+            if (nodeCache != null) {
+                nodeCache.put(path, node);
+            }
+            return node;
         } else {
             throw new NoSuchNodeException(path, this);
         }
@@ -471,6 +677,8 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
      * @see org.wyona.yarep.core.Repository#move(java.lang.String, java.lang.String)
      */
     public void move(String srcPath, String destPath) throws RepositoryException {
+        invalidateCachedNodes(srcPath);
+        invalidateCachedNodes(destPath);
         File srcFile = new File(contentDir, srcPath);
         File destFile = new File(contentDir, destPath);
         log.debug("Move source '" + srcFile.getAbsolutePath() + "' to destination '" + destFile.getAbsolutePath() + "'.");
@@ -519,6 +727,34 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
     public void close() throws RepositoryException {
         log.warn("Closing repository: " + getName() + " (" + getConfigFile() + ")");
 
+        if (indexingQueue != null) {
+            indexingQueue.close();
+        }
+
+        if (indexer instanceof org.wyona.yarep.core.attributes.CommittableIndexerV1) {
+            try {
+                ((org.wyona.yarep.core.attributes.CommittableIndexerV1) indexer).commit(); // INFO: Make sure that updates which are still pending become durable
+            } catch (Exception e) {
+                log.error(e, e);
+            }
+        }
+
+        if (revisionDateIndex != null) {
+            try {
+                revisionDateIndex.commit();
+            } catch (Exception e) {
+                log.error(e, e);
+            }
+        }
+
+        if (lockManager != null) {
+            lockManager.close();
+        }
+
+        if (revisionBlobStore != null) {
+            revisionBlobStore.close();
+        }
+
 /*
         log.warn("Closing index writers");
         IndexWriter iw;
@@ -581,10 +817,124 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
         return isPropertyIndexingEnabled;
     }
 
+    /**
+     * Get cache of parsed meta files, which provides hit/miss statistics
+     * @return cache or null if the cache is disabled
+     */
+    public PropertiesCache getPropertiesCache() {
+        return propertiesCache;
+    }
+
+    /**
+     * Get cache of memory mapped revisions catalogs (see revisions-date-index-impl 'catalog'), which provides hit/miss statistics
+     */
+    public CatalogCache getCatalogCache() {
+        return catalogCache;
+    }
+
+    /**
+     * Get cache of node objects, which provides hit/miss statistics
+     * @return cache or null if the cache is disabled
+     */
+    public NodeCache getNodeCache() {
+        return nodeCache;
+    }
+
+    /**
+     * Get cache of the content of small files, which provides hit/miss statistics
+     * @return cache or null if the cache is disabled
+     */
+    public ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * Remove content of a file from the content cache
+     * @param file Content file which has been replaced or deleted
+     */
+    void invalidateCachedContent(File file) {
+        if (contentCache != null) {
+            contentCache.invalidate(file);
+        }
+    }
+
+    /**
+     * Get manager of the locks which serialize modifications of the same node, which provides contention statistics
+     */
+    public LockManager getLockManager() {
+        return lockManager;
+    }
+
+    /**
+     * Remove a node and all its descendants from the node cache
+     * @param path Path of node
+     */
+    void invalidateCachedNodes(String path) {
+        if (nodeCache != null) {
+            nodeCache.invalidate(path);
+        }
+    }
+
+    /**
+     * Get queue of asynchronous indexing, which provides the queue depth and other statistics
+     * @return queue or null if asynchronous indexing is disabled
+     */
+    public IndexingQueue getIndexingQueue() {
+        return indexingQueue;
+    }
+
+    /**
+     * Index content of node (asynchronously if enabled)
+     * @param node Node which has been modified
+     */
+    void autoIndexFulltext(Node node) throws RepositoryException, SearchException {
+        if (indexingQueue != null && indexingQueue.enqueue(IndexingQueue.FULLTEXT, node.getPath(), null)) {
+            return;
+        }
+        getIndexer().index(node);
+    }
+
+    /**
+     * Index properties of node (asynchronously if enabled)
+     * @param node Node which has been modified
+     * @param property Property which has been set
+     */
+    void autoIndexProperty(Node node, Property property) throws RepositoryException, SearchException {
+        if (indexingQueue != null && indexingQueue.enqueue(IndexingQueue.PROPERTIES, node.getPath(), property.getName())) {
+            return;
+        }
+        getIndexer().index(node, property);
+    }
+
+    /**
+     * Remove property of node from index (asynchronously if enabled)
+     * @param node Node which has been modified
+     * @param name Name of property which has been removed
+     * @param property Property which has been removed (might be null)
+     */
+    void autoRemoveProperty(Node node, String name, Property property) throws RepositoryException, SearchException {
+        // INFO: Asynchronously the properties of the node are re-indexed, such that only the removed property disappears from the index
+        if (indexingQueue != null && indexingQueue.enqueue(IndexingQueue.PROPERTIES, node.getPath(), name)) {
+            return;
+        }
+        getIndexer().removeFromIndex(node, property);
+    }
+
+    /**
+     * Remove pending index jobs of a node, e.g. because the node is being deleted
+     * @param path Path of node
+     */
+    void cancelIndexing(String path) {
+        if (indexingQueue != null) {
+            indexingQueue.cancel(path);
+        }
+    }
+
     /**
      * @see org.wyona.yarep.core.Repository#importNode(String, String, Repository)
      */
     public boolean importNode(String destPath, String srcPath, Repository srcRepository) throws RepositoryException {
+        invalidateCachedNodes(destPath);
         try {
             if (existsNode(destPath)) {
                 log.warn("Node '" + destPath + "' already exists and will be overwritten!");
@@ -652,6 +1002,9 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
         }
         writer.flush();
         writer.close();
+        if (propertiesCache != null) {
+            propertiesCache.invalidate(destMetaFile);
+        }
         return true;
     }
 
@@ -778,6 +1131,21 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
         return splitPathEnabled;
     }
 
+    /**
+     * Check whether a path is split (see splitPath(String)), because it matches one of the include paths of the split path configuration
+     */
+    boolean isSplitPath(String path) {
+        if (!splitPathEnabled) {
+            return false;
+        }
+        for (String includePath : includepaths) {
+            if (path.startsWith(includePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get revisions path type
      */
@@ -785,6 +1153,41 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
         return revisionsPathType;
     }
 
+    /**
+     * Get version of format in which meta files are written (either '1.0' or '2.0')
+     */
+    String getMetaFileVersion() {
+        return metaFileVersion;
+    }
+
+    /**
+     * Check whether meta files and content are forced to the storage device when they are written
+     */
+    boolean isFsyncEnabled() {
+        return fsyncEnabled;
+    }
+
+    /**
+     * Get store which writes and reads the content of revisions
+     */
+    RevisionContentStore getRevisionContentStore() {
+        return revisionContentStore;
+    }
+
+    /**
+     * Get maximum number of bytes of keyframes which are cached in order to reconstruct delta revisions
+     */
+    long getRevisionsDeltaCacheMaxBytes() {
+        return revisionsDeltaCacheMaxBytes;
+    }
+
+    /**
+     * Get repository wide directory of content blobs, which are referenced by revisions
+     */
+    RevisionBlobStore getRevisionBlobStore() {
+        return revisionBlobStore;
+    }
+
     /**
      * Get revisions date index impl
      */
@@ -792,6 +1195,54 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
         return revisionsDateIndexImpl;
     }
 
+    /**
+     * Get revisions of several nodes for a specific date (or just before), e.g. in order to render a whole site as of a particular date
+     * @param paths Absolute repository paths of nodes
+     * @param date Point in time (or just before) for which revisions shall be returned
+     * @return revisions (in the same order as the paths), whereas the revision is null for nodes without a revision at this point in time
+     */
+    public Revision[] getRevisions(String[] paths, Date date) throws Exception {
+        Revision[] revisions = new Revision[paths.length];
+        if (revisionDateIndex != null) {
+            boolean[] indexed = revisionDateIndex.isIndexed(paths); // INFO: One lookup for all nodes
+            for (int i = 0; i < paths.length; i++) {
+                if (!indexed[i]) {
+                    revisionDateIndex.build(paths[i]);
+                }
+            }
+            String[] revisionNames = revisionDateIndex.getRevisionNames(paths, date); // INFO: One query for all nodes
+            for (int i = 0; i < paths.length; i++) {
+                if (revisionNames[i] != null) {
+                    revisions[i] = new VirtualFileSystemRevision(this, paths[i], revisionNames[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < paths.length; i++) {
+                revisions[i] = getRevision(paths[i], date);
+            }
+        }
+        return revisions;
+    }
+
+    /**
+     * Add revisions of all nodes, which have not been added yet, to the repository wide revision date index (only if revisions-date-index-impl is 'repository')
+     * @return number of nodes whose revisions have been added
+     */
+    public int buildRevisionDateIndex() throws Exception {
+        if (revisionDateIndex == null) {
+            throw new RepositoryException("Repository '" + getName() + "' has no repository wide revision date index configured (revisions-date-index-impl=\"" + REVISIONS_DATE_INDEX_REPOSITORY_IMPL + "\")");
+        }
+        return revisionDateIndex.buildAll();
+    }
+
+    /**
+     * Get repository wide revision date index
+     * @return index or null if revisions-date-index-impl is not 'repository'
+     */
+    RevisionDateIndex getRevisionDateIndex() {
+        return revisionDateIndex;
+    }
+
     /**
      * @see org.wyona.yarep.core.attributes.VersionableRepositoryV1#getRevision(String, Date)
      */
@@ -837,6 +1288,135 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
         }
     }
 
+    /**
+     * @see org.wyona.yarep.core.attributes.BatchableRepositoryV1#apply(Batch)
+     */
+    public void apply(Batch batch) throws Exception {
+        if (batch.size() == 0) {
+            return;
+        }
+        LinkedHashMap<String, List<Batch.Operation>> operationsByNode = validate(batch);
+        if (batchJournal == null) {
+            apply(batch, operationsByNode);
+            return;
+        }
+
+        File journalFile = batchJournal.write(batch);
+        try {
+            apply(batch, operationsByNode);
+        } catch (Exception e) {
+            log.error("Could not apply batch (" + batch.size() + " operations) of journal '" + journalFile + "': " + e.getMessage(), e);
+            batchJournal.fail(journalFile);
+            throw e;
+        }
+        batchJournal.commit(journalFile);
+    }
+
+    /**
+     * Check that all nodes of a batch exist (or are added by the batch) and that content is only written to resources, such that a batch is rejected before anything has been modified
+     * @return property and content operations grouped by node
+     */
+    private LinkedHashMap<String, List<Batch.Operation>> validate(Batch batch) throws RepositoryException {
+        HashMap<String, Integer> addedNodes = new HashMap<String, Integer>();
+        LinkedHashMap<String, List<Batch.Operation>> operationsByNode = new LinkedHashMap<String, List<Batch.Operation>>();
+        Iterator<Batch.Operation> it = batch.getOperations().iterator();
+        while (it.hasNext()) {
+            Batch.Operation op = it.next();
+            if (op.getPath() == null || !op.getPath().startsWith("/")) {
+                throw new RepositoryException("Path of batch operation is not absolute: " + op.getPath());
+            }
+            if (op.getType() == Batch.ADD_NODE) {
+                addedNodes.put(op.getPath(), Integer.valueOf(op.getNodeType()));
+                continue;
+            }
+            if (op.getType() != Batch.SET_PROPERTY && op.getType() != Batch.REMOVE_PROPERTY && op.getType() != Batch.SET_CONTENT) {
+                throw new RepositoryException("No such batch operation type: " + op.getType());
+            }
+            if (!addedNodes.containsKey(op.getPath()) && !existsNode(op.getPath())) {
+                throw new NoSuchNodeException("Node '" + op.getPath() + "' neither exists nor is added by the batch.");
+            }
+            if (op.getType() == Batch.SET_CONTENT) {
+                Integer nodeType = addedNodes.get(op.getPath());
+                if ((nodeType != null && nodeType.intValue() == NodeType.COLLECTION) || (nodeType == null && getNode(op.getPath()).isCollection())) {
+                    throw new RepositoryException("Content can not be written to collection: " + op.getPath());
+                }
+            }
+            List<Batch.Operation> operations = operationsByNode.get(op.getPath());
+            if (operations == null) {
+                operations = new ArrayList<Batch.Operation>();
+                operationsByNode.put(op.getPath(), operations);
+            }
+            operations.add(op);
+        }
+        return operationsByNode;
+    }
+
+    /**
+     * Add nodes of a batch, apply the property and content operations node by node (one meta file write per node), index every modified node once and commit the index once
+     */
+    private void apply(Batch batch, LinkedHashMap<String, List<Batch.Operation>> operationsByNode) throws Exception {
+        Iterator<Batch.Operation> it = batch.getOperations().iterator();
+        while (it.hasNext()) {
+            Batch.Operation op = it.next();
+            if (op.getType() == Batch.ADD_NODE) {
+                YarepUtil.addNodes(this, op.getPath(), op.getNodeType());
+            }
+        }
+
+        Iterator<java.util.Map.Entry<String, List<Batch.Operation>>> nodes = operationsByNode.entrySet().iterator();
+        while (nodes.hasNext()) {
+            java.util.Map.Entry<String, List<Batch.Operation>> entry = nodes.next();
+            VirtualFileSystemNode node = (VirtualFileSystemNode) getNode(entry.getKey());
+            boolean contentReplaced = node.applyBatch(entry.getValue());
+
+            try {
+                if (isAutoPropertyIndexingEnabled()) {
+                    Property[] properties = node.getProperties();
+                    if (properties != null && properties.length > 0) {
+                        // INFO: The indexer adds all other properties of the node as well
+                        autoIndexProperty(node, properties[0]);
+                    } else {
+                        String name = entry.getValue().get(0).getPropertyName();
+                        autoRemoveProperty(node, name, new DefaultProperty(name != null ? name : "", PropertyType.STRING, node));
+                    }
+                }
+                if (contentReplaced && isAutoFulltextIndexingEnabled()) {
+                    autoIndexFulltext(node);
+                }
+            } catch(Exception e) {
+                log.error(e, e);
+            }
+        }
+
+        if (indexer instanceof org.wyona.yarep.core.attributes.CommittableIndexerV1 && (isAutoPropertyIndexingEnabled() || isAutoFulltextIndexingEnabled())) {
+            try {
+                ((org.wyona.yarep.core.attributes.CommittableIndexerV1) indexer).commit();
+            } catch(Exception e) {
+                log.error(e, e);
+            }
+        }
+    }
+
+    /**
+     * Apply batches of the journal which have not been applied completely (e.g. because of a crash)
+     */
+    private void replayBatchJournal() {
+        File[] journalFiles = batchJournal.getPendingJournals();
+        if (journalFiles.length > 0) {
+            log.warn(journalFiles.length + " batch(es) of journal '" + batchJournal.getDir() + "' have not been applied completely and will be applied now.");
+        }
+        for (int i = 0; i < journalFiles.length; i++) {
+            try {
+                Batch batch = batchJournal.read(journalFiles[i]);
+                apply(batch, validate(batch));
+                batchJournal.commit(journalFiles[i]);
+            } catch (Exception e) {
+                log.error("Could not apply batch of journal '" + journalFiles[i] + "': " + e.getMessage(), e);
+                batchJournal.fail(journalFiles[i]);
+            }
+        }
+    }
+
     /**
      * Get date indexer searcher implementation
      * @param path Absolute repository path of node
@@ -848,6 +1428,10 @@ public class VirtualFileSystemRepository implements Repository, VersionableRepos
         } else if (getRevisionsDateIndexImpl().equals(REVISIONS_DATE_INDEX_LUCENE_IMPL)) {
             log.error("TODO: Replace node by path and repository!");
             return new DateIndexerSearcherImplV2(null, null);
+        } else if (getRevisionsDateIndexImpl().equals(REVISIONS_DATE_INDEX_CATALOG_IMPL)) {
+            return new DateIndexerSearcherImplV3(path, new VirtualFileSystemNode(this, path, new UID(path).toString()).metaDir, this);
+        } else if (getRevisionsDateIndexImpl().equals(REVISIONS_DATE_INDEX_REPOSITORY_IMPL)) {
+            return new DateIndexerSearcherImplV4(path, this);
         } else {
             log.error("No such revisions date index implementation '" + getRevisionsDateIndexImpl() + "'!");
             return null;
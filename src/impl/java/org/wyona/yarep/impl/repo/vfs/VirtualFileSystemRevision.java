@@ -299,6 +299,12 @@ public class VirtualFileSystemRevision extends VirtualFileSystemNode implements
             log.error(e, e);
         }
 
+        try {
+            getRepository().getRevisionContentStore().deleteContent(metaDir); // INFO: Release the blob referenced by this revision
+        } catch(java.io.IOException e) {
+            throw new RepositoryException(e.getMessage(), e);
+        }
+
         super.delete();
 
         deleteEmptyDirectories(metaDir);
@@ -353,11 +359,37 @@ public class VirtualFileSystemRevision extends VirtualFileSystemNode implements
         return true;
     }
 
+    /**
+     * @see org.wyona.yarep.core.Node#getInputStream()
+     */
     public InputStream getInputStream() throws RepositoryException {
         if (!isInitialized) {
             init();
         }
-        return super.getInputStream();
+        try {
+            return getRepository().getRevisionContentStore().getInputStream(metaDir);
+        } catch(java.io.IOException e) {
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.impl.repo.vfs.VirtualFileSystemNode#getReadableContentFile()
+     */
+    @Override
+    protected File getReadableContentFile() throws Exception {
+        if (!isInitialized) {
+            init();
+        }
+        return getRepository().getRevisionContentStore().getContentFile(metaDir); // INFO: Full copy or blob, whereas delta revisions are reconstructed in memory (see getInputStream())
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.ChannelReadableV1#getContentLength()
+     */
+    @Override
+    public long getContentLength() throws Exception {
+        return getSize();
     }
 
     public long getLastModified() throws RepositoryException {
@@ -405,11 +437,18 @@ public class VirtualFileSystemRevision extends VirtualFileSystemNode implements
         return super.getProperty(name);
     }
 
+    /**
+     * @see org.wyona.yarep.core.Node#getSize()
+     */
     public long getSize() throws RepositoryException {
         if (!isInitialized) {
             init();
         }
-        return super.getSize();
+        try {
+            return getRepository().getRevisionContentStore().getSize(metaDir);
+        } catch(java.io.IOException e) {
+            throw new RepositoryException(e.getMessage(), e);
+        }
     }
 
     public boolean hasProperty(String name) throws RepositoryException {
@@ -0,0 +1,125 @@
+package org.wyona.yarep.impl.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Scorer;
+
+/**
+ * Collector which counts the values of properties over the matching documents only: The untokenized values of a property (see LuceneIndexer#addProperty(Document, Property)) are loaded per segment
+ * into the field cache (which is shared by all searches on the same segment), such that every matching document only increments the counter of its value, without loading any stored fields.
+ */
+class FacetCollector extends Collector {
+
+    private String[] facetNames;
+    private List<Map<String, Integer>> counts = new ArrayList<Map<String, Integer>>();
+    private int numberOfMatches = 0;
+
+    private FieldCache.StringIndex[] values;
+    private int[][] segmentCounts;
+
+    /**
+     * @param facetNames Names of properties which values are counted
+     */
+    FacetCollector(String[] facetNames) {
+        this.facetNames = facetNames;
+        values = new FieldCache.StringIndex[facetNames.length];
+        segmentCounts = new int[facetNames.length][];
+        for (int i = 0; i < facetNames.length; i++) {
+            counts.add(new HashMap<String, Integer>());
+        }
+    }
+
+    /**
+     * @see org.apache.lucene.search.Collector#setScorer(Scorer)
+     */
+    public void setScorer(Scorer scorer) {
+        // INFO: Scores are not needed for counting
+    }
+
+    /**
+     * @see org.apache.lucene.search.Collector#collect(int)
+     */
+    public void collect(int doc) {
+        numberOfMatches++;
+        for (int i = 0; i < values.length; i++) {
+            segmentCounts[i][values[i].order[doc]]++;
+        }
+    }
+
+    /**
+     * @see org.apache.lucene.search.Collector#setNextReader(IndexReader, int)
+     */
+    public void setNextReader(IndexReader segmentReader, int docBase) throws IOException {
+        addSegmentCounts();
+        for (int i = 0; i < facetNames.length; i++) {
+            values[i] = FieldCache.DEFAULT.getStringIndex(segmentReader, LuceneIndexer.getFacetFieldName(facetNames[i]));
+            segmentCounts[i] = new int[values[i].lookup.length];
+        }
+    }
+
+    /**
+     * @see org.apache.lucene.search.Collector#acceptsDocsOutOfOrder()
+     */
+    public boolean acceptsDocsOutOfOrder() {
+        return true;
+    }
+
+    /**
+     * Get number of matching documents
+     */
+    int getNumberOfMatches() {
+        return numberOfMatches;
+    }
+
+    /**
+     * Get counts of the values of a property
+     * @param index Index of property within facet names
+     * @param limit Maximum number of values, whereas -1 means all values
+     * @return counts by value, sorted by count (descending) and by value
+     */
+    Map<String, Integer> getCounts(int index, int limit) {
+        addSegmentCounts();
+        List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(counts.get(index).entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+            public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                int diff = b.getValue().compareTo(a.getValue());
+                return diff != 0 ? diff : a.getKey().compareTo(b.getKey());
+            }
+        });
+        Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < entries.size() && (limit < 0 || i < limit); i++) {
+            result.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Add counts of the previous segment to the counts by value, whereas the order 0 means that a document has no value
+     */
+    private void addSegmentCounts() {
+        for (int i = 0; i < facetNames.length; i++) {
+            if (segmentCounts[i] == null) {
+                continue;
+            }
+            for (int order = 1; order < segmentCounts[i].length; order++) {
+                if (segmentCounts[i][order] > 0) {
+                    String value = values[i].lookup[order];
+                    Integer count = counts.get(i).get(value);
+                    counts.get(i).put(value, Integer.valueOf((count != null ? count.intValue() : 0) + segmentCounts[i][order]));
+                }
+            }
+            segmentCounts[i] = null;
+            values[i] = null;
+        }
+    }
+}
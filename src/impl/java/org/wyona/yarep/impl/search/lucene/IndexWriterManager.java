@@ -0,0 +1,304 @@
+package org.wyona.yarep.impl.search.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.log4j.Logger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+
+/**
+ * Shared, long-lived IndexWriter of a particular index directory.
+ * Updates are committed in groups, either when the number of pending updates has reached a configured maximum or periodically by a background committer.
+ * Optimizing the index is done as scheduled maintenance task (if an optimize interval has been configured).
+ * After every commit the shared searcher of the index directory is notified (see {@link SearcherManager#notifyCommit(File)}).
+ *
+ * IMPORTANT: The writer keeps the 'write.lock' of the index until it is closed, hence this doesn't work within a clustered environment where several cluster nodes write to the same index!
+ */
+public class IndexWriterManager {
+
+    private static Logger log = Logger.getLogger(IndexWriterManager.class);
+
+    public static final long DEFAULT_COMMIT_INTERVAL = 1000;
+    public static final int DEFAULT_MAX_PENDING_UPDATES = 100;
+    public static final long DEFAULT_OPTIMIZE_INTERVAL = 24 * 60 * 60 * 1000L;
+
+    private static HashMap<String, IndexWriterManager> managers = new HashMap<String, IndexWriterManager>();
+    private static Timer timer;
+
+    private File indexDir;
+    private Analyzer analyzer;
+    private long writeLockTimeout;
+    private int maxPendingUpdates;
+
+    private IndexWriter writer;
+    private int pendingUpdates = 0;
+    private TimerTask commitTask;
+    private TimerTask optimizeTask;
+
+    private long commitCount = 0;
+    private long lastCommitTime = 0;
+    private long optimizeCount = 0;
+    private long lastOptimizeTime = 0;
+
+    /**
+     *
+     */
+    private IndexWriterManager(File indexDir, Analyzer analyzer, long writeLockTimeout, int maxPendingUpdates) {
+        this.indexDir = indexDir;
+        this.analyzer = analyzer;
+        this.writeLockTimeout = writeLockTimeout;
+        this.maxPendingUpdates = maxPendingUpdates;
+    }
+
+    /**
+     * Get shared index writer of a particular index directory
+     * @param indexDir Directory where the index (segment files) is located
+     * @param analyzer Analyzer used to analyze documents
+     * @param writeLockTimeout write.lock timeout
+     * @param commitInterval Interval (in milliseconds) at which pending updates are committed
+     * @param maxPendingUpdates Maximum number of pending updates, after which updates are committed right away
+     * @param optimizeInterval Interval (in milliseconds) at which the index is optimized, whereas 0 or a negative value means never
+     */
+    public static synchronized IndexWriterManager getInstance(File indexDir, Analyzer analyzer, long writeLockTimeout, long commitInterval, int maxPendingUpdates, long optimizeInterval) {
+        String key = getKey(indexDir);
+        IndexWriterManager manager = managers.get(key);
+        if (manager == null) {
+            log.info("Init shared index writer of index directory: " + key);
+            manager = new IndexWriterManager(indexDir, analyzer, writeLockTimeout, maxPendingUpdates);
+            if (timer == null) {
+                timer = new Timer("yarep-index-committer", true);
+                Runtime.getRuntime().addShutdownHook(new Thread("yarep-index-writer-shutdown") {
+                    public void run() {
+                        closeAll();
+                    }
+                });
+            }
+            if (commitInterval > 0) {
+                manager.commitTask = new CommitTask(manager);
+                timer.schedule(manager.commitTask, commitInterval, commitInterval);
+            }
+            if (optimizeInterval > 0) {
+                manager.optimizeTask = new OptimizeTask(manager);
+                timer.schedule(manager.optimizeTask, optimizeInterval, optimizeInterval);
+            }
+            managers.put(key, manager);
+        }
+        return manager;
+    }
+
+    /**
+     * Get shared index writer of a particular index directory if it has been initialized already
+     * @param indexDir Directory where the index (segment files) is located
+     * @return shared index writer or null if no shared index writer has been initialized for this index directory
+     */
+    public static synchronized IndexWriterManager getExistingInstance(File indexDir) {
+        return managers.get(getKey(indexDir));
+    }
+
+    /**
+     * Commit and close all shared index writers
+     */
+    public static synchronized void closeAll() {
+        Iterator<IndexWriterManager> it = managers.values().iterator();
+        while (it.hasNext()) {
+            it.next().close();
+        }
+        managers.clear();
+    }
+
+    /**
+     * Add or update document
+     * @param pathTerm Term identifying the document which will be replaced
+     * @param document New document
+     */
+    public synchronized void updateDocument(Term pathTerm, Document document) throws Exception {
+        getWriter().updateDocument(pathTerm, document);
+        updated();
+    }
+
+    /**
+     * Delete documents
+     * @param term Term identifying the documents which will be deleted
+     */
+    public synchronized void deleteDocuments(Term term) throws Exception {
+        getWriter().deleteDocuments(term);
+        updated();
+    }
+
+    /**
+     * Commit pending updates, such that they become durable and visible to searchers
+     */
+    public synchronized void commit() throws IOException {
+        if (writer == null || pendingUpdates == 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        writer.commit();
+        lastCommitTime = System.currentTimeMillis() - start;
+        commitCount++;
+        if (log.isDebugEnabled()) log.debug(pendingUpdates + " update(s) of index '" + indexDir + "' have been committed within " + lastCommitTime + "ms");
+        pendingUpdates = 0;
+        SearcherManager.notifyCommit(indexDir);
+    }
+
+    /**
+     * Optimize index (and commit pending updates)
+     */
+    public synchronized void optimize() throws Exception {
+        long start = System.currentTimeMillis();
+        IndexWriter w = getWriter();
+        w.optimize();
+        w.commit();
+        pendingUpdates = 0;
+        lastOptimizeTime = System.currentTimeMillis() - start;
+        optimizeCount++;
+        log.info("Index '" + indexDir + "' has been optimized within " + lastOptimizeTime + "ms");
+        SearcherManager.notifyCommit(indexDir);
+    }
+
+    /**
+     * Commit pending updates and close writer, whereas the write.lock is released
+     */
+    public synchronized void close() {
+        if (commitTask != null) {
+            commitTask.cancel();
+        }
+        if (optimizeTask != null) {
+            optimizeTask.cancel();
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+                log.info("Shared index writer of index directory '" + indexDir + "' has been closed.");
+            } catch (Exception e) {
+                log.error(e, e);
+            }
+            writer = null;
+            pendingUpdates = 0;
+            SearcherManager.notifyCommit(indexDir);
+        }
+    }
+
+    /**
+     * Get number of updates which have not been committed yet
+     */
+    public synchronized int getPendingUpdates() {
+        return pendingUpdates;
+    }
+
+    /**
+     * Get number of commits since this manager has been initialized
+     */
+    public synchronized long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * Get duration (in milliseconds) of the most recent commit
+     */
+    public synchronized long getLastCommitTime() {
+        return lastCommitTime;
+    }
+
+    /**
+     * Get number of optimizations since this manager has been initialized
+     */
+    public synchronized long getOptimizeCount() {
+        return optimizeCount;
+    }
+
+    /**
+     * Get duration (in milliseconds) of the most recent optimization
+     */
+    public synchronized long getLastOptimizeTime() {
+        return lastOptimizeTime;
+    }
+
+    /**
+     * Get index directory
+     */
+    public File getIndexDir() {
+        return indexDir;
+    }
+
+    /**
+     * Count update and commit if the maximum number of pending updates has been reached
+     */
+    private void updated() throws IOException {
+        pendingUpdates++;
+        if (maxPendingUpdates > 0 && pendingUpdates >= maxPendingUpdates) {
+            commit();
+        }
+    }
+
+    /**
+     * Get writer, whereas the writer is initialized lazily
+     */
+    private IndexWriter getWriter() throws Exception {
+        if (writer == null) {
+            writer = LuceneIndexerV2.createIndexWriter(indexDir, analyzer, writeLockTimeout);
+            if (writer == null) {
+                throw new Exception("Could not init IndexWriter of index directory: " + indexDir);
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Get key of index directory
+     */
+    private static String getKey(File indexDir) {
+        try {
+            return indexDir.getCanonicalPath();
+        } catch (IOException e) {
+            log.warn(e.getMessage());
+            return indexDir.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Background task committing pending updates
+     */
+    private static class CommitTask extends TimerTask {
+        private IndexWriterManager manager;
+
+        CommitTask(IndexWriterManager manager) {
+            this.manager = manager;
+        }
+
+        public void run() {
+            try {
+                manager.commit();
+            } catch (Exception e) {
+                log.error("Could not commit index '" + manager.getIndexDir() + "': " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Background task optimizing the index
+     */
+    private static class OptimizeTask extends TimerTask {
+        private IndexWriterManager manager;
+
+        OptimizeTask(IndexWriterManager manager) {
+            this.manager = manager;
+        }
+
+        public void run() {
+            try {
+                manager.optimize();
+            } catch (Exception e) {
+                log.error("Could not optimize index '" + manager.getIndexDir() + "': " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -32,6 +32,13 @@ public class LuceneConfig {
     private String PROPERTIES_INDEX_DIR = "properties";
     private TikaConfig tikaConfig;
     private long writeLockTimeout = 0;
+    private long searcherRefreshInterval = SearcherManager.DEFAULT_REFRESH_INTERVAL;
+    private int resultCacheMaxEntries = SearchResultCache.DEFAULT_MAX_ENTRIES;
+    private long resultCacheMaxBytes = SearchResultCache.DEFAULT_MAX_BYTES;
+    private boolean sharedIndexWriter = false;
+    private long commitInterval = IndexWriterManager.DEFAULT_COMMIT_INTERVAL;
+    private int maxPendingUpdates = IndexWriterManager.DEFAULT_MAX_PENDING_UPDATES;
+    private long optimizeInterval = IndexWriterManager.DEFAULT_OPTIMIZE_INTERVAL;
     private Repository repo;
 
     private boolean indexRevisions = false;
@@ -126,6 +133,20 @@ public class LuceneConfig {
                     writeLockTimeout = 1001; // INFO: 1001 milliseconds
                     log.warn("No 'write.lock' timeout configured, hence use hard-coded value: " + writeLockTimeout);
                 }
+
+                // INFO: Interval at which shared searchers check whether the index has been modified by another process (commits of the local indexer are seen right away)
+                searcherRefreshInterval = luceneConfig.getChild("searcher").getAttributeAsLong("refresh-interval-ms", SearcherManager.DEFAULT_REFRESH_INTERVAL);
+
+                // INFO: Results of searches are cached until the index is modified (0 entries means that results are not cached)
+                resultCacheMaxEntries = luceneConfig.getChild("searcher").getAttributeAsInteger("cache-max-entries", SearchResultCache.DEFAULT_MAX_ENTRIES);
+                resultCacheMaxBytes = luceneConfig.getChild("searcher").getAttributeAsLong("cache-max-bytes", SearchResultCache.DEFAULT_MAX_BYTES);
+
+                // INFO: If 'shared' is set to true, then one long-lived writer per index is shared, which commits updates in groups. By default (and within a clustered environment) a writer is created for every modification, such that the write.lock is released right away
+                Configuration writerConfig = luceneConfig.getChild("index-writer");
+                sharedIndexWriter = writerConfig.getAttributeAsBoolean("shared", false);
+                commitInterval = writerConfig.getAttributeAsLong("commit-interval-ms", IndexWriterManager.DEFAULT_COMMIT_INTERVAL);
+                maxPendingUpdates = writerConfig.getAttributeAsInteger("max-pending-updates", IndexWriterManager.DEFAULT_MAX_PENDING_UPDATES);
+                optimizeInterval = writerConfig.getAttributeAsLong("optimize-interval-ms", IndexWriterManager.DEFAULT_OPTIMIZE_INTERVAL);
             } else {
                 log.warn("No search index dir (<search-index src=\"...\"/>) configured within: " + configParent);
             }
@@ -248,6 +269,55 @@ public class LuceneConfig {
         return writeLockTimeout;
     }
 
+    /**
+     * Get interval (in milliseconds) at which shared searchers check whether the index has been modified by another process
+     */
+    public long getSearcherRefreshInterval() {
+        return searcherRefreshInterval;
+    }
+
+    /**
+     * Get maximum number of cached search results (per index), whereas 0 means that results are not cached
+     */
+    public int getResultCacheMaxEntries() {
+        return resultCacheMaxEntries;
+    }
+
+    /**
+     * Get maximum (estimated) number of bytes of cached search results (per index)
+     */
+    public long getResultCacheMaxBytes() {
+        return resultCacheMaxBytes;
+    }
+
+    /**
+     * Check whether one long-lived index writer per index is shared (otherwise an index writer is created for every modification)
+     */
+    public boolean isSharedIndexWriter() {
+        return sharedIndexWriter;
+    }
+
+    /**
+     * Get interval (in milliseconds) at which a shared index writer commits pending updates
+     */
+    public long getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Get maximum number of pending updates of a shared index writer, after which the updates are committed right away
+     */
+    public int getMaxPendingUpdates() {
+        return maxPendingUpdates;
+    }
+
+    /**
+     * Get interval (in milliseconds) at which a shared index writer optimizes the index (0 or a negative value means never)
+     */
+    public long getOptimizeInterval() {
+        return optimizeInterval;
+    }
+
     /**
      * Get repository which contains the content for which this index has been created
      */
@@ -13,12 +13,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
 import org.wyona.yarep.core.Node;
 import org.wyona.yarep.core.Property;
+import org.wyona.yarep.core.PropertyType;
 import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.attributes.CommittableIndexerV1;
 import org.wyona.yarep.core.search.Indexer;
 import org.wyona.yarep.core.search.Metadata;
 import org.wyona.yarep.core.search.SearchException;
@@ -29,7 +32,7 @@ import org.wyona.yarep.impl.search.lucene.LuceneConfig;
 /**
  * Lucene implementation of indexer
  */
-public class LuceneIndexer implements Indexer {
+public class LuceneIndexer implements Indexer, CommittableIndexerV1 {
     
     static Logger log = LogManager.getLogger(LuceneIndexer.class);
 
@@ -37,6 +40,14 @@ public class LuceneIndexer implements Indexer {
     private static enum INDEX_TYPE {FULLTEXT, PROPERTIES};
     public static final String INDEX_PROPERTY_FULL = "_FULLTEXT";
     public static final String INDEX_PROPERTY_YAREPPATH = "_PATH";
+    public static final String INDEX_PROPERTY_TYPED_PREFIX = "_TYPED_";
+    public static final String INDEX_PROPERTY_ANCESTOR = "_ANCESTOR";
+    public static final String INDEX_PROPERTY_FACET_PREFIX = "_FACET_";
+
+    /**
+     * Maximum length of a property value which is added as facet value (see addProperty(Document, Property)), because longer values are usually texts rather than categories
+     */
+    private static final int MAX_FACET_VALUE_LENGTH = 256;
     
     protected LuceneConfig config;
 
@@ -45,6 +56,9 @@ public class LuceneIndexer implements Indexer {
      */
     public void configure(Configuration searchIndexConfig, File configFile, Repository repo) throws SearchException {
         this.config = new LuceneConfig(searchIndexConfig, configFile.getParent(), repo);
+        // INFO: Every modification is committed by closing the IndexWriter, whereas the shared searchers are notified right after (see SearcherManager#notifyCommit(File))
+        SearcherManager.registerCommitNotifier(config.getFulltextSearchIndexFile());
+        SearcherManager.registerCommitNotifier(config.getPropertiesSearchIndexFile());
     }
     
     /**
@@ -119,7 +133,7 @@ public class LuceneIndexer implements Indexer {
                 indexWriter = createFulltextIndexWriter();
                 indexWriter.deleteDocuments(new org.apache.lucene.index.Term(INDEX_PROPERTY_YAREPPATH, node.getPath()));
                 indexWriter.close();
-                
+                SearcherManager.notifyCommit(config.getFulltextSearchIndexFile());
             } catch(Throwable e) {
                 log.warn("Could not init IndexWriter, because of existing lock, hence content of node '" + nodePath + "' will not be deleted from the index!");
             } finally {
@@ -194,12 +208,11 @@ public class LuceneIndexer implements Indexer {
 
             Document luceneDoc = getDocument(path);
 
-            // TODO: Write typed property value to index. Is this actually possible?
-            // INFO: As workaround Add the property as string value to the lucene document
+            // INFO: Add the property as string value and LONG, DOUBLE, DATE and BOOLEAN properties also as typed value to the lucene document (see addProperty(Document, Property))
             if (property.getValueAsString() != null) {
                 log.debug("Index property '" + property.getName() + "': " + property.getValueAsString());
                 //luceneDoc.add(new Field(property.getName(), new StringReader(property.getValueAsString())));
-                luceneDoc.add(new Field(property.getName(), property.getValueAsString(), Field.Store.YES, Field.Index.TOKENIZED));
+                addProperty(luceneDoc, property);
             } else {
                 log.warn("Property '" + property.getName() + "' has null as string value and hence will not be indexed (path: " + path + ")!");
             }
@@ -208,9 +221,7 @@ public class LuceneIndexer implements Indexer {
             Property[] properties = node.getProperties();
             for (int i = 0; i < properties.length; i++) {
                 if (!properties[i].getName().equals(property.getName())) {
-                    if (properties[i].getValueAsString() != null) {
-                        luceneDoc.add(new Field(properties[i].getName(), properties[i].getValueAsString(), Field.Store.YES, Field.Index.TOKENIZED));
-                    }
+                    addProperty(luceneDoc, properties[i]);
                 }
             }
 
@@ -248,6 +259,7 @@ public class LuceneIndexer implements Indexer {
                 indexWriter = createPropertiesIndexWriter();
                 indexWriter.deleteDocuments(new org.apache.lucene.index.Term(INDEX_PROPERTY_YAREPPATH, path)); // TODO: Actually only documents with _PATH = path and containing a field with the property name should be deleted!
                 indexWriter.close();
+                SearcherManager.notifyCommit(config.getPropertiesSearchIndexFile());
             } catch(Exception e) {
                 log.warn("Probably IndexWriter could not be initialized, because of existing lock, hence node with path '" + path + "' will not be deleted from the index! Exception message: " + e.getMessage());
                 //log.error(e, e);
@@ -263,6 +275,47 @@ public class LuceneIndexer implements Indexer {
         }
     }
 
+    /**
+     * @see org.wyona.yarep.core.attributes.CommittableIndexerV1#commit()
+     */
+    public void commit() throws SearchException {
+        // INFO: This implementation closes the IndexWriter after every modification, hence all changes have been committed already
+        log.debug("All changes have been committed already.");
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.CommittableIndexerV1#optimize()
+     */
+    public void optimize() throws SearchException {
+        synchronized (LOCK) {
+            try {
+                optimize(createFulltextIndexWriter(), config.getFulltextSearchIndexFile());
+                optimize(createPropertiesIndexWriter(), config.getPropertiesSearchIndexFile());
+            } catch (Exception e) {
+                log.error(e, e);
+                throw new SearchException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Optimize index and close writer (exactly once, also if optimizing fails)
+     * @param indexWriter Writer of index or null if no writer could be initialized
+     * @param indexDir Directory of index
+     */
+    private void optimize(IndexWriter indexWriter, File indexDir) throws Exception {
+        if (indexWriter == null) {
+            log.warn("No IndexWriter initialized, hence index will not be optimized: " + indexDir);
+            return;
+        }
+        try {
+            indexWriter.optimize();
+        } finally {
+            indexWriter.close();
+        }
+        SearcherManager.notifyCommit(indexDir);
+    }
+
     /**
      * Update document of a particular path within index
      *
@@ -272,12 +325,15 @@ public class LuceneIndexer implements Indexer {
      */
     private void updateDocument(INDEX_TYPE type, String path, Document document) throws Exception {
         IndexWriter indexWriter = null;
+        File indexDir = null;
         synchronized (LOCK) {
             try {
                 if (type == INDEX_TYPE.FULLTEXT) {
                     indexWriter = createFulltextIndexWriter();
+                    indexDir = config.getFulltextSearchIndexFile();
                 } else if (type == INDEX_TYPE.PROPERTIES) {
                     indexWriter = createPropertiesIndexWriter();
+                    indexDir = config.getPropertiesSearchIndexFile();
                 } else {
                     throw new Exception("No such type: " + type);
                 }
@@ -285,6 +341,7 @@ public class LuceneIndexer implements Indexer {
                     if (log.isDebugEnabled()) log.debug("Node will be indexed: " + path);
                     indexWriter.updateDocument(new org.apache.lucene.index.Term(INDEX_PROPERTY_YAREPPATH, path), document);
                     indexWriter.close();
+                    SearcherManager.notifyCommit(indexDir);
                     //indexWriter.flush();
                 } else {
                     log.fatal("IndexWriter is null!");
@@ -303,6 +360,60 @@ public class LuceneIndexer implements Indexer {
         }
     }
 
+    /**
+     * Get name of field which contains the typed value of a property (see addProperty(Document, Property))
+     */
+    public static String getTypedFieldName(String propertyName) {
+        return INDEX_PROPERTY_TYPED_PREFIX + propertyName;
+    }
+
+    /**
+     * Get name of field which contains the untokenized value of a property (see addProperty(Document, Property))
+     */
+    public static String getFacetFieldName(String propertyName) {
+        return INDEX_PROPERTY_FACET_PREFIX + propertyName;
+    }
+
+    /**
+     * Add property to lucene document, whereas the string value is added as tokenized field (see LuceneSearcher#searchProperty(String, String, String)) and
+     * as untokenized field, such that the values can be counted as a whole (see LuceneSearcher#getFacets(String, String, String, String[], int)), and
+     * the value of LONG, DOUBLE, DATE and BOOLEAN properties is also added as typed field (see LuceneSearcher#searchProperties(PropertyQuery, int, int)).
+     * Numbers and dates (milliseconds) are added as trie terms (NumericField), such that range queries and sorting do not have to enumerate all terms.
+     * Indices which have been created before typed fields were introduced are migrated by re-indexing the repository (see org.wyona.yarep.util.YarepUtil#indexRepository(Repository))
+     */
+    static void addProperty(Document luceneDoc, Property property) throws Exception {
+        String value = property.getValueAsString();
+        if (value == null) {
+            return;
+        }
+        luceneDoc.add(new Field(property.getName(), value, Field.Store.YES, Field.Index.TOKENIZED));
+        if (value.length() <= MAX_FACET_VALUE_LENGTH) {
+            luceneDoc.add(new Field(getFacetFieldName(property.getName()), value, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+
+        String typedFieldName = getTypedFieldName(property.getName());
+        try {
+            switch (property.getType()) {
+                case PropertyType.LONG:
+                    luceneDoc.add(new NumericField(typedFieldName).setLongValue(property.getLong()));
+                    break;
+                case PropertyType.DOUBLE:
+                    luceneDoc.add(new NumericField(typedFieldName).setDoubleValue(property.getDouble()));
+                    break;
+                case PropertyType.DATE:
+                    luceneDoc.add(new NumericField(typedFieldName).setLongValue(property.getDate().getTime()));
+                    break;
+                case PropertyType.BOOLEAN:
+                    luceneDoc.add(new Field(typedFieldName, String.valueOf(property.getBoolean()), Field.Store.NO, Field.Index.NOT_ANALYZED));
+                    break;
+                default:
+                    // INFO: STRING and BINARY properties are only added as string value
+            }
+        } catch (Exception e) {
+            log.warn("Typed value of property '" + property.getName() + "' (Value: " + value + ") could not be indexed: " + e.getMessage());
+        }
+    }
+
     /**
      * Init lucene document
      * @param path Node path for which fields and values are associated with
@@ -311,9 +422,48 @@ public class LuceneIndexer implements Indexer {
         Document luceneDoc = new Document();
         // INFO: Add path as field such that found properties can be related to a path
         luceneDoc.add(new Field(INDEX_PROPERTY_YAREPPATH, path, Field.Store.YES, Field.Index.UN_TOKENIZED));
+        addAncestors(luceneDoc, path);
         return luceneDoc;
     }
 
+    /**
+     * Add the path of the node itself and the paths of all its ancestors as terms, such that hits can be limited to a subtree by a single term (see ScopeFilter).
+     * For example '/sites/foo/index.html#revision=3' has the terms '/', '/sites', '/sites/foo' and '/sites/foo/index.html'
+     * @param path Path of node within index (see getDocument(String))
+     */
+    static void addAncestors(Document luceneDoc, String path) {
+        String nodePath = path;
+        if (nodePath.lastIndexOf("#revision=") >= 0) {
+            nodePath = nodePath.substring(0, nodePath.lastIndexOf("#revision="));
+        }
+        nodePath = getScopePath(nodePath);
+        luceneDoc.add(new Field(INDEX_PROPERTY_ANCESTOR, "/", Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        int i = nodePath.indexOf('/', 1);
+        while (i > 0) {
+            luceneDoc.add(new Field(INDEX_PROPERTY_ANCESTOR, nodePath.substring(0, i), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+            i = nodePath.indexOf('/', i + 1);
+        }
+        if (!nodePath.equals("/")) {
+            luceneDoc.add(new Field(INDEX_PROPERTY_ANCESTOR, nodePath, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+    }
+
+    /**
+     * Normalize path of subtree (e.g. '/sites/foo/' becomes '/sites/foo'), such that it matches an ancestor term (see addAncestors(Document, String))
+     */
+    public static String getScopePath(String path) {
+        if (path == null || path.length() == 0) {
+            return "/";
+        }
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
     /**
      * Get fulltext
      */
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.List;
 
 import org.apache.avalon.framework.configuration.Configuration;
 
@@ -23,6 +24,8 @@ import org.apache.tika.sax.WriteOutContentHandler;
 import org.wyona.yarep.core.Node;
 import org.wyona.yarep.core.Property;
 import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.attributes.CommittableIndexerV1;
+import org.wyona.yarep.core.search.BulkIndexer;
 import org.wyona.yarep.core.search.Indexer;
 import org.wyona.yarep.core.search.Metadata;
 import org.wyona.yarep.core.search.SearchException;
@@ -31,8 +34,9 @@ import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
 
 /**
  * Version 2 of Lucene implementation of indexer (mixing fulltext and properties)
+ * This indexer supports bulk (re-)indexing (see org.wyona.yarep.util.RepositoryIndexer), whereas the text of nodes is extracted by several threads and the documents are written in batches
  */
-public class LuceneIndexerV2 implements Indexer {
+public class LuceneIndexerV2 implements Indexer, CommittableIndexerV1, BulkIndexer<Document[]> {
     
     static Logger log = Logger.getLogger(LuceneIndexerV2.class);
     protected LuceneConfig config;
@@ -45,6 +49,9 @@ public class LuceneIndexerV2 implements Indexer {
      */
     public void configure(Configuration searchIndexConfig, File configFile, Repository repo) throws SearchException {
         this.config = new LuceneConfig(searchIndexConfig, configFile.getParent(), repo);
+        // INFO: Every commit (of the shared or of a short-lived IndexWriter) is notified to the shared searchers (see SearcherManager#notifyCommit(File))
+        SearcherManager.registerCommitNotifier(config.getFulltextSearchIndexFile());
+        SearcherManager.registerCommitNotifier(config.getPropertiesSearchIndexFile());
     }
     
     /**
@@ -66,47 +73,17 @@ public class LuceneIndexerV2 implements Indexer {
      */
     public void index(Node node, Metadata metaData) throws SearchException {
         try {
-            String path = node.getPath();
-            if (config.doIndexRevisions() && org.wyona.yarep.util.YarepUtil.isRevision(node)) {
-                String revisionName = ((org.wyona.yarep.core.Revision)node).getRevisionName();
-                log.debug("Trying to index revision: " + path + " (" + revisionName + "), " + node.getClass().getName());
-                path = path + "#revision=" + revisionName; // TODO: Discuss the separator
-            } else {
-                log.debug("Trying to index node: " + path);
-            }
-
             if (metaData != null) {
                 log.warn("This indexer implementation '" + getClass().getName() + "' is currently not making use of the meta data argument!");
             }
 
-            Document luceneDoc = getDocument(path);
-
-            // INFO: Add fulltext and tika properties
-            String mimeType = node.getMimeType();
-            if (mimeType != null) {
-                if (log.isDebugEnabled()) log.debug("Mime type: " + mimeType);
-                luceneDoc = addFulltext(node, mimeType, luceneDoc);
-            } else {
-                log.warn("Node '" + path + "' has no mime-type set and hence actual node content will not be added to fulltext index.");
-            }
-
-            // INFO: Add properties
-            Property[] properties = node.getProperties();
-            if (properties != null) {
-                for (int i = 0; i < properties.length; i++) {
-                    //log.debug("Add property to fulltext index: " + properties[i].getName());
-                    if (properties[i].getValueAsString() != null) {
-                        luceneDoc.add(new Field(properties[i].getName(), properties[i].getValueAsString(), Field.Store.YES, Field.Index.TOKENIZED));
-                    }
-                }
-            } else {
-                log.info("Node '" + path + "' has no properties.");
-            }
+            String path = getIndexPath(node);
+            Document luceneDoc = createFulltextDocument(node, path);
 
             // INFO: Update index
             try {
                 log.debug("Fulltext index: Add/update node: " + path);
-                updateDocument(createFulltextIndexWriter(), path, luceneDoc);
+                updateDocument(true, path, luceneDoc);
             } catch(org.apache.lucene.store.LockObtainFailedException e) {
                 log.warn("Could not init 'fulltext' IndexWriter (maybe because of existing lock, exception message: " + e.getMessage() + "), hence content of node '" + path + "' will not be indexed!");
                 // TODO: log node path into dedicated log message!
@@ -117,6 +94,138 @@ public class LuceneIndexerV2 implements Indexer {
         }
     }
 
+    /**
+     * Get path of node within index (revisions are indexed with the revision name appended, if indexing of revisions is enabled)
+     */
+    private String getIndexPath(Node node) throws Exception {
+        String path = node.getPath();
+        if (config.doIndexRevisions() && org.wyona.yarep.util.YarepUtil.isRevision(node)) {
+            String revisionName = ((org.wyona.yarep.core.Revision)node).getRevisionName();
+            log.debug("Trying to index revision: " + path + " (" + revisionName + "), " + node.getClass().getName());
+            path = path + "#revision=" + revisionName; // TODO: Discuss the separator
+        } else {
+            log.debug("Trying to index node: " + path);
+        }
+        return path;
+    }
+
+    /**
+     * Create lucene document of fulltext index, which contains the extracted text and all properties of the node
+     * @param path Path of node within index
+     */
+    private Document createFulltextDocument(Node node, String path) throws Exception {
+        Document luceneDoc = getDocument(path);
+
+        // INFO: Add fulltext and tika properties
+        String mimeType = node.getMimeType();
+        if (mimeType != null) {
+            if (log.isDebugEnabled()) log.debug("Mime type: " + mimeType);
+            luceneDoc = addFulltext(node, mimeType, luceneDoc);
+        } else {
+            log.warn("Node '" + path + "' has no mime-type set and hence actual node content will not be added to fulltext index.");
+        }
+
+        // INFO: Add properties
+        Property[] properties = node.getProperties();
+        if (properties != null) {
+            for (int i = 0; i < properties.length; i++) {
+                //log.debug("Add property to fulltext index: " + properties[i].getName());
+                if (properties[i].getValueAsString() != null) {
+                    luceneDoc.add(new Field(properties[i].getName(), properties[i].getValueAsString(), Field.Store.YES, Field.Index.TOKENIZED));
+                }
+            }
+        } else {
+            log.info("Node '" + path + "' has no properties.");
+        }
+        return luceneDoc;
+    }
+
+    /**
+     * Create lucene document of properties index, which contains all properties of the node (see index(Node, Property))
+     * @param path Path of node within index
+     * @return document or null if the node has no properties
+     */
+    private Document createPropertiesDocument(Node node, String path) throws Exception {
+        Property[] properties = node.getProperties();
+        if (properties == null || properties.length == 0) {
+            return null;
+        }
+        Document luceneDoc = getDocument(path);
+        for (int i = 0; i < properties.length; i++) {
+            LuceneIndexer.addProperty(luceneDoc, properties[i]);
+        }
+        return luceneDoc;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.search.BulkIndexer#extract(Node)
+     * @return fulltext document and properties document (which is null if the node has no properties)
+     */
+    public Document[] extract(Node node) throws SearchException {
+        try {
+            String path = getIndexPath(node);
+            return new Document[] {createFulltextDocument(node, path), createPropertiesDocument(node, path)};
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.toString());
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.core.search.BulkIndexer#write(List)
+     */
+    public void write(List<Document[]> documents) throws SearchException {
+        try {
+            if (config.isSharedIndexWriter()) {
+                IndexWriterManager fulltextManager = getFulltextIndexWriterManager();
+                IndexWriterManager propertiesManager = getPropertiesIndexWriterManager();
+                for (Document[] docs : documents) {
+                    fulltextManager.updateDocument(new Term("_PATH", docs[0].get("_PATH")), docs[0]);
+                    if (docs[1] != null) {
+                        propertiesManager.updateDocument(new Term("_PATH", docs[1].get("_PATH")), docs[1]);
+                    } else {
+                        propertiesManager.deleteDocuments(new Term("_PATH", docs[0].get("_PATH"))); // INFO: The node has no properties (anymore)
+                    }
+                }
+                return;
+            }
+
+            // INFO: One writer per index and batch (instead of one writer per document)
+            IndexWriter fulltextWriter = createFulltextIndexWriter();
+            if (fulltextWriter == null) {
+                throw new Exception("Index writer is null and hence " + documents.size() + " documents will not be indexed!");
+            }
+            try {
+                for (Document[] docs : documents) {
+                    fulltextWriter.updateDocument(new Term("_PATH", docs[0].get("_PATH")), docs[0]);
+                }
+            } finally {
+                fulltextWriter.close();
+            }
+            SearcherManager.notifyCommit(config.getFulltextSearchIndexFile());
+
+            IndexWriter propertiesWriter = createPropertiesIndexWriter();
+            if (propertiesWriter == null) {
+                throw new Exception("Index writer is null and hence " + documents.size() + " documents will not be indexed!");
+            }
+            try {
+                for (Document[] docs : documents) {
+                    if (docs[1] != null) {
+                        propertiesWriter.updateDocument(new Term("_PATH", docs[1].get("_PATH")), docs[1]);
+                    } else {
+                        propertiesWriter.deleteDocuments(new Term("_PATH", docs[0].get("_PATH"))); // INFO: The node has no properties (anymore)
+                    }
+                }
+            } finally {
+                propertiesWriter.close();
+            }
+            SearcherManager.notifyCommit(config.getPropertiesSearchIndexFile());
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.getMessage(), e);
+        }
+    }
+
     /**
      * @see org.wyona.yarep.core.search.Indexer#removeFromIndex(org.wyona.yarep.core.Node)
      */
@@ -135,12 +244,21 @@ public class LuceneIndexerV2 implements Indexer {
      */
     private void removeFromFulltextIndex(String path) {
         log.debug("Trying to remove document '" + path + "' from fulltext index...");
+        if (config.isSharedIndexWriter()) {
+            try {
+                getFulltextIndexWriterManager().deleteDocuments(new Term("_PATH", path));
+            } catch(Exception e) {
+                log.warn("Node with path '" + path + "' could not be deleted from the fulltext index! Exception message: " + e.getMessage());
+            }
+            return;
+        }
         IndexWriter indexWriter = null;
         try {
             indexWriter = createFulltextIndexWriter();
             if (indexWriter != null) {
                 indexWriter.deleteDocuments(new org.apache.lucene.index.Term("_PATH", path));
                 indexWriter.close();
+                SearcherManager.notifyCommit(config.getFulltextSearchIndexFile());
             } else {
                 log.warn("No fulltext index writer, hence could not remove document '" + path + "' from fulltext index!");
             }
@@ -228,12 +346,11 @@ public class LuceneIndexerV2 implements Indexer {
 
             Document luceneDoc = getDocument(path);
 
-            // TODO: Write typed property value to index. Is this actually possible?
-            // INFO: As workaround Add the property as string value to the lucene document
+            // INFO: Add the property as string value and LONG, DOUBLE, DATE and BOOLEAN properties also as typed value to the lucene document (see LuceneIndexer#addProperty(Document, Property))
             if (property.getValueAsString() != null) {
                 log.debug("Index property '" + property.getName() + "': " + property.getValueAsString());
                 //luceneDoc.add(new Field(property.getName(), new StringReader(property.getValueAsString())));
-                luceneDoc.add(new Field(property.getName(), property.getValueAsString(), Field.Store.YES, Field.Index.TOKENIZED));
+                LuceneIndexer.addProperty(luceneDoc, property);
             } else {
                 log.warn("Property '" + property.getName() + "' has null as string value and hence will not be indexed (path: " + path + ")!");
             }
@@ -242,9 +359,7 @@ public class LuceneIndexerV2 implements Indexer {
             Property[] properties = node.getProperties();
             for (int i = 0; i < properties.length; i++) {
                 if (!properties[i].getName().equals(property.getName())) {
-                    if (properties[i].getValueAsString() != null) {
-                        luceneDoc.add(new Field(properties[i].getName(), properties[i].getValueAsString(), Field.Store.YES, Field.Index.TOKENIZED));
-                    }
+                    LuceneIndexer.addProperty(luceneDoc, properties[i]);
                 }
             }
 
@@ -260,7 +375,7 @@ public class LuceneIndexerV2 implements Indexer {
                 }
 */
                 log.debug("Properties index: Add/update property '" + property.getName() + "' (Value: " + property.getValueAsString() + ") of node: " + path);
-                updateDocument(createPropertiesIndexWriter(), path, luceneDoc);
+                updateDocument(false, path, luceneDoc);
             } catch(org.apache.lucene.store.LockObtainFailedException e) {
                 log.warn("Could not init 'properties' IndexWriter (maybe because of existing lock (Timeout: " + IndexWriter.getDefaultWriteLockTimeout() + "ms), exception message: " + e.getMessage() + "), hence properties of node '" + path + "' will not be indexed!");
                 // TODO: log node path into dedicated log message!
@@ -278,11 +393,20 @@ public class LuceneIndexerV2 implements Indexer {
         try {
             String path = node.getPath();
             log.debug("Trying to remove property '" + property.getName() + "' of node '" + path + "' from properties index...");
+            if (config.isSharedIndexWriter()) {
+                try {
+                    getPropertiesIndexWriterManager().deleteDocuments(new Term("_PATH", path)); // TODO: Actually only documents with _PATH = path and containing a field with the property name should be deleted!
+                } catch(Exception e) {
+                    log.warn("Node with path '" + path + "' could not be deleted from the properties index! Exception message: " + e.getMessage());
+                }
+                return;
+            }
             IndexWriter indexWriter = null;
             try {
                 indexWriter = createPropertiesIndexWriter();
                 indexWriter.deleteDocuments(new org.apache.lucene.index.Term("_PATH", path)); // TODO: Actually only documents with _PATH = path and containing a field with the property name should be deleted!
                 indexWriter.close();
+                SearcherManager.notifyCommit(config.getPropertiesSearchIndexFile());
             } catch(Exception e) {
                 log.warn("Probably IndexWriter could not be initialized, because of existing lock, hence node with path '" + path + "' will not be deleted from the index! Exception message: " + e.getMessage());
                 //log.error(e, e);
@@ -298,6 +422,97 @@ public class LuceneIndexerV2 implements Indexer {
         }
     }
 
+    /**
+     * @see org.wyona.yarep.core.attributes.CommittableIndexerV1#commit()
+     */
+    public void commit() throws SearchException {
+        if (config.isSharedIndexWriter()) {
+            try {
+                getFulltextIndexWriterManager().commit();
+                getPropertiesIndexWriterManager().commit();
+            } catch(Exception e) {
+                log.error(e, e);
+                throw new SearchException(e.getMessage(), e);
+            }
+        } else {
+            log.debug("No shared index writer configured, hence all changes have been committed already.");
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.CommittableIndexerV1#optimize()
+     */
+    public void optimize() throws SearchException {
+        try {
+            if (config.isSharedIndexWriter()) {
+                getFulltextIndexWriterManager().optimize();
+                getPropertiesIndexWriterManager().optimize();
+            } else {
+                optimize(createFulltextIndexWriter(), config.getFulltextSearchIndexFile());
+                optimize(createPropertiesIndexWriter(), config.getPropertiesSearchIndexFile());
+            }
+        } catch(Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Optimize and close index writer
+     */
+    private void optimize(IndexWriter indexWriter, File indexDir) throws Exception {
+        if (indexWriter == null) {
+            log.warn("No IndexWriter initialized, hence index will not be optimized: " + indexDir);
+            return;
+        }
+        try {
+            indexWriter.optimize();
+        } finally {
+            indexWriter.close();
+        }
+        SearcherManager.notifyCommit(indexDir);
+    }
+
+    /**
+     * Get shared writer of fulltext index
+     */
+    protected IndexWriterManager getFulltextIndexWriterManager() {
+        return IndexWriterManager.getInstance(config.getFulltextSearchIndexFile(), config.getFulltextAnalyzer(), config.getWriteLockTimeout(), config.getCommitInterval(), config.getMaxPendingUpdates(), config.getOptimizeInterval());
+    }
+
+    /**
+     * Get shared writer of properties index
+     */
+    protected IndexWriterManager getPropertiesIndexWriterManager() {
+        return IndexWriterManager.getInstance(config.getPropertiesSearchIndexFile(), config.getPropertyAnalyzer(), config.getWriteLockTimeout(), config.getCommitInterval(), config.getMaxPendingUpdates(), config.getOptimizeInterval());
+    }
+
+    /**
+     * Update document of a particular path within index
+     *
+     * @param fulltext True when the fulltext index should be updated and false when the properties index should be updated
+     * @param path Path of node with which the fields and values are related to
+     * @param document Lucene document containing the new fields and new values
+     */
+    private void updateDocument(boolean fulltext, String path, Document document) throws Exception {
+        if (config.isSharedIndexWriter()) {
+            if (log.isDebugEnabled()) log.debug("Node '" + path + "' will be indexed (shared index writer).");
+            if (fulltext) {
+                getFulltextIndexWriterManager().updateDocument(new Term("_PATH", path), document);
+            } else {
+                getPropertiesIndexWriterManager().updateDocument(new Term("_PATH", path), document);
+            }
+        } else {
+            if (fulltext) {
+                updateDocument(createFulltextIndexWriter(), path, document);
+                SearcherManager.notifyCommit(config.getFulltextSearchIndexFile());
+            } else {
+                updateDocument(createPropertiesIndexWriter(), path, document);
+                SearcherManager.notifyCommit(config.getPropertiesSearchIndexFile());
+            }
+        }
+    }
+
     /**
      * Update document of a particular path within index
      *
@@ -311,7 +526,7 @@ public class LuceneIndexerV2 implements Indexer {
         if (indexWriter != null) {
             if (log.isDebugEnabled()) log.debug("Node '" + path + "' will be indexed.");
             indexWriter.updateDocument(pathTerm, document);
-            indexWriter.optimize(); // TODO: Make this configurable because of performance problem?!
+            // INFO: The index is not optimized anymore on every write, but only when optimize() is called explicitly (the merge policy of the IndexWriter keeps the number of segments small)
             indexWriter.close();
             //indexWriter.flush();
         } else {
@@ -328,6 +543,8 @@ public class LuceneIndexerV2 implements Indexer {
         Document luceneDoc = new Document();
         // INFO: Add path as field such that found properties can be related to a path
         luceneDoc.add(new Field("_PATH", path, Field.Store.YES, Field.Index.UN_TOKENIZED));
+        // INFO: Add paths of ancestors such that hits can be limited to a subtree efficiently
+        LuceneIndexer.addAncestors(luceneDoc, path);
         return luceneDoc;
     }
 
@@ -8,12 +8,22 @@ import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
+import org.apache.lucene.document.Fieldable;
 import org.apache.lucene.search.IndexSearcher;
 
 import org.wyona.yarep.core.NoSuchNodeException;
 import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.PropertyType;
 import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.attributes.FacetSearcherV1;
+import org.wyona.yarep.core.attributes.PageableSearcherV1;
+import org.wyona.yarep.core.search.PropertyQuery;
 import org.wyona.yarep.core.search.SearchException;
+import org.wyona.yarep.core.search.SearchResult;
+import org.wyona.yarep.core.search.SearchResults;
 import org.wyona.yarep.core.search.Searcher;
 
 import java.io.File;
@@ -21,7 +31,7 @@ import java.io.File;
 /**
  * Lucene implementation of searcher
  */
-public class LuceneSearcher implements Searcher {
+public class LuceneSearcher implements Searcher, PageableSearcherV1, FacetSearcherV1 {
     
     static Logger log = LogManager.getLogger(LuceneSearcher.class);
 
@@ -29,13 +39,59 @@ public class LuceneSearcher implements Searcher {
 
     private static final String PATH_FIELD_NAME = "_PATH";
 
-    private boolean autoClean = false;
+    private SearchResultCache fulltextResultCache = null;
+    private SearchResultCache propertiesResultCache = null;
+
+    /**
+     * Maximum number of cached scope filters (see getScopeFilter(IndexSearcher, String))
+     */
+    private static final int MAX_SCOPE_FILTERS = 100;
+
+    private java.util.Map<String, org.apache.lucene.search.Filter> scopeFilters = new java.util.LinkedHashMap<String, org.apache.lucene.search.Filter>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(java.util.Map.Entry<String, org.apache.lucene.search.Filter> eldest) {
+            return size() > MAX_SCOPE_FILTERS;
+        }
+    };
+
+    /**
+     * Number of hits which are collected at first if all hits are requested (see search(SearcherManager, Query, String, Sort, int, int))
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Do not load the (possibly large) stored fulltext of hits
+     */
+    private static final FieldSelector STORED_FIELDS_SELECTOR = new FieldSelector() {
+        public FieldSelectorResult accept(String fieldName) {
+            return LuceneIndexer.INDEX_PROPERTY_FULL.equals(fieldName) ? FieldSelectorResult.NO_LOAD : FieldSelectorResult.LOAD;
+        }
+    };
   
     /**
      * @see org.wyona.yarep.core.search.Searcher#configure(Configuration, File, Repository)
      */  
     public void configure(Configuration searchIndexConfig, File configFile, Repository repo) throws SearchException {
         this.config = new LuceneConfig(searchIndexConfig, configFile.getParent(), repo);
+        if (config.getResultCacheMaxEntries() > 0) {
+            fulltextResultCache = new SearchResultCache(config.getResultCacheMaxEntries(), config.getResultCacheMaxBytes());
+            propertiesResultCache = new SearchResultCache(config.getResultCacheMaxEntries(), config.getResultCacheMaxBytes());
+        }
+    }
+
+    /**
+     * Get result cache of fulltext index (e.g. in order to read the hit rate)
+     * @return cache or null if results are not cached
+     */
+    public SearchResultCache getFulltextResultCache() {
+        return fulltextResultCache;
+    }
+
+    /**
+     * Get result cache of properties index (e.g. in order to read the hit rate)
+     * @return cache or null if results are not cached
+     */
+    public SearchResultCache getPropertiesResultCache() {
+        return propertiesResultCache;
     }
     
     /**
@@ -43,138 +99,329 @@ public class LuceneSearcher implements Searcher {
      */
     public Node[] search(String query) throws SearchException {
         try {
-            //TODO: this is not really nice re performance, it reads the index form the file-system for each search
-            //it would be nice to initialize IndexSearcher at startup and reuse the IndexSearcher 
-            //but in this case the IndexSearcher then uses the index as it was at startup and not reloading it when the index has changed at runtime
-            org.apache.lucene.search.Searcher searcher = new IndexSearcher(config.getFulltextSearchIndexFile().getAbsolutePath());
-            if (searcher != null) {
-                try {
-                    org.apache.lucene.search.Query luceneQuery = new org.apache.lucene.queryParser.QueryParser(LuceneIndexer.INDEX_PROPERTY_FULL, config.getFulltextAnalyzer()).parse(query);
-                    org.apache.lucene.search.Hits hits = searcher.search(luceneQuery);
-                    if (hits.length() == 0) {
-                        log.info("Query \"" + query + "\" inside fulltext index '" + config.getFulltextSearchIndexFile().getAbsolutePath() + "' returned no hits.");
-                    } else {
-                        log.info("Query \"" + query + "\" returned " + hits.length() + " hits");
-                    }
-
-                    java.util.List<Node> results = new java.util.ArrayList<Node>();
-                    for (int i = 0; i < hits.length();i++) {
-                        String path = hits.doc(i).getField(PATH_FIELD_NAME).stringValue();
-                        if (path.contains("#revision=")) {
-                            //log.debug("This seems to be a revision: " + resultPath);
-                            String resultPathWithoutRevision = path.substring(0, path.lastIndexOf("#revision="));
-                            String revisionName = path.substring(path.lastIndexOf("#revision=") + 10);
-                            if (config.getRepo().existsNode(resultPathWithoutRevision)) {
-                                try {
-                                    results.add(config.getRepo().getNode(resultPathWithoutRevision).getRevision(revisionName));
-                                } catch(org.wyona.yarep.core.NoSuchRevisionException e) {
-                                    log.error("Revision found within search index, but no such revision within repository: " + resultPathWithoutRevision + "#" + revisionName);
-                                }
-                            } else {
-                                log.error("Node found within search index, but no such node within repository: " + resultPathWithoutRevision);
-                            }
-                        } else {
-                            if (config.getRepo().existsNode(path)) {
-                                results.add(config.getRepo().getNode(path));
-                            } else {
-                                log.error("No such node '" + path + "'. Search index (Fulltext: '" + config.getFulltextSearchIndexFile() + "', Properties: '" + config.getPropertiesSearchIndexFile() + "') seems to be out of sync!");
-                            }
-                        }
-                    }
-                    searcher.close();
-                    return results.toArray(new Node[results.size()]);
-                } catch (Exception e) {
-                    searcher.close();
-                    log.error(e, e);
-                    throw new SearchException(e.getMessage(),e);
-                }
-            } else {
-                searcher.close();
-                log.warn("No search index seems to be configured!");
-            }
+            // INFO: Hits which do not exist anymore inside the repository are skipped (search index seems to be out of sync)
+            return search(query, "/", 0, -1).getNodes(true);
+        } catch (SearchException e) {
+            throw e;
         } catch (Exception e) {
             log.error(e, e);
             throw new SearchException(e.getMessage(),e);
         }
-        return null;
     }
 
     /**
      * @see org.wyona.yarep.core.search.Searcher#searchProperty(String, String, String)
      */
     public Node[] searchProperty(String pName, String query, String path) throws SearchException {
+        if (path == null) {
+            path = "/";
+            log.warn("No scope path set, hence set it ROOT: " + path);
+        }
         try {
-            //TODO: this is not really nice re performance, it reads the index form the file-system for each search
-            //it would be nice to initialize IndexSearcher at startup and reuse the IndexSearcher 
-            //but in this case the IndexSearcher then uses the index as it was at startup and not reloading it when the index has changed at runtime            
-            org.apache.lucene.search.Searcher searcher = new IndexSearcher(config.getPropertiesSearchIndexFile().getAbsolutePath());
-            if (searcher != null) {
-                try {
-                    log.debug("Search property '" + pName + "': " + query);
+            // INFO: Hits which do not exist anymore inside the repository are skipped (search index seems to be out of sync)
+            return searchProperty(pName, query, path, 0, -1).getNodes(true);
+        } catch (SearchException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.getMessage(),e);
+        }
+    }
 
-                    String defaultField = pName;
-                    org.apache.lucene.queryParser.QueryParser queryParser = new org.apache.lucene.queryParser.QueryParser(defaultField, config.getPropertyAnalyzer());
-                    org.apache.lucene.search.Query luceneQuery = queryParser.parse(query);
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableSearcherV1#search(String, int, int)
+     */
+    public SearchResults search(String query, int offset, int limit) throws SearchException {
+        return search(query, "/", offset, limit);
+    }
 
-                    org.apache.lucene.search.Hits hits = searcher.search(luceneQuery);
-                    log.info("Number of matching documents (Property: " + pName + ", Query: " + query + ", Path: " + path + "): " + hits.length());
-                    List results = new ArrayList();
-                    for (int i = 0; i < hits.length(); i++) {
-                        try {
-                            String resultPath = hits.doc(i).getField(PATH_FIELD_NAME).stringValue();
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableSearcherV1#search(String, String, int, int)
+     */
+    public SearchResults search(String query, String path, int offset, int limit) throws SearchException {
+        try {
+            org.apache.lucene.search.Query luceneQuery = new org.apache.lucene.queryParser.QueryParser(LuceneIndexer.INDEX_PROPERTY_FULL, config.getFulltextAnalyzer()).parse(query);
+            SearchResults results = search(getFulltextSearcherManager(), fulltextResultCache, luceneQuery, path, null, offset, limit);
+            log.info("Query \"" + query + "\" returned " + results.getTotalHits() + " hits (Path: " + path + ", Offset: " + offset + ", Limit: " + limit + ")");
+            return results;
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.getMessage(),e);
+        }
+    }
 
-                            // subtree filter (WARN: Peformance/Scalability!)
-                            if (path == null) {
-                                path = "/";
-                                log.warn("No scope path set, hence set it ROOT: " + path);
-                            }
-                            if (resultPath.startsWith(path)) {
-                                if (resultPath.contains("#revision=")) {
-                                    //log.debug("This seems to be a revision: " + resultPath);
-                                    String resultPathWithoutRevision = resultPath.substring(0, resultPath.lastIndexOf("#revision="));
-                                    String revisionName = resultPath.substring(resultPath.lastIndexOf("#revision=") + 10);
-                                    if (config.getRepo().existsNode(resultPathWithoutRevision)) {
-                                        try {
-                                            results.add(config.getRepo().getNode(resultPathWithoutRevision).getRevision(revisionName));
-                                        } catch(org.wyona.yarep.core.NoSuchRevisionException e) {
-                                            log.error("Revision found within search index, but no such revision within repository: " + resultPathWithoutRevision + "#" + revisionName);
-                                        }
-                                    } else {
-                                        log.error("Node found within search index, but no such node within repository: " + resultPathWithoutRevision);
-                                    }
-                                } else {
-                                    if (config.getRepo().existsNode(resultPath)) {
-                                        results.add(config.getRepo().getNode(resultPath));
-                                    } else {
-                                        log.debug("Node found within search index, but no such node within repository: " + resultPath);
-                                        if(autoClean) {
-                                            // TODO: Remove entry from index
-                                        }
-                                    }
-                                }
-                            } else {
-                                log.warn("Scope path '" + path + "' did not match result path: " + resultPath);
-                            }
-                        } catch (NoSuchNodeException nsne) { // INFO: I think catching this exception is not really necessary anymore. because the code above already checks the existence...
-                            log.warn("Node found within search index, but no such node within repository: " + hits.doc(i).getField(PATH_FIELD_NAME).stringValue());
-                            if(autoClean) {
-                                // TODO: Remove entry from index
-                            }
-                        }
-                    }
-                    searcher.close();
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableSearcherV1#searchProperty(String, String, String, int, int)
+     */
+    public SearchResults searchProperty(String pName, String query, String path, int offset, int limit) throws SearchException {
+        try {
+            org.apache.lucene.search.Query luceneQuery = new org.apache.lucene.queryParser.QueryParser(pName, config.getPropertyAnalyzer()).parse(query);
+            SearchResults results = search(getPropertiesSearcherManager(), propertiesResultCache, luceneQuery, path, null, offset, limit);
+            log.info("Number of matching documents (Property: " + pName + ", Query: " + query + ", Path: " + path + "): " + results.getTotalHits() + " (Offset: " + offset + ", Limit: " + limit + ")");
+            return results;
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.getMessage(),e);
+        }
+    }
 
-                    return (Node[])results.toArray(new Node[results.size()]);
-                } catch (Exception e) {
-                    log.error(e, e);
-                    throw new SearchException(e.getMessage(),e);
+    /**
+     * @see org.wyona.yarep.core.attributes.PageableSearcherV1#searchProperties(PropertyQuery, int, int)
+     */
+    public SearchResults searchProperties(PropertyQuery query, int offset, int limit) throws SearchException {
+        try {
+            org.apache.lucene.search.Query luceneQuery;
+            if (query.getConditions().isEmpty()) {
+                luceneQuery = new org.apache.lucene.search.MatchAllDocsQuery();
+            } else {
+                org.apache.lucene.search.BooleanQuery booleanQuery = new org.apache.lucene.search.BooleanQuery();
+                for (PropertyQuery.Condition condition : query.getConditions()) {
+                    booleanQuery.add(getTypedQuery(condition), org.apache.lucene.search.BooleanClause.Occur.MUST);
+                }
+                luceneQuery = booleanQuery;
+            }
+
+            org.apache.lucene.search.Sort sort = null;
+            if (query.getSortPropertyName() != null) {
+                String field = LuceneIndexer.getTypedFieldName(query.getSortPropertyName());
+                org.apache.lucene.search.SortField sortField;
+                switch (query.getSortPropertyType()) {
+                    case PropertyType.DOUBLE:
+                        sortField = new org.apache.lucene.search.SortField(field, org.apache.lucene.search.FieldCache.NUMERIC_UTILS_DOUBLE_PARSER, query.isSortDescending());
+                        break;
+                    case PropertyType.BOOLEAN:
+                        sortField = new org.apache.lucene.search.SortField(field, org.apache.lucene.search.SortField.STRING, query.isSortDescending());
+                        break;
+                    default:
+                        // INFO: LONG and DATE (milliseconds)
+                        sortField = new org.apache.lucene.search.SortField(field, org.apache.lucene.search.FieldCache.NUMERIC_UTILS_LONG_PARSER, query.isSortDescending());
                 }
+                sort = new org.apache.lucene.search.Sort(sortField);
             }
+
+            SearchResults results = search(getPropertiesSearcherManager(), propertiesResultCache, luceneQuery, query.getPath(), sort, offset, limit);
+            log.info("Number of matching documents (" + query + "): " + results.getTotalHits() + " (Offset: " + offset + ", Limit: " + limit + ")");
+            return results;
         } catch (Exception e) {
             log.error(e, e);
             throw new SearchException(e.getMessage(),e);
         }
-        return null;
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.FacetSearcherV1#getFacets(String, String, String, String[], int)
+     */
+    public java.util.Map<String, java.util.Map<String, Integer>> getFacets(String pName, String query, String path, String[] facetNames, int limit) throws SearchException {
+        try {
+            org.apache.lucene.search.Query luceneQuery;
+            if (pName == null || query == null) {
+                luceneQuery = new org.apache.lucene.search.MatchAllDocsQuery();
+            } else {
+                luceneQuery = new org.apache.lucene.queryParser.QueryParser(pName, config.getPropertyAnalyzer()).parse(query);
+            }
+            return getFacets(luceneQuery, path, facetNames, limit);
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.getMessage(),e);
+        }
+    }
+
+    /**
+     * @see org.wyona.yarep.core.attributes.FacetSearcherV1#getFacets(PropertyQuery, String[], int)
+     */
+    public java.util.Map<String, java.util.Map<String, Integer>> getFacets(PropertyQuery query, String[] facetNames, int limit) throws SearchException {
+        try {
+            org.apache.lucene.search.BooleanQuery booleanQuery = new org.apache.lucene.search.BooleanQuery();
+            for (PropertyQuery.Condition condition : query.getConditions()) {
+                booleanQuery.add(getTypedQuery(condition), org.apache.lucene.search.BooleanClause.Occur.MUST);
+            }
+            org.apache.lucene.search.Query luceneQuery = booleanQuery;
+            if (query.getConditions().isEmpty()) {
+                luceneQuery = new org.apache.lucene.search.MatchAllDocsQuery();
+            }
+            return getFacets(luceneQuery, query.getPath(), facetNames, limit);
+        } catch (SearchException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error(e, e);
+            throw new SearchException(e.getMessage(),e);
+        }
+    }
+
+    /**
+     * Count the values of properties over the matching documents of the properties index (see FacetCollector)
+     * INFO: Indices which have been created before the untokenized values were indexed have to be re-indexed (see org.wyona.yarep.util.YarepUtil#indexRepository(Repository))
+     * @param luceneQuery Query
+     * @param path Scope of search (path of subtree) or null/'/' in order to search the whole tree
+     * @param facetNames Names of properties which values are counted
+     * @param limit Maximum number of values per property, whereas -1 means all values
+     */
+    private java.util.Map<String, java.util.Map<String, Integer>> getFacets(org.apache.lucene.search.Query luceneQuery, String path, String[] facetNames, int limit) throws Exception {
+        java.util.Map<String, java.util.Map<String, Integer>> facets = new java.util.LinkedHashMap<String, java.util.Map<String, Integer>>();
+        SearcherManager manager = getPropertiesSearcherManager();
+        IndexSearcher searcher = manager.acquire();
+        if (searcher == null) {
+            log.warn("No search index seems to be configured!");
+            for (int i = 0; i < facetNames.length; i++) {
+                facets.put(facetNames[i], new java.util.LinkedHashMap<String, Integer>());
+            }
+            return facets;
+        }
+        try {
+            FacetCollector collector = new FacetCollector(facetNames);
+            searcher.search(luceneQuery, getScopeFilter(searcher, path), collector);
+            for (int i = 0; i < facetNames.length; i++) {
+                facets.put(facetNames[i], collector.getCounts(i, limit));
+            }
+            log.info("Facets " + java.util.Arrays.asList(facetNames) + " have been counted over " + collector.getNumberOfMatches() + " matching documents (Query: " + luceneQuery + ", Path: " + path + ")");
+            return facets;
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * Get lucene query of a range or exact match on the typed field of a property (see LuceneIndexer#addProperty(Document, Property))
+     */
+    private org.apache.lucene.search.Query getTypedQuery(PropertyQuery.Condition condition) throws SearchException {
+        String field = LuceneIndexer.getTypedFieldName(condition.getName());
+        switch (condition.getType()) {
+            case PropertyType.LONG:
+                return org.apache.lucene.search.NumericRangeQuery.newLongRange(field, (Long) condition.getMin(), (Long) condition.getMax(), condition.isMinInclusive(), condition.isMaxInclusive());
+            case PropertyType.DOUBLE:
+                return org.apache.lucene.search.NumericRangeQuery.newDoubleRange(field, (Double) condition.getMin(), (Double) condition.getMax(), condition.isMinInclusive(), condition.isMaxInclusive());
+            case PropertyType.DATE:
+                Long min = condition.getMin() != null ? Long.valueOf(((java.util.Date) condition.getMin()).getTime()) : null;
+                Long max = condition.getMax() != null ? Long.valueOf(((java.util.Date) condition.getMax()).getTime()) : null;
+                return org.apache.lucene.search.NumericRangeQuery.newLongRange(field, min, max, condition.isMinInclusive(), condition.isMaxInclusive());
+            case PropertyType.BOOLEAN:
+                return new org.apache.lucene.search.TermQuery(new org.apache.lucene.index.Term(field, condition.getMin().toString()));
+            default:
+                throw new SearchException("Property type '" + condition.getType() + "' of property '" + condition.getName() + "' is not indexed typed!");
+        }
+    }
+
+    /**
+     * Collect the top hits up to offset + limit (or get them from the cache) and create a result handle for the hits after the offset
+     * @param manager Shared searcher of index
+     * @param cache Result cache of index or null if results are not cached
+     * @param luceneQuery Query
+     * @param path Scope of search (path of subtree) or null/'/' in order to search the whole tree
+     * @param sort Sort order or null if the hits shall be sorted by score
+     * @param offset Number of hits to skip
+     * @param limit Maximum number of hits, whereas -1 means all hits
+     */
+    private SearchResults search(SearcherManager manager, SearchResultCache cache, org.apache.lucene.search.Query luceneQuery, String path, org.apache.lucene.search.Sort sort, int offset, int limit) throws Exception {
+        offset = Math.max(0, offset);
+        IndexSearcher searcher = manager.acquire();
+        if (searcher == null) {
+            log.warn("No search index seems to be configured!");
+            return new SearchResults(0, offset, new SearchResult[0]);
+        }
+        try {
+            long readerVersion = searcher.getIndexReader().getVersion();
+            String key = luceneQuery.toString() + "|" + path + "|" + sort + "|" + offset + "|" + limit;
+            SearchResultCache.Entry entry = null;
+            if (cache != null) {
+                entry = cache.get(key, readerVersion);
+            }
+            if (entry == null) {
+                entry = search(searcher, luceneQuery, path, sort, offset, limit);
+                if (cache != null) {
+                    cache.put(key, readerVersion, entry);
+                }
+            } else {
+                if (log.isDebugEnabled()) log.debug("Result of query '" + key + "' has been read from cache (" + cache + ")");
+            }
+
+            // INFO: The stored fields are loaded only for the hits of the requested page
+            int[] docs = entry.getDocs();
+            SearchResult[] results = new SearchResult[docs.length];
+            for (int i = 0; i < docs.length; i++) {
+                Document doc = searcher.doc(docs[i], STORED_FIELDS_SELECTOR);
+                java.util.Map<String, String> fields = new java.util.HashMap<String, String>();
+                java.util.Iterator it = doc.getFields().iterator();
+                while (it.hasNext()) {
+                    Fieldable field = (Fieldable) it.next();
+                    if (!fields.containsKey(field.name())) {
+                        fields.put(field.name(), field.stringValue());
+                    }
+                }
+                results[i] = new SearchResult(config.getRepo(), doc.get(PATH_FIELD_NAME), entry.getScores()[i], fields);
+            }
+            return new SearchResults(entry.getTotalHits(), offset, results);
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * Collect the top hits up to offset + limit
+     * @return document numbers and scores of the hits after the offset
+     */
+    private SearchResultCache.Entry search(IndexSearcher searcher, org.apache.lucene.search.Query luceneQuery, String path, org.apache.lucene.search.Sort sort, int offset, int limit) throws Exception {
+        org.apache.lucene.search.Filter filter = getScopeFilter(searcher, path);
+        int n = (int) Math.min((long) offset + (limit < 0 ? DEFAULT_PAGE_SIZE : limit), Integer.MAX_VALUE);
+        org.apache.lucene.search.TopDocs topDocs = search(searcher, luceneQuery, filter, sort, Math.max(1, n));
+        if (limit < 0 && topDocs.totalHits > n) {
+            // INFO: The number of hits is known now, hence collect all hits (the collector allocates the number of requested hits in advance)
+            topDocs = search(searcher, luceneQuery, filter, sort, topDocs.totalHits);
+        }
+
+        org.apache.lucene.search.ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+        int from = Math.min(offset, scoreDocs.length);
+        int[] docs = new int[scoreDocs.length - from];
+        float[] scores = new float[docs.length];
+        for (int i = from; i < scoreDocs.length; i++) {
+            docs[i - from] = scoreDocs[i].doc;
+            scores[i - from] = scoreDocs[i].score;
+        }
+        return new SearchResultCache.Entry(topDocs.totalHits, docs, scores);
+    }
+
+    /**
+     * Get filter which limits hits to a subtree by the ancestor paths of the documents (see ScopeFilter), which is cached per index reader
+     * @param searcher Searcher of index
+     * @param path Path of subtree
+     * @return filter or null if the whole tree is searched
+     */
+    private org.apache.lucene.search.Filter getScopeFilter(IndexSearcher searcher, String path) throws java.io.IOException {
+        String scopePath = LuceneIndexer.getScopePath(path);
+        if (scopePath.equals("/")) {
+            return null;
+        }
+        synchronized(scopeFilters) {
+            org.apache.lucene.search.Filter filter = scopeFilters.get(scopePath);
+            if (filter == null) {
+                filter = new org.apache.lucene.search.CachingWrapperFilter(new ScopeFilter(scopePath));
+                scopeFilters.put(scopePath, filter);
+            }
+            return filter;
+        }
+    }
+
+    /**
+     * Collect top hits sorted by score or by sort order
+     */
+    private org.apache.lucene.search.TopDocs search(IndexSearcher searcher, org.apache.lucene.search.Query luceneQuery, org.apache.lucene.search.Filter filter, org.apache.lucene.search.Sort sort, int n) throws Exception {
+        if (sort != null) {
+            return searcher.search(luceneQuery, filter, n, sort);
+        }
+        return searcher.search(luceneQuery, filter, n);
+    }
+
+    /**
+     * Get shared searcher of fulltext index
+     */
+    public SearcherManager getFulltextSearcherManager() {
+        return SearcherManager.getInstance(config.getFulltextSearchIndexFile(), config.getSearcherRefreshInterval());
+    }
+
+    /**
+     * Get shared searcher of properties index
+     */
+    public SearcherManager getPropertiesSearcherManager() {
+        return SearcherManager.getInstance(config.getPropertiesSearchIndexFile(), config.getSearcherRefreshInterval());
     }
 
     /**
@@ -186,8 +433,10 @@ public class LuceneSearcher implements Searcher {
     public String[] getMissingNodes(boolean delete, int limitSize) throws SearchException {
         try {
             File indexDirectory = config.getPropertiesSearchIndexFile();
-            org.apache.lucene.search.Searcher searcher = new IndexSearcher(indexDirectory.getAbsolutePath());
+            SearcherManager manager = getPropertiesSearcherManager();
+            IndexSearcher searcher = manager.acquire();
             if (searcher != null) {
+                List<String> results = new ArrayList<String>();
                 try {
                     org.apache.lucene.search.Query luceneQuery = new org.apache.lucene.search.MatchAllDocsQuery();
 
@@ -195,7 +444,6 @@ public class LuceneSearcher implements Searcher {
                     log.warn("DEBUG: Number of documents: " + hits.length() + " (Index directory: " + indexDirectory.getAbsolutePath() + ")");
                     log.info("Number of documents: " + hits.length() + " (Index directory: " + indexDirectory.getAbsolutePath() + ")");
 
-                    List<String> results = new ArrayList<String>();
                     for (int i = 0; i < hits.length(); i++) {
                         String resultPath = hits.doc(i).getField(PATH_FIELD_NAME).stringValue();
                         try {
@@ -230,11 +478,27 @@ public class LuceneSearcher implements Searcher {
                             break;
                         }
                     }
-                    searcher.close();
+                } catch (Exception e) {
+                    log.error(e, e);
+                    throw new SearchException(e.getMessage(),e);
+                } finally {
+                    manager.release(searcher);
+                }
 
+                try {
                     if (delete) {
                         log.warn("Delete missing documents from index...");
                         try {
+                            IndexWriterManager sharedWriter = IndexWriterManager.getExistingInstance(indexDirectory);
+                            if (sharedWriter != null) {
+                                // INFO: The shared index writer is holding the write.lock, hence use it to delete the missing documents
+                                for (String path: results) {
+                                    sharedWriter.deleteDocuments(new org.apache.lucene.index.Term(PATH_FIELD_NAME, path));
+                                }
+                                sharedWriter.commit();
+                                return (String[])results.toArray(new String[results.size()]);
+                            }
+
                             // TODO: Use Indexer configured by repository!
                             org.apache.lucene.index.IndexWriter indexWriter = LuceneIndexerV2.createIndexWriter(indexDirectory, config.getPropertyAnalyzer(), config.getWriteLockTimeout());
                             if (indexWriter != null) {
@@ -243,6 +507,7 @@ public class LuceneSearcher implements Searcher {
                                     indexWriter.deleteDocuments(new org.apache.lucene.index.Term(PATH_FIELD_NAME, path));
                                 }
                                 indexWriter.close();
+                                SearcherManager.notifyCommit(indexDirectory);
                             } else {
                                 throw new SearchException("Could not init IndexWriter in order to delete missing documents!");
                             }
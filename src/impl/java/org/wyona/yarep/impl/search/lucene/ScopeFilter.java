@@ -0,0 +1,100 @@
+package org.wyona.yarep.impl.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ * Filter which limits hits to a subtree, whereas a document matches if the path of the subtree is one of its ancestor terms (see LuceneIndexer#addAncestors(Document, String)).
+ * Documents which have been indexed before the ancestors were indexed (e.g. because the repository has only been re-indexed partially) do not have any ancestor term,
+ * hence for these documents the ancestor terms are derived from their path, such that the subtree '/a' matches '/a' and '/a/b', but not '/ab'.
+ * The filter should be wrapped by a CachingWrapperFilter, because the bit sets are computed per segment reader.
+ */
+public class ScopeFilter extends Filter {
+
+    private static final String REVISION_SUFFIX = "#revision=";
+
+    private String scopePath;
+
+    /**
+     * @param scopePath Normalized path of subtree (see LuceneIndexer#getScopePath(String))
+     */
+    public ScopeFilter(String scopePath) {
+        this.scopePath = scopePath;
+    }
+
+    /**
+     * @see org.apache.lucene.search.Filter#getDocIdSet(IndexReader)
+     */
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+        OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+        addDocs(reader, new Term(LuceneIndexer.INDEX_PROPERTY_ANCESTOR, scopePath), bits);
+
+        // INFO: Every document which has ancestor terms has the root term, hence if all documents have the root term, then the ancestor terms are sufficient
+        Term rootTerm = new Term(LuceneIndexer.INDEX_PROPERTY_ANCESTOR, "/");
+        if (reader.docFreq(rootTerm) < reader.maxDoc()) {
+            OpenBitSet withoutAncestors = new OpenBitSet(reader.maxDoc());
+            addDocs(reader, new Term(LuceneIndexer.INDEX_PROPERTY_YAREPPATH, scopePath), withoutAncestors);
+            addDocsByPrefix(reader, scopePath + "/", withoutAncestors);
+            addDocsByPrefix(reader, scopePath + REVISION_SUFFIX, withoutAncestors);
+
+            OpenBitSet withAncestors = new OpenBitSet(reader.maxDoc());
+            addDocs(reader, rootTerm, withAncestors);
+            withoutAncestors.andNot(withAncestors);
+            bits.or(withoutAncestors);
+        }
+        return bits;
+    }
+
+    /**
+     * Set bits of all (not deleted) documents containing a particular term
+     */
+    private void addDocs(IndexReader reader, Term term, OpenBitSet bits) throws IOException {
+        TermDocs termDocs = reader.termDocs(term);
+        try {
+            while (termDocs.next()) {
+                bits.set(termDocs.doc());
+            }
+        } finally {
+            termDocs.close();
+        }
+    }
+
+    /**
+     * Set bits of all (not deleted) documents which have a path starting with a particular prefix
+     */
+    private void addDocsByPrefix(IndexReader reader, String prefix, OpenBitSet bits) throws IOException {
+        TermEnum terms = reader.terms(new Term(LuceneIndexer.INDEX_PROPERTY_YAREPPATH, prefix));
+        try {
+            do {
+                Term term = terms.term();
+                if (term == null || !term.field().equals(LuceneIndexer.INDEX_PROPERTY_YAREPPATH) || !term.text().startsWith(prefix)) {
+                    break;
+                }
+                addDocs(reader, term, bits);
+            } while (terms.next());
+        } finally {
+            terms.close();
+        }
+    }
+
+    /**
+     * @see java.lang.Object#equals(Object)
+     */
+    public boolean equals(Object o) {
+        return o instanceof ScopeFilter && scopePath.equals(((ScopeFilter) o).scopePath);
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    public int hashCode() {
+        return scopePath.hashCode();
+    }
+}
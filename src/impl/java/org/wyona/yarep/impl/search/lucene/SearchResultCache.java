@@ -0,0 +1,210 @@
+package org.wyona.yarep.impl.search.lucene;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Cache of search results of a particular index, whereas a result is stored as compact list of document numbers and scores (the stored fields are loaded from the index again) and
+ * is only valid for the index reader version (generation) by which it has been computed. As soon as a searcher of a newer version is used (e.g. because an indexer has committed, see SearcherManager#notifyCommit(File)),
+ * the whole cache is invalidated. The cache is bounded by the number of entries and by the (estimated) number of bytes, whereas the least recently used entries are evicted first.
+ */
+public class SearchResultCache {
+
+    private static Logger log = LogManager.getLogger(SearchResultCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    private int maxEntries;
+    private long maxBytes;
+
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long version = -1;
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param maxEntries Maximum number of cached results
+     * @param maxBytes Maximum (estimated) number of bytes of all cached results
+     */
+    public SearchResultCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get cached result
+     * @param key Normalized query (including scope, sort order and paging)
+     * @param readerVersion Version of index reader which would be used to compute the result
+     * @return cached result or null if no result of this reader version is cached
+     */
+    public synchronized Entry get(String key, long readerVersion) {
+        invalidateOlderThan(readerVersion);
+        Entry entry = readerVersion == version ? entries.get(key) : null;
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    /**
+     * Add result to cache, whereas results of outdated reader versions are ignored
+     * @param key Normalized query (including scope, sort order and paging)
+     * @param readerVersion Version of index reader by which the result has been computed
+     */
+    public synchronized void put(String key, long readerVersion, Entry entry) {
+        invalidateOlderThan(readerVersion);
+        if (readerVersion != version || entry.getSize() + key.length() * 2 > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes = bytes - previous.getSize() - key.length() * 2;
+        }
+        bytes = bytes + entry.getSize() + key.length() * 2;
+
+        Iterator<java.util.Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            java.util.Map.Entry<String, Entry> eldest = it.next();
+            bytes = bytes - eldest.getValue().getSize() - eldest.getKey().length() * 2;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Remove all cached results
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        invalidations++;
+    }
+
+    /**
+     * Get number of cached results
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Get estimated number of bytes of all cached results
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get number of lookups which have been answered by the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of lookups which have not been answered by the cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get ratio of lookups which have been answered by the cache (between 0 and 1)
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Get number of results which have been evicted because the cache was full
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Get number of times the whole cache has been invalidated (e.g. because of a commit)
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public synchronized String toString() {
+        return "Entries: " + entries.size() + "/" + maxEntries + ", Bytes: " + bytes + "/" + maxBytes + ", Hits: " + hits + ", Misses: " + misses + ", Hit rate: " + Math.round(getHitRate() * 100) + "%, Evictions: " + evictions + ", Invalidations: " + invalidations;
+    }
+
+    /**
+     * Invalidate all results if a newer reader version is used
+     */
+    private void invalidateOlderThan(long readerVersion) {
+        if (readerVersion > version) {
+            if (version >= 0) {
+                if (log.isDebugEnabled()) log.debug("Index reader version changed from " + version + " to " + readerVersion + ", hence " + entries.size() + " cached results are invalidated (" + this + ")");
+                clear();
+            }
+            version = readerVersion;
+        }
+    }
+
+    /**
+     * Cached result, which contains the total number of hits and the document numbers and scores of the hits of the requested page
+     */
+    public static class Entry {
+        private int totalHits;
+        private int[] docs;
+        private float[] scores;
+
+        /**
+         * @param totalHits Total number of hits (of all pages)
+         * @param docs Document numbers of the hits of the requested page
+         * @param scores Scores of the hits of the requested page
+         */
+        public Entry(int totalHits, int[] docs, float[] scores) {
+            this.totalHits = totalHits;
+            this.docs = docs;
+            this.scores = scores;
+        }
+
+        /**
+         * Get total number of hits (of all pages)
+         */
+        public int getTotalHits() {
+            return totalHits;
+        }
+
+        /**
+         * Get document numbers of the hits of the requested page
+         */
+        public int[] getDocs() {
+            return docs;
+        }
+
+        /**
+         * Get scores of the hits of the requested page
+         */
+        public float[] getScores() {
+            return scores;
+        }
+
+        /**
+         * Get estimated number of bytes
+         */
+        long getSize() {
+            return 64 + docs.length * 8;
+        }
+    }
+}
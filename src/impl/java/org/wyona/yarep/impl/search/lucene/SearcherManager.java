@@ -0,0 +1,262 @@
+package org.wyona.yarep.impl.search.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Shared, reference counted IndexSearcher of a particular index directory.
+ * The underlying IndexReader is reopened (incrementally) as soon as an indexer has committed changes to the index (see {@link #notifyCommit(File)}),
+ * whereas commits of other processes (e.g. other cluster nodes) are detected by checking at most every 'refresh interval' milliseconds whether the reader is still current.
+ * If no indexer of this JVM has registered to notify the commits of an index directory (see {@link #registerCommitNotifier(File)}), then every acquire checks whether the reader is still current.
+ *
+ * Usage:
+ * <pre>
+ * IndexSearcher searcher = manager.acquire();
+ * try {
+ *     ...
+ * } finally {
+ *     manager.release(searcher);
+ * }
+ * </pre>
+ */
+public class SearcherManager {
+
+    private static Logger log = LogManager.getLogger(SearcherManager.class);
+
+    public static final long DEFAULT_REFRESH_INTERVAL = 1000;
+
+    private static HashMap<String, SearcherManager> managers = new HashMap<String, SearcherManager>();
+    private static HashSet<String> commitNotifiers = new HashSet<String>();
+
+    private File indexDir;
+    private String key;
+    private long refreshInterval;
+
+    private IndexSearcher currentSearcher;
+    private volatile boolean stale = false;
+    private long lastCheck = 0;
+    private long openedAt = 0;
+
+    private long reopenCount = 0;
+    private long totalReopenTime = 0;
+    private long lastReopenTime = 0;
+    private long maxReopenTime = 0;
+
+    /**
+     * @param indexDir Directory containing the index (segment files)
+     * @param refreshInterval Interval (in milliseconds) at which it is checked whether the index has been modified by another process
+     */
+    private SearcherManager(File indexDir, long refreshInterval) {
+        this.indexDir = indexDir;
+        this.key = getKey(indexDir);
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Get shared searcher manager of a particular index directory
+     * @param indexDir Directory containing the index (segment files)
+     * @param refreshInterval Interval (in milliseconds) at which it is checked whether the index has been modified by another process
+     */
+    public static synchronized SearcherManager getInstance(File indexDir, long refreshInterval) {
+        String key = getKey(indexDir);
+        SearcherManager manager = managers.get(key);
+        if (manager == null) {
+            log.info("Init shared searcher of index directory: " + key);
+            manager = new SearcherManager(indexDir, refreshInterval);
+            managers.put(key, manager);
+        }
+        return manager;
+    }
+
+    /**
+     * Register that an indexer of this JVM calls {@link #notifyCommit(File)} after every commit to a particular index directory,
+     * such that the shared searcher of this index directory only has to check every 'refresh interval' milliseconds whether the index has been modified by another process
+     * @param indexDir Directory containing the index (segment files)
+     */
+    public static synchronized void registerCommitNotifier(File indexDir) {
+        if (indexDir != null) {
+            commitNotifiers.add(getKey(indexDir));
+        }
+    }
+
+    /**
+     * Check whether an indexer has registered to notify the commits of a particular index directory
+     * @param key Key of index directory (see getKey(File))
+     */
+    private static synchronized boolean hasCommitNotifier(String key) {
+        return commitNotifiers.contains(key);
+    }
+
+    /**
+     * Notify the searcher manager of a particular index directory (if one exists) that changes have been committed, such that the next acquired searcher will see these changes
+     * @param indexDir Directory containing the index (segment files)
+     */
+    public static void notifyCommit(File indexDir) {
+        if (indexDir == null) {
+            return;
+        }
+        SearcherManager manager;
+        synchronized(SearcherManager.class) {
+            manager = managers.get(getKey(indexDir));
+        }
+        if (manager != null) {
+            manager.stale = true;
+        }
+    }
+
+    /**
+     * Close all shared searchers
+     */
+    public static synchronized void closeAll() {
+        Iterator<SearcherManager> it = managers.values().iterator();
+        while (it.hasNext()) {
+            it.next().close();
+        }
+        managers.clear();
+    }
+
+    /**
+     * Acquire searcher, whereas the searcher must be released again by {@link #release(IndexSearcher)}
+     */
+    public synchronized IndexSearcher acquire() throws IOException {
+        if (currentSearcher == null) {
+            long start = System.currentTimeMillis();
+            IndexReader reader = IndexReader.open(FSDirectory.open(indexDir), true);
+            currentSearcher = new IndexSearcher(reader);
+            openedAt = System.currentTimeMillis();
+            lastCheck = openedAt;
+            stale = false;
+            log.info("Searcher of index directory '" + indexDir + "' has been opened within " + (openedAt - start) + "ms");
+        } else {
+            maybeReopen();
+        }
+        currentSearcher.getIndexReader().incRef();
+        return currentSearcher;
+    }
+
+    /**
+     * Release searcher which has been acquired by {@link #acquire()}
+     */
+    public void release(IndexSearcher searcher) throws IOException {
+        if (searcher != null) {
+            searcher.getIndexReader().decRef();
+        }
+    }
+
+    /**
+     * Reopen reader if it has been marked as stale or if it has been modified by another process (or by an indexer which does not notify its commits)
+     */
+    private void maybeReopen() throws IOException {
+        long now = System.currentTimeMillis();
+        boolean reopen = stale;
+        if (!reopen && (!hasCommitNotifier(key) || (refreshInterval >= 0 && now - lastCheck >= refreshInterval))) {
+            lastCheck = now;
+            reopen = !currentSearcher.getIndexReader().isCurrent();
+        }
+        if (!reopen) {
+            return;
+        }
+
+        stale = false; // INFO: Reset before reopening, such that commits happening during the reopen will trigger another reopen
+        IndexReader oldReader = currentSearcher.getIndexReader();
+        IndexReader newReader = oldReader.reopen();
+        if (newReader != oldReader) {
+            long latency = System.currentTimeMillis() - now;
+            if (log.isDebugEnabled()) log.debug("Searcher of index directory '" + indexDir + "' has been reopened within " + latency + "ms (Age of previous searcher: " + (now - openedAt) + "ms)");
+            currentSearcher = new IndexSearcher(newReader);
+            openedAt = System.currentTimeMillis();
+            reopenCount++;
+            totalReopenTime = totalReopenTime + latency;
+            lastReopenTime = latency;
+            if (latency > maxReopenTime) {
+                maxReopenTime = latency;
+            }
+            oldReader.decRef(); // INFO: The old reader will be closed as soon as all searchers using it have been released
+        }
+        lastCheck = System.currentTimeMillis();
+    }
+
+    /**
+     * Close shared searcher (searchers which are still acquired stay usable until they are released)
+     */
+    public synchronized void close() {
+        if (currentSearcher != null) {
+            try {
+                currentSearcher.getIndexReader().decRef();
+            } catch (IOException e) {
+                log.error(e, e);
+            }
+            currentSearcher = null;
+        }
+    }
+
+    /**
+     * Get index directory
+     */
+    public File getIndexDir() {
+        return indexDir;
+    }
+
+    /**
+     * Get number of reopens since this manager has been initialized
+     */
+    public synchronized long getReopenCount() {
+        return reopenCount;
+    }
+
+    /**
+     * Get latency (in milliseconds) of the most recent reopen
+     */
+    public synchronized long getLastReopenLatency() {
+        return lastReopenTime;
+    }
+
+    /**
+     * Get maximum latency (in milliseconds) of all reopens
+     */
+    public synchronized long getMaxReopenLatency() {
+        return maxReopenTime;
+    }
+
+    /**
+     * Get average latency (in milliseconds) of all reopens
+     */
+    public synchronized long getAverageReopenLatency() {
+        if (reopenCount == 0) {
+            return 0;
+        }
+        return totalReopenTime / reopenCount;
+    }
+
+    /**
+     * Get age (in milliseconds) of the current searcher, or -1 if no searcher has been opened yet
+     */
+    public synchronized long getSearcherAge() {
+        if (currentSearcher == null) {
+            return -1;
+        }
+        return System.currentTimeMillis() - openedAt;
+    }
+
+    /**
+     * Get key of index directory
+     */
+    private static String getKey(File indexDir) {
+        try {
+            return indexDir.getCanonicalPath();
+        } catch (IOException e) {
+            log.warn(e.getMessage());
+            return indexDir.getAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.wyona.yarep.examples;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.RepositoryFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.OutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Benchmark which compares the checkin latency of the revision content stores of the virtual file system repository ('copy', 'hardlink' and 'blob') for various file sizes.
+ * Usage: java org.wyona.yarep.examples.RevisionCheckinBenchmark [WORK_DIR] [MAX_SIZE_IN_BYTES] [CHECKINS_PER_SIZE]
+ * (default: temporary directory, 1 GB and 5 checkins per size, whereas the content is modified before every other checkin)
+ * The disk usage of revisions is measured by 'du', which counts every file (inode) once, also when it has several hard links, whereas files shared with the current content
+ * of the node are not counted. Where 'du' is not available, the disk usage of 'hardlink' is not reported, because summing the sizes of all files would count every hard link again.
+ */
+public class RevisionCheckinBenchmark {
+
+    private static final String[] STORES = {"copy", "hardlink", "blob"};
+    private static final long[] SIZES = {1024L, 1024L * 1024, 10L * 1024 * 1024, 100L * 1024 * 1024, 1024L * 1024 * 1024};
+
+    /**
+     *
+     */
+    public static void main(String[] args) throws Exception {
+        File workDir = new File(System.getProperty("java.io.tmpdir"), "yarep-revision-checkin-benchmark");
+        if (args.length > 0) {
+            workDir = new File(args[0]);
+        }
+        long maxSize = SIZES[SIZES.length - 1];
+        if (args.length > 1) {
+            maxSize = Long.parseLong(args[1]);
+        }
+        int checkins = 5;
+        if (args.length > 2) {
+            checkins = Integer.parseInt(args[2]);
+        }
+
+        System.out.println("Store\tSize (bytes)\tCheckins\tAverage checkin (ms)\tMaximum checkin (ms)\tDisk usage of revisions (bytes)");
+        RepositoryFactory repoFactory = new RepositoryFactory();
+        for (int s = 0; s < STORES.length; s++) {
+            for (int i = 0; i < SIZES.length && SIZES[i] <= maxSize; i++) {
+                File repoDir = new File(workDir, STORES[s] + "-" + SIZES[i]);
+                FileUtils.deleteDirectory(repoDir);
+                repoDir.mkdirs();
+                Repository repo = repoFactory.newRepository(STORES[s] + "-" + SIZES[i], createConfig(repoDir, STORES[s]));
+
+                Node node = repo.getRootNode().addNode("benchmark.bin", NodeType.RESOURCE);
+                long total = 0;
+                long max = 0;
+                for (int k = 0; k < checkins; k++) {
+                    node.checkout("benchmark");
+                    if (k % 2 == 0) {
+                        writeContent(node, SIZES[i], k);
+                    }
+                    long start = System.currentTimeMillis();
+                    node.checkin("Benchmark revision " + k);
+                    long duration = System.currentTimeMillis() - start;
+                    total = total + duration;
+                    if (duration > max) {
+                        max = duration;
+                    }
+                }
+                repo.close();
+
+                long diskUsage = getDiskUsageOfRevisions(repoDir);
+                if (diskUsage < 0 && !"hardlink".equals(STORES[s])) {
+                    diskUsage = FileUtils.sizeOfDirectory(new File(repoDir, "meta"));
+                    if (new File(repoDir, "revisions-blobs").isDirectory()) {
+                        diskUsage = diskUsage + FileUtils.sizeOfDirectory(new File(repoDir, "revisions-blobs"));
+                    }
+                }
+                System.out.println(STORES[s] + "\t" + SIZES[i] + "\t" + checkins + "\t" + (total / checkins) + "\t" + max + "\t" + (diskUsage >= 0 ? String.valueOf(diskUsage) : "n/a (hard links can not be counted without 'du')"));
+                FileUtils.deleteDirectory(repoDir);
+            }
+        }
+    }
+
+    /**
+     * Get disk usage of revisions (meta data and blobs) by 'du', which counts every inode only once, also across its arguments.
+     * Because the content directory is the first argument, files which are hard links of the current content are attributed to the content and hence not counted.
+     * @param repoDir Directory containing content and meta data
+     * @return apparent size in bytes or -1 if 'du' is not available
+     */
+    private static long getDiskUsageOfRevisions(File repoDir) {
+        java.util.List<String> command = new java.util.ArrayList<String>();
+        command.add("du");
+        command.add("-s");
+        command.add("-b");
+        command.add(new File(repoDir, "content").getAbsolutePath());
+        command.add(new File(repoDir, "meta").getAbsolutePath());
+        if (new File(repoDir, "revisions-blobs").isDirectory()) {
+            command.add(new File(repoDir, "revisions-blobs").getAbsolutePath());
+        }
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            java.util.List lines = org.apache.commons.io.IOUtils.readLines(process.getInputStream());
+            if (process.waitFor() != 0 || lines.size() != command.size() - 4) {
+                System.err.println("WARN: 'du' failed: " + lines);
+                return -1;
+            }
+            long diskUsage = 0;
+            for (int i = 1; i < lines.size(); i++) { // INFO: Skip the content directory
+                diskUsage = diskUsage + Long.parseLong(((String) lines.get(i)).split("\\s+")[0]);
+            }
+            return diskUsage;
+        } catch (Exception e) {
+            System.err.println("WARN: 'du' is not available: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Create repository configuration
+     * @param repoDir Directory containing content and meta data
+     * @param store Revision content store (copy, hardlink or blob)
+     */
+    private static File createConfig(File repoDir, String store) throws Exception {
+        File configFile = new File(repoDir, "repository.xml");
+        FileWriter writer = new FileWriter(configFile);
+        writer.write("<?xml version=\"1.0\"?>\n");
+        writer.write("<repository class=\"org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository\">\n");
+        writer.write("  <name>Revision Checkin Benchmark (" + store + ")</name>\n");
+        writer.write("  <content src=\"content\"/>\n");
+        writer.write("  <meta src=\"meta\" revisions-content-store=\"" + store + "\"/>\n");
+        writer.write("</repository>\n");
+        writer.close();
+        new File(repoDir, "content").mkdirs();
+        return configFile;
+    }
+
+    /**
+     * Write content of a particular size
+     * @param seed Seed such that the content differs between calls
+     */
+    private static void writeContent(Node node, long size, int seed) throws Exception {
+        byte[] buffer = new byte[64 * 1024];
+        java.util.Random random = new java.util.Random(seed);
+        OutputStream out = node.getOutputStream();
+        long written = 0;
+        while (written < size) {
+            random.nextBytes(buffer);
+            int len = (int) Math.min(buffer.length, size - written);
+            out.write(buffer, 0, len);
+            written = written + len;
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,109 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of tests which need a 'virtual filesystem' repository with a particular configuration, whereas the repository is created within a temporary directory, which is deleted after every test.
+ */
+public abstract class AbstractVirtualFilesystemTest extends TestCase {
+
+    private static Logger log = Logger.getLogger(AbstractVirtualFilesystemTest.class);
+
+    protected File repoDir;
+    private List<Repository> repos = new ArrayList<Repository>();
+
+    /**
+     * Create temporary repository directory
+     */
+    public void setUp() throws Exception {
+        repoDir = File.createTempFile("yarep-" + getName() + "-", "");
+        repoDir.delete();
+        new File(repoDir, "content").mkdirs();
+    }
+
+    /**
+     * Close all opened repositories and delete repository directory
+     */
+    public void tearDown() throws Exception {
+        for (Repository repo : repos) {
+            try {
+                repo.close();
+            } catch (Exception e) {
+                log.warn(e.getMessage());
+            }
+        }
+        repos.clear();
+        FileUtils.deleteDirectory(repoDir);
+    }
+
+    /**
+     * Write repository configuration and open repository
+     * @param metaAttributes Additional attributes of the element 'meta', e.g. 'meta-file-version="2.0"'
+     * @param elements Additional configuration elements, e.g. '&lt;cache>...&lt;/cache>'
+     */
+    protected VirtualFileSystemRepository createRepository(String metaAttributes, String elements) throws Exception {
+        return createRepository(getConfigFile(), metaAttributes, elements);
+    }
+
+    /**
+     * Write configuration of an additional repository (e.g. the destination of a copy) and open repository
+     * @param configFile Repository configuration file, whereas content and meta directories are located next to it
+     * @param metaAttributes Additional attributes of the element 'meta', e.g. 'meta-file-version="2.0"'
+     * @param elements Additional configuration elements, e.g. '&lt;cache>...&lt;/cache>'
+     */
+    protected VirtualFileSystemRepository createRepository(File configFile, String metaAttributes, String elements) throws Exception {
+        new File(configFile.getParentFile(), "content").mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(configFile), "UTF-8");
+        try {
+            writer.write("<?xml version=\"1.0\"?>\n");
+            writer.write("<repository class=\"" + VirtualFileSystemRepository.class.getName() + "\">\n");
+            writer.write("  <name>" + getName() + "</name>\n");
+            writer.write("  <content src=\"content\"/>\n");
+            writer.write("  <meta src=\"meta\" " + metaAttributes + "/>\n");
+            writer.write("  " + elements + "\n");
+            writer.write("</repository>\n");
+        } finally {
+            writer.close();
+        }
+        return openRepository(configFile);
+    }
+
+    /**
+     * Open (another instance of) the repository which has been configured by {@link #createRepository(String, String)}
+     */
+    protected VirtualFileSystemRepository openRepository() throws Exception {
+        return openRepository(getConfigFile());
+    }
+
+    /**
+     * Open (another instance of) a repository
+     * @param configFile Repository configuration file
+     */
+    protected VirtualFileSystemRepository openRepository(File configFile) throws Exception {
+        VirtualFileSystemRepository repo = new VirtualFileSystemRepository();
+        repo.setID(getName() + "-" + repos.size());
+        repo.readConfiguration(configFile);
+        repos.add(repo);
+        return repo;
+    }
+
+    /**
+     * Get repository configuration file
+     */
+    protected File getConfigFile() {
+        return new File(repoDir, "repository.xml");
+    }
+}
@@ -0,0 +1,54 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.impl.repo.vfs.BinaryDelta;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test creating and applying binary deltas, which are used to store revisions of text nodes
+ */
+public class BinaryDeltaTest extends TestCase {
+
+    private static final String XHTML = "<?xml version=\"1.0\"?>\n<html xmlns=\"http://www.w3.org/1999/xhtml\">\n<head><title>Delta</title></head>\n<body>\n<p>Hello revision test!</p>\n</body>\n</html>\n";
+
+    /**
+     * Test that a small modification results in a small delta
+     */
+    public void testSmallModification() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            source.append(XHTML);
+        }
+        String target = source.toString().replaceFirst("Hello revision test!", "Hello delta test!");
+
+        byte[] delta = BinaryDelta.create(source.toString().getBytes("UTF-8"), target.getBytes("UTF-8"));
+        assertTrue("Delta is small: " + delta.length, delta.length < 100);
+        byte[] result = BinaryDelta.apply(source.toString().getBytes("UTF-8"), delta, target.getBytes("UTF-8").length);
+        assertEquals(target, new String(result, "UTF-8"));
+    }
+
+    /**
+     * Test random sources and targets, including empty ones
+     */
+    public void testRandomContent() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            byte[] source = new byte[random.nextInt(2000)];
+            random.nextBytes(source);
+            byte[] target;
+            if (i % 2 == 0 && source.length > 100) {
+                target = new byte[source.length + 10];
+                System.arraycopy(source, 50, target, 0, source.length - 50);
+                System.arraycopy(source, 0, target, source.length - 50, 50);
+            } else {
+                target = new byte[random.nextInt(2000)];
+                random.nextBytes(target);
+            }
+            byte[] delta = BinaryDelta.create(source, target);
+            assertTrue(Arrays.equals(target, BinaryDelta.apply(source, delta, target.length)));
+        }
+    }
+}
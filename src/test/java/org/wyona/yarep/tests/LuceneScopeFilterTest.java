@@ -0,0 +1,101 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.impl.search.lucene.LuceneIndexer;
+import org.wyona.yarep.impl.search.lucene.ScopeFilter;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.RAMDirectory;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Test limiting hits to a subtree (see ScopeFilter), also for an index which has only been re-indexed partially
+ */
+public class LuceneScopeFilterTest extends TestCase {
+
+    /**
+     * Test that documents with and without ancestor terms are both matched by ancestor semantics, i.e. '/a' matches '/a' and '/a/b', but not '/ab'
+     */
+    public void testPartiallyReindexedIndex() throws Exception {
+        RAMDirectory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        writer.addDocument(createDocument("/a/new.txt", new String[] {"/", "/a", "/a/new.txt"}));
+        writer.addDocument(createDocument("/ab/new.txt", new String[] {"/", "/ab", "/ab/new.txt"}));
+        writer.addDocument(createDocument("/a", null));
+        writer.addDocument(createDocument("/a/old.txt", null));
+        writer.addDocument(createDocument("/a/old.txt#revision=1", null));
+        writer.addDocument(createDocument("/ab/old.txt", null));
+        writer.addDocument(createDocument("/a-b/old.txt", null));
+        writer.close();
+
+        Set<String> paths = search(dir, "/a");
+        assertEquals(4, paths.size());
+        assertTrue(paths.contains("/a/new.txt"));
+        assertTrue(paths.contains("/a"));
+        assertTrue(paths.contains("/a/old.txt"));
+        assertTrue(paths.contains("/a/old.txt#revision=1"));
+
+        paths = search(dir, "/ab");
+        assertEquals(2, paths.size());
+        assertTrue(paths.contains("/ab/new.txt"));
+        assertTrue(paths.contains("/ab/old.txt"));
+    }
+
+    /**
+     * Test that a document which has been re-indexed is matched by its ancestor terms only
+     */
+    public void testReindexedDocument() throws Exception {
+        RAMDirectory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        writer.addDocument(createDocument("/a/moved.txt", new String[] {"/", "/b", "/b/moved.txt"})); // INFO: Ancestor terms win over the path
+        writer.addDocument(createDocument("/a/old.txt", null));
+        writer.close();
+
+        Set<String> paths = search(dir, "/a");
+        assertEquals(1, paths.size());
+        assertTrue(paths.contains("/a/old.txt"));
+    }
+
+    /**
+     * Create document with path and (optionally) ancestor terms
+     * @param ancestors Ancestor terms or null if the document has been indexed before the ancestors were indexed
+     */
+    private Document createDocument(String path, String[] ancestors) {
+        Document doc = new Document();
+        doc.add(new Field(LuceneIndexer.INDEX_PROPERTY_YAREPPATH, path, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        if (ancestors != null) {
+            for (int i = 0; i < ancestors.length; i++) {
+                doc.add(new Field(LuceneIndexer.INDEX_PROPERTY_ANCESTOR, ancestors[i], Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Get paths of all documents within subtree
+     */
+    private Set<String> search(RAMDirectory dir, String scopePath) throws Exception {
+        IndexSearcher searcher = new IndexSearcher(dir, true);
+        try {
+            TopDocs topDocs = searcher.search(new MatchAllDocsQuery(), new ScopeFilter(scopePath), 100);
+            Set<String> paths = new HashSet<String>();
+            ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+            for (int i = 0; i < scoreDocs.length; i++) {
+                paths.add(searcher.doc(scoreDocs[i].doc).get(LuceneIndexer.INDEX_PROPERTY_YAREPPATH));
+            }
+            return paths;
+        } finally {
+            searcher.close();
+        }
+    }
+}
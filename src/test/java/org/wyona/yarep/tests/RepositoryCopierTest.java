@@ -0,0 +1,114 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.util.RepositoryCopier;
+import org.wyona.yarep.util.YarepUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Test copying a repository by several threads, including resuming an interrupted copy by its checkpoint file
+ */
+public class RepositoryCopierTest extends AbstractVirtualFilesystemTest {
+
+    private static final String[] PATHS = {"/a.txt", "/dir/b.txt", "/dir/c.txt"};
+
+    /**
+     * Test that all nodes are copied and that the checkpoint file contains all copied nodes
+     */
+    public void testCopy() throws Exception {
+        Repository srcRepo = createSourceRepository();
+        Repository destRepo = createRepository(new File(new File(repoDir, "dest"), "repository.xml"), "", "");
+        File checkpointFile = new File(repoDir, "copy-checkpoint");
+
+        RepositoryCopier copier = YarepUtil.copyRepository(srcRepo, destRepo, 2, checkpointFile, false);
+        assertEquals(0, copier.getNodesFailed());
+        assertEquals(PATHS.length + 1, copier.getNodesCopied()); // INFO: Including the collection '/dir'
+        for (int i = 0; i < PATHS.length; i++) {
+            assertEquals(PATHS[i], read(destRepo.getNode(PATHS[i])));
+        }
+
+        List lines = FileUtils.readLines(checkpointFile, "UTF-8");
+        assertEquals(PATHS.length + 1, lines.size());
+        assertTrue(lines.contains("/dir"));
+        assertEquals("No other checkpoint file must exist", 1, repoDir.list(new java.io.FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.indexOf("copy-checkpoint") >= 0;
+            }
+        }).length);
+    }
+
+    /**
+     * Test that nodes contained by the checkpoint file are not copied again when a copy is resumed
+     */
+    public void testResume() throws Exception {
+        Repository srcRepo = createSourceRepository();
+        Repository destRepo = createRepository(new File(new File(repoDir, "dest"), "repository.xml"), "", "");
+        File checkpointFile = new File(repoDir, "copy-checkpoint");
+        FileUtils.writeStringToFile(checkpointFile, "/dir/b.txt\n", "UTF-8");
+
+        RepositoryCopier copier = YarepUtil.copyRepository(srcRepo, destRepo, 1, checkpointFile, true);
+        assertEquals(1, copier.getNodesSkipped());
+        assertEquals(PATHS.length, copier.getNodesCopied());
+        assertFalse(destRepo.existsNode("/dir/b.txt"));
+        assertEquals("/dir/c.txt", read(destRepo.getNode("/dir/c.txt")));
+        assertEquals(PATHS.length + 1, FileUtils.readLines(checkpointFile, "UTF-8").size());
+
+        // INFO: A copy which is not resumed ignores the existing checkpoint
+        copier = YarepUtil.copyRepository(srcRepo, destRepo, 1, checkpointFile, false);
+        assertEquals(0, copier.getNodesSkipped());
+        assertEquals("/dir/b.txt", read(destRepo.getNode("/dir/b.txt")));
+    }
+
+    /**
+     * Test that a partially written last path of the checkpoint journal (e.g. because of a crash) is discarded
+     */
+    public void testResumeAfterPartialWrite() throws Exception {
+        Repository srcRepo = createSourceRepository();
+        Repository destRepo = createRepository(new File(new File(repoDir, "dest"), "repository.xml"), "", "");
+        File checkpointFile = new File(repoDir, "copy-checkpoint");
+        FileUtils.writeStringToFile(checkpointFile, "/a.txt\n/di", "UTF-8");
+
+        RepositoryCopier copier = YarepUtil.copyRepository(srcRepo, destRepo, 1, checkpointFile, true);
+        assertEquals(1, copier.getNodesSkipped());
+        assertEquals(PATHS.length, copier.getNodesCopied());
+        List lines = FileUtils.readLines(checkpointFile, "UTF-8");
+        assertEquals(PATHS.length + 1, lines.size());
+        assertTrue(lines.contains("/dir"));
+        assertFalse(lines.contains("/di"));
+    }
+
+    /**
+     * Create source repository, whereas the content of every node is its path
+     */
+    private Repository createSourceRepository() throws Exception {
+        Repository repo = createRepository("", "");
+        for (int i = 0; i < PATHS.length; i++) {
+            Node node = YarepUtil.addNodes(repo, PATHS[i], NodeType.RESOURCE);
+            OutputStream out = node.getOutputStream();
+            out.write(PATHS[i].getBytes("UTF-8"));
+            out.close();
+        }
+        return repo;
+    }
+
+    /**
+     * Read content of node
+     */
+    private String read(Node node) throws Exception {
+        InputStream in = node.getInputStream();
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Property;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.search.BulkIndexer;
+import org.wyona.yarep.core.search.Indexer;
+import org.wyona.yarep.core.search.Metadata;
+import org.wyona.yarep.core.search.SearchException;
+import org.wyona.yarep.util.RepositoryIndexer;
+import org.wyona.yarep.util.YarepUtil;
+
+import org.apache.avalon.framework.configuration.Configuration;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test (re-)indexing a repository by several threads (see RepositoryIndexer)
+ */
+public class RepositoryIndexerTest extends AbstractVirtualFilesystemTest {
+
+    private static final String SEARCH_INDEX = "<s:search-index xmlns:s=\"http://www.wyona.org/yarep/search/2.0\" indexer-class=\"" + RecordingIndexer.class.getName() + "\"/>";
+
+    /**
+     * Test that all nodes are extracted and written in batches and that an error while extracting a node does not stop the indexing
+     */
+    public void testIndex() throws Exception {
+        Repository repo = createRepository("", SEARCH_INDEX);
+        String[] paths = {"/a.txt", "/b.txt", "/dir/c.txt", "/dir/d.txt", RecordingIndexer.ERROR_PATH};
+        for (int i = 0; i < paths.length; i++) {
+            Node node = YarepUtil.addNodes(repo, paths[i], NodeType.RESOURCE);
+            OutputStream out = node.getOutputStream();
+            out.write(paths[i].getBytes("UTF-8"));
+            out.close();
+        }
+        RecordingIndexer.written.clear();
+
+        RepositoryIndexer indexer = YarepUtil.indexRepository(repo, "/", 2, 2);
+        assertEquals(1, indexer.getNodesFailed());
+        assertEquals(paths.length + 2, indexer.getNodesFound()); // INFO: Including the root node and the collection '/dir'
+        assertEquals(paths.length + 1, indexer.getNodesIndexed());
+        for (int i = 0; i < paths.length - 1; i++) {
+            assertTrue("Node '" + paths[i] + "' has not been written", RecordingIndexer.written.contains(paths[i]));
+        }
+        assertFalse(RecordingIndexer.written.contains(RecordingIndexer.ERROR_PATH));
+    }
+
+    /**
+     * Test that nodes with ignored names are not indexed, including their descendants
+     */
+    public void testIgnoredNames() throws Exception {
+        Repository repo = createRepository("", SEARCH_INDEX);
+        String[] paths = {"/a.txt", "/dir/b.txt", "/ignored/c.txt"};
+        for (int i = 0; i < paths.length; i++) {
+            Node node = YarepUtil.addNodes(repo, paths[i], NodeType.RESOURCE);
+            OutputStream out = node.getOutputStream();
+            out.write(paths[i].getBytes("UTF-8"));
+            out.close();
+        }
+        RecordingIndexer.written.clear();
+
+        RepositoryIndexer indexer = YarepUtil.indexRepository(repo, "/", 2, 2, new String[] {"ignored"});
+        assertEquals(4, indexer.getNodesFound()); // INFO: Root node, '/a.txt', '/dir' and '/dir/b.txt'
+        assertTrue(RecordingIndexer.written.contains("/dir/b.txt"));
+        assertFalse(RecordingIndexer.written.contains("/ignored/c.txt"));
+    }
+
+    /**
+     * Bulk indexer which records the written documents (paths of nodes) and which fails with an error for a particular node
+     */
+    public static class RecordingIndexer implements Indexer, BulkIndexer<String> {
+
+        static final String ERROR_PATH = "/error.txt";
+        static List<String> written = Collections.synchronizedList(new ArrayList<String>());
+
+        public void configure(Configuration searchIndexConfig, File configFile, Repository repo) {
+        }
+
+        public String extract(Node node) throws SearchException {
+            try {
+                if (ERROR_PATH.equals(node.getPath())) {
+                    throw new StackOverflowError("Simulated parser error");
+                }
+                return node.getPath();
+            } catch (org.wyona.yarep.core.RepositoryException e) {
+                throw new SearchException(e.getMessage());
+            }
+        }
+
+        public void write(List<String> documents) {
+            written.addAll(documents);
+        }
+
+        public void index(Node node) {
+        }
+
+        public void index(Node node, Property property) {
+        }
+
+        public void index(Node node, Metadata metadata) {
+        }
+
+        public void removeFromIndex(Node node) {
+        }
+
+        public void removeFromIndex(Node node, Property property) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.impl.repo.vfs.AtomicFile;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemNode;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re replacing content and meta files atomically
+ */
+public class VirtualFilesystemAtomicWriteTest extends AbstractVirtualFilesystemTest {
+
+    private static final String PATH = "/atomic-write-test.txt";
+
+    /**
+     * Test that readers see the previous content until the output stream has been closed and that no temporary file remains
+     */
+    public void testReplaceContent() throws Exception {
+        Repository repo = createRepository("", "");
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        write(node, "old");
+
+        OutputStream out = node.getOutputStream();
+        out.write("new".getBytes("UTF-8"));
+        out.flush();
+        assertEquals("old", read(node));
+        out.close();
+        out.close(); // INFO: Closing twice must not replace the content again
+        assertEquals("new", read(node));
+
+        assertEquals(0, countTempFiles(new File(repoDir, "content")));
+    }
+
+    /**
+     * Test that restoring a revision replaces the meta file atomically and that no temporary file remains
+     */
+    public void testRestore() throws Exception {
+        Repository repo = createRepository("", "");
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        node.checkout("bob");
+        write(node, "first");
+        node.setProperty("color", "red");
+        Revision revision = node.checkin("First revision");
+
+        node.checkout("bob");
+        write(node, "second");
+        node.setProperty("color", "blue");
+        node.checkin("Second revision");
+
+        node.restore(revision.getRevisionName());
+        assertEquals("first", read(node));
+        assertEquals("red", openRepository().getNode(PATH).getProperty("color").getString());
+
+        assertEquals(0, countTempFiles(((VirtualFileSystemNode) node).getMetaFile().getParentFile()));
+        assertEquals(0, countTempFiles(new File(repoDir, "content")));
+    }
+
+    /**
+     * Write content of node
+     */
+    private void write(Node node, String content) throws Exception {
+        OutputStream out = node.getOutputStream();
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    /**
+     * Read content of node
+     */
+    private String read(Node node) throws Exception {
+        InputStream in = node.getInputStream();
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Count temporary files (see AtomicFile) within a directory
+     */
+    private int countTempFiles(File dir) {
+        int count = 0;
+        String[] names = dir.list();
+        for (int i = 0; names != null && i < names.length; i++) {
+            if (names[i].endsWith(AtomicFile.TEMP_FILE_SUFFIX)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
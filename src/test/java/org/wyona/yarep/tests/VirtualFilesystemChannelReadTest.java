@@ -0,0 +1,65 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.attributes.ChannelReadableV1;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re reading content by channels (see ChannelReadableV1)
+ */
+public class VirtualFilesystemChannelReadTest extends AbstractVirtualFilesystemTest {
+
+    private static final String PATH = "/channel-read-test.txt";
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    /**
+     * Test reading content as file channel and transferring it to another channel
+     */
+    public void testChannel() throws Exception {
+        ChannelReadableV1 node = (ChannelReadableV1) addNode(createRepository("", ""));
+        assertEquals(CONTENT.length(), node.getContentLength());
+
+        ReadableByteChannel channel = node.getReadableChannel();
+        try {
+            assertTrue(channel instanceof FileChannel);
+            assertEquals(CONTENT, IOUtils.toString(Channels.newInputStream(channel), "UTF-8"));
+        } finally {
+            channel.close();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(CONTENT.length(), node.transferTo(Channels.newChannel(out)));
+        assertEquals(CONTENT, out.toString("UTF-8"));
+    }
+
+    /**
+     * Test that the content length is updated when the content is replaced
+     */
+    public void testContentLengthAfterWrite() throws Exception {
+        Node node = addNode(createRepository("", ""));
+        OutputStream out = node.getOutputStream();
+        out.write("short".getBytes("UTF-8"));
+        out.close();
+        assertEquals(5, ((ChannelReadableV1) node).getContentLength());
+    }
+
+    /**
+     * Add node with content
+     */
+    private Node addNode(Repository repo) throws Exception {
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        OutputStream out = node.getOutputStream();
+        out.write(CONTENT.getBytes("UTF-8"));
+        out.close();
+        return node;
+    }
+}
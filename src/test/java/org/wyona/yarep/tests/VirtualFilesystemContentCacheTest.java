@@ -0,0 +1,93 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.impl.repo.vfs.ContentCache;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re caching the content of small files
+ */
+public class VirtualFilesystemContentCacheTest extends AbstractVirtualFilesystemTest {
+
+    private static final String PATH = "/content-cache-test.txt";
+    private static final String CACHE = "<cache><content max-bytes=\"1024\" max-file-size=\"64\"/></cache>";
+
+    /**
+     * Test that content is read from the cache as long as it has not been modified and that content written by the repository is never read stale
+     */
+    public void testHitAndInvalidation() throws Exception {
+        VirtualFileSystemRepository repo = createRepository("", CACHE);
+        ContentCache cache = repo.getContentCache();
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        write(node, "first");
+
+        assertEquals("first", read(node));
+        long misses = cache.getMisses();
+        assertEquals("first", read(node));
+        assertEquals("first", read(node));
+        assertEquals(misses, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(5, cache.getBytes());
+
+        write(node, "second");
+        assertEquals("second", read(node));
+        assertEquals(6, cache.getBytes());
+    }
+
+    /**
+     * Test that content which has been modified outside of the repository is detected by its size
+     */
+    public void testExternalModification() throws Exception {
+        VirtualFileSystemRepository repo = createRepository("", CACHE);
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        write(node, "first");
+        assertEquals("first", read(node));
+
+        FileUtils.writeStringToFile(new File(new File(repoDir, "content"), PATH.substring(1)), "modified", "UTF-8");
+        assertEquals("modified", read(node));
+    }
+
+    /**
+     * Test that large files are not cached
+     */
+    public void testMaxFileSize() throws Exception {
+        VirtualFileSystemRepository repo = createRepository("", CACHE);
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            content.append("0123456789");
+        }
+        write(node, content.toString());
+        assertEquals(content.toString(), read(node));
+        assertEquals(0, repo.getContentCache().getSize());
+    }
+
+    /**
+     * Write content of node
+     */
+    private void write(Node node, String content) throws Exception {
+        OutputStream out = node.getOutputStream();
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    /**
+     * Read content of node
+     */
+    private String read(Node node) throws Exception {
+        InputStream in = node.getInputStream();
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
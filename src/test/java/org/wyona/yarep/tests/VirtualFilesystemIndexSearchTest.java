@@ -5,6 +5,14 @@ import org.wyona.yarep.core.NodeType;
 import org.wyona.yarep.core.Repository;
 import org.wyona.yarep.core.RepositoryFactory;
 import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.core.attributes.FacetSearcherV1;
+import org.wyona.yarep.core.attributes.PageableSearcherV1;
+import org.wyona.yarep.core.search.PropertyQuery;
+import org.wyona.yarep.core.search.SearchResults;
+import org.wyona.yarep.impl.repo.vfs.IndexingQueue;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+import org.wyona.yarep.impl.search.lucene.LuceneSearcher;
+import org.wyona.yarep.impl.search.lucene.SearchResultCache;
 
 import org.apache.log4j.Logger;
 
@@ -49,4 +57,162 @@ public class VirtualFilesystemIndexSearchTest extends TestCase {
 
         assertTrue(nodes != null && nodes.length == 1 && nodes[0].getPath().equals(path));
     }
+
+    /**
+     * Test paged searching of properties
+     */
+    public void testPagedSearchingOfProperties() throws Exception {
+        String path = "/" + NODE_NAME;
+
+        String name = "nicknames";
+        Node node = repo.getNode(path);
+        node.setProperty(name, "paging carol");
+
+        SearchResults results = ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "carol", "/", 0, 10);
+        assertEquals(1, results.getTotalHits());
+        assertEquals(path, results.getResults()[0].getPath());
+        assertEquals("paging carol", results.getResults()[0].getField(name));
+        assertFalse(results.hasMore());
+        assertEquals(path, results.getNodes(true)[0].getPath());
+
+        assertEquals(0, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "carol", "/", 1, 10).getResults().length);
+        assertEquals(0, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "carol", "/no-such-subtree", 0, 10).getTotalHits());
+        assertEquals(1, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "carol", path, 0, 10).getTotalHits());
+        // INFO: A path prefix which is not an ancestor does not match
+        assertEquals(0, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "carol", path.substring(0, path.length() - 1), 0, 10).getTotalHits());
+    }
+
+    /**
+     * Test range query on typed properties
+     */
+    public void testRangeSearchingOfTypedProperties() throws Exception {
+        String path = "/" + NODE_NAME;
+
+        Node node = repo.getNode(path);
+        node.setProperty("price", 15.5);
+        node.setProperty("stock", 42L);
+
+        SearchResults results = ((PageableSearcherV1) repo.getSearcher()).searchProperties(new PropertyQuery("/").addRange("price", 10.0, 20.0).addExactMatch("stock", 42L), 0, 10);
+        assertEquals(1, results.getTotalHits());
+        assertEquals(path, results.getResults()[0].getPath());
+
+        assertEquals(0, ((PageableSearcherV1) repo.getSearcher()).searchProperties(new PropertyQuery("/").addRange("price", 20.0, null), 0, 10).getTotalHits());
+    }
+
+    /**
+     * Test that the bounds of ranges are inclusive for all types, unless explicitly excluded
+     */
+    public void testRangeBoundaries() throws Exception {
+        String path = "/" + NODE_NAME;
+
+        Date released = new Date(1262304000000L);
+        Node node = repo.getNode(path);
+        node.setProperty("weight", 2.5);
+        node.setProperty("pages", 300L);
+        node.setProperty("released", released);
+
+        PageableSearcherV1 searcher = (PageableSearcherV1) repo.getSearcher();
+        assertEquals(1, searcher.searchProperties(new PropertyQuery("/").addRange("weight", 1.0, 2.5), 0, 10).getTotalHits());
+        assertEquals(1, searcher.searchProperties(new PropertyQuery("/").addRange("weight", 2.5, 4.0), 0, 10).getTotalHits());
+        assertEquals(1, searcher.searchProperties(new PropertyQuery("/").addRange("pages", 100L, 300L), 0, 10).getTotalHits());
+        assertEquals(1, searcher.searchProperties(new PropertyQuery("/").addRange("pages", 300L, 500L), 0, 10).getTotalHits());
+        assertEquals(1, searcher.searchProperties(new PropertyQuery("/").addRange("released", new Date(released.getTime() - 1000), released), 0, 10).getTotalHits());
+        assertEquals(1, searcher.searchProperties(new PropertyQuery("/").addRange("released", released, new Date(released.getTime() + 1000)), 0, 10).getTotalHits());
+
+        assertEquals(0, searcher.searchProperties(new PropertyQuery("/").addRange("weight", 1.0, 2.5, true, false), 0, 10).getTotalHits());
+        assertEquals(0, searcher.searchProperties(new PropertyQuery("/").addRange("pages", 300L, 500L, false, true), 0, 10).getTotalHits());
+        assertEquals(0, searcher.searchProperties(new PropertyQuery("/").addRange("released", new Date(released.getTime() - 1000), released, true, false), 0, 10).getTotalHits());
+    }
+
+    /**
+     * Test that a range without any bound is rejected
+     */
+    public void testRangeWithoutBounds() throws Exception {
+        try {
+            new PropertyQuery("/").addRange("price", (Double) null, (Double) null);
+            fail("Range without any bound must be rejected");
+        } catch (IllegalArgumentException e) {
+            // INFO: Expected
+        }
+    }
+
+    /**
+     * Test that repeated searches are answered by the result cache and that a modification invalidates the cache
+     */
+    public void testSearchResultCache() throws Exception {
+        String path = "/" + NODE_NAME;
+
+        String name = "cachenames";
+        Node node = repo.getNode(path);
+        node.setProperty(name, "dave");
+
+        SearchResultCache cache = ((LuceneSearcher) repo.getSearcher()).getPropertiesResultCache();
+        assertNotNull("Result cache is disabled", cache);
+
+        assertEquals(1, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "dave", "/", 0, 10).getTotalHits());
+        long hits = cache.getHits();
+        assertEquals(1, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "dave", "/", 0, 10).getTotalHits());
+        assertEquals(hits + 1, cache.getHits());
+
+        node.setProperty(name, "eve");
+        assertEquals(0, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "dave", "/", 0, 10).getTotalHits());
+    }
+
+    /**
+     * Test that a property written by the indexer of this repository (LuceneIndexer, see 'new-vfs-example/repository.xml') is found immediately, although the same search without hits has been cached before
+     */
+    public void testSearchResultCacheAfterWrite() throws Exception {
+        String path = "/" + NODE_NAME;
+
+        String name = "freshnames";
+        assertEquals(0, ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "frank", "/", 0, 10).getTotalHits());
+
+        repo.getNode(path).setProperty(name, "frank");
+        SearchResults results = ((PageableSearcherV1) repo.getSearcher()).searchProperty(name, "frank", "/", 0, 10);
+        assertEquals(1, results.getTotalHits());
+        assertEquals(path, results.getResults()[0].getPath());
+    }
+
+    /**
+     * Test counting property values over matching nodes within subtree
+     */
+    public void testFacets() throws Exception {
+        String path = "/" + NODE_NAME;
+
+        Node node = repo.getNode(path);
+        node.setProperty("colors", "dark red");
+
+        // INFO: The values are counted as a whole, although the property is searched tokenized
+        java.util.Map<String, java.util.Map<String, Integer>> facets = ((FacetSearcherV1) repo.getSearcher()).getFacets("colors", "red", "/", new String[] {"colors"}, -1);
+        assertEquals(1, facets.get("colors").size());
+        assertEquals(Integer.valueOf(1), facets.get("colors").get("dark red"));
+
+        assertTrue(((FacetSearcherV1) repo.getSearcher()).getFacets("colors", "green", "/", new String[] {"colors"}, -1).get("colors").isEmpty());
+        assertEquals(1, ((FacetSearcherV1) repo.getSearcher()).getFacets(null, null, "/", new String[] {"colors"}, 1).get("colors").size());
+    }
+
+    /**
+     * Test that jobs of the indexing journal which have not been processed yet are processed when the indexing queue is started
+     */
+    public void testIndexingQueueJournalReplay() throws Exception {
+        java.io.File journalFile = java.io.File.createTempFile("indexing-queue", ".journal");
+        java.io.Writer writer = new java.io.OutputStreamWriter(new java.io.FileOutputStream(journalFile), "UTF-8");
+        writer.write("+\tproperties\t/" + NODE_NAME + "\n");
+        writer.write("+\tfulltext\t/no-such-node.txt\n");
+        writer.write("-\tfulltext\t/no-such-node.txt\n");
+        writer.close();
+
+        IndexingQueue queue = new IndexingQueue((VirtualFileSystemRepository) repo, 1, 10, 100, journalFile);
+        try {
+            for (int i = 0; i < 100 && queue.getProcessedCount() < 1; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, queue.getProcessedCount());
+            assertEquals(0, queue.getFailedCount());
+            assertEquals(0, queue.getQueueDepth());
+        } finally {
+            queue.close();
+            journalFile.delete();
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Property;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.search.Indexer;
+import org.wyona.yarep.core.search.Metadata;
+import org.wyona.yarep.core.search.SearchException;
+import org.wyona.yarep.impl.repo.vfs.IndexingQueue;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+
+import org.apache.avalon.framework.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.OutputStream;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re asynchronous indexing (see IndexingQueue)
+ */
+public class VirtualFilesystemIndexingQueueTest extends AbstractVirtualFilesystemTest {
+
+    private static final String PATH = "/indexing-queue-test.txt";
+    private static final String SEARCH_INDEX = "<s:search-index xmlns:s=\"http://www.wyona.org/yarep/search/2.0\" indexer-class=\"" + FlakyIndexer.class.getName() + "\">"
+        + "<repo-auto-index-properties boolean=\"false\"/><repo-async-indexing boolean=\"true\" workers=\"1\" journal=\"indexing-queue.journal\"/></s:search-index>";
+
+    /**
+     * Test that a failed job stays within the journal and is retried
+     */
+    public void testRetryOfFailedJob() throws Exception {
+        FlakyIndexer.calls = 0;
+        VirtualFileSystemRepository repo = createRepository("", SEARCH_INDEX);
+        IndexingQueue queue = repo.getIndexingQueue();
+        File journalFile = new File(repoDir, "indexing-queue.journal");
+
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        OutputStream out = node.getOutputStream();
+        out.write("hello".getBytes("UTF-8"));
+        out.close();
+
+        for (int i = 0; i < 100 && queue.getFailedCount() < 1; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, queue.getFailedCount());
+        assertEquals(1, queue.getRetriedCount());
+        assertTrue("Failed job has been removed from journal", FileUtils.readFileToString(journalFile, "UTF-8").endsWith("+\tfulltext\t" + PATH + "\n"));
+
+        for (int i = 0; i < 100 && queue.getProcessedCount() < 1; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, queue.getProcessedCount());
+        assertEquals(2, FlakyIndexer.calls);
+        assertEquals(0, queue.getQueueDepth());
+        assertTrue(FileUtils.readFileToString(journalFile, "UTF-8").endsWith("-\tfulltext\t" + PATH + "\n"));
+    }
+
+    /**
+     * Indexer which fails when indexing the content of a node for the first time
+     */
+    public static class FlakyIndexer implements Indexer {
+
+        static volatile int calls = 0;
+
+        public void configure(Configuration searchIndexConfig, File configFile, Repository repo) {
+        }
+
+        public void index(Node node) throws SearchException {
+            calls++;
+            if (calls == 1) {
+                throw new SearchException("Simulated indexing error");
+            }
+        }
+
+        public void index(Node node, Property property) {
+        }
+
+        public void index(Node node, Metadata metadata) {
+        }
+
+        public void removeFromIndex(Node node) {
+        }
+
+        public void removeFromIndex(Node node, Property property) {
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.RepositoryException;
+import org.wyona.yarep.impl.repo.vfs.LockManager;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the lock manager of the 'virtual filesystem' repository implementation re file locks
+ */
+public class VirtualFilesystemLockManagerTest extends AbstractVirtualFilesystemTest {
+
+    private static final String PATH = "/lock-test.txt";
+
+    /**
+     * Error of a helper thread, which is checked by the test after joining the thread
+     */
+    private volatile Throwable threadError;
+
+    /**
+     * Test that two lock managers of the same JVM sharing the same lock directory wait for each other instead of failing
+     */
+    public void testSharedLockDirectory() throws Exception {
+        File lockDir = new File(repoDir, "locks");
+        final LockManager first = new LockManager(1, lockDir);
+        final LockManager second = new LockManager(1, lockDir);
+        try {
+            first.lock(PATH);
+            final CountDownLatch acquired = new CountDownLatch(1);
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        second.lock(PATH);
+                        acquired.countDown();
+                        second.unlock(PATH);
+                    } catch (Throwable t) {
+                        threadError = t;
+                    }
+                }
+            };
+            thread.start();
+            assertFalse("Lock must not be acquired while it is held by the other lock manager", acquired.await(500, TimeUnit.MILLISECONDS));
+            first.unlock(PATH);
+            assertTrue("Lock must be acquired as soon as it is released by the other lock manager", acquired.await(5, TimeUnit.SECONDS));
+            thread.join(5000);
+            assertNull("Helper thread failed: " + threadError, threadError);
+
+            first.lock(PATH);
+            first.unlock(PATH);
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * Test that the lock of a stripe is released when the file lock can not be acquired
+     */
+    public void testFailedFileLock() throws Exception {
+        File lockDir = new File(repoDir, "locks");
+        final LockManager lockManager = new LockManager(1, lockDir);
+        try {
+            // INFO: A directory instead of the lock file makes acquiring the file lock fail
+            File lockFile = new File(lockDir, "stripe-0.lock");
+            assertTrue(lockFile.mkdirs());
+            try {
+                lockManager.lock(PATH);
+                fail("File lock must not be acquired");
+            } catch (RepositoryException e) {
+                // INFO: Expected
+            }
+            assertTrue(lockFile.delete());
+
+            final CountDownLatch acquired = new CountDownLatch(1);
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        lockManager.lock(PATH);
+                        acquired.countDown();
+                        lockManager.unlock(PATH);
+                    } catch (Throwable t) {
+                        threadError = t;
+                    }
+                }
+            };
+            thread.start();
+            assertTrue("Lock of stripe must have been released after failing to acquire the file lock", acquired.await(5, TimeUnit.SECONDS));
+            thread.join(5000);
+            assertNull("Helper thread failed: " + threadError, threadError);
+        } finally {
+            lockManager.close();
+        }
+    }
+
+    /**
+     * Test that a repository which has been opened twice within the same JVM can be modified through both instances
+     */
+    public void testRepositoryOpenedTwice() throws Exception {
+        VirtualFileSystemRepository first = createRepository("", "<locks file-locks=\"true\" dir=\"locks\"/>");
+        VirtualFileSystemRepository second = openRepository();
+        assertTrue(first.getLockManager().isFileLockingEnabled());
+
+        Node node = first.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        node.setProperty("color", "red");
+        second.getNode(PATH).setProperty("color", "blue");
+
+        // INFO: Closing one instance must not close the lock files still used by the other instance
+        second.close();
+        node.setProperty("color", "green");
+        assertEquals("green", openRepository().getNode(PATH).getProperty("color").getString());
+    }
+}
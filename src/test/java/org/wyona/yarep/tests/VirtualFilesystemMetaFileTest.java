@@ -0,0 +1,128 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemNode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re the binary meta file format (version 2.0)
+ */
+public class VirtualFilesystemMetaFileTest extends AbstractVirtualFilesystemTest {
+
+    private static final String BINARY = "meta-file-version=\"2.0\"";
+    private static final String PATH = "/meta-file-test.txt";
+
+    /**
+     * Test that properties are written as binary meta file and read again by another repository instance
+     */
+    public void testBinaryMetaFile() throws Exception {
+        Repository repo = createRepository(BINARY, "");
+        Node node = addNode(repo);
+        node.setProperty("color", "red");
+        node.setProperty("size", 42L);
+        node.setProperty("color", "blue");
+
+        assertTrue(isBinary(node));
+
+        Node reopened = openRepository().getNode(PATH);
+        assertEquals("blue", reopened.getProperty("color").getString());
+        assertEquals(42L, reopened.getProperty("size").getLong());
+    }
+
+    /**
+     * Test that a meta file in text format is migrated to the binary format when it is written the next time
+     */
+    public void testUpgradeFromTextFormat() throws Exception {
+        Repository textRepo = createRepository("", "");
+        Node node = addNode(textRepo);
+        node.setProperty("color", "red");
+        assertFalse(isBinary(node));
+
+        Repository binaryRepo = createRepository(BINARY, "");
+        node = binaryRepo.getNode(PATH);
+        assertEquals("red", node.getProperty("color").getString());
+        node.setProperty("size", 42L);
+        assertTrue(isBinary(node));
+
+        Node reopened = openRepository().getNode(PATH);
+        assertEquals("red", reopened.getProperty("color").getString());
+        assertEquals(42L, reopened.getProperty("size").getLong());
+    }
+
+    /**
+     * Test that a truncated record at the end of a binary meta file (e.g. because of a crash while appending) is ignored and removed by the next modification
+     */
+    public void testTruncatedRecord() throws Exception {
+        Repository repo = createRepository(BINARY, "");
+        Node node = addNode(repo);
+        node.setProperty("color", "red");
+
+        // INFO: Simulate a crash while appending a record (record type and the first bytes of the length of the property name)
+        OutputStream out = new FileOutputStream(((VirtualFileSystemNode) node).getMetaFile(), true);
+        out.write(new byte[] {'P', 0, 0});
+        out.close();
+
+        Node reopened = openRepository().getNode(PATH);
+        assertEquals("red", reopened.getProperty("color").getString());
+        reopened.setProperty("size", 42L);
+
+        reopened = openRepository().getNode(PATH);
+        assertEquals("red", reopened.getProperty("color").getString());
+        assertEquals(42L, reopened.getProperty("size").getLong());
+    }
+
+    /**
+     * Test restoring a revision, whose meta file has been written in text format, within a repository which writes binary meta files
+     */
+    public void testRestoreOfTextRevision() throws Exception {
+        Repository textRepo = createRepository("", "");
+        Node node = addNode(textRepo);
+        node.checkout("bob");
+        node.setProperty("color", "red");
+        Revision revision = node.checkin("Text revision");
+
+        Repository binaryRepo = createRepository(BINARY, "");
+        node = binaryRepo.getNode(PATH);
+        node.setProperty("color", "blue");
+        assertTrue(isBinary(node));
+        node.restore(revision.getRevisionName());
+        node.setProperty("size", 42L);
+
+        Node reopened = openRepository().getNode(PATH);
+        assertEquals("red", reopened.getProperty("color").getString());
+        assertEquals(42L, reopened.getProperty("size").getLong());
+    }
+
+    /**
+     * Add node with some content
+     */
+    private Node addNode(Repository repo) throws Exception {
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        OutputStream out = node.getOutputStream();
+        out.write("Hello meta file test!".getBytes("UTF-8"));
+        out.close();
+        return node;
+    }
+
+    /**
+     * Check whether meta file of node starts with the magic bytes of the binary format
+     */
+    private boolean isBinary(Node node) throws Exception {
+        File metaFile = ((VirtualFileSystemNode) node).getMetaFile();
+        InputStream in = new FileInputStream(metaFile);
+        try {
+            byte[] magic = new byte[4];
+            return in.read(magic) == 4 && new String(magic, "US-ASCII").equals("YMF2");
+        } finally {
+            in.close();
+        }
+    }
+}
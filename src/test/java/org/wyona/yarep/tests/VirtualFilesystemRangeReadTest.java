@@ -0,0 +1,87 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Repository;
+import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.core.attributes.RangeReadableV1;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re reading ranges of content (see RangeReadableV1)
+ */
+public class VirtualFilesystemRangeReadTest extends AbstractVirtualFilesystemTest {
+
+    private static final String PATH = "/range-read-test.txt";
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    /**
+     * Test positional reads, including reads at and beyond the end of the content
+     */
+    public void testRead() throws Exception {
+        RangeReadableV1 node = (RangeReadableV1) addNode(createRepository("", ""));
+        byte[] buffer = new byte[8];
+
+        assertEquals(4, node.read(10, buffer, 2, 4));
+        assertEquals("abcd", new String(buffer, 2, 4, "UTF-8"));
+
+        assertEquals("Only the remaining bytes are read", 2, node.read(18, buffer, 0, 8));
+        assertEquals("ij", new String(buffer, 0, 2, "UTF-8"));
+
+        assertEquals(-1, node.read(CONTENT.length(), buffer, 0, 8));
+        assertEquals(-1, node.read(CONTENT.length() + 100, buffer, 0, 8));
+    }
+
+    /**
+     * Test reading ranges as stream, including ranges which exceed the end of the content
+     */
+    public void testInputStream() throws Exception {
+        RangeReadableV1 node = (RangeReadableV1) addNode(createRepository("", ""));
+        assertEquals("abcd", read(node.getInputStream(10, 4)));
+        assertEquals("abcdefghij", read(node.getInputStream(10, -1)));
+        assertEquals("ij", read(node.getInputStream(18, 100)));
+        assertEquals("", read(node.getInputStream(CONTENT.length() + 100, 10)));
+    }
+
+    /**
+     * Test reading a range of the content of a revision, which is not the current content of the node anymore
+     */
+    public void testRevision() throws Exception {
+        Node node = addNode(createRepository("", ""));
+        node.checkout("bob");
+        Revision revision = node.checkin("Revision with original content");
+        OutputStream out = node.getOutputStream();
+        out.write("modified".getBytes("UTF-8"));
+        out.close();
+
+        RangeReadableV1 readable = (RangeReadableV1) node.getRevision(revision.getRevisionName());
+        assertEquals("abcd", read(readable.getInputStream(10, 4)));
+        assertEquals(-1, readable.read(CONTENT.length(), new byte[8], 0, 8));
+    }
+
+    /**
+     * Add node with content
+     */
+    private Node addNode(Repository repo) throws Exception {
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        OutputStream out = node.getOutputStream();
+        out.write(CONTENT.getBytes("UTF-8"));
+        out.close();
+        return node;
+    }
+
+    /**
+     * Read stream completely
+     */
+    private String read(InputStream in) throws Exception {
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
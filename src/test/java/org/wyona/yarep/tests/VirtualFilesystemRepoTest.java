@@ -1,12 +1,22 @@
 package org.wyona.yarep.tests;
 
 import java.io.File;
+import java.util.Iterator;
 
 import org.wyona.yarep.core.RepositoryFactory;
 
+import org.apache.commons.io.IOUtils;
+
 import org.apache.log4j.Logger;
 
+import org.wyona.yarep.core.Batch;
+import org.wyona.yarep.core.ChildEntry;
 import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.attributes.PageableChildrenV1;
+import org.wyona.yarep.impl.repo.vfs.PropertiesCache;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+import org.wyona.yarep.util.YarepUtil;
 
 /**
  * Test for the 'virtual filesystem' repository implementation.
@@ -50,4 +60,87 @@ public class VirtualFilesystemRepoTest extends NodeRepoTest {
         node.getNodes();
         assertEquals(node.getNodes().length, 1);
     }
+
+    /**
+     * Test listing children page by page
+     */
+    public void testGetChildEntries() throws Exception {
+        String path = "/paging-test-" + System.currentTimeMillis();
+        Node collection = YarepUtil.addNodes(repo, path, NodeType.COLLECTION);
+        collection.addNode("c.txt", NodeType.RESOURCE);
+        collection.addNode("a.txt", NodeType.RESOURCE);
+        collection.addNode("b", NodeType.COLLECTION);
+
+        ChildEntry[] entries = YarepUtil.getChildEntries(collection, PageableChildrenV1.NAME_ASCENDING, 1, 2);
+        assertEquals(2, entries.length);
+        assertEquals("b", entries[0].getName());
+        assertTrue(entries[0].isCollection());
+        assertEquals(path + "/c.txt", entries[1].getPath());
+
+        Iterator<Node> children = YarepUtil.getNodes(collection, PageableChildrenV1.NAME_DESCENDING, 0, -1);
+        assertEquals("c.txt", children.next().getName());
+        assertEquals("b", children.next().getName());
+        assertEquals("a.txt", children.next().getName());
+        assertFalse(children.hasNext());
+
+        assertEquals(0, YarepUtil.getChildEntries(collection, PageableChildrenV1.UNSORTED, 5, 10).length);
+
+        collection.delete();
+    }
+
+    /**
+     * Test that children of a collection with split paths (see 'splitpath' of 'new-vfs-example/repository.xml') are not listed as segments of split paths
+     */
+    public void testGetChildEntriesOfSplitPaths() throws Exception {
+        Node collection = repo.getNode("/splitpath-example");
+        try {
+            YarepUtil.getChildEntries(collection, PageableChildrenV1.UNSORTED, 0, -1);
+            fail("Children of split paths must not be listed page by page");
+        } catch (org.wyona.yarep.core.RepositoryException e) {
+            // INFO: Expected
+        }
+    }
+
+    /**
+     * Test that parsed meta files are cached and that modified properties are not read from the cache
+     */
+    public void testPropertiesCache() throws Exception {
+        PropertiesCache cache = ((VirtualFileSystemRepository) repo).getPropertiesCache();
+        assertNotNull("Properties cache is disabled", cache);
+
+        Node node = repo.getNode(getResourceTestPath());
+        long hits = cache.getHits();
+        repo.getNode(getResourceTestPath());
+        assertTrue("Meta file has not been read from cache", cache.getHits() > hits);
+
+        String value = "cache-test-" + System.currentTimeMillis();
+        node.setProperty("cache-test", value);
+        assertEquals(value, repo.getNode(getResourceTestPath()).getProperty("cache-test").getString());
+
+        node.removeProperty("cache-test");
+        assertNull(repo.getNode(getResourceTestPath()).getProperty("cache-test"));
+    }
+
+    /**
+     * Test that a batch creates nodes, sets properties and writes content
+     */
+    public void testBatch() throws Exception {
+        String path = getCollectionTestPath() + "/batch-test-" + System.currentTimeMillis() + "/page.html";
+        Batch batch = new Batch();
+        batch.addNode(path, NodeType.RESOURCE);
+        batch.setProperty(path, "title", "Batch test");
+        batch.setProperty(path, "weight", 42L);
+        batch.setProperty(path, "obsolete", true);
+        batch.removeProperty(path, "obsolete");
+        batch.setContent(path, "<html/>".getBytes("UTF-8"));
+        YarepUtil.apply(repo, batch);
+
+        Node node = repo.getNode(path);
+        assertEquals("Batch test", node.getProperty("title").getString());
+        assertEquals(42L, node.getProperty("weight").getLong());
+        assertNull(node.getProperty("obsolete"));
+        assertEquals("<html/>", IOUtils.toString(node.getInputStream(), "UTF-8"));
+
+        node.getParent().delete();
+    }
 }
@@ -0,0 +1,67 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+
+import org.apache.lucene.search.BooleanQuery;
+
+import java.io.OutputStream;
+import java.util.Date;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re the repository wide revision date index (revisions-date-index-impl 'repository')
+ */
+public class VirtualFilesystemRevisionDateIndexTest extends AbstractVirtualFilesystemTest {
+
+    /**
+     * Test getting the revisions of more nodes than the maximum number of clauses of a boolean query
+     */
+    public void testRevisionsOfManyNodes() throws Exception {
+        VirtualFileSystemRepository repo = createRepository("revisions-date-index-impl=\"repository\"", "");
+        String[] paths = new String[5];
+        Revision[] expected = new Revision[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/date-index-test-" + i + ".txt";
+            Node node = repo.getRootNode().addNode(paths[i].substring(1), NodeType.RESOURCE);
+            expected[i] = checkin(node, "first");
+        }
+        Date date = new Date(expected[paths.length - 1].getCreationDate().getTime());
+        for (int i = 0; i < paths.length; i++) {
+            checkin(repo.getNode(paths[i]), "second");
+        }
+
+        int maxClauseCount = BooleanQuery.getMaxClauseCount();
+        BooleanQuery.setMaxClauseCount(2); // INFO: The paths have to be split into three queries
+        try {
+            Revision[] revisions = repo.getRevisions(paths, date);
+            assertEquals(paths.length, revisions.length);
+            for (int i = 0; i < paths.length; i++) {
+                assertNotNull("No revision of node '" + paths[i] + "'", revisions[i]);
+                assertEquals(expected[i].getRevisionName(), revisions[i].getRevisionName());
+            }
+
+            // INFO: Second lookup uses the revisions which have been indexed by the first lookup
+            revisions = repo.getRevisions(paths, new Date());
+            for (int i = 0; i < paths.length; i++) {
+                assertNotNull(revisions[i]);
+                assertFalse(expected[i].getRevisionName().equals(revisions[i].getRevisionName()));
+            }
+        } finally {
+            BooleanQuery.setMaxClauseCount(maxClauseCount);
+        }
+    }
+
+    /**
+     * Write content and create revision
+     */
+    private Revision checkin(Node node, String content) throws Exception {
+        Thread.sleep(5); // INFO: Make sure that every revision has its own creation date
+        node.checkout("bob");
+        OutputStream out = node.getOutputStream();
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return node.checkin(content);
+    }
+}
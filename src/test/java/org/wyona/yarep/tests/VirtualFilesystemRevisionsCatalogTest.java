@@ -0,0 +1,56 @@
+package org.wyona.yarep.tests;
+
+import org.wyona.yarep.core.Node;
+import org.wyona.yarep.core.NodeType;
+import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.core.attributes.VersionableV1;
+import org.wyona.yarep.impl.repo.vfs.CatalogCache;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
+
+import java.io.OutputStream;
+import java.util.Date;
+
+/**
+ * Test the 'virtual filesystem' repository implementation re the revisions catalog (revisions-date-index-impl 'catalog')
+ */
+public class VirtualFilesystemRevisionsCatalogTest extends AbstractVirtualFilesystemTest {
+
+    private static final String PATH = "/catalog-test.txt";
+
+    /**
+     * Test that the mapped catalog is shared by all lookups of a repository and that it is mapped again after a revision has been added
+     */
+    public void testCatalogCache() throws Exception {
+        VirtualFileSystemRepository repo = createRepository("revisions-date-index-impl=\"catalog\"", "");
+        Node node = repo.getRootNode().addNode(PATH.substring(1), NodeType.RESOURCE);
+        checkin(node, "first");
+        Revision second = checkin(node, "second");
+
+        CatalogCache cache = repo.getCatalogCache();
+        Date now = new Date();
+        assertEquals(second.getRevisionName(), ((VersionableV1) repo.getNode(PATH)).getRevision(now).getRevisionName());
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(second.getRevisionName(), ((VersionableV1) repo.getNode(PATH)).getRevision(now).getRevisionName());
+        }
+        assertEquals("Catalog must not be mapped again as long as it has not been modified", misses, cache.getMisses());
+        assertEquals(hits + 3, cache.getHits());
+
+        Revision third = checkin(node, "third");
+        assertEquals(third.getRevisionName(), ((VersionableV1) repo.getNode(PATH)).getRevision(new Date()).getRevisionName());
+        assertEquals(second.getRevisionName(), ((VersionableV1) repo.getNode(PATH)).getRevision(now).getRevisionName());
+    }
+
+    /**
+     * Write content and create revision
+     */
+    private Revision checkin(Node node, String content) throws Exception {
+        Thread.sleep(5); // INFO: Make sure that every revision has its own creation date
+        node.checkout("bob");
+        OutputStream out = node.getOutputStream();
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return node.checkin(content);
+    }
+}
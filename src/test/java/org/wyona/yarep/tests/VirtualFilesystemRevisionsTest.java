@@ -5,6 +5,9 @@ import org.wyona.yarep.core.NodeType;
 import org.wyona.yarep.core.Repository;
 import org.wyona.yarep.core.RepositoryFactory;
 import org.wyona.yarep.core.Revision;
+import org.wyona.yarep.core.UID;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemNode;
+import org.wyona.yarep.impl.repo.vfs.VirtualFileSystemRepository;
 
 import org.apache.log4j.Logger;
 
@@ -192,6 +195,65 @@ public class VirtualFilesystemRevisionsTest extends TestCase {
         assertTrue(nodeCopy.getProperty(name2).getValueAsString().equals(value2));
     }
 
+    /**
+     * Test that identical content is stored only once by the blob store and that blobs are deleted together with the last reference
+     */
+    public void testRevisionBlobStore() throws Exception {
+        java.io.File dir = new java.io.File(System.getProperty("java.io.tmpdir"), "yarep-blob-store-test-" + System.currentTimeMillis());
+        org.wyona.yarep.impl.repo.vfs.RevisionBlobStore store = new org.wyona.yarep.impl.repo.vfs.RevisionBlobStore(new java.io.File(dir, "blobs"), false, null);
+
+        dir.mkdirs();
+        java.io.File content = new java.io.File(dir, "content");
+        org.apache.commons.io.FileUtils.writeStringToFile(content, MESSAGE, "UTF-8");
+        String hash1 = store.addReference(content);
+        String hash2 = store.addReference(content);
+        assertEquals(hash1, hash2);
+        assertEquals(2, store.getReferences(hash1));
+        assertTrue(store.getBlobFile(hash1).isFile());
+
+        store.removeReference(hash1);
+        assertTrue(store.getBlobFile(hash1).isFile());
+        store.removeReference(hash1);
+        assertFalse(store.getBlobFile(hash1).exists());
+
+        store.close();
+        org.apache.commons.io.FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Test that a blob matches its hash, that no temporary files remain and that a corrupt reference count is not silently reset
+     */
+    public void testRevisionBlobStoreIntegrity() throws Exception {
+        java.io.File dir = new java.io.File(System.getProperty("java.io.tmpdir"), "yarep-blob-store-integrity-test-" + System.currentTimeMillis());
+        java.io.File blobDir = new java.io.File(dir, "blobs");
+        org.wyona.yarep.impl.repo.vfs.RevisionBlobStore store = new org.wyona.yarep.impl.repo.vfs.RevisionBlobStore(blobDir, false, null);
+        try {
+            dir.mkdirs();
+            java.io.File content = new java.io.File(dir, "content");
+            org.apache.commons.io.FileUtils.writeStringToFile(content, MESSAGE, "UTF-8");
+            String hash = store.addReference(content);
+            assertEquals(hash, org.wyona.yarep.impl.repo.vfs.RevisionBlobStore.getHash(store.getBlobFile(hash)));
+            store.addReference(content); // INFO: The temporary copy of existing content is deleted again
+            String[] names = blobDir.list();
+            for (int i = 0; i < names.length; i++) {
+                assertFalse("Temporary file remained: " + names[i], names[i].endsWith(org.wyona.yarep.impl.repo.vfs.AtomicFile.TEMP_FILE_SUFFIX));
+            }
+
+            java.io.File blob = store.getBlobFile(hash);
+            org.apache.commons.io.FileUtils.writeStringToFile(new java.io.File(blob.getParentFile(), blob.getName() + org.wyona.yarep.impl.repo.vfs.RevisionBlobStore.REFS_FILE_SUFFIX), "corrupt", "UTF-8");
+            try {
+                store.removeReference(hash);
+                fail("Corrupt reference count must not be reset");
+            } catch (java.io.IOException e) {
+                // INFO: Expected
+            }
+            assertTrue(blob.isFile());
+        } finally {
+            store.close();
+            org.apache.commons.io.FileUtils.deleteDirectory(dir);
+        }
+    }
+
     /**
      * Test get revision by date (point in time)
      */
@@ -240,6 +302,31 @@ public class VirtualFilesystemRevisionsTest extends TestCase {
     }
 */
 
+    /**
+     * Test that a shared (cached) node object sees revisions which have been created through another node object of the same path
+     */
+    public void testRevisionsOfCachedNode() throws Exception {
+        String path = "/" + NODE_NAME;
+        if (!repo.existsNode(path)) {
+            repo.getRootNode().addNode(NODE_NAME, NodeType.RESOURCE);
+        }
+        Node cachedNode = repo.getNode(path);
+        int numberOfRevisions = cachedNode.getRevisions().length;
+
+        Node otherNode = new VirtualFileSystemNode((VirtualFileSystemRepository) repo, path, new UID(path).toString());
+        otherNode.checkout("alice");
+        otherNode.checkin("Revision created through another node object");
+
+        assertEquals(numberOfRevisions + 1, repo.getNode(path).getRevisions().length);
+
+        // INFO: A checkin through the shared node object itself is seen as well
+        Node node = repo.getNode(path);
+        node.checkout("bob");
+        Revision revision = node.checkin("Revision created through the shared node object");
+        assertEquals(numberOfRevisions + 2, node.getRevisions().length);
+        assertEquals(revision.getRevisionName(), node.getRevisions()[numberOfRevisions + 1].getRevisionName());
+    }
+
     /**
      * Format date
      */
@@ -10,6 +10,7 @@ import org.apache.tools.ant.types.Path;
 import org.wyona.yarep.core.Repository;
 import org.wyona.yarep.core.RepositoryException;
 import org.wyona.yarep.core.RepositoryFactory;
+import org.wyona.yarep.util.RepositoryCopier;
 import org.wyona.yarep.util.YarepUtil;
 
 /**
@@ -22,6 +23,9 @@ public class CopyRepositoryTask extends Task {
     private Path destRepoConfigPath;
     private String srcRepoID;
     private String destRepoID;
+    private int threads = 1;
+    private boolean resume = false;
+    private Path checkpointPath;
 
     /** (non-Javadoc)
      * @see org.apache.tools.ant.Task#execute()
@@ -49,8 +53,14 @@ public class CopyRepositoryTask extends Task {
                 throw new BuildException("dest repo [" + getDestRepoID() + "] is null!");
             }
             
-            log.info("Starting to copy...");
-            YarepUtil.copyRepository(srcRepo, destRepo);
+            log.info("Starting to copy (Threads: " + getThreads() + ", Resume: " + isResume() + ", Checkpoint: " + getCheckpointPath() + ")...");
+            if (getThreads() > 1 || getCheckpointPath() != null) {
+                File checkpointFile = getCheckpointPath() != null ? new File(getCheckpointPath().toString()) : null;
+                RepositoryCopier copier = YarepUtil.copyRepository(srcRepo, destRepo, getThreads(), checkpointFile, isResume());
+                log.info("Copied nodes: " + copier.getNodesCopied() + ", Failed: " + copier.getNodesFailed() + ", Nodes/s: " + Math.round(copier.getNodesPerSecond()) + ", MB/s: " + Math.round(copier.getMegabytesPerSecond() * 100) / 100.0);
+            } else {
+                YarepUtil.copyRepository(srcRepo, destRepo);
+            }
             destRepo.close();
             srcRepo.close();
             log.info("Copy done.");
@@ -93,4 +103,36 @@ public class CopyRepositoryTask extends Task {
         this.srcRepoID = srcRepoID;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set number of threads which copy nodes (default=1)
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * If true, then nodes which have been copied by an interrupted copy (see checkpoint path) are not copied again
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * Set file to which the paths of copied nodes are written, such that an interrupted copy can be resumed
+     */
+    public void setCheckpointPath(Path checkpointPath) {
+        this.checkpointPath = checkpointPath;
+    }
 }
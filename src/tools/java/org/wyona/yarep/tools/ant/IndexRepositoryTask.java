@@ -20,6 +20,10 @@ public class IndexRepositoryTask extends Task {
     private static Logger log = LogManager.getLogger(IndexRepositoryTask.class);
     
     private Path repoConfigPath;
+    private String path = "/";
+    private int threads = 1;
+    private int batchSize = org.wyona.yarep.util.RepositoryIndexer.DEFAULT_BATCH_SIZE;
+    private String[] ignoredNames = null;
 
     /** (non-Javadoc)
      * @see org.apache.tools.ant.Task#execute()
@@ -36,8 +40,13 @@ public class IndexRepositoryTask extends Task {
                 throw new BuildException("Repository [" + getRepoConfigPath() + "] is null!");
             }
             
-            log.info("Starting to index...");
-            YarepUtil.indexRepository(repo);
+            log.info("Starting to index (Path: " + path + ", Threads: " + threads + ", Batch size: " + batchSize + ")...");
+            if (threads > 1 || ignoredNames != null) {
+                org.wyona.yarep.util.RepositoryIndexer repoIndexer = YarepUtil.indexRepository(repo, path, threads, batchSize, ignoredNames != null ? ignoredNames : org.wyona.yarep.util.RepositoryIndexer.DEFAULT_IGNORED_NAMES);
+                log.info("Indexed nodes: " + repoIndexer.getNodesIndexed() + ", Failed nodes: " + repoIndexer.getNodesFailed() + ", Duration: " + (repoIndexer.getElapsedTime() / 1000) + "s");
+            } else {
+                YarepUtil.indexRepository(repo, path);
+            }
             repo.close();
             log.info("Indexing done.");
         } catch (Exception e) {
@@ -54,4 +63,40 @@ public class IndexRepositoryTask extends Task {
     public void setRepoConfigPath(Path repoConfigPath) {
         this.repoConfigPath = repoConfigPath;
     }
+
+    /**
+     * Set path from where (re-)indexing shall be started (default is '/')
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Set number of threads which extract the content of nodes, whereas more than one thread enables the bulk mode (see org.wyona.yarep.util.RepositoryIndexer)
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Set maximum number of documents which are added to the index at once (only used in bulk mode)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set names of nodes which are not indexed, including their descendants (default is '.svn')
+     * @param ignore Comma separated list of names, e.g. '.svn,.git' (or an empty string in order to index all nodes)
+     */
+    public void setIgnore(String ignore) {
+        java.util.List<String> names = new java.util.ArrayList<String>();
+        String[] tokens = ignore.split(",");
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].trim().length() > 0) {
+                names.add(tokens[i].trim());
+            }
+        }
+        this.ignoredNames = names.toArray(new String[names.size()]);
+    }
 }